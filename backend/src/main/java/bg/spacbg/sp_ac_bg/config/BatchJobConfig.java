@@ -0,0 +1,28 @@
+package bg.spacbg.sp_ac_bg.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pool for long running background jobs (validation scans, bulk recalculations).
+ * Jobs are submitted per company, so the pool size bounds how many companies are processed at once.
+ */
+@Configuration
+public class BatchJobConfig {
+
+    @Bean(name = "batchJobExecutor")
+    public ThreadPoolTaskExecutor batchJobExecutor(
+            @Value("${batch-jobs.pool-size:4}") int poolSize,
+            @Value("${batch-jobs.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("batch-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+}
@@ -0,0 +1,67 @@
+package bg.spacbg.sp_ac_bg.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the outbound HTTP clients, per upstream (saltedge, ecb, vies, ...). An upstream without its own
+ * entry uses {@code defaults}; a configured upstream overrides only the values it sets.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "outbound-http")
+public class OutboundHttpConfig {
+
+    private Upstream defaults = Upstream.builtInDefaults();
+    private Map<String, Upstream> upstreams = new HashMap<>();
+
+    public Upstream settingsFor(String upstream) {
+        Upstream configured = upstreams.get(upstream);
+        if (configured == null) {
+            return defaults;
+        }
+        Upstream merged = new Upstream();
+        merged.setConnectTimeoutMs(configured.getConnectTimeoutMs() != null
+                ? configured.getConnectTimeoutMs() : defaults.getConnectTimeoutMs());
+        merged.setReadTimeoutMs(configured.getReadTimeoutMs() != null
+                ? configured.getReadTimeoutMs() : defaults.getReadTimeoutMs());
+        merged.setMaxConcurrentCalls(configured.getMaxConcurrentCalls() != null
+                ? configured.getMaxConcurrentCalls() : defaults.getMaxConcurrentCalls());
+        merged.setBulkheadWaitMs(configured.getBulkheadWaitMs() != null
+                ? configured.getBulkheadWaitMs() : defaults.getBulkheadWaitMs());
+        merged.setFailureThreshold(configured.getFailureThreshold() != null
+                ? configured.getFailureThreshold() : defaults.getFailureThreshold());
+        merged.setOpenDurationMs(configured.getOpenDurationMs() != null
+                ? configured.getOpenDurationMs() : defaults.getOpenDurationMs());
+        return merged;
+    }
+
+    @Data
+    public static class Upstream {
+        private Long connectTimeoutMs;
+        private Long readTimeoutMs;
+
+        // Bulkhead: calls in flight at once, and how long a call waits for a free slot
+        private Integer maxConcurrentCalls;
+        private Long bulkheadWaitMs;
+
+        // Circuit breaker: consecutive failures that open it, and how long it stays open
+        private Integer failureThreshold;
+        private Long openDurationMs;
+
+        static Upstream builtInDefaults() {
+            Upstream upstream = new Upstream();
+            upstream.setConnectTimeoutMs(5000L);
+            upstream.setReadTimeoutMs(30000L);
+            upstream.setMaxConcurrentCalls(10);
+            upstream.setBulkheadWaitMs(2000L);
+            upstream.setFailureThreshold(5);
+            upstream.setOpenDurationMs(30000L);
+            return upstream;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package bg.spacbg.sp_ac_bg.model.dto;
+
+import bg.spacbg.sp_ac_bg.model.entity.AiBankAccountingSettingEntity;
+import lombok.Data;
+
+@Data
+public class BankPostingRuleDto {
+    private Integer id;
+    private Integer companyId;
+    private String patternName;
+    private String descriptionKeywords;
+    private String transactionType;
+    private Integer accountId;
+    private String direction;
+    private String descriptionTemplate;
+    private Integer priority;
+    private Boolean isActive;
+
+    public static BankPostingRuleDto fromEntity(AiBankAccountingSettingEntity entity) {
+        BankPostingRuleDto dto = new BankPostingRuleDto();
+        dto.setId(entity.getId());
+        dto.setCompanyId(entity.getCompany().getId());
+        dto.setPatternName(entity.getPatternName());
+        dto.setDescriptionKeywords(entity.getDescriptionKeywords());
+        dto.setTransactionType(entity.getTransactionType());
+        dto.setAccountId(entity.getAccount() != null ? entity.getAccount().getId() : null);
+        dto.setDirection(entity.getDirection());
+        dto.setDescriptionTemplate(entity.getDescriptionTemplate());
+        dto.setPriority(entity.getPriority());
+        dto.setIsActive(entity.isActive());
+        return dto;
+    }
+}
@@ -0,0 +1,53 @@
+package bg.spacbg.sp_ac_bg.model.dto;
+
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankReconciliationMatcher;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+public class BankReconciliationProposalDto {
+    private Integer statementLineId;
+    private Integer lineNumber;
+    private LocalDate bookingDate;
+    private BigDecimal lineAmount;
+    private String description;
+    private String counterpartyName;
+    private String counterpartyIban;
+    private Integer journalEntryId;
+    private Integer accountId;
+    private Integer counterpartId;
+    private String counterpartName;
+    private String documentNumber;
+    private LocalDate documentDate;
+    private BigDecimal openAmount;
+    private BigDecimal amount;
+    private Double confidence;
+    private List<String> reasons;
+
+    public static BankReconciliationProposalDto fromProposal(BankReconciliationMatcher.Proposal proposal) {
+        BankReconciliationMatcher.StatementLine line = proposal.line();
+        BankReconciliationMatcher.OpenItem item = proposal.item();
+        BankReconciliationProposalDto dto = new BankReconciliationProposalDto();
+        dto.setStatementLineId(line.id());
+        dto.setLineNumber(line.lineNumber());
+        dto.setBookingDate(line.bookingDate());
+        dto.setLineAmount(line.amount());
+        dto.setDescription(line.description());
+        dto.setCounterpartyName(line.counterpartyName());
+        dto.setCounterpartyIban(line.counterpartyIban());
+        dto.setJournalEntryId(item.journalEntryId());
+        dto.setAccountId(item.accountId());
+        dto.setCounterpartId(item.counterpartId());
+        dto.setCounterpartName(item.counterpartName());
+        dto.setDocumentNumber(item.documentNumber());
+        dto.setDocumentDate(item.documentDate());
+        dto.setOpenAmount(item.openAmount());
+        dto.setAmount(proposal.amount());
+        dto.setConfidence(proposal.confidence());
+        dto.setReasons(proposal.reasons());
+        return dto;
+    }
+}
@@ -0,0 +1,17 @@
+package bg.spacbg.sp_ac_bg.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankReconciliationResultDto {
+    private Integer matchedLines;
+    // Lines matched for less than their amount; the rest stays open on the line
+    private Integer partiallyMatchedLines;
+    private List<Integer> journalEntryIds;
+}
@@ -0,0 +1,32 @@
+package bg.spacbg.sp_ac_bg.model.dto;
+
+import bg.spacbg.sp_ac_bg.service.DepreciationService;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+public class DepreciationForecastEntryDto {
+    private Integer fixedAssetId;
+    private String assetName;
+    private String inventoryNumber;
+    private LocalDate period;
+    private BigDecimal accountingDepreciationAmount;
+    private BigDecimal accountingBookValueAfter;
+    private BigDecimal taxDepreciationAmount;
+    private BigDecimal taxBookValueAfter;
+
+    public static DepreciationForecastEntryDto fromRecord(DepreciationService.DepreciationForecastEntry entry) {
+        DepreciationForecastEntryDto dto = new DepreciationForecastEntryDto();
+        dto.setFixedAssetId(entry.fixedAssetId());
+        dto.setAssetName(entry.assetName());
+        dto.setInventoryNumber(entry.inventoryNumber());
+        dto.setPeriod(entry.period());
+        dto.setAccountingDepreciationAmount(entry.accountingDepreciationAmount());
+        dto.setAccountingBookValueAfter(entry.accountingBookValueAfter());
+        dto.setTaxDepreciationAmount(entry.taxDepreciationAmount());
+        dto.setTaxBookValueAfter(entry.taxBookValueAfter());
+        return dto;
+    }
+}
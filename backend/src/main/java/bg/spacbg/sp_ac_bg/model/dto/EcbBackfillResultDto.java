@@ -0,0 +1,20 @@
+package bg.spacbg.sp_ac_bg.model.dto;
+
+import bg.spacbg.sp_ac_bg.model.enums.EcbRateFeed;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+public class EcbBackfillResultDto {
+    private EcbRateFeed feed;
+    private LocalDate firstDate;
+    private LocalDate lastDate;
+    private int parsedRates;
+    private int insertedRates;
+    private int existingRates;
+    private int skippedRates;
+    private List<String> unknownCurrencies;
+    private long durationMs;
+}
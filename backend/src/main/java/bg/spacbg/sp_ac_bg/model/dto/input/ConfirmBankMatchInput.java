@@ -0,0 +1,21 @@
+package bg.spacbg.sp_ac_bg.model.dto.input;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class ConfirmBankMatchInput {
+    private Integer statementLineId;
+
+    // The open item: journal entry, receivable/payable account and counterpart of the proposal
+    private Integer journalEntryId;
+    private Integer accountId;
+    private Integer counterpartId;
+
+    // Defaults to the smaller of the open line amount and the open item amount; a smaller amount leaves the rest
+    // of the line open
+    private BigDecimal amount;
+
+    private Double confidence;
+}
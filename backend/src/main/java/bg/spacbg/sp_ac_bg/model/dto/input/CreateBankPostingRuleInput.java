@@ -0,0 +1,23 @@
+package bg.spacbg.sp_ac_bg.model.dto.input;
+
+import lombok.Data;
+
+@Data
+public class CreateBankPostingRuleInput {
+    private Integer companyId;
+    private String patternName;
+
+    // Comma-separated keywords searched in the transaction description and counterparty name
+    private String descriptionKeywords;
+
+    private String transactionType;
+    private Integer accountId;
+
+    // CREDIT (incoming), DEBIT (outgoing) or BOTH
+    private String direction;
+
+    // Supports {description}, {counterparty}, {reference}, {date} and {amount}
+    private String descriptionTemplate;
+
+    private Integer priority;
+}
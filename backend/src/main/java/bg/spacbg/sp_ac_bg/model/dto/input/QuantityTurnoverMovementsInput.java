@@ -0,0 +1,18 @@
+package bg.spacbg.sp_ac_bg.model.dto.input;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Входни параметри за разбивка на ред от количествената оборотна ведомост
+ */
+@Data
+public class QuantityTurnoverMovementsInput {
+    private Integer companyId;
+    private Integer accountId;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private Integer offset;
+    private Integer limit;
+}
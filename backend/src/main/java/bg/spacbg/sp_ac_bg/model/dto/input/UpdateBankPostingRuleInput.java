@@ -0,0 +1,15 @@
+package bg.spacbg.sp_ac_bg.model.dto.input;
+
+import lombok.Data;
+
+@Data
+public class UpdateBankPostingRuleInput {
+    private String patternName;
+    private String descriptionKeywords;
+    private String transactionType;
+    private Integer accountId;
+    private String direction;
+    private String descriptionTemplate;
+    private Integer priority;
+    private Boolean isActive;
+}
@@ -0,0 +1,17 @@
+package bg.spacbg.sp_ac_bg.model.dto.output;
+
+import bg.spacbg.sp_ac_bg.model.entity.InventoryMovementEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryMovementsPage {
+    private List<InventoryMovementEntity> movements;
+    private Long totalCount;
+    private Boolean hasMore;
+}
@@ -29,6 +29,8 @@ public class CounterpartEntity {
 
     private String vatNumber;
 
+    private String iban;
+
     private String street;
 
     private String address;
@@ -0,0 +1,57 @@
+package bg.spacbg.sp_ac_bg.model.entity;
+
+import bg.spacbg.sp_ac_bg.model.enums.CurrencyRevaluationRunStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "currency_revaluation_runs")
+public class CurrencyRevaluationRunEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "company_id", nullable = false)
+    private CompanyEntity company;
+
+    @Column(nullable = false)
+    private LocalDate revaluationDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CurrencyRevaluationRunStatus status = CurrencyRevaluationRunStatus.RUNNING;
+
+    @Column(nullable = false)
+    private Integer positionsCount = 0;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal totalGain = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal totalLoss = BigDecimal.ZERO;
+
+    private Integer journalEntryId;
+
+    private String errorMessage;
+
+    @Column(nullable = false)
+    private OffsetDateTime startedAt;
+
+    private OffsetDateTime finishedAt;
+
+    // GraphQL helper method
+    public Integer getCompanyId() {
+        return company != null ? company.getId() : null;
+    }
+}
@@ -32,6 +32,15 @@ public class CurrencyRevaluationSettingsEntity {
     @JoinColumn(name = "revenue_account_id", nullable = false)
     private AccountEntity revenueAccount;
 
+    @Column(nullable = false)
+    private boolean revalueReceivables = true;
+
+    @Column(nullable = false)
+    private boolean revaluePayables = true;
+
+    @Column(nullable = false)
+    private boolean revalueBankAccounts = true;
+
     @CreationTimestamp
     @Column(updatable = false)
     private OffsetDateTime createdAt;
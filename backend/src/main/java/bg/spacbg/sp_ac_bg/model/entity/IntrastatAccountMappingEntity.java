@@ -50,6 +50,12 @@ public class IntrastatAccountMappingEntity {
     @Column(precision = 19, scale = 4)
     private BigDecimal minThresholdBgn;
 
+    @Column(precision = 19, scale = 6)
+    private BigDecimal netMassPerUnitKg;
+
+    @Column(precision = 19, scale = 6)
+    private BigDecimal netMassPerValueKg;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "company_id", nullable = false)
     private CompanyEntity company;
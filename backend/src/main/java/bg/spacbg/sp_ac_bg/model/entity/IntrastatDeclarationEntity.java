@@ -88,4 +88,9 @@ public class IntrastatDeclarationEntity {
 
     @UpdateTimestamp
     private OffsetDateTime updatedAt;
+
+    // GraphQL helper method
+    public Integer getCompanyId() {
+        return company != null ? company.getId() : null;
+    }
 }
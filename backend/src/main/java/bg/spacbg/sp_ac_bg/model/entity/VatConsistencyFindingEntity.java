@@ -0,0 +1,68 @@
+package bg.spacbg.sp_ac_bg.model.entity;
+
+import bg.spacbg.sp_ac_bg.model.enums.VatConsistencyFindingType;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "vat_consistency_findings")
+public class VatConsistencyFindingEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private VatConsistencyRunEntity run;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "company_id", nullable = false)
+    private CompanyEntity company;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "journal_entry_id", nullable = false)
+    private JournalEntryEntity journalEntry;
+
+    // Copied from the journal entry so findings can be listed without loading the entries
+    @Column(nullable = false)
+    private String entryNumber;
+
+    @Column(nullable = false)
+    private LocalDate accountingDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private VatConsistencyFindingType findingType;
+
+    @Column(precision = 19, scale = 4)
+    private BigDecimal expectedAmount;
+
+    @Column(precision = 19, scale = 4)
+    private BigDecimal actualAmount;
+
+    private String details;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private OffsetDateTime createdAt;
+
+    // GraphQL helper methods
+    public Integer getRunId() {
+        return run != null ? run.getId() : null;
+    }
+
+    public Integer getJournalEntryId() {
+        return journalEntry != null ? journalEntry.getId() : null;
+    }
+}
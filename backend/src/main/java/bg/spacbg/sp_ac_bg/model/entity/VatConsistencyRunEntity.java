@@ -0,0 +1,54 @@
+package bg.spacbg.sp_ac_bg.model.entity;
+
+import bg.spacbg.sp_ac_bg.model.enums.VatConsistencyRunStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "vat_consistency_runs")
+public class VatConsistencyRunEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "company_id", nullable = false)
+    private CompanyEntity company;
+
+    @Column(nullable = false)
+    private LocalDate periodFrom;
+
+    @Column(nullable = false)
+    private LocalDate periodTo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private VatConsistencyRunStatus status = VatConsistencyRunStatus.RUNNING;
+
+    @Column(nullable = false)
+    private Integer entriesChecked = 0;
+
+    @Column(nullable = false)
+    private Integer findingsCount = 0;
+
+    private String errorMessage;
+
+    @Column(nullable = false)
+    private OffsetDateTime startedAt;
+
+    private OffsetDateTime finishedAt;
+
+    // GraphQL helper method
+    public Integer getCompanyId() {
+        return company != null ? company.getId() : null;
+    }
+}
@@ -0,0 +1,31 @@
+package bg.spacbg.sp_ac_bg.model.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+public enum CurrencyRevaluationRunStatus {
+    RUNNING("RUNNING"),
+    COMPLETED("COMPLETED"),
+    FAILED("FAILED");
+
+    private final String value;
+
+    CurrencyRevaluationRunStatus(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    @JsonCreator
+    public static CurrencyRevaluationRunStatus fromValue(String value) {
+        for (CurrencyRevaluationRunStatus status : CurrencyRevaluationRunStatus.values()) {
+            if (status.value.equalsIgnoreCase(value)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown CurrencyRevaluationRunStatus value: " + value);
+    }
+}
@@ -0,0 +1,31 @@
+package bg.spacbg.sp_ac_bg.model.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+public enum EcbRateFeed {
+    DAILY("DAILY"),
+    LAST_90_DAYS("LAST_90_DAYS"),
+    FULL_HISTORY("FULL_HISTORY");
+
+    private final String value;
+
+    EcbRateFeed(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    @JsonCreator
+    public static EcbRateFeed fromValue(String value) {
+        for (EcbRateFeed feed : EcbRateFeed.values()) {
+            if (feed.value.equalsIgnoreCase(value)) {
+                return feed;
+            }
+        }
+        throw new IllegalArgumentException("Unknown EcbRateFeed value: " + value);
+    }
+}
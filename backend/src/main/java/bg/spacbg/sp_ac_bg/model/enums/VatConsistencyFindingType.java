@@ -0,0 +1,30 @@
+package bg.spacbg.sp_ac_bg.model.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+public enum VatConsistencyFindingType {
+    VAT_TOTAL_MISMATCH("VAT_TOTAL_MISMATCH"),
+    VAT_ACCOUNT_MISMATCH("VAT_ACCOUNT_MISMATCH");
+
+    private final String value;
+
+    VatConsistencyFindingType(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    @JsonCreator
+    public static VatConsistencyFindingType fromValue(String value) {
+        for (VatConsistencyFindingType type : VatConsistencyFindingType.values()) {
+            if (type.value.equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown VatConsistencyFindingType value: " + value);
+    }
+}
@@ -0,0 +1,31 @@
+package bg.spacbg.sp_ac_bg.model.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+public enum VatConsistencyRunStatus {
+    RUNNING("RUNNING"),
+    COMPLETED("COMPLETED"),
+    FAILED("FAILED");
+
+    private final String value;
+
+    VatConsistencyRunStatus(String value) {
+        this.value = value;
+    }
+
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+
+    @JsonCreator
+    public static VatConsistencyRunStatus fromValue(String value) {
+        for (VatConsistencyRunStatus status : VatConsistencyRunStatus.values()) {
+            if (status.value.equalsIgnoreCase(value)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown VatConsistencyRunStatus value: " + value);
+    }
+}
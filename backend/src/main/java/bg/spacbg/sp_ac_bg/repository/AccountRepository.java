@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +27,8 @@ public interface AccountRepository extends JpaRepository<AccountEntity, Integer>
 
     boolean existsByCompanyIdAndCode(Integer companyId, String code);
 
+    List<AccountEntity> findByCompanyIdAndCodeIn(Integer companyId, Collection<String> codes);
+
     @Query("SELECT a FROM AccountEntity a WHERE a.company.id = :companyId ORDER BY a.code")
     List<AccountEntity> findAllByCompanyIdOrderByCode(@Param("companyId") Integer companyId);
 
@@ -0,0 +1,25 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.AiBankAccountingSettingEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AiBankAccountingSettingRepository extends JpaRepository<AiBankAccountingSettingEntity, Integer> {
+
+    @Query("SELECT s FROM AiBankAccountingSettingEntity s " +
+           "WHERE s.company.id = :companyId ORDER BY s.priority DESC, s.id")
+    List<AiBankAccountingSettingEntity> findByCompanyIdOrderByPriority(Integer companyId);
+
+    @Query("SELECT s FROM AiBankAccountingSettingEntity s LEFT JOIN FETCH s.account " +
+           "WHERE s.company.id = :companyId AND s.isActive = true " +
+           "ORDER BY s.priority DESC, s.id")
+    List<AiBankAccountingSettingEntity> findActiveByCompanyIdWithAccount(Integer companyId);
+
+    @Query("SELECT COUNT(s), MAX(s.updatedAt) FROM AiBankAccountingSettingEntity s " +
+           "WHERE s.company.id = :companyId")
+    List<Object[]> findRuleVersion(Integer companyId);
+}
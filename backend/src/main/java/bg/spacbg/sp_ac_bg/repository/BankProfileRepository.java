@@ -1,6 +1,7 @@
 package bg.spacbg.sp_ac_bg.repository;
 
 import bg.spacbg.sp_ac_bg.model.entity.BankProfileEntity;
+import bg.spacbg.sp_ac_bg.model.enums.BankConnectionType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -13,4 +14,5 @@ public interface BankProfileRepository extends JpaRepository<BankProfileEntity,
     List<BankProfileEntity> findByCompanyIdAndIsActiveTrue(Integer companyId);
     Optional<BankProfileEntity> findByIban(String iban);
     boolean existsByIban(String iban);
+    List<BankProfileEntity> findByConnectionTypeAndIsActiveTrueAndSaltEdgeAccountIdIsNotNull(BankConnectionType connectionType);
 }
@@ -0,0 +1,214 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankReconciliationMatcher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based reads of unreconciled statement lines and open receivables/payables, and JDBC batch writes of
+ * confirmed matches.
+ */
+@Repository
+public class BankReconciliationJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    // Amount of the line not matched yet, with the sign of the line
+    private static final String OPEN_LINES_SELECT =
+            "SELECT l.id, l.line_number, l.booking_date, l.description, l.counterparty_name, " +
+            "l.counterparty_iban, l.reference, l.amount - SIGN(l.amount) * COALESCE((" +
+            "    SELECT SUM(m.amount) FROM bank_reconciliation_matches m WHERE m.bank_statement_line_id = l.id" +
+            "), 0) AS amount " +
+            "FROM bank_statement_lines l WHERE l.bank_import_id = ? AND l.is_processed = FALSE ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BankReconciliationJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record NewMatch(Integer companyId, Integer statementLineId, Integer journalEntryId, Integer accountId,
+                           Integer counterpartId, BigDecimal amount, Double confidence,
+                           Integer clearingJournalEntryId, Integer createdBy) {
+    }
+
+    public record CounterpartIban(Integer counterpartId, String iban) {
+    }
+
+    /**
+     * Lines of the import that are not booked or fully reconciled yet, in line order. The amount of a partly
+     * matched line is what is left of it.
+     */
+    public List<BankReconciliationMatcher.StatementLine> findOpenLines(Integer bankImportId) {
+        return jdbcTemplate.query(
+                OPEN_LINES_SELECT + "ORDER BY l.line_number",
+                (rs, rowNum) -> mapLine(rs),
+                bankImportId);
+    }
+
+    /**
+     * Lines of the import with the given ids that are not booked or fully reconciled yet, with what is left of
+     * their amount.
+     */
+    public List<BankReconciliationMatcher.StatementLine> findOpenLines(Integer bankImportId,
+                                                                       Collection<Integer> lineIds) {
+        if (lineIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                OPEN_LINES_SELECT + "AND l.id = ANY (?) ORDER BY l.line_number",
+                ps -> {
+                    ps.setInt(1, bankImportId);
+                    ps.setArray(2, ps.getConnection().createArrayOf("integer", lineIds.toArray()));
+                },
+                (rs, rowNum) -> mapLine(rs));
+    }
+
+    /**
+     * Open items of the company: the balance of every posted journal entry on a receivable or payable account
+     * per counterpart, less what confirmed bank matches already cleared and less the payments booked in other
+     * entries. Receivables are accounts whose code starts with {@code receivablePrefix} (debit balance),
+     * payables those starting with {@code payablePrefix} (credit balance). An entry with the opposite balance
+     * is a payment: it first settles the documents of the same account and counterpart with its document
+     * number, and what is left of all payments settles the remaining documents of that account and counterpart
+     * from the oldest one. Clearing entries of bank matches are left out, as their matches already count.
+     * Only items with an amount still open are returned.
+     */
+    public List<BankReconciliationMatcher.OpenItem> findOpenItems(Integer companyId, String receivablePrefix,
+                                                                  String payablePrefix) {
+        return jdbcTemplate.query(
+                "WITH items AS (" +
+                "    SELECT el.journal_entry_id, el.account_id, " +
+                "           COALESCE(el.counterpart_id, je.counterpart_id) AS counterpart_id, " +
+                "           a.code LIKE ? AS receivable, je.document_number, je.document_date, " +
+                "           CASE WHEN a.code LIKE ? THEN 1 ELSE -1 END " +
+                "           * SUM(el.debit_amount - el.credit_amount) AS balance " +
+                "    FROM entry_lines el " +
+                "    JOIN journal_entries je ON je.id = el.journal_entry_id " +
+                "    JOIN accounts a ON a.id = el.account_id " +
+                "    WHERE je.company_id = ? AND je.is_posted = TRUE AND (a.code LIKE ? OR a.code LIKE ?) " +
+                "      AND NOT EXISTS (SELECT 1 FROM bank_reconciliation_matches m " +
+                "                      WHERE m.clearing_journal_entry_id = je.id) " +
+                "    GROUP BY el.journal_entry_id, el.account_id, COALESCE(el.counterpart_id, je.counterpart_id), " +
+                "             a.code, je.document_number, je.document_date" +
+                "), cleared AS (" +
+                "    SELECT journal_entry_id, account_id, counterpart_id, SUM(amount) AS amount " +
+                "    FROM bank_reconciliation_matches WHERE company_id = ? " +
+                "    GROUP BY journal_entry_id, account_id, counterpart_id" +
+                "), documents AS (" +
+                "    SELECT i.journal_entry_id, i.account_id, i.counterpart_id, i.receivable, i.document_number, " +
+                "           i.document_date, i.balance - COALESCE(cl.amount, 0) AS amount " +
+                "    FROM items i " +
+                "    LEFT JOIN cleared cl ON cl.journal_entry_id = i.journal_entry_id " +
+                "        AND cl.account_id = i.account_id AND cl.counterpart_id IS NOT DISTINCT FROM i.counterpart_id " +
+                "    WHERE i.balance > 0" +
+                "), payments_by_document AS (" +
+                "    SELECT account_id, counterpart_id, document_number, -SUM(balance) AS amount " +
+                "    FROM items WHERE balance < 0 AND document_number IS NOT NULL " +
+                "    GROUP BY account_id, counterpart_id, document_number" +
+                "), by_document AS (" +
+                "    SELECT d.*, GREATEST(0, LEAST(d.amount, COALESCE(p.amount, 0) - COALESCE(SUM(d.amount) OVER (" +
+                "               PARTITION BY d.account_id, d.counterpart_id, d.document_number " +
+                "               ORDER BY d.document_date, d.journal_entry_id " +
+                "               ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), 0))) AS settled " +
+                "    FROM documents d " +
+                "    LEFT JOIN payments_by_document p ON p.account_id = d.account_id " +
+                "        AND p.counterpart_id IS NOT DISTINCT FROM d.counterpart_id " +
+                "        AND p.document_number = d.document_number " +
+                "    WHERE d.amount > 0" +
+                "), payments_left AS (" +
+                "    SELECT p.account_id, p.counterpart_id, p.amount - COALESCE(s.amount, 0) AS amount " +
+                "    FROM (SELECT account_id, counterpart_id, -SUM(balance) AS amount FROM items " +
+                "          WHERE balance < 0 GROUP BY account_id, counterpart_id) p " +
+                "    LEFT JOIN (SELECT account_id, counterpart_id, SUM(settled) AS amount FROM by_document " +
+                "               GROUP BY account_id, counterpart_id) s ON s.account_id = p.account_id " +
+                "        AND s.counterpart_id IS NOT DISTINCT FROM p.counterpart_id" +
+                "), open_items AS (" +
+                "    SELECT b.*, b.amount - b.settled - GREATEST(0, LEAST(b.amount - b.settled, " +
+                "           COALESCE(pl.amount, 0) - COALESCE(SUM(b.amount - b.settled) OVER (" +
+                "               PARTITION BY b.account_id, b.counterpart_id " +
+                "               ORDER BY b.document_date, b.journal_entry_id " +
+                "               ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), 0))) AS open_amount " +
+                "    FROM by_document b " +
+                "    LEFT JOIN payments_left pl ON pl.account_id = b.account_id " +
+                "        AND pl.counterpart_id IS NOT DISTINCT FROM b.counterpart_id" +
+                ") " +
+                "SELECT o.journal_entry_id, o.account_id, o.counterpart_id, o.receivable, o.open_amount, " +
+                "       o.document_number, o.document_date, c.name, c.vat_number, c.eik, c.iban " +
+                "FROM open_items o " +
+                "LEFT JOIN counterparts c ON c.id = o.counterpart_id " +
+                "WHERE o.open_amount > 0",
+                (rs, rowNum) -> new BankReconciliationMatcher.OpenItem(
+                        rs.getInt("journal_entry_id"),
+                        rs.getInt("account_id"),
+                        (Integer) rs.getObject("counterpart_id"),
+                        rs.getString("name"),
+                        rs.getString("vat_number"),
+                        rs.getString("eik"),
+                        rs.getString("iban"),
+                        rs.getString("document_number"),
+                        rs.getObject("document_date", LocalDate.class),
+                        rs.getBoolean("receivable"),
+                        rs.getBigDecimal("open_amount")),
+                receivablePrefix + "%", receivablePrefix + "%", companyId, receivablePrefix + "%",
+                payablePrefix + "%", companyId);
+    }
+
+    public void insertMatches(List<NewMatch> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO bank_reconciliation_matches (company_id, bank_statement_line_id, journal_entry_id, " +
+                "account_id, counterpart_id, amount, confidence, clearing_journal_entry_id, created_by, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)",
+                matches, BATCH_SIZE,
+                (ps, match) -> {
+                    ps.setInt(1, match.companyId());
+                    ps.setInt(2, match.statementLineId());
+                    ps.setInt(3, match.journalEntryId());
+                    ps.setInt(4, match.accountId());
+                    ps.setObject(5, match.counterpartId(), Types.INTEGER);
+                    ps.setBigDecimal(6, match.amount());
+                    ps.setObject(7, match.confidence(), Types.NUMERIC);
+                    ps.setInt(8, match.clearingJournalEntryId());
+                    ps.setObject(9, match.createdBy(), Types.INTEGER);
+                });
+    }
+
+    /**
+     * Stores the IBAN a counterpart paid from or was paid to, for counterparts that have none yet.
+     */
+    public void updateMissingCounterpartIbans(List<CounterpartIban> ibans) {
+        if (ibans.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE counterparts SET iban = ? WHERE id = ? AND iban IS NULL",
+                ibans, BATCH_SIZE,
+                (ps, iban) -> {
+                    ps.setString(1, iban.iban());
+                    ps.setInt(2, iban.counterpartId());
+                });
+    }
+
+    private static BankReconciliationMatcher.StatementLine mapLine(ResultSet rs) throws SQLException {
+        return new BankReconciliationMatcher.StatementLine(
+                rs.getInt("id"),
+                rs.getInt("line_number"),
+                rs.getDate("booking_date").toLocalDate(),
+                rs.getBigDecimal("amount"),
+                rs.getString("description"),
+                rs.getString("counterparty_name"),
+                rs.getString("counterparty_iban"),
+                rs.getString("reference"));
+    }
+}
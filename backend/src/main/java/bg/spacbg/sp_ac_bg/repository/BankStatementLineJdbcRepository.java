@@ -0,0 +1,82 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.service.bankstatement.ParsedBankTransaction;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JDBC batch writes of parsed bank statement lines, so a statement can be stored while it is being streamed.
+ */
+@Repository
+public class BankStatementLineJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BankStatementLineJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record NumberedLine(int lineNumber, ParsedBankTransaction transaction) {
+    }
+
+    public record ProcessedLine(int lineNumber, Integer journalEntryId) {
+    }
+
+    /**
+     * Inserts the parsed lines of one import in JDBC batches.
+     */
+    public void insertLines(Integer bankImportId, Integer bankProfileId, Integer companyId, List<NumberedLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO bank_statement_lines (bank_import_id, bank_profile_id, company_id, line_number, " +
+                "booking_date, value_date, amount, currency_code, description, counterparty_name, " +
+                "counterparty_iban, reference, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)",
+                lines, BATCH_SIZE,
+                (ps, line) -> {
+                    ParsedBankTransaction transaction = line.transaction();
+                    ps.setInt(1, bankImportId);
+                    ps.setInt(2, bankProfileId);
+                    ps.setInt(3, companyId);
+                    ps.setInt(4, line.lineNumber());
+                    ps.setDate(5, Date.valueOf(transaction.bookingDate()));
+                    if (transaction.valueDate() != null) {
+                        ps.setDate(6, Date.valueOf(transaction.valueDate()));
+                    } else {
+                        ps.setNull(6, Types.DATE);
+                    }
+                    ps.setBigDecimal(7, transaction.amount());
+                    ps.setString(8, transaction.currencyCode());
+                    ps.setString(9, transaction.description());
+                    ps.setString(10, transaction.counterpartyName());
+                    ps.setString(11, transaction.counterpartyIban());
+                    ps.setString(12, transaction.reference());
+                });
+    }
+
+    /**
+     * Marks lines of one import as processed by the given journal entries in JDBC batches.
+     */
+    public void markProcessed(Integer bankImportId, List<ProcessedLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE bank_statement_lines SET is_processed = TRUE, journal_entry_id = ? " +
+                "WHERE bank_import_id = ? AND line_number = ?",
+                lines, BATCH_SIZE,
+                (ps, line) -> {
+                    ps.setInt(1, line.journalEntryId());
+                    ps.setInt(2, bankImportId);
+                    ps.setInt(3, line.lineNumber());
+                });
+    }
+}
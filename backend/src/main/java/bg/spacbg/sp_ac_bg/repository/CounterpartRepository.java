@@ -31,5 +31,9 @@ public interface CounterpartRepository extends JpaRepository<CounterpartEntity,
             @Param("companyId") Integer companyId,
             @Param("query") String query);
 
+    @Query("SELECT DISTINCT c.vatNumber FROM CounterpartEntity c WHERE c.company.id = :companyId " +
+           "AND c.isActive = true AND c.vatNumber IS NOT NULL AND c.vatNumber <> ''")
+    List<String> findDistinctVatNumbersByCompanyId(@Param("companyId") Integer companyId);
+
     boolean existsByCompanyIdAndEik(Integer companyId, String eik);
 }
@@ -0,0 +1,82 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Set-based read of the foreign currency balances a month-end revaluation works on.
+ */
+@Repository
+public class CurrencyRevaluationJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CurrencyRevaluationJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Balance in the foreign currency and in the base currency of one account, counterpart and currency.
+     * The book balance includes earlier revaluations, which carry a zero currency amount.
+     */
+    public record OpenPosition(Integer accountId, String accountCode, Integer counterpartId, String currencyCode,
+                               BigDecimal currencyBalance, BigDecimal bookBalance) {
+    }
+
+    /**
+     * Foreign currency balances as of {@code asOf}, grouped by account, counterpart and currency, on accounts
+     * whose code starts with one of {@code accountPrefixes}.
+     *
+     * A line is in a foreign currency when its currency differs from {@code baseCurrencyCode} and it carries
+     * either a currency amount or a rate other than 1 (lines entered in the base currency are stored with
+     * the default currency code and rate 1). Without a stored currency amount the amount is derived from the
+     * base amount and the rate. Positions with nothing left in either currency are left out.
+     */
+    public List<OpenPosition> findOpenPositions(Integer companyId, LocalDate asOf, String baseCurrencyCode,
+                                                List<String> accountPrefixes) {
+        if (accountPrefixes.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                "SELECT el.account_id, a.code AS account_code, " +
+                "       COALESCE(el.counterpart_id, je.counterpart_id) AS counterpart_id, el.currency_code, " +
+                "       SUM(CASE WHEN el.debit_amount >= el.credit_amount THEN 1 ELSE -1 END * " +
+                "           COALESCE(el.currency_amount, " +
+                "                    ROUND((el.debit_amount + el.credit_amount) / el.exchange_rate, 4))) " +
+                "           AS currency_balance, " +
+                "       SUM(el.debit_amount - el.credit_amount) AS book_balance " +
+                "FROM entry_lines el " +
+                "JOIN journal_entries je ON je.id = el.journal_entry_id " +
+                "JOIN accounts a ON a.id = el.account_id " +
+                "WHERE je.company_id = ? AND je.accounting_date <= ? " +
+                "  AND el.currency_code IS NOT NULL AND el.currency_code <> ? " +
+                "  AND (el.currency_amount IS NOT NULL " +
+                "       OR (el.exchange_rate IS NOT NULL AND el.exchange_rate NOT IN (0, 1))) " +
+                "  AND a.code LIKE ANY (?) " +
+                "GROUP BY el.account_id, a.code, COALESCE(el.counterpart_id, je.counterpart_id), el.currency_code " +
+                "HAVING SUM(CASE WHEN el.debit_amount >= el.credit_amount THEN 1 ELSE -1 END * " +
+                "           COALESCE(el.currency_amount, " +
+                "                    ROUND((el.debit_amount + el.credit_amount) / el.exchange_rate, 4))) <> 0 " +
+                "    OR SUM(el.debit_amount - el.credit_amount) <> 0 " +
+                "ORDER BY a.code, counterpart_id, el.currency_code",
+                ps -> {
+                    ps.setInt(1, companyId);
+                    ps.setDate(2, Date.valueOf(asOf));
+                    ps.setString(3, baseCurrencyCode);
+                    ps.setArray(4, ps.getConnection().createArrayOf("text",
+                            accountPrefixes.stream().map(prefix -> prefix + "%").toArray()));
+                },
+                (rs, rowNum) -> new OpenPosition(
+                        rs.getInt("account_id"),
+                        rs.getString("account_code"),
+                        (Integer) rs.getObject("counterpart_id"),
+                        rs.getString("currency_code"),
+                        rs.getBigDecimal("currency_balance"),
+                        rs.getBigDecimal("book_balance")));
+    }
+}
@@ -0,0 +1,31 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyRevaluationRunEntity;
+import bg.spacbg.sp_ac_bg.model.enums.CurrencyRevaluationRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Repository
+public interface CurrencyRevaluationRunRepository extends JpaRepository<CurrencyRevaluationRunEntity, Integer> {
+
+    List<CurrencyRevaluationRunEntity> findByCompany_IdOrderByStartedAtDesc(Integer companyId);
+
+    boolean existsByCompany_IdAndStatus(Integer companyId, CurrencyRevaluationRunStatus status);
+
+    // Runs left RUNNING by a crashed or restarted instance; otherwise they would block their company for good
+    @Modifying
+    @Query("UPDATE CurrencyRevaluationRunEntity r SET r.status = :failedStatus, r.errorMessage = :errorMessage, " +
+           "r.finishedAt = :now WHERE r.status = :runningStatus AND r.startedAt < :startedBefore")
+    int failStaleRuns(
+            @Param("runningStatus") CurrencyRevaluationRunStatus runningStatus,
+            @Param("failedStatus") CurrencyRevaluationRunStatus failedStatus,
+            @Param("startedBefore") OffsetDateTime startedBefore,
+            @Param("errorMessage") String errorMessage,
+            @Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,18 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyRevaluationSettingsEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CurrencyRevaluationSettingsRepository extends JpaRepository<CurrencyRevaluationSettingsEntity, Integer> {
+
+    Optional<CurrencyRevaluationSettingsEntity> findByCompany_Id(Integer companyId);
+
+    @Query("SELECT s.company.id FROM CurrencyRevaluationSettingsEntity s WHERE s.company.isActive = true")
+    List<Integer> findActiveCompanyIds();
+}
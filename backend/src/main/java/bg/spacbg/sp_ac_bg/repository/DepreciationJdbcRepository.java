@@ -0,0 +1,92 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * JDBC batch operations for bulk depreciation runs and postings that would otherwise need one entity write
+ * per asset.
+ */
+@Repository
+public class DepreciationJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DepreciationJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record AssetDepreciation(Integer fixedAssetId, Integer companyId, LocalDate period,
+                                    BigDecimal accountingAmount, BigDecimal accountingBookValueBefore,
+                                    BigDecimal accountingBookValueAfter, BigDecimal taxAmount,
+                                    BigDecimal taxBookValueBefore, BigDecimal taxBookValueAfter) {
+    }
+
+    /**
+     * Inserts unposted depreciation journal rows in JDBC batches.
+     */
+    public void insertJournals(List<AssetDepreciation> depreciations) {
+        if (depreciations.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO depreciation_journal (fixed_asset_id, period, company_id, " +
+                "accounting_depreciation_amount, accounting_book_value_before, accounting_book_value_after, " +
+                "tax_depreciation_amount, tax_book_value_before, tax_book_value_after, is_posted, " +
+                "created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                depreciations, BATCH_SIZE,
+                (ps, depreciation) -> {
+                    ps.setInt(1, depreciation.fixedAssetId());
+                    ps.setDate(2, Date.valueOf(depreciation.period()));
+                    ps.setInt(3, depreciation.companyId());
+                    ps.setBigDecimal(4, depreciation.accountingAmount());
+                    ps.setBigDecimal(5, depreciation.accountingBookValueBefore());
+                    ps.setBigDecimal(6, depreciation.accountingBookValueAfter());
+                    ps.setBigDecimal(7, depreciation.taxAmount());
+                    ps.setBigDecimal(8, depreciation.taxBookValueBefore());
+                    ps.setBigDecimal(9, depreciation.taxBookValueAfter());
+                });
+    }
+
+    /**
+     * Moves the book values and accumulated depreciation of the depreciated assets in JDBC batches.
+     */
+    public void updateAssetBookValues(List<AssetDepreciation> depreciations) {
+        if (depreciations.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE fixed_assets SET accounting_book_value = ?, " +
+                "accounting_accumulated_depreciation = accounting_accumulated_depreciation + ?, " +
+                "tax_book_value = ?, tax_accumulated_depreciation = tax_accumulated_depreciation + ?, " +
+                "updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+                depreciations, BATCH_SIZE,
+                (ps, depreciation) -> {
+                    ps.setBigDecimal(1, depreciation.accountingBookValueAfter());
+                    ps.setBigDecimal(2, depreciation.accountingAmount());
+                    ps.setBigDecimal(3, depreciation.taxBookValueAfter());
+                    ps.setBigDecimal(4, depreciation.taxAmount());
+                    ps.setInt(5, depreciation.fixedAssetId());
+                });
+    }
+
+    /**
+     * Marks all unposted depreciation with a non-zero accounting amount for the period as posted
+     * to the given journal entry with one statement.
+     */
+    public int markPosted(Integer companyId, LocalDate period, Integer journalEntryId, Integer postedBy) {
+        return jdbcTemplate.update(
+                "UPDATE depreciation_journal SET is_posted = TRUE, journal_entry_id = ?, " +
+                "posted_at = CURRENT_TIMESTAMP, posted_by = ?, updated_at = CURRENT_TIMESTAMP " +
+                "WHERE company_id = ? AND period = ? AND is_posted = FALSE AND accounting_depreciation_amount > 0",
+                journalEntryId, postedBy, companyId, Date.valueOf(period));
+    }
+}
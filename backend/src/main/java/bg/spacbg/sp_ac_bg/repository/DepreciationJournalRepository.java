@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,4 +44,36 @@ public interface DepreciationJournalRepository extends JpaRepository<Depreciatio
     List<DepreciationJournalEntity> findByCompanyIdAndYearAndMonth(Integer companyId, Integer year, Integer month);
 
     boolean existsByFixedAssetIdAndPeriod(Integer fixedAssetId, LocalDate period);
+
+    boolean existsByCompanyIdAndPeriodAndIsPostedFalse(Integer companyId, LocalDate period);
+
+    @Query("SELECT d.fixedAsset.category.id, SUM(d.accountingDepreciationAmount) FROM DepreciationJournalEntity d " +
+           "WHERE d.company.id = :companyId AND d.period = :period " +
+           "AND d.isPosted = false AND d.accountingDepreciationAmount > 0 " +
+           "GROUP BY d.fixedAsset.category.id")
+    List<Object[]> sumUnpostedAccountingAmountByCategory(Integer companyId, LocalDate period);
+
+    @Query("SELECT d.fixedAsset.id, d.period FROM DepreciationJournalEntity d " +
+           "WHERE d.company.id = :companyId " +
+           "AND d.period BETWEEN :fromPeriod AND :toPeriod")
+    List<Object[]> findDepreciatedAssetPeriods(Integer companyId, LocalDate fromPeriod, LocalDate toPeriod);
+
+    @Query("SELECT d FROM DepreciationJournalEntity d JOIN FETCH d.fixedAsset " +
+           "WHERE d.company.id = :companyId AND d.period = :period " +
+           "AND d.fixedAsset.id IN :fixedAssetIds " +
+           "ORDER BY d.fixedAsset.name")
+    List<DepreciationJournalEntity> findByCompanyIdAndPeriodAndFixedAssetIds(
+            Integer companyId, LocalDate period, Collection<Integer> fixedAssetIds);
+
+    @Query("SELECT d.fixedAsset.id, MAX(d.period) FROM DepreciationJournalEntity d " +
+           "WHERE d.company.id = :companyId " +
+           "GROUP BY d.fixedAsset.id")
+    List<Object[]> findLastDepreciatedPeriods(Integer companyId);
+
+    @Query("SELECT d FROM DepreciationJournalEntity d JOIN FETCH d.fixedAsset " +
+           "WHERE d.company.id = :companyId AND d.period BETWEEN :fromPeriod AND :toPeriod " +
+           "AND d.fixedAsset.id IN :fixedAssetIds " +
+           "ORDER BY d.period, d.fixedAsset.name")
+    List<DepreciationJournalEntity> findByCompanyIdAndPeriodBetweenAndFixedAssetIds(
+            Integer companyId, LocalDate fromPeriod, LocalDate toPeriod, Collection<Integer> fixedAssetIds);
 }
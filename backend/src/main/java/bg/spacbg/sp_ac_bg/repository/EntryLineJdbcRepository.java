@@ -0,0 +1,76 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JDBC batch inserts of generated journal entry lines that would otherwise need one entity write per line.
+ */
+@Repository
+public class EntryLineJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EntryLineJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record NewEntryLine(Integer journalEntryId, Integer accountId, BigDecimal debitAmount,
+                               BigDecimal creditAmount, BigDecimal baseAmount, BigDecimal vatAmount,
+                               String description, int lineOrder, Integer counterpartId, String currencyCode,
+                               BigDecimal currencyAmount, BigDecimal exchangeRate) {
+
+        public NewEntryLine(Integer journalEntryId, Integer accountId, BigDecimal debitAmount,
+                            BigDecimal creditAmount, BigDecimal baseAmount, BigDecimal vatAmount,
+                            String description, int lineOrder, Integer counterpartId) {
+            this(journalEntryId, accountId, debitAmount, creditAmount, baseAmount, vatAmount, description,
+                    lineOrder, counterpartId, null, null, null);
+        }
+
+        public NewEntryLine(Integer journalEntryId, Integer accountId, BigDecimal debitAmount,
+                            BigDecimal creditAmount, BigDecimal baseAmount, BigDecimal vatAmount,
+                            String description, int lineOrder) {
+            this(journalEntryId, accountId, debitAmount, creditAmount, baseAmount, vatAmount, description,
+                    lineOrder, null);
+        }
+    }
+
+    /**
+     * Inserts entry lines without VAT rate or quantity in JDBC batches.
+     */
+    public void insertLines(List<NewEntryLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO entry_lines (journal_entry_id, account_id, debit_amount, credit_amount, " +
+                "base_amount, vat_amount, description, line_order, counterpart_id, currency_code, " +
+                "currency_amount, exchange_rate, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)",
+                lines, BATCH_SIZE,
+                (ps, line) -> {
+                    ps.setInt(1, line.journalEntryId());
+                    ps.setInt(2, line.accountId());
+                    ps.setBigDecimal(3, line.debitAmount());
+                    ps.setBigDecimal(4, line.creditAmount());
+                    ps.setBigDecimal(5, line.baseAmount());
+                    ps.setBigDecimal(6, line.vatAmount());
+                    ps.setString(7, line.description());
+                    ps.setInt(8, line.lineOrder());
+                    if (line.counterpartId() != null) {
+                        ps.setInt(9, line.counterpartId());
+                    } else {
+                        ps.setNull(9, Types.INTEGER);
+                    }
+                    ps.setString(10, line.currencyCode());
+                    ps.setBigDecimal(11, line.currencyAmount());
+                    ps.setBigDecimal(12, line.exchangeRate());
+                });
+    }
+}
@@ -1,14 +1,20 @@
 package bg.spacbg.sp_ac_bg.repository;
 
 import bg.spacbg.sp_ac_bg.model.entity.EntryLineEntity;
+import bg.spacbg.sp_ac_bg.model.enums.FlowDirection;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface EntryLineRepository extends JpaRepository<EntryLineEntity, Integer> {
@@ -104,4 +110,79 @@ public interface EntryLineRepository extends JpaRepository<EntryLineEntity, Inte
             @Param("companyId") Integer companyId,
             @Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate);
+
+    // VAT journal totals - only entries with a counterpart end up in the journal
+    @Query("SELECT je.vatPurchaseOperation, COALESCE(SUM(el.baseAmount), 0), COALESCE(SUM(el.vatAmount), 0) " +
+           "FROM EntryLineEntity el JOIN el.journalEntry je " +
+           "WHERE je.company.id = :companyId " +
+           "AND je.vatDate BETWEEN :fromDate AND :toDate " +
+           "AND je.vatPurchaseOperation IS NOT NULL " +
+           "AND EXISTS (SELECT 1 FROM EntryLineEntity cl WHERE cl.journalEntry = je AND cl.counterpart IS NOT NULL) " +
+           "GROUP BY je.vatPurchaseOperation")
+    List<Object[]> sumPurchaseJournalAmountsByOperation(
+            @Param("companyId") Integer companyId,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate);
+
+    @Query("SELECT COALESCE(SUM(el.baseAmount), 0), COALESCE(SUM(el.vatAmount), 0) " +
+           "FROM EntryLineEntity el JOIN el.journalEntry je " +
+           "WHERE je.company.id = :companyId " +
+           "AND je.vatDate BETWEEN :fromDate AND :toDate " +
+           "AND je.vatSalesOperation IS NOT NULL " +
+           "AND EXISTS (SELECT 1 FROM EntryLineEntity cl WHERE cl.journalEntry = je AND cl.counterpart IS NOT NULL)")
+    List<Object[]> sumSalesJournalAmounts(
+            @Param("companyId") Integer companyId,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate);
+
+    // VAT consistency check - per entry header VAT vs. sum of line VAT
+    @Query("SELECT je.id, je.entryNumber, je.accountingDate, je.totalVatAmount, " +
+           "je.vatPurchaseOperation, je.vatSalesOperation, COALESCE(SUM(el.vatAmount), 0) " +
+           "FROM EntryLineEntity el JOIN el.journalEntry je " +
+           "WHERE je.id IN :journalEntryIds " +
+           "GROUP BY je.id, je.entryNumber, je.accountingDate, je.totalVatAmount, " +
+           "je.vatPurchaseOperation, je.vatSalesOperation")
+    List<Object[]> sumVatAmountsByJournalEntryIds(@Param("journalEntryIds") Collection<Integer> journalEntryIds);
+
+    @Query("SELECT DISTINCT el.journalEntry.id, el.account.id FROM EntryLineEntity el " +
+           "WHERE el.journalEntry.id IN :journalEntryIds AND el.account.id IN :accountIds")
+    List<Object[]> findAccountUsageByJournalEntryIds(
+            @Param("journalEntryIds") Collection<Integer> journalEntryIds,
+            @Param("accountIds") Collection<Integer> accountIds);
+
+    // Average cost corrections - expense lines that took the issue value of a material account.
+    // Columns: journalEntryId, accountId, accountCode, accountName, debitAmount
+    @Query("SELECT el.journalEntry.id, a.id, a.code, a.name, el.debitAmount " +
+           "FROM EntryLineEntity el JOIN el.account a " +
+           "WHERE el.journalEntry.id IN :journalEntryIds AND a.id <> :materialAccountId " +
+           "AND el.debitAmount > 0 ORDER BY el.journalEntry.id, el.lineOrder")
+    List<Object[]> findDebitLinesByJournalEntryIds(
+            @Param("journalEntryIds") Collection<Integer> journalEntryIds,
+            @Param("materialAccountId") Integer materialAccountId);
+
+    // Intrastat - posted lines on mapped accounts; arrivals are taken from the debit side, dispatches from the credit side.
+    // Columns: mappingId, journalEntryId, entryLineId, amount, quantity, unitOfMeasureCode, vatNumber, country
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m.id, je.id, el.id, " +
+           "CASE WHEN m.flowDirection = bg.spacbg.sp_ac_bg.model.enums.FlowDirection.ARRIVAL " +
+           "THEN el.debitAmount ELSE el.creditAmount END, " +
+           "el.quantity, el.unitOfMeasureCode, " +
+           "COALESCE(lc.vatNumber, jc.vatNumber), COALESCE(lc.country, jc.country) " +
+           "FROM EntryLineEntity el JOIN el.journalEntry je " +
+           "JOIN IntrastatAccountMappingEntity m ON m.account = el.account " +
+           "LEFT JOIN el.counterpart lc LEFT JOIN je.counterpart jc " +
+           "WHERE je.company.id = :companyId AND m.company.id = :companyId " +
+           "AND m.flowDirection = :flowDirection " +
+           "AND je.accountingDate BETWEEN :fromDate AND :toDate " +
+           "AND je.isPosted = true " +
+           "AND ((m.flowDirection = bg.spacbg.sp_ac_bg.model.enums.FlowDirection.ARRIVAL AND el.debitAmount > 0) " +
+           "OR (m.flowDirection = bg.spacbg.sp_ac_bg.model.enums.FlowDirection.DISPATCH AND el.creditAmount > 0))")
+    Stream<Object[]> streamIntrastatLines(
+            @Param("companyId") Integer companyId,
+            @Param("flowDirection") FlowDirection flowDirection,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate);
 }
@@ -0,0 +1,116 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Streaming reads of exchange rates by currency code, for loading the in-memory rate series without
+ * materialising entities, and JDBC batch inserts for bulk rate loads.
+ */
+@Repository
+public class ExchangeRateJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExchangeRateJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record NewRate(Integer fromCurrencyId, Integer toCurrencyId, BigDecimal rate, BigDecimal reverseRate,
+                          LocalDate validDate, String rateSource) {
+    }
+
+    // The stored reverse_rate is rounded to 4 decimals and is not read; readers derive it from the rate
+    @FunctionalInterface
+    public interface RateRowHandler {
+        void onRate(String fromCode, String toCode, LocalDate validDate, BigDecimal rate);
+    }
+
+    /**
+     * All active rates, ordered by currency pair and date.
+     */
+    public void forEachActiveRate(RateRowHandler handler) {
+        jdbcTemplate.query(
+                "SELECT fc.code AS from_code, tc.code AS to_code, er.valid_date, er.rate " +
+                "FROM exchange_rates er " +
+                "JOIN currencies fc ON fc.id = er.from_currency_id " +
+                "JOIN currencies tc ON tc.id = er.to_currency_id " +
+                "WHERE er.is_active = TRUE " +
+                "ORDER BY fc.code, tc.code, er.valid_date",
+                rs -> {
+                    handler.onRate(rs.getString("from_code"), rs.getString("to_code"),
+                            rs.getObject("valid_date", LocalDate.class), rs.getBigDecimal("rate"));
+                });
+    }
+
+    /**
+     * Active rates of one currency pair, ordered by date.
+     */
+    public void forEachActiveRate(String fromCode, String toCode, RateRowHandler handler) {
+        jdbcTemplate.query(
+                "SELECT er.valid_date, er.rate " +
+                "FROM exchange_rates er " +
+                "JOIN currencies fc ON fc.id = er.from_currency_id " +
+                "JOIN currencies tc ON tc.id = er.to_currency_id " +
+                "WHERE fc.code = ? AND tc.code = ? AND er.is_active = TRUE " +
+                "ORDER BY er.valid_date",
+                rs -> {
+                    handler.onRate(fromCode, toCode, rs.getObject("valid_date", LocalDate.class),
+                            rs.getBigDecimal("rate"));
+                },
+                fromCode, toCode);
+    }
+
+    /**
+     * Target currency and date of every rate quoted from {@code fromCurrencyId}, active or not.
+     */
+    public void forEachRateKey(Integer fromCurrencyId, BiConsumer<Integer, LocalDate> handler) {
+        jdbcTemplate.query(
+                "SELECT to_currency_id, valid_date FROM exchange_rates WHERE from_currency_id = ?",
+                rs -> {
+                    handler.accept(rs.getInt("to_currency_id"), rs.getObject("valid_date", LocalDate.class));
+                },
+                fromCurrencyId);
+    }
+
+    /**
+     * Inserts active rates, skipping any (pair, date) that already has one, and returns how many were
+     * inserted.
+     */
+    public int insertRates(List<NewRate> rates) {
+        if (rates.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "INSERT INTO exchange_rates (from_currency_id, to_currency_id, rate, reverse_rate, valid_date, " +
+                "rate_source, is_active, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, TRUE, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
+                "ON CONFLICT (from_currency_id, to_currency_id, valid_date) DO NOTHING",
+                rates, BATCH_SIZE,
+                (ps, rate) -> {
+                    ps.setInt(1, rate.fromCurrencyId());
+                    ps.setInt(2, rate.toCurrencyId());
+                    ps.setBigDecimal(3, rate.rate());
+                    ps.setBigDecimal(4, rate.reverseRate());
+                    ps.setDate(5, Date.valueOf(rate.validDate()));
+                    ps.setString(6, rate.rateSource());
+                });
+        int inserted = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // SUCCESS_NO_INFO when the driver does not report counts
+                inserted += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+            }
+        }
+        return inserted;
+    }
+}
@@ -0,0 +1,17 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.GlobalContragentEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GlobalContragentRepository extends JpaRepository<GlobalContragentEntity, Long> {
+
+    Optional<GlobalContragentEntity> findByVatNumber(String vatNumber);
+
+    List<GlobalContragentEntity> findByVatNumberIn(Collection<String> vatNumbers);
+}
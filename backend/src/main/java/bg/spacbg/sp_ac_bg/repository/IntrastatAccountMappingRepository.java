@@ -0,0 +1,20 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatAccountMappingEntity;
+import bg.spacbg.sp_ac_bg.model.enums.FlowDirection;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface IntrastatAccountMappingRepository extends JpaRepository<IntrastatAccountMappingEntity, Integer> {
+
+    @Query("SELECT m FROM IntrastatAccountMappingEntity m JOIN FETCH m.account " +
+           "WHERE m.company.id = :companyId AND m.flowDirection = :flowDirection")
+    List<IntrastatAccountMappingEntity> findByCompanyIdAndFlowDirection(
+            @Param("companyId") Integer companyId,
+            @Param("flowDirection") FlowDirection flowDirection);
+}
@@ -0,0 +1,20 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatDeclarationItemEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface IntrastatDeclarationItemRepository extends JpaRepository<IntrastatDeclarationItemEntity, Integer> {
+
+    List<IntrastatDeclarationItemEntity> findByDeclaration_IdOrderByItemNumber(Integer declarationId);
+
+    @Modifying
+    @Query("DELETE FROM IntrastatDeclarationItemEntity i WHERE i.declaration.id = :declarationId")
+    int deleteByDeclarationId(@Param("declarationId") Integer declarationId);
+}
@@ -0,0 +1,18 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatDeclarationEntity;
+import bg.spacbg.sp_ac_bg.model.enums.DeclarationType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IntrastatDeclarationRepository extends JpaRepository<IntrastatDeclarationEntity, Integer> {
+
+    List<IntrastatDeclarationEntity> findByCompany_IdOrderByYearDescMonthDesc(Integer companyId);
+
+    Optional<IntrastatDeclarationEntity> findByCompany_IdAndDeclarationTypeAndYearAndMonth(
+            Integer companyId, DeclarationType declarationType, Integer year, Integer month);
+}
@@ -0,0 +1,21 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatNomenclatureEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface IntrastatNomenclatureRepository extends JpaRepository<IntrastatNomenclatureEntity, Integer> {
+
+    // Flat projection for the in-memory index: id, cnCode, descriptionBg, unitOfMeasure, parentCode
+    @Query("SELECT n.id, n.cnCode, n.descriptionBg, n.unitOfMeasure, n.parentCode " +
+           "FROM IntrastatNomenclatureEntity n WHERE n.isActive = true")
+    List<Object[]> findActiveIndexRows();
+
+    // Version of the active list for the in-memory index: count, last update
+    @Query("SELECT COUNT(n), MAX(n.updatedAt) FROM IntrastatNomenclatureEntity n WHERE n.isActive = true")
+    List<Object[]> findActiveIndexVersion();
+}
@@ -0,0 +1,13 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatSettingsEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface IntrastatSettingsRepository extends JpaRepository<IntrastatSettingsEntity, Integer> {
+
+    Optional<IntrastatSettingsEntity> findByCompany_Id(Integer companyId);
+}
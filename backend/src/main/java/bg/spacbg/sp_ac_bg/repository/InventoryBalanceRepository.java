@@ -1,9 +1,14 @@
 package bg.spacbg.sp_ac_bg.repository;
 
 import bg.spacbg.sp_ac_bg.model.entity.InventoryBalanceEntity;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +20,25 @@ public interface InventoryBalanceRepository extends JpaRepository<InventoryBalan
     Optional<InventoryBalanceEntity> findByCompanyIdAndAccountId(Integer companyId, Integer accountId);
 
     boolean existsByCompanyIdAndAccountId(Integer companyId, Integer accountId);
+
+    // Текущата СПЦ по сметки на фирмата - без зареждане на балансите като обекти
+    @Query("SELECT b.account.id, b.currentAverageCost FROM InventoryBalanceEntity b WHERE b.company.id = :companyId")
+    List<Object[]> findAverageCostsByCompanyId(Integer companyId);
+
+    // Създава нулев баланс, ако липсва; при едновременни опити UNIQUE(company_id, account_id) оставя един ред
+    @Modifying
+    @Query(value = "INSERT INTO inventory_balances (company_id, account_id, current_quantity, current_amount, " +
+           "current_average_cost, updated_at) VALUES (:companyId, :accountId, 0, 0, 0, CURRENT_TIMESTAMP) " +
+           "ON CONFLICT (company_id, account_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(Integer companyId, Integer accountId);
+
+    // Заключва баланса (SELECT ... FOR UPDATE) - сериализира записите по една сметка до края на транзакцията
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM InventoryBalanceEntity b WHERE b.company.id = :companyId AND b.account.id = :accountId")
+    Optional<InventoryBalanceEntity> findForUpdate(Integer companyId, Integer accountId);
+
+    // Освобождава препратките към движения, които ще бъдат изтрити
+    @Modifying
+    @Query("UPDATE InventoryBalanceEntity b SET b.lastMovement = NULL WHERE b.lastMovement.id IN :movementIds")
+    int clearLastMovement(Collection<Integer> movementIds);
 }
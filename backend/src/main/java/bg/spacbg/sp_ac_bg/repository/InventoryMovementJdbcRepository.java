@@ -0,0 +1,109 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * JDBC batch operations on inventory movements and their average cost corrections that would otherwise
+ * need one entity write per row.
+ */
+@Repository
+public class InventoryMovementJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InventoryMovementJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record RunningBalance(Integer movementId, BigDecimal balanceAfterQuantity,
+                                 BigDecimal balanceAfterAmount, BigDecimal averageCostAtTime) {
+    }
+
+    public record IssueValue(Integer movementId, BigDecimal unitPrice, BigDecimal totalAmount) {
+    }
+
+    public record CostCorrection(Integer companyId, Integer accountId, Integer triggeringMovementId,
+                                 Integer affectedMovementId, Integer correctionJournalEntryId, LocalDate correctionDate,
+                                 BigDecimal quantity, BigDecimal oldAverageCost, BigDecimal newAverageCost,
+                                 BigDecimal correctionAmount, String reason, Integer createdBy) {
+    }
+
+    /**
+     * Rewrites the stored running balances of the given movements in JDBC batches.
+     */
+    public void updateRunningBalances(List<RunningBalance> balances) {
+        if (balances.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE inventory_movements SET balance_after_quantity = ?, balance_after_amount = ?, " +
+                "average_cost_at_time = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+                balances, BATCH_SIZE,
+                (ps, balance) -> {
+                    ps.setBigDecimal(1, balance.balanceAfterQuantity());
+                    ps.setBigDecimal(2, balance.balanceAfterAmount());
+                    ps.setBigDecimal(3, balance.averageCostAtTime());
+                    ps.setInt(4, balance.movementId());
+                });
+    }
+
+    /**
+     * Rewrites the value of issues after an average cost correction.
+     */
+    public void updateIssueValues(List<IssueValue> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE inventory_movements SET unit_price = ?, total_amount = ?, updated_at = CURRENT_TIMESTAMP " +
+                "WHERE id = ?",
+                values, BATCH_SIZE,
+                (ps, value) -> {
+                    ps.setBigDecimal(1, value.unitPrice());
+                    ps.setBigDecimal(2, value.totalAmount());
+                    ps.setInt(3, value.movementId());
+                });
+    }
+
+    /**
+     * Inserts applied average cost corrections in JDBC batches.
+     */
+    public void insertCorrections(List<CostCorrection> corrections) {
+        if (corrections.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO average_cost_corrections (company_id, account_id, triggering_movement_id, " +
+                "affected_movement_id, correction_journal_entry_id, correction_date, quantity, old_average_cost, " +
+                "new_average_cost, correction_amount, reason, created_by, is_applied, applied_at, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                corrections, BATCH_SIZE,
+                (ps, correction) -> {
+                    ps.setInt(1, correction.companyId());
+                    ps.setInt(2, correction.accountId());
+                    ps.setInt(3, correction.triggeringMovementId());
+                    ps.setInt(4, correction.affectedMovementId());
+                    ps.setInt(5, correction.correctionJournalEntryId());
+                    ps.setDate(6, Date.valueOf(correction.correctionDate()));
+                    ps.setBigDecimal(7, correction.quantity());
+                    ps.setBigDecimal(8, correction.oldAverageCost());
+                    ps.setBigDecimal(9, correction.newAverageCost());
+                    ps.setBigDecimal(10, correction.correctionAmount());
+                    ps.setString(11, correction.reason());
+                    if (correction.createdBy() != null) {
+                        ps.setInt(12, correction.createdBy());
+                    } else {
+                        ps.setNull(12, Types.INTEGER);
+                    }
+                });
+    }
+}
@@ -1,6 +1,7 @@
 package bg.spacbg.sp_ac_bg.repository;
 
 import bg.spacbg.sp_ac_bg.model.entity.InventoryMovementEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -36,39 +37,56 @@ public interface InventoryMovementRepository extends JpaRepository<InventoryMove
     // ========== Методи за количествена оборотна ведомост ==========
 
     /**
-     * Движения преди определена дата (за начално салдо)
+     * Начални салда - записаните салда на последното движение преди датата за всяка сметка.
+     * Колони: accountId, balanceAfterQuantity, balanceAfterAmount
      */
-    @Query("SELECT m FROM InventoryMovementEntity m WHERE m.company.id = :companyId " +
-           "AND m.movementDate < :fromDate " +
-           "ORDER BY m.account.id ASC, m.movementDate ASC, m.id ASC")
-    List<InventoryMovementEntity> findMovementsBeforeDate(Integer companyId, LocalDate fromDate);
+    @Query(value = "SELECT DISTINCT ON (m.account_id) m.account_id, m.balance_after_quantity, m.balance_after_amount " +
+           "FROM inventory_movements m WHERE m.company_id = :companyId AND m.movement_date < :fromDate " +
+           "ORDER BY m.account_id, m.movement_date DESC, m.id DESC", nativeQuery = true)
+    List<Object[]> findOpeningBalances(Integer companyId, LocalDate fromDate);
 
     /**
-     * Движения в период (за обороти)
+     * Начални салда само от движенията след снимката към afterDate - сметките без такива движения
+     * вземат салдото от снимката.
+     * Колони: accountId, balanceAfterQuantity, balanceAfterAmount
      */
-    @Query("SELECT m FROM InventoryMovementEntity m WHERE m.company.id = :companyId " +
-           "AND m.movementDate >= :fromDate AND m.movementDate <= :toDate " +
-           "ORDER BY m.account.id ASC, m.movementDate ASC, m.id ASC")
-    List<InventoryMovementEntity> findMovementsInPeriod(Integer companyId, LocalDate fromDate, LocalDate toDate);
+    @Query(value = "SELECT DISTINCT ON (m.account_id) m.account_id, m.balance_after_quantity, m.balance_after_amount " +
+           "FROM inventory_movements m WHERE m.company_id = :companyId " +
+           "AND m.movement_date > :afterDate AND m.movement_date < :fromDate " +
+           "ORDER BY m.account_id, m.movement_date DESC, m.id DESC", nativeQuery = true)
+    List<Object[]> findOpeningBalancesAfter(Integer companyId, LocalDate afterDate, LocalDate fromDate);
 
     /**
-     * Движения до определена дата (за изчисляване на СПЦ към дата)
+     * Обороти в период по сметка.
+     * Колони: accountId, receiptQuantity, receiptAmount, issueQuantity, issueAmount
      */
-    @Query("SELECT m FROM InventoryMovementEntity m WHERE m.company.id = :companyId " +
-           "AND m.account.id = :accountId AND m.movementDate <= :asOfDate " +
-           "ORDER BY m.movementDate ASC, m.id ASC")
-    List<InventoryMovementEntity> findMovementsUpToDate(Integer companyId, Integer accountId, LocalDate asOfDate);
-
-    // ========== Методи за корекции на СПЦ ==========
+    @Query("SELECT m.account.id, " +
+           "COALESCE(SUM(CASE WHEN m.movementType = 'DEBIT' THEN m.quantity ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN m.movementType = 'DEBIT' THEN m.totalAmount ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN m.movementType = 'CREDIT' THEN m.quantity ELSE 0 END), 0), " +
+           "COALESCE(SUM(CASE WHEN m.movementType = 'CREDIT' THEN m.totalAmount ELSE 0 END), 0) " +
+           "FROM InventoryMovementEntity m WHERE m.company.id = :companyId " +
+           "AND m.movementDate >= :fromDate AND m.movementDate <= :toDate " +
+           "GROUP BY m.account.id")
+    List<Object[]> sumTurnoverByAccount(Integer companyId, LocalDate fromDate, LocalDate toDate);
 
     /**
-     * CREDIT движения след определена дата за конкретна сметка
+     * Движения по сметка в период - страница за разбивка на оборотната ведомост, от произволно отместване
      */
-    @Query("SELECT m FROM InventoryMovementEntity m WHERE m.company.id = :companyId " +
-           "AND m.account.id = :accountId AND m.movementType = 'CREDIT' " +
-           "AND m.movementDate > :newEntryDate " +
-           "ORDER BY m.movementDate ASC, m.id ASC")
-    List<InventoryMovementEntity> findCreditMovementsAfterDate(Integer companyId, Integer accountId, LocalDate newEntryDate);
+    @Query(value = "SELECT m.* FROM inventory_movements m WHERE m.company_id = :companyId " +
+           "AND m.account_id = :accountId " +
+           "AND m.movement_date >= :fromDate AND m.movement_date <= :toDate " +
+           "ORDER BY m.movement_date ASC, m.id ASC OFFSET :offset LIMIT :limit", nativeQuery = true)
+    List<InventoryMovementEntity> findAccountMovementsInPeriod(Integer companyId, Integer accountId,
+                                                               LocalDate fromDate, LocalDate toDate,
+                                                               int offset, int limit);
+
+    @Query("SELECT COUNT(m) FROM InventoryMovementEntity m WHERE m.company.id = :companyId " +
+           "AND m.account.id = :accountId " +
+           "AND m.movementDate >= :fromDate AND m.movementDate <= :toDate")
+    long countAccountMovementsInPeriod(Integer companyId, Integer accountId, LocalDate fromDate, LocalDate toDate);
+
+    // ========== Методи за корекции на СПЦ ==========
 
     /**
      * Проверка дали има движение за entry line
@@ -80,4 +98,53 @@ public interface InventoryMovementRepository extends JpaRepository<InventoryMove
      */
     @Query("SELECT DISTINCT m.account.id FROM InventoryMovementEntity m WHERE m.company.id = :companyId")
     List<Integer> findDistinctAccountIdsByCompanyId(Integer companyId);
+
+    // ========== Методи за преизчисляване на текущите салда ==========
+
+    /**
+     * Последното движение преди дадена позиция (дата, id) - контролна точка със записаните салда.
+     * Колони: id, movementDate, balanceAfterQuantity, balanceAfterAmount
+     */
+    @Query("SELECT m.id, m.movementDate, m.balanceAfterQuantity, m.balanceAfterAmount " +
+           "FROM InventoryMovementEntity m WHERE m.company.id = :companyId AND m.account.id = :accountId " +
+           "AND (m.movementDate < :movementDate OR (m.movementDate = :movementDate AND m.id < :movementId)) " +
+           "ORDER BY m.movementDate DESC, m.id DESC")
+    List<Object[]> findCheckpointsBefore(Integer companyId, Integer accountId, LocalDate movementDate,
+                                         Integer movementId, Pageable pageable);
+
+    /**
+     * Последното движение към дата - записаните му салда дават СПЦ към датата с едно търсене по индекса.
+     * Колони: id, movementDate, balanceAfterQuantity, balanceAfterAmount
+     */
+    @Query("SELECT m.id, m.movementDate, m.balanceAfterQuantity, m.balanceAfterAmount " +
+           "FROM InventoryMovementEntity m WHERE m.company.id = :companyId AND m.account.id = :accountId " +
+           "AND m.movementDate <= :asOfDate " +
+           "ORDER BY m.movementDate DESC, m.id DESC")
+    List<Object[]> findCheckpointsUpToDate(Integer companyId, Integer accountId, LocalDate asOfDate, Pageable pageable);
+
+    /**
+     * Последното движение към дата след снимката към afterDate.
+     * Колони: id, movementDate, balanceAfterQuantity, balanceAfterAmount
+     */
+    @Query("SELECT m.id, m.movementDate, m.balanceAfterQuantity, m.balanceAfterAmount " +
+           "FROM InventoryMovementEntity m WHERE m.company.id = :companyId AND m.account.id = :accountId " +
+           "AND m.movementDate > :afterDate AND m.movementDate <= :asOfDate " +
+           "ORDER BY m.movementDate DESC, m.id DESC")
+    List<Object[]> findCheckpointsBetween(Integer companyId, Integer accountId, LocalDate afterDate,
+                                          LocalDate asOfDate, Pageable pageable);
+
+    /**
+     * Движенията от дадена позиция (дата, id) включително в реда на преизчисляване.
+     * Колони: id, movementDate, movementType, quantity, totalAmount, journalEntryId
+     */
+    @Query("SELECT m.id, m.movementDate, m.movementType, m.quantity, m.totalAmount, m.journalEntry.id " +
+           "FROM InventoryMovementEntity m WHERE m.company.id = :companyId AND m.account.id = :accountId " +
+           "AND (m.movementDate > :movementDate OR (m.movementDate = :movementDate AND m.id >= :movementId)) " +
+           "ORDER BY m.movementDate ASC, m.id ASC")
+    List<Object[]> findReplayRowsFrom(Integer companyId, Integer accountId, LocalDate movementDate, Integer movementId);
+
+    @Query("SELECT m.id, m.movementDate, m.movementType, m.quantity, m.totalAmount, m.journalEntry.id " +
+           "FROM InventoryMovementEntity m WHERE m.company.id = :companyId AND m.account.id = :accountId " +
+           "ORDER BY m.movementDate ASC, m.id ASC")
+    List<Object[]> findReplayRows(Integer companyId, Integer accountId);
 }
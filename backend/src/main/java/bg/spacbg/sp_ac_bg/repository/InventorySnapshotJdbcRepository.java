@@ -0,0 +1,92 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Month-end inventory snapshots - per account quantity, value and average cost frozen at period close.
+ */
+@Repository
+public class InventorySnapshotJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InventorySnapshotJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record Snapshot(Integer accountId, LocalDate periodEnd, BigDecimal quantity, BigDecimal amount,
+                           BigDecimal averageCost) {
+    }
+
+    /**
+     * Writes the snapshots of all accounts at the period end with one statement. Each account starts from
+     * the previous snapshot of the company and takes the running balance of its last movement after it.
+     */
+    public int writeSnapshots(Integer companyId, LocalDate periodEnd) {
+        Date end = Date.valueOf(periodEnd);
+        return jdbcTemplate.update(
+                "WITH previous AS (SELECT MAX(period_end) AS period_end FROM inventory_snapshots " +
+                "    WHERE company_id = ? AND period_end < ?) " +
+                "INSERT INTO inventory_snapshots (company_id, account_id, period_end, quantity, amount, " +
+                "average_cost, created_at) " +
+                "SELECT DISTINCT ON (p.account_id) ?, p.account_id, ?, p.quantity, p.amount, p.average_cost, " +
+                "CURRENT_TIMESTAMP FROM (" +
+                "    SELECT s.account_id, s.period_end AS position_date, 0 AS position_id, " +
+                "    s.quantity, s.amount, s.average_cost " +
+                "    FROM inventory_snapshots s, previous WHERE s.company_id = ? AND s.period_end = previous.period_end " +
+                "    UNION ALL " +
+                "    SELECT m.account_id, m.movement_date, m.id, " +
+                "    m.balance_after_quantity, m.balance_after_amount, m.average_cost_at_time " +
+                "    FROM inventory_movements m, previous WHERE m.company_id = ? AND m.movement_date <= ? " +
+                "    AND (previous.period_end IS NULL OR m.movement_date > previous.period_end)" +
+                ") p ORDER BY p.account_id, p.position_date DESC, p.position_id DESC " +
+                "ON CONFLICT (company_id, account_id, period_end) DO UPDATE SET quantity = EXCLUDED.quantity, " +
+                "amount = EXCLUDED.amount, average_cost = EXCLUDED.average_cost, created_at = EXCLUDED.created_at",
+                companyId, end, companyId, end, companyId, companyId, end);
+    }
+
+    /**
+     * Removes all company snapshots on or after a date, or all of them when fromDate is null. Snapshots are removed
+     * for all accounts together, so every remaining snapshot date still covers each account with movements up to it.
+     */
+    public int deleteFrom(Integer companyId, LocalDate fromDate) {
+        if (fromDate == null) {
+            return jdbcTemplate.update("DELETE FROM inventory_snapshots WHERE company_id = ?", companyId);
+        }
+        return jdbcTemplate.update(
+                "DELETE FROM inventory_snapshots WHERE company_id = ? AND period_end >= ?",
+                companyId, Date.valueOf(fromDate));
+    }
+
+    /**
+     * The latest snapshot of the account on or before the date.
+     */
+    public Optional<Snapshot> findLatest(Integer companyId, Integer accountId, LocalDate asOfDate) {
+        return jdbcTemplate.query(
+                "SELECT account_id, period_end, quantity, amount, average_cost FROM inventory_snapshots " +
+                "WHERE company_id = ? AND account_id = ? AND period_end <= ? ORDER BY period_end DESC LIMIT 1",
+                (rs, rowNum) -> new Snapshot(rs.getInt(1), rs.getDate(2).toLocalDate(),
+                        rs.getBigDecimal(3), rs.getBigDecimal(4), rs.getBigDecimal(5)),
+                companyId, accountId, Date.valueOf(asOfDate)).stream().findFirst();
+    }
+
+    /**
+     * All account snapshots of the latest company snapshot strictly before the date.
+     */
+    public List<Snapshot> findLatestBefore(Integer companyId, LocalDate beforeDate) {
+        return jdbcTemplate.query(
+                "SELECT account_id, period_end, quantity, amount, average_cost FROM inventory_snapshots " +
+                "WHERE company_id = ? AND period_end = (SELECT MAX(period_end) FROM inventory_snapshots " +
+                "    WHERE company_id = ? AND period_end < ?)",
+                (rs, rowNum) -> new Snapshot(rs.getInt(1), rs.getDate(2).toLocalDate(),
+                        rs.getBigDecimal(3), rs.getBigDecimal(4), rs.getBigDecimal(5)),
+                companyId, companyId, Date.valueOf(beforeDate));
+    }
+}
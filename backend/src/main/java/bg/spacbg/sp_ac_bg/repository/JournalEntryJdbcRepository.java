@@ -0,0 +1,69 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-row inserts of generated journal entry headers that would otherwise need one entity write per entry.
+ */
+@Repository
+public class JournalEntryJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JournalEntryJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record NewJournalEntry(String entryNumber, Integer companyId, LocalDate documentDate,
+                                  String documentNumber, String description, String documentType,
+                                  BigDecimal totalAmount, Integer createdBy) {
+    }
+
+    /**
+     * Inserts unposted journal entries without VAT, one statement per batch, and returns their ids by entry
+     * number.
+     */
+    public Map<String, Integer> insertEntries(List<NewJournalEntry> entries) {
+        Map<String, Integer> idsByEntryNumber = new HashMap<>();
+        for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+            List<NewJournalEntry> batch = entries.subList(from, Math.min(from + BATCH_SIZE, entries.size()));
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO journal_entries (entry_number, company_id, document_date, accounting_date, " +
+                    "document_number, description, document_type, total_amount, total_vat_amount, is_posted, " +
+                    "created_by, created_at, updated_at) VALUES ");
+            List<Object> args = new ArrayList<>(batch.size() * 9);
+            for (int i = 0; i < batch.size(); i++) {
+                NewJournalEntry entry = batch.get(i);
+                sql.append(i == 0 ? "" : ", ")
+                        .append("(?, ?, ?, ?, ?, ?, ?, ?, 0, FALSE, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)");
+                args.add(entry.entryNumber());
+                args.add(entry.companyId());
+                args.add(Date.valueOf(entry.documentDate()));
+                args.add(Date.valueOf(entry.documentDate()));
+                args.add(entry.documentNumber());
+                args.add(entry.description());
+                args.add(entry.documentType());
+                args.add(entry.totalAmount());
+                args.add(entry.createdBy());
+            }
+            sql.append(" RETURNING id, entry_number");
+            jdbcTemplate.query(sql.toString(),
+                    rs -> {
+                        idsByEntryNumber.put(rs.getString("entry_number"), rs.getInt("id"));
+                    },
+                    args.toArray());
+        }
+        return idsByEntryNumber;
+    }
+}
@@ -1,15 +1,20 @@
 package bg.spacbg.sp_ac_bg.repository;
 
 import bg.spacbg.sp_ac_bg.model.entity.JournalEntryEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface JournalEntryRepository extends JpaRepository<JournalEntryEntity, Integer>,
@@ -38,6 +43,42 @@ public interface JournalEntryRepository extends JpaRepository<JournalEntryEntity
         @Param("toDate") LocalDate toDate
     );
 
+    // Streaming variants for the VAT journal PDFs - rows are consumed one by one inside a read-only transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT je FROM JournalEntryEntity je WHERE je.company.id = :companyId " +
+           "AND je.vatDate BETWEEN :fromDate AND :toDate " +
+           "AND je.vatPurchaseOperation IS NOT NULL ORDER BY je.id")
+    Stream<JournalEntryEntity> streamPurchaseEntriesByVatDate(
+            @Param("companyId") Integer companyId,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT je FROM JournalEntryEntity je WHERE je.company.id = :companyId " +
+           "AND je.vatDate BETWEEN :fromDate AND :toDate " +
+           "AND je.vatSalesOperation IS NOT NULL ORDER BY je.id")
+    Stream<JournalEntryEntity> streamSalesEntriesByVatDate(
+            @Param("companyId") Integer companyId,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate);
+
+    // Keyset paging of entry ids for chunked background scans
+    @Query("SELECT je.id FROM JournalEntryEntity je WHERE je.company.id = :companyId " +
+           "AND je.accountingDate BETWEEN :fromDate AND :toDate " +
+           "AND je.id > :afterId ORDER BY je.id")
+    List<Integer> findIdsByCompanyIdAndDateRangeAfterId(
+            @Param("companyId") Integer companyId,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate,
+            @Param("afterId") Integer afterId,
+            Pageable pageable);
+
     @Query("SELECT je FROM JournalEntryEntity je WHERE je.company.id = :companyId " +
            "AND je.documentNumber = :documentNumber")
     List<JournalEntryEntity> findByCompanyIdAndDocumentNumber(
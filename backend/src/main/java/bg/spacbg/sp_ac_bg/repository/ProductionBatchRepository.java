@@ -46,9 +46,14 @@ public interface ProductionBatchRepository extends JpaRepository<ProductionBatch
             @Param("startDate") OffsetDateTime startDate,
             @Param("endDate") OffsetDateTime endDate);
 
+    @Query("SELECT COUNT(pb) FROM ProductionBatchEntity pb WHERE pb.company.id = :companyId")
+    long countByCompanyId(@Param("companyId") Integer companyId);
+
     @Query("SELECT COUNT(pb) FROM ProductionBatchEntity pb WHERE pb.company.id = :companyId AND pb.status = :status")
     long countByCompanyIdAndStatus(@Param("companyId") Integer companyId, @Param("status") ProductionBatchStatus status);
 
     @Query("SELECT pb FROM ProductionBatchEntity pb WHERE pb.technologyCard.id = :technologyCardId")
     List<ProductionBatchEntity> findByTechnologyCardId(@Param("technologyCardId") Integer technologyCardId);
+
+    boolean existsByTechnologyCardId(Integer technologyCardId);
 }
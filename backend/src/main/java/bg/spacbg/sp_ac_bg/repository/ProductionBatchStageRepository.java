@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,6 +35,12 @@ public interface ProductionBatchStageRepository extends JpaRepository<Production
 
     void deleteByProductionBatchId(Integer productionBatchId);
 
+    @Query("SELECT pbs.productionBatch.id, pbs.technologyCardStage.id, pbs.plannedQuantity, " +
+           "pbs.actualQuantity, pbs.status FROM ProductionBatchStageEntity pbs " +
+           "WHERE pbs.productionBatch.id IN :productionBatchIds")
+    List<Object[]> findStageQuantitiesByProductionBatchIds(
+            @Param("productionBatchIds") Collection<Integer> productionBatchIds);
+
     @Query("SELECT COUNT(pbs) FROM ProductionBatchStageEntity pbs " +
            "WHERE pbs.productionBatch.id = :productionBatchId AND pbs.status = :status")
     long countByProductionBatchIdAndStatus(
@@ -0,0 +1,100 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.SaltEdgeTransactionEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch writes of Salt Edge transactions for syncs and postings that touch many rows at once.
+ */
+@Repository
+public class SaltEdgeTransactionJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SaltEdgeTransactionJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the transactions whose Salt Edge id is not stored yet, one multi-row statement per batch with
+     * {@code ON CONFLICT DO NOTHING} on the unique Salt Edge id, so re-syncing an overlapping range costs no
+     * lookups and no failed rows. The new rows get their generated id and are returned in input order;
+     * transactions that were already known are left out.
+     */
+    public List<SaltEdgeTransactionEntity> insertNew(List<SaltEdgeTransactionEntity> transactions) {
+        List<SaltEdgeTransactionEntity> inserted = new ArrayList<>();
+        for (int from = 0; from < transactions.size(); from += BATCH_SIZE) {
+            List<SaltEdgeTransactionEntity> batch =
+                    transactions.subList(from, Math.min(from + BATCH_SIZE, transactions.size()));
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO salt_edge_transactions (salt_edge_account_id, salt_edge_transaction_id, " +
+                    "bank_profile_id, made_on, amount, currency_code, description, category, mode, status, " +
+                    "duplicated, is_processed, extra_data, created_at, updated_at) VALUES ");
+            List<Object> args = new ArrayList<>(batch.size() * 12);
+            for (int i = 0; i < batch.size(); i++) {
+                SaltEdgeTransactionEntity transaction = batch.get(i);
+                sql.append(i == 0 ? "" : ", ")
+                        .append("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, CAST(? AS jsonb), " +
+                                "CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)");
+                args.add(transaction.getSaltEdgeAccountId());
+                args.add(transaction.getSaltEdgeTransactionId());
+                args.add(transaction.getBankProfile() != null ? transaction.getBankProfile().getId() : null);
+                args.add(Date.valueOf(transaction.getMadeOn()));
+                args.add(transaction.getAmount());
+                args.add(transaction.getCurrencyCode());
+                args.add(transaction.getDescription());
+                args.add(transaction.getCategory());
+                args.add(transaction.getMode());
+                args.add(transaction.getStatus());
+                args.add(Boolean.TRUE.equals(transaction.getDuplicated()));
+                args.add(transaction.getExtraData());
+            }
+            sql.append(" ON CONFLICT (salt_edge_transaction_id) DO NOTHING RETURNING id, salt_edge_transaction_id");
+
+            Map<String, Integer> idsBySaltEdgeId = new HashMap<>();
+            jdbcTemplate.query(sql.toString(),
+                    rs -> {
+                        idsBySaltEdgeId.put(rs.getString("salt_edge_transaction_id"), rs.getInt("id"));
+                    },
+                    args.toArray());
+            for (SaltEdgeTransactionEntity transaction : batch) {
+                Integer id = idsBySaltEdgeId.get(transaction.getSaltEdgeTransactionId());
+                if (id != null) {
+                    transaction.setId(id);
+                    transaction.setIsProcessed(false);
+                    inserted.add(transaction);
+                }
+            }
+        }
+        return inserted;
+    }
+
+    public record ProcessedTransaction(Integer transactionId, Integer journalEntryId) {
+    }
+
+    /**
+     * Marks the transactions as processed by the given journal entries in JDBC batches.
+     */
+    public void markProcessed(List<ProcessedTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE salt_edge_transactions SET is_processed = TRUE, journal_entry_id = ?, " +
+                "updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+                transactions, BATCH_SIZE,
+                (ps, transaction) -> {
+                    ps.setInt(1, transaction.journalEntryId());
+                    ps.setInt(2, transaction.transactionId());
+                });
+    }
+}
@@ -0,0 +1,125 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Durable queue of received Salt Edge webhooks in {@code salt_edge_webhook_events}.
+ *
+ * Every statement is a single auto-committed update, so a claim is visible to other instances as soon as it
+ * returns. Only the oldest open event of a connection can be claimed; it keeps the later ones waiting while it
+ * is processed or waits for a retry, which preserves the per-connection order across workers and instances.
+ */
+@Repository
+public class SaltEdgeWebhookEventJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SaltEdgeWebhookEventJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record ClaimedEvent(long id, String connectionId, String stage, String payload, int attempts,
+                               OffsetDateTime receivedAt) {
+    }
+
+    public record QueueDepth(long pending, long processing, long failed, OffsetDateTime oldestOpenReceivedAt) {
+    }
+
+    /**
+     * Stores a received webhook; returns {@code false} when an event with the same dedupe key is already
+     * queued or processed.
+     */
+    public boolean enqueue(String dedupeKey, String connectionId, String stage, String payloadJson) {
+        int inserted = jdbcTemplate.update(
+                "INSERT INTO salt_edge_webhook_events (dedupe_key, connection_id, stage, payload) " +
+                "VALUES (?, ?, ?, CAST(? AS jsonb)) ON CONFLICT (dedupe_key) DO NOTHING",
+                dedupeKey, connectionId, stage, payloadJson);
+        return inserted > 0;
+    }
+
+    /**
+     * Marks up to {@code limit} due events as processing and returns them, at most one per connection.
+     * Rows locked by a concurrent claim are skipped rather than waited for.
+     */
+    public List<ClaimedEvent> claimDue(int limit) {
+        return jdbcTemplate.query(
+                "WITH heads AS (" +
+                "    SELECT MIN(id) AS id FROM salt_edge_webhook_events " +
+                "    WHERE status IN ('PENDING', 'PROCESSING') GROUP BY connection_id" +
+                "), claimable AS (" +
+                "    SELECT e.id FROM salt_edge_webhook_events e JOIN heads h ON h.id = e.id " +
+                "    WHERE e.status = 'PENDING' AND e.next_attempt_at <= CURRENT_TIMESTAMP " +
+                "    ORDER BY e.id LIMIT ? FOR UPDATE OF e SKIP LOCKED" +
+                ") " +
+                "UPDATE salt_edge_webhook_events e SET status = 'PROCESSING', locked_at = CURRENT_TIMESTAMP, " +
+                "attempts = e.attempts + 1 " +
+                "FROM claimable c WHERE e.id = c.id " +
+                "RETURNING e.id, e.connection_id, e.stage, e.payload::text AS payload, e.attempts, e.received_at",
+                (rs, rowNum) -> new ClaimedEvent(
+                        rs.getLong("id"),
+                        rs.getString("connection_id"),
+                        rs.getString("stage"),
+                        rs.getString("payload"),
+                        rs.getInt("attempts"),
+                        rs.getObject("received_at", OffsetDateTime.class)),
+                limit);
+    }
+
+    public void markDone(long id) {
+        jdbcTemplate.update(
+                "UPDATE salt_edge_webhook_events SET status = 'DONE', processed_at = CURRENT_TIMESTAMP, " +
+                "locked_at = NULL, last_error = NULL WHERE id = ?",
+                id);
+    }
+
+    public void markRetry(long id, OffsetDateTime nextAttemptAt, String error) {
+        jdbcTemplate.update(
+                "UPDATE salt_edge_webhook_events SET status = 'PENDING', next_attempt_at = ?, locked_at = NULL, " +
+                "last_error = ? WHERE id = ?",
+                Timestamp.from(nextAttemptAt.toInstant()), error, id);
+    }
+
+    public void markFailed(long id, String error) {
+        jdbcTemplate.update(
+                "UPDATE salt_edge_webhook_events SET status = 'FAILED', processed_at = CURRENT_TIMESTAMP, " +
+                "locked_at = NULL, last_error = ? WHERE id = ?",
+                error, id);
+    }
+
+    /**
+     * Puts events left in processing by a worker or instance that stopped back into the queue.
+     */
+    public int releaseStale(Duration lockTimeout) {
+        return jdbcTemplate.update(
+                "UPDATE salt_edge_webhook_events SET status = 'PENDING', locked_at = NULL " +
+                "WHERE status = 'PROCESSING' AND locked_at < ?",
+                Timestamp.from(OffsetDateTime.now(ZoneOffset.UTC).minus(lockTimeout).toInstant()));
+    }
+
+    public int deleteProcessedBefore(OffsetDateTime cutoff) {
+        return jdbcTemplate.update(
+                "DELETE FROM salt_edge_webhook_events WHERE status = 'DONE' AND processed_at < ?",
+                Timestamp.from(cutoff.toInstant()));
+    }
+
+    public QueueDepth queueDepth() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FILTER (WHERE status = 'PENDING') AS pending, " +
+                "COUNT(*) FILTER (WHERE status = 'PROCESSING') AS processing, " +
+                "COUNT(*) FILTER (WHERE status = 'FAILED') AS failed, " +
+                "MIN(received_at) FILTER (WHERE status IN ('PENDING', 'PROCESSING')) AS oldest_open " +
+                "FROM salt_edge_webhook_events WHERE status <> 'DONE'",
+                (rs, rowNum) -> new QueueDepth(
+                        rs.getLong("pending"),
+                        rs.getLong("processing"),
+                        rs.getLong("failed"),
+                        rs.getObject("oldest_open", OffsetDateTime.class)));
+    }
+}
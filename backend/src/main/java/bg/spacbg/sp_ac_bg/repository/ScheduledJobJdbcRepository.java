@@ -0,0 +1,107 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Job leases and run history of the scheduled integration jobs.
+ */
+@Repository
+public class ScheduledJobJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ScheduledJobJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record JobRun(Long id, String jobName, String jobKey, String instanceId, String status,
+                         Integer itemsProcessed, String errorMessage, OffsetDateTime startedAt,
+                         OffsetDateTime finishedAt, Long durationMs) {
+    }
+
+    public record JobStats(String jobName, long runs, long failed, Long itemsProcessed, Double averageMs,
+                           Double p95Ms, Long maxMs) {
+    }
+
+    /**
+     * Takes the lease of a job for {@code lease}, unless another holder's lease has not expired yet.
+     */
+    public boolean tryLock(String jobName, String instanceId, Duration lease) {
+        int updated = jdbcTemplate.update(
+                "INSERT INTO scheduled_job_locks (job_name, locked_by, locked_at, locked_until) " +
+                "VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP + make_interval(secs => ?)) " +
+                "ON CONFLICT (job_name) DO UPDATE SET locked_by = EXCLUDED.locked_by, " +
+                "    locked_at = EXCLUDED.locked_at, locked_until = EXCLUDED.locked_until " +
+                "WHERE scheduled_job_locks.locked_until < CURRENT_TIMESTAMP",
+                jobName, instanceId, (double) lease.toSeconds());
+        return updated == 1;
+    }
+
+    public Long startRun(String jobName, String jobKey, String instanceId) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO scheduled_job_runs (job_name, job_key, instance_id, status, started_at) " +
+                "VALUES (?, ?, ?, 'RUNNING', CURRENT_TIMESTAMP) RETURNING id",
+                Long.class, jobName, jobKey, instanceId);
+    }
+
+    public void finishRun(Long runId, boolean succeeded, Integer itemsProcessed, String errorMessage,
+                          long durationMs) {
+        jdbcTemplate.update(
+                "UPDATE scheduled_job_runs SET status = ?, items_processed = ?, error_message = ?, " +
+                "finished_at = CURRENT_TIMESTAMP, duration_ms = ? WHERE id = ?",
+                succeeded ? "SUCCEEDED" : "FAILED", itemsProcessed, errorMessage, durationMs, runId);
+    }
+
+    /**
+     * Latest runs, of one job or of all jobs when {@code jobName} is null.
+     */
+    public List<JobRun> findRecentRuns(String jobName, int limit) {
+        return jdbcTemplate.query(
+                "SELECT id, job_name, job_key, instance_id, status, items_processed, error_message, started_at, " +
+                "finished_at, duration_ms FROM scheduled_job_runs " +
+                "WHERE (CAST(? AS VARCHAR) IS NULL OR job_name = ?) ORDER BY started_at DESC, id DESC LIMIT ?",
+                (rs, rowNum) -> new JobRun(
+                        rs.getLong("id"),
+                        rs.getString("job_name"),
+                        rs.getString("job_key"),
+                        rs.getString("instance_id"),
+                        rs.getString("status"),
+                        (Integer) rs.getObject("items_processed"),
+                        rs.getString("error_message"),
+                        rs.getObject("started_at", OffsetDateTime.class),
+                        rs.getObject("finished_at", OffsetDateTime.class),
+                        (Long) rs.getObject("duration_ms")),
+                jobName, jobName, limit);
+    }
+
+    /**
+     * Run count, failures, items and duration distribution per job for runs finished since {@code since}.
+     */
+    public List<JobStats> findStats(OffsetDateTime since) {
+        return jdbcTemplate.query(
+                "SELECT job_name, COUNT(*) AS runs, COUNT(*) FILTER (WHERE status = 'FAILED') AS failed, " +
+                "       SUM(items_processed) AS items, CAST(AVG(duration_ms) AS DOUBLE PRECISION) AS avg_ms, " +
+                "       percentile_cont(0.95) WITHIN GROUP (ORDER BY duration_ms) AS p95_ms, " +
+                "       MAX(duration_ms) AS max_ms " +
+                "FROM scheduled_job_runs WHERE started_at >= ? AND finished_at IS NOT NULL " +
+                "GROUP BY job_name ORDER BY job_name",
+                (rs, rowNum) -> new JobStats(
+                        rs.getString("job_name"),
+                        rs.getLong("runs"),
+                        rs.getLong("failed"),
+                        rs.getObject("items", Long.class),
+                        rs.getObject("avg_ms", Double.class),
+                        rs.getObject("p95_ms", Double.class),
+                        rs.getObject("max_ms", Long.class)),
+                since);
+    }
+
+    public int deleteRunsBefore(OffsetDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM scheduled_job_runs WHERE started_at < ?", cutoff);
+    }
+}
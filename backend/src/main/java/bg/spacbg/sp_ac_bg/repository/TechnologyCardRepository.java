@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +32,14 @@ public interface TechnologyCardRepository extends JpaRepository<TechnologyCardEn
            "ORDER BY tc.name")
     List<TechnologyCardEntity> findActiveByCompanyIdWithStages(@Param("companyId") Integer companyId);
 
+    @Query("SELECT DISTINCT tc FROM TechnologyCardEntity tc " +
+           "LEFT JOIN FETCH tc.stages " +
+           "WHERE tc.id IN :ids")
+    List<TechnologyCardEntity> findByIdInWithStages(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT tc.id, tc.updatedAt FROM TechnologyCardEntity tc WHERE tc.id IN :ids")
+    List<Object[]> findUpdatedAtByIdIn(@Param("ids") Collection<Integer> ids);
+
     @Query("SELECT COUNT(tc) FROM TechnologyCardEntity tc WHERE tc.company.id = :companyId")
     long countByCompanyId(@Param("companyId") Integer companyId);
 }
@@ -0,0 +1,13 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.VatConsistencyFindingEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface VatConsistencyFindingRepository extends JpaRepository<VatConsistencyFindingEntity, Integer> {
+
+    List<VatConsistencyFindingEntity> findByRun_IdOrderByAccountingDateAscEntryNumberAsc(Integer runId);
+}
@@ -0,0 +1,42 @@
+package bg.spacbg.sp_ac_bg.repository;
+
+import bg.spacbg.sp_ac_bg.model.entity.VatConsistencyRunEntity;
+import bg.spacbg.sp_ac_bg.model.enums.VatConsistencyRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Repository
+public interface VatConsistencyRunRepository extends JpaRepository<VatConsistencyRunEntity, Integer> {
+
+    List<VatConsistencyRunEntity> findByCompany_IdOrderByStartedAtDesc(Integer companyId);
+
+    boolean existsByCompany_IdAndStatus(Integer companyId, VatConsistencyRunStatus status);
+
+    // Findings of the replaced runs are removed by ON DELETE CASCADE
+    @Modifying
+    @Query("DELETE FROM VatConsistencyRunEntity r WHERE r.company.id = :companyId " +
+           "AND r.periodFrom = :periodFrom AND r.periodTo = :periodTo AND r.status <> :runningStatus")
+    int deleteFinishedRunsForPeriod(
+            @Param("companyId") Integer companyId,
+            @Param("periodFrom") LocalDate periodFrom,
+            @Param("periodTo") LocalDate periodTo,
+            @Param("runningStatus") VatConsistencyRunStatus runningStatus);
+
+    // Runs left RUNNING by a crashed or restarted instance; otherwise they would block their company for good
+    @Modifying
+    @Query("UPDATE VatConsistencyRunEntity r SET r.status = :failedStatus, r.errorMessage = :errorMessage, " +
+           "r.finishedAt = :now WHERE r.status = :runningStatus AND r.startedAt < :startedBefore")
+    int failStaleRuns(
+            @Param("runningStatus") VatConsistencyRunStatus runningStatus,
+            @Param("failedStatus") VatConsistencyRunStatus failedStatus,
+            @Param("startedBefore") OffsetDateTime startedBefore,
+            @Param("errorMessage") String errorMessage,
+            @Param("now") OffsetDateTime now);
+}
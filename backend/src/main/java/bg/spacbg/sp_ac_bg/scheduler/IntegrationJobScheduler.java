@@ -0,0 +1,198 @@
+package bg.spacbg.sp_ac_bg.scheduler;
+
+import bg.spacbg.sp_ac_bg.model.entity.BankProfileEntity;
+import bg.spacbg.sp_ac_bg.model.enums.BankConnectionType;
+import bg.spacbg.sp_ac_bg.repository.BankProfileRepository;
+import bg.spacbg.sp_ac_bg.repository.ScheduledJobJdbcRepository;
+import bg.spacbg.sp_ac_bg.service.ExchangeRateService;
+import bg.spacbg.sp_ac_bg.service.SaltEdgeService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduled integration jobs: the daily ECB rate fetch and the transaction sync of every Salt Edge bank profile.
+ *
+ * Both run through {@link ScheduledJobRunner}, so they start with jitter, run on one instance only and leave
+ * their history in {@code scheduled_job_runs}. The bank sync runs the profiles on a pool of
+ * {@code max-concurrent} threads; the job takes a permit before it hands over the next profile, so it waits
+ * for a free slot instead of queueing every profile at once. Each profile's sync is recorded as a run of its
+ * own. A cron of {@code "-"} switches a job off.
+ */
+@Component
+public class IntegrationJobScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(IntegrationJobScheduler.class);
+
+    static final String ECB_FETCH_JOB = "ecb-daily-fetch";
+    static final String BANK_SYNC_JOB = "bank-sync";
+    static final String BANK_SYNC_PROFILE_JOB = "bank-sync-profile";
+
+    @Value("${scheduled-jobs.zone:Europe/Sofia}")
+    private String zone;
+
+    @Value("${scheduled-jobs.history-retention-days:180}")
+    private int historyRetentionDays;
+
+    @Value("${scheduled-jobs.ecb-fetch.max-jitter-ms:300000}") // 5 minutes
+    private long ecbMaxJitterMs;
+
+    @Value("${scheduled-jobs.ecb-fetch.lock-lease-minutes:15}")
+    private long ecbLockLeaseMinutes;
+
+    @Value("${scheduled-jobs.bank-sync.max-jitter-ms:600000}") // 10 minutes
+    private long bankSyncMaxJitterMs;
+
+    @Value("${scheduled-jobs.bank-sync.lock-lease-minutes:120}")
+    private long bankSyncLockLeaseMinutes;
+
+    @Value("${scheduled-jobs.bank-sync.max-concurrent:3}")
+    private int maxConcurrentSyncs;
+
+    @Value("${scheduled-jobs.bank-sync.initial-days:30}")
+    private int initialSyncDays;
+
+    @Value("${scheduled-jobs.bank-sync.overlap-days:2}")
+    private int overlapDays;
+
+    private final ScheduledJobRunner jobRunner;
+    private final ScheduledJobJdbcRepository jobRepository;
+    private final ExchangeRateService exchangeRateService;
+    private final SaltEdgeService saltEdgeService;
+    private final BankProfileRepository bankProfileRepository;
+
+    private ExecutorService syncPool;
+    private Semaphore syncPermits;
+
+    public IntegrationJobScheduler(ScheduledJobRunner jobRunner,
+                                   ScheduledJobJdbcRepository jobRepository,
+                                   ExchangeRateService exchangeRateService,
+                                   SaltEdgeService saltEdgeService,
+                                   BankProfileRepository bankProfileRepository) {
+        this.jobRunner = jobRunner;
+        this.jobRepository = jobRepository;
+        this.exchangeRateService = exchangeRateService;
+        this.saltEdgeService = saltEdgeService;
+        this.bankProfileRepository = bankProfileRepository;
+    }
+
+    @PostConstruct
+    void startSyncPool() {
+        int threads = Math.max(1, maxConcurrentSyncs);
+        syncPermits = new Semaphore(threads);
+        syncPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bank-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopSyncPool() {
+        syncPool.shutdownNow();
+    }
+
+    // ECB publishes the reference rates around 16:00 CET on working days
+    @Scheduled(cron = "${scheduled-jobs.ecb-fetch.cron:0 15 17 * * MON-FRI}", zone = "${scheduled-jobs.zone:Europe/Sofia}")
+    public void scheduleEcbFetch() {
+        jobRunner.submit(ECB_FETCH_JOB, Duration.ofMillis(ecbMaxJitterMs), Duration.ofMinutes(ecbLockLeaseMinutes),
+                () -> exchangeRateService.fetchEcbRates(null).size());
+    }
+
+    @Scheduled(cron = "${scheduled-jobs.bank-sync.cron:0 0 6-22/4 * * *}", zone = "${scheduled-jobs.zone:Europe/Sofia}")
+    public void scheduleBankSync() {
+        jobRunner.submit(BANK_SYNC_JOB, Duration.ofMillis(bankSyncMaxJitterMs),
+                Duration.ofMinutes(bankSyncLockLeaseMinutes), this::syncBankProfiles);
+    }
+
+    @Scheduled(cron = "0 45 3 * * *")
+    public void purgeRunHistory() {
+        int deleted = jobRepository.deleteRunsBefore(OffsetDateTime.now().minusDays(historyRetentionDays));
+        log.info("Deleted {} scheduled job runs older than {} days", deleted, historyRetentionDays);
+    }
+
+    /**
+     * Syncs every active Salt Edge profile from its last sync, less {@code overlap-days} for transactions the
+     * bank posts late, and returns the number of new transactions.
+     */
+    int syncBankProfiles() throws InterruptedException {
+        List<BankProfileEntity> profiles = bankProfileRepository
+                .findByConnectionTypeAndIsActiveTrueAndSaltEdgeAccountIdIsNotNull(BankConnectionType.SALT_EDGE);
+        LocalDate today = LocalDate.now(ZoneId.of(zone));
+        AtomicInteger transactions = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> syncs = new ArrayList<>(profiles.size());
+
+        try {
+            for (BankProfileEntity profile : profiles) {
+                if (!profile.isSaltEdgeActive() || profileConsentExpired(profile)) {
+                    log.debug("Bank profile {} skipped: status {}, consent until {}", profile.getId(),
+                            profile.getSaltEdgeStatus(), profile.getSaltEdgeConsentExpiresAt());
+                    continue;
+                }
+                Integer profileId = profile.getId();
+                LocalDate from = profile.getSaltEdgeLastSyncAt() != null
+                        ? profile.getSaltEdgeLastSyncAt().atZoneSameInstant(ZoneId.of(zone)).toLocalDate()
+                                .minusDays(overlapDays)
+                        : today.minusDays(initialSyncDays);
+
+                syncPermits.acquire();
+                try {
+                    syncs.add(syncPool.submit(() -> {
+                        try {
+                            boolean succeeded = jobRunner.record(BANK_SYNC_PROFILE_JOB, String.valueOf(profileId),
+                                    () -> {
+                                        int count = saltEdgeService.syncTransactions(profileId, from, today).size();
+                                        transactions.addAndGet(count);
+                                        return count;
+                                    });
+                            if (!succeeded) {
+                                failed.incrementAndGet();
+                            }
+                        } finally {
+                            syncPermits.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    syncPermits.release();
+                    throw e;
+                }
+            }
+            for (Future<?> sync : syncs) {
+                sync.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Синхронизацията на банкова сметка прекъсна", e.getCause());
+        } catch (InterruptedException e) {
+            syncs.forEach(sync -> sync.cancel(true));
+            throw e;
+        }
+
+        if (failed.get() > 0) {
+            throw new IllegalStateException("Неуспешна синхронизация на " + failed.get() + " от "
+                    + syncs.size() + " банкови сметки");
+        }
+        return transactions.get();
+    }
+
+    private static boolean profileConsentExpired(BankProfileEntity profile) {
+        return profile.getSaltEdgeConsentExpiresAt() != null && !profile.isConsentValid();
+    }
+}
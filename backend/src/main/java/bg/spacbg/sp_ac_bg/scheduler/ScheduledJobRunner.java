@@ -0,0 +1,128 @@
+package bg.spacbg.sp_ac_bg.scheduler;
+
+import bg.spacbg.sp_ac_bg.repository.ScheduledJobJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs scheduled jobs once across all instances and records every run in {@code scheduled_job_runs}.
+ *
+ * A job is started after a random delay of up to its jitter, so instances and upstreams are not hit at the
+ * same second, on a pool of its own rather than on the shared scheduler thread. The instance that takes the
+ * job's lease in {@code scheduled_job_locks} runs it; the others skip it. The lease is kept until it expires,
+ * also after the run, so an instance whose jittered start comes later skips the same firing. It therefore has to
+ * be longer than the jitter plus the longest expected run and shorter than the interval between firings.
+ */
+@Component
+public class ScheduledJobRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduledJobRunner.class);
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    @Value("${scheduled-jobs.runner-threads:2}")
+    private int runnerThreads;
+
+    private final ScheduledJobJdbcRepository jobRepository;
+    private final String instanceId;
+
+    private ScheduledExecutorService jobPool;
+
+    public ScheduledJobRunner(ScheduledJobJdbcRepository jobRepository) {
+        this.jobRepository = jobRepository;
+        this.instanceId = hostName() + ":" + ProcessHandle.current().pid();
+    }
+
+    @PostConstruct
+    void startPool() {
+        jobPool = Executors.newScheduledThreadPool(Math.max(1, runnerThreads), runnable -> {
+            Thread thread = new Thread(runnable, "scheduled-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopPool() {
+        // A run cut short stays RUNNING in the history; its lease expires on its own
+        jobPool.shutdownNow();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Starts {@code job} after a random delay of up to {@code maxJitter}, if no other instance holds its lease.
+     * The job returns the number of items it processed.
+     */
+    public void submit(String jobName, Duration maxJitter, Duration lease, Callable<Integer> job) {
+        long delayMs = maxJitter.toMillis() > 0 ? ThreadLocalRandom.current().nextLong(maxJitter.toMillis() + 1) : 0;
+        log.debug("Job {} starts in {} ms", jobName, delayMs);
+        jobPool.schedule(() -> runExclusive(jobName, lease, job), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code job} now if this instance gets its lease. Returns {@code false} when the job was skipped.
+     */
+    public boolean runExclusive(String jobName, Duration lease, Callable<Integer> job) {
+        if (!jobRepository.tryLock(jobName, instanceId, lease)) {
+            log.info("Job {} skipped, another instance holds its lease", jobName);
+            return false;
+        }
+        record(jobName, null, job);
+        return true;
+    }
+
+    /**
+     * Runs {@code job} and stores its outcome, item count and duration. Failures are recorded and logged, not
+     * rethrown. Returns whether the job succeeded.
+     */
+    public boolean record(String jobName, String jobKey, Callable<Integer> job) {
+        Long runId = jobRepository.startRun(jobName, jobKey, instanceId);
+        long started = System.nanoTime();
+        try {
+            Integer items = job.call();
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            jobRepository.finishRun(runId, true, items, null, durationMs);
+            log.info("Job {}{} finished in {} ms, {} items", jobName, jobKey == null ? "" : " [" + jobKey + "]",
+                    durationMs, items);
+            return true;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            jobRepository.finishRun(runId, false, null, errorText(e), durationMs);
+            log.error("Job {}{} failed after {} ms", jobName, jobKey == null ? "" : " [" + jobKey + "]",
+                    durationMs, e);
+            return false;
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    private static String errorText(Exception e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
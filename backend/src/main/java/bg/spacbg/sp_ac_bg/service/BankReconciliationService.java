@@ -0,0 +1,22 @@
+package bg.spacbg.sp_ac_bg.service;
+
+import bg.spacbg.sp_ac_bg.model.dto.BankReconciliationProposalDto;
+import bg.spacbg.sp_ac_bg.model.dto.BankReconciliationResultDto;
+import bg.spacbg.sp_ac_bg.model.dto.input.ConfirmBankMatchInput;
+
+import java.util.List;
+
+public interface BankReconciliationService {
+
+    /**
+     * Proposes the open receivable or payable settled by each unprocessed line of a bank import.
+     * Nothing is written; the proposals are confirmed with {@link #confirmMatches}.
+     */
+    List<BankReconciliationProposalDto> proposeMatches(Integer bankImportId);
+
+    /**
+     * Books a clearing journal entry for every confirmed match and marks the statement lines as processed.
+     */
+    BankReconciliationResultDto confirmMatches(Integer bankImportId, List<ConfirmBankMatchInput> matches,
+                                               Integer userId);
+}
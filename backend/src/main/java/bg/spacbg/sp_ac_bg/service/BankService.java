@@ -1,8 +1,11 @@
 package bg.spacbg.sp_ac_bg.service;
 
+import bg.spacbg.sp_ac_bg.model.dto.input.CreateBankPostingRuleInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.CreateBankProfileInput;
+import bg.spacbg.sp_ac_bg.model.dto.input.UpdateBankPostingRuleInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.UpdateBankProfileInput;
 import bg.spacbg.sp_ac_bg.model.dto.saltedge.SaltEdgeConnectSession;
+import bg.spacbg.sp_ac_bg.model.entity.AiBankAccountingSettingEntity;
 import bg.spacbg.sp_ac_bg.model.entity.BankImportEntity;
 import bg.spacbg.sp_ac_bg.model.entity.BankProfileEntity;
 import bg.spacbg.sp_ac_bg.model.entity.SaltEdgeTransactionEntity;
@@ -20,6 +23,12 @@ public interface BankService {
     BankProfileEntity updateProfile(Integer id, UpdateBankProfileInput input);
     boolean deleteProfile(Integer id);
 
+    // Bank posting rules (automatic booking of bank transactions)
+    List<AiBankAccountingSettingEntity> findPostingRulesByCompanyId(Integer companyId);
+    AiBankAccountingSettingEntity createPostingRule(CreateBankPostingRuleInput input);
+    AiBankAccountingSettingEntity updatePostingRule(Integer id, UpdateBankPostingRuleInput input);
+    boolean deletePostingRule(Integer id);
+
     // Bank Import operations (File-based)
     List<BankImportEntity> findImportsByCompanyId(Integer companyId);
     List<BankImportEntity> findImportsByProfileId(Integer bankProfileId);
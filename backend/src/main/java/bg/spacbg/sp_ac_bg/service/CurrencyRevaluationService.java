@@ -0,0 +1,21 @@
+package bg.spacbg.sp_ac_bg.service;
+
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyRevaluationRunEntity;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface CurrencyRevaluationService {
+
+    /**
+     * Starts a background revaluation of the foreign currency balances as of the given date.
+     * One run is created per company and the companies are processed in parallel; each run books at most one
+     * revaluation journal entry.
+     *
+     * @param companyId company to revalue, or null for all active companies with revaluation settings
+     * @return the started runs (status RUNNING)
+     */
+    List<CurrencyRevaluationRunEntity> startRevaluation(Integer companyId, LocalDate revaluationDate, Integer userId);
+
+    List<CurrencyRevaluationRunEntity> findRunsByCompanyId(Integer companyId);
+}
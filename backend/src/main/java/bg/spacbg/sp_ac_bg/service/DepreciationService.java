@@ -29,6 +29,23 @@ public interface DepreciationService {
      */
     DepreciationCalculationResult calculateBulkDepreciation(Integer companyId, LocalDate period);
 
+    /**
+     * Calculate all missing periods up to a period for all active assets in a company in one pass
+     * @param companyId Company ID
+     * @param toPeriod Last period to calculate (inclusive)
+     * @return Result with calculated depreciations for all caught-up periods and any errors
+     */
+    DepreciationCalculationResult catchUpDepreciation(Integer companyId, LocalDate toPeriod);
+
+    /**
+     * Forecast monthly depreciation of all active assets without persisting anything
+     * @param companyId Company ID
+     * @param fromPeriod First forecast period
+     * @param months Number of forecast months
+     * @return Forecast entries ordered by period and asset name
+     */
+    List<DepreciationForecastEntry> getDepreciationForecast(Integer companyId, LocalDate fromPeriod, int months);
+
     /**
      * Get depreciation journal entries for a company and period
      * @param companyId Company ID
@@ -81,6 +98,20 @@ public interface DepreciationService {
             String errorMessage
     ) {}
 
+    /**
+     * Forecast depreciation of an asset for a single period
+     */
+    record DepreciationForecastEntry(
+            Integer fixedAssetId,
+            String assetName,
+            String inventoryNumber,
+            LocalDate period,
+            java.math.BigDecimal accountingDepreciationAmount,
+            java.math.BigDecimal accountingBookValueAfter,
+            java.math.BigDecimal taxDepreciationAmount,
+            java.math.BigDecimal taxBookValueAfter
+    ) {}
+
     /**
      * Calculated period info
      */
@@ -1,8 +1,11 @@
 package bg.spacbg.sp_ac_bg.service;
 
+import bg.spacbg.sp_ac_bg.model.dto.EcbBackfillResultDto;
 import bg.spacbg.sp_ac_bg.model.dto.input.CreateExchangeRateInput;
 import bg.spacbg.sp_ac_bg.model.entity.ExchangeRateEntity;
+import bg.spacbg.sp_ac_bg.model.enums.EcbRateFeed;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -13,6 +16,8 @@ public interface ExchangeRateService {
     List<ExchangeRateEntity> findByFromAndTo(Integer fromCurrencyId, Integer toCurrencyId);
     Optional<ExchangeRateEntity> findByCodesAndDate(String fromCode, String toCode, LocalDate date);
     Optional<ExchangeRateEntity> findLatest(String fromCode, String toCode);
+    Optional<BigDecimal> findRateAsOf(String fromCode, String toCode, LocalDate date);
     ExchangeRateEntity create(CreateExchangeRateInput input);
     List<ExchangeRateEntity> fetchEcbRates(LocalDate date);
+    EcbBackfillResultDto backfillEcbRates(EcbRateFeed feed);
 }
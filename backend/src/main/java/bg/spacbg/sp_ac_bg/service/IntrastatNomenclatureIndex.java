@@ -0,0 +1,147 @@
+package bg.spacbg.sp_ac_bg.service;
+
+import bg.spacbg.sp_ac_bg.repository.IntrastatNomenclatureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * In-memory lookup over the active CN nomenclature.
+ *
+ * The list is loaded once with a flat projection and kept as parallel arrays sorted by id, so a
+ * lookup is a binary search with no database access. The snapshot is immutable and swapped atomically on
+ * {@link #refresh()}, so readers never need a lock.
+ *
+ * Each snapshot keeps the count and last update time of the active codes it was built from.
+ * {@link #refreshIfChanged()} compares them with the database and reloads only when codes were added, edited or
+ * deactivated since.
+ */
+@Component
+public class IntrastatNomenclatureIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(IntrastatNomenclatureIndex.class);
+
+    public record Nomenclature(Integer id, String cnCode, String description, String unitOfMeasure) {
+    }
+
+    private final IntrastatNomenclatureRepository nomenclatureRepository;
+
+    private volatile Snapshot snapshot;
+
+    public IntrastatNomenclatureIndex(IntrastatNomenclatureRepository nomenclatureRepository) {
+        this.nomenclatureRepository = nomenclatureRepository;
+    }
+
+    public Optional<Nomenclature> findById(Integer id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Snapshot current = snapshot();
+        int index = Arrays.binarySearch(current.ids, id);
+        return index >= 0 ? Optional.of(current.entries[index]) : Optional.empty();
+    }
+
+    public int size() {
+        return snapshot().entries.length;
+    }
+
+    public synchronized void refresh() {
+        // The version is read first, so a change made while the rows load triggers another reload next time
+        Version version = currentVersion();
+        List<Object[]> rows = nomenclatureRepository.findActiveIndexRows();
+        Nomenclature[] entries = new Nomenclature[rows.size()];
+        for (int i = 0; i < entries.length; i++) {
+            Object[] row = rows.get(i);
+            entries[i] = new Nomenclature((Integer) row[0], normalize((String) row[1]), (String) row[2], (String) row[3]);
+        }
+        snapshot = new Snapshot(entries, version);
+        log.info("Intrastat nomenclature index loaded with {} codes", entries.length);
+    }
+
+    /**
+     * Reloads the index when the active nomenclature in the database differs from the loaded one.
+     */
+    public void refreshIfChanged() {
+        Snapshot current = snapshot;
+        if (current == null || !current.version.equals(currentVersion())) {
+            synchronized (this) {
+                if (snapshot == current) {
+                    refresh();
+                }
+            }
+        }
+    }
+
+    private Version currentVersion() {
+        List<Object[]> rows = nomenclatureRepository.findActiveIndexVersion();
+        Object[] row = rows.isEmpty() ? new Object[2] : rows.get(0);
+        long count = row[0] != null ? ((Number) row[0]).longValue() : 0L;
+        return new Version(count, (OffsetDateTime) row[1]);
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static String normalize(String cnCode) {
+        if (cnCode == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(cnCode.length());
+        for (int i = 0; i < cnCode.length(); i++) {
+            char c = cnCode.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private record Version(long count, OffsetDateTime lastUpdated) {
+
+        @Override
+        public boolean equals(Object other) {
+            // Compared by instant, so the same stamp read back with another offset is not a change
+            return other instanceof Version version && count == version.count
+                    && (lastUpdated == null ? version.lastUpdated == null
+                        : version.lastUpdated != null && lastUpdated.isEqual(version.lastUpdated));
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, lastUpdated != null ? lastUpdated.toInstant() : null);
+        }
+    }
+
+    private static final class Snapshot {
+        private final Nomenclature[] entries;
+        private final int[] ids;
+        private final Version version;
+
+        private Snapshot(Nomenclature[] entries, Version version) {
+            this.version = version;
+            Arrays.sort(entries, Comparator.comparing(Nomenclature::id));
+            this.entries = entries;
+            this.ids = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                ids[i] = entries[i].id();
+            }
+        }
+    }
+}
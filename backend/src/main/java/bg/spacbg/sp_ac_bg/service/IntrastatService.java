@@ -0,0 +1,30 @@
+package bg.spacbg.sp_ac_bg.service;
+
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatDeclarationEntity;
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatDeclarationItemEntity;
+import bg.spacbg.sp_ac_bg.model.enums.DeclarationType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public interface IntrastatService {
+
+    /**
+     * Computes the declaration for one month from the posted entry lines on the mapped accounts.
+     * An existing DRAFT declaration for the same period is recalculated in place.
+     */
+    IntrastatDeclarationEntity generateDeclaration(Integer companyId, Integer year, Integer month,
+                                                   DeclarationType declarationType, Integer userId);
+
+    List<IntrastatDeclarationEntity> findDeclarationsByCompanyId(Integer companyId);
+
+    IntrastatDeclarationEntity findDeclarationById(Integer id);
+
+    List<IntrastatDeclarationItemEntity> findItemsByDeclarationId(Integer declarationId);
+
+    /**
+     * Writes the declaration in INSTAT/XML format directly to the given stream.
+     */
+    void writeDeclarationXml(Integer declarationId, OutputStream out) throws IOException;
+}
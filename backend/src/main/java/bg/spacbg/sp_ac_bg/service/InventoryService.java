@@ -4,6 +4,7 @@ import bg.spacbg.sp_ac_bg.model.dto.input.InventoryMovementFilter;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.AverageCostInfoDto;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.CorrectionNeededDto;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.QuantityTurnoverDto;
+import bg.spacbg.sp_ac_bg.model.dto.output.InventoryMovementsPage;
 import bg.spacbg.sp_ac_bg.model.entity.InventoryBalanceEntity;
 import bg.spacbg.sp_ac_bg.model.entity.InventoryMovementEntity;
 
@@ -27,6 +28,13 @@ public interface InventoryService {
      */
     List<QuantityTurnoverDto> getQuantityTurnover(Integer companyId, LocalDate fromDate, LocalDate toDate);
 
+    /**
+     * Разбивка на ред от оборотната ведомост - движенията по сметката в периода, по страници
+     */
+    InventoryMovementsPage getQuantityTurnoverMovements(Integer companyId, Integer accountId,
+                                                        LocalDate fromDate, LocalDate toDate,
+                                                        Integer offset, Integer limit);
+
     // ========== Средно претеглена цена (СПЦ) ==========
 
     /**
@@ -34,6 +42,14 @@ public interface InventoryService {
      */
     AverageCostInfoDto getAverageCost(Integer companyId, Integer accountId, LocalDate asOfDate);
 
+    // ========== Снимки към края на период ==========
+
+    /**
+     * Записва количеството, стойността и СПЦ на всички материални сметки към края на приключения период
+     * с една заявка. Снимките са начална точка за справките към минала дата.
+     */
+    int createPeriodSnapshot(Integer companyId, LocalDate periodEnd);
+
     // ========== Корекции на СПЦ ==========
 
     /**
@@ -41,6 +57,13 @@ public interface InventoryService {
      */
     List<CorrectionNeededDto> checkRetroactiveCorrections(Integer companyId, Integer accountId, LocalDate newEntryDate);
 
+    /**
+     * Прилага корекциите на СПЦ след ретроактивно заприхождаване в една транзакция:
+     * преизчислява сметката веднъж от датата му, осчетоводява разликите в стойността на изписванията
+     * (по един журнален запис на месец) и записва редовете в average_cost_corrections.
+     */
+    List<CorrectionNeededDto> applyRetroactiveCorrections(Integer triggeringMovementId, Integer userId);
+
     // ========== Обработка на движения ==========
 
     /**
@@ -53,4 +76,10 @@ public interface InventoryService {
      * Изтрива движенията за journal entry (при отосчетоводяване)
      */
     void deleteMovementsByJournalEntryId(Integer journalEntryId);
+
+    /**
+     * Преизчислява записаните текущи салда на движенията в реда (дата, id) от началото на историята.
+     * Без accountId обработва всички сметки с движения. Връща броя на обработените сметки.
+     */
+    int rebuildRunningBalances(Integer companyId, Integer accountId);
 }
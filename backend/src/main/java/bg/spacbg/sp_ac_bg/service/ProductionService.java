@@ -4,7 +4,9 @@ import bg.spacbg.sp_ac_bg.model.dto.input.*;
 import bg.spacbg.sp_ac_bg.model.entity.ProductionBatchEntity;
 import bg.spacbg.sp_ac_bg.model.entity.ProductionBatchStageEntity;
 import bg.spacbg.sp_ac_bg.model.entity.TechnologyCardEntity;
+import bg.spacbg.sp_ac_bg.model.enums.ProductionBatchStatus;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -56,6 +58,18 @@ public interface ProductionService {
 
     ProductionBatchStageEntity cancelProductionStage(Integer stageId);
 
+    // ========== Costing ==========
+
+    /**
+     * Material cost of a batch from the quantities of its stages and the current average cost of their input accounts
+     */
+    ProductionBatchCost calculateProductionBatchCost(Integer productionBatchId);
+
+    /**
+     * Material cost of all batches of a company, optionally limited to a status; batches are costed in parallel
+     */
+    List<ProductionBatchCost> calculateProductionBatchCosts(Integer companyId, ProductionBatchStatus status);
+
     // ========== Statistics ==========
 
     long countTechnologyCardsByCompanyId(Integer companyId);
@@ -63,4 +77,30 @@ public interface ProductionService {
     long countProductionBatchesByCompanyId(Integer companyId);
 
     long countActiveProductionBatchesByCompanyId(Integer companyId);
+
+    /**
+     * Cost of a production batch
+     */
+    record ProductionBatchCost(
+            Integer productionBatchId,
+            String batchNumber,
+            Integer technologyCardId,
+            BigDecimal outputQuantity,
+            BigDecimal materialCost,
+            BigDecimal unitCost,
+            List<ProductionStageCost> stages
+    ) {}
+
+    /**
+     * Cost of the input consumed by a single stage of a production batch
+     */
+    record ProductionStageCost(
+            Integer technologyCardStageId,
+            Integer stageOrder,
+            String name,
+            Integer inputAccountId,
+            BigDecimal quantity,
+            BigDecimal averageCost,
+            BigDecimal cost
+    ) {}
 }
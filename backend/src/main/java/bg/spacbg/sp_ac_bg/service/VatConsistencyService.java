@@ -0,0 +1,23 @@
+package bg.spacbg.sp_ac_bg.service;
+
+import bg.spacbg.sp_ac_bg.model.entity.VatConsistencyFindingEntity;
+import bg.spacbg.sp_ac_bg.model.entity.VatConsistencyRunEntity;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface VatConsistencyService {
+
+    /**
+     * Starts a background VAT consistency check for the given period.
+     * One run is created per company and the companies are processed in parallel.
+     *
+     * @param companyId company to check, or null for all active companies
+     * @return the started runs (status RUNNING)
+     */
+    List<VatConsistencyRunEntity> startCheck(Integer companyId, LocalDate periodFrom, LocalDate periodTo);
+
+    List<VatConsistencyRunEntity> findRunsByCompanyId(Integer companyId);
+
+    List<VatConsistencyFindingEntity> findFindingsByRunId(Integer runId);
+}
@@ -2,19 +2,24 @@ package bg.spacbg.sp_ac_bg.service;
 
 import bg.spacbg.sp_ac_bg.model.entity.*;
 import bg.spacbg.sp_ac_bg.model.enums.VatReturnStatus;
+import bg.spacbg.sp_ac_bg.repository.EntryLineRepository;
 import bg.spacbg.sp_ac_bg.repository.JournalEntryRepository;
 import bg.spacbg.sp_ac_bg.repository.VatReturnRepository;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
+import jakarta.persistence.EntityManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.awt.Color;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class VatPdfExportService {
@@ -24,175 +29,181 @@ public class VatPdfExportService {
     private static final Color ROW_ALT_COLOR = new Color(245, 245, 245);
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
+    // Rows are handed to the document in chunks of roughly one landscape page,
+    // so the table never holds more than this many rows in memory
+    private static final int ROWS_PER_CHUNK = 40;
+
+    // Use CP1251 encoding for Cyrillic support; the BaseFont is parsed once and shared by all exports
+    private static final BaseFont BASE_FONT = loadBaseFont();
+    private static final Font TITLE_FONT = createFont(16, Font.BOLD, null);
+    private static final Font HEADER_FONT = createFont(8, Font.BOLD, HEADER_TEXT_COLOR);
+    private static final Font CELL_FONT = createFont(7, Font.NORMAL, null);
+    private static final Font TOTAL_FONT = createFont(8, Font.BOLD, null);
+
     private final VatReturnRepository vatReturnRepository;
     private final JournalEntryRepository journalEntryRepository;
-    private Font headerFont;
-    private Font titleFont;
-    private Font cellFont;
-    private Font totalFont;
+    private final EntryLineRepository entryLineRepository;
+    private final EntityManager entityManager;
 
     public VatPdfExportService(VatReturnRepository vatReturnRepository,
-                               JournalEntryRepository journalEntryRepository) {
+                               JournalEntryRepository journalEntryRepository,
+                               EntryLineRepository entryLineRepository,
+                               EntityManager entityManager) {
         this.vatReturnRepository = vatReturnRepository;
         this.journalEntryRepository = journalEntryRepository;
-        initFonts();
+        this.entryLineRepository = entryLineRepository;
+        this.entityManager = entityManager;
     }
 
-    private void initFonts() {
+    private static BaseFont loadBaseFont() {
         try {
-            // Use CP1251 encoding for Cyrillic support
-            BaseFont bf = BaseFont.createFont(BaseFont.HELVETICA, "CP1251", BaseFont.NOT_EMBEDDED);
-            titleFont = new Font(bf, 16, Font.BOLD);
-            headerFont = new Font(bf, 8, Font.BOLD, HEADER_TEXT_COLOR);
-            cellFont = new Font(bf, 7, Font.NORMAL);
-            totalFont = new Font(bf, 8, Font.BOLD);
+            return BaseFont.createFont(BaseFont.HELVETICA, "CP1251", BaseFont.NOT_EMBEDDED);
         } catch (Exception e) {
-            // Fallback
-            titleFont = new Font(Font.HELVETICA, 16, Font.BOLD);
-            headerFont = new Font(Font.HELVETICA, 8, Font.BOLD, HEADER_TEXT_COLOR);
-            cellFont = new Font(Font.HELVETICA, 7, Font.NORMAL);
-            totalFont = new Font(Font.HELVETICA, 8, Font.BOLD);
+            // Fallback to the built-in Helvetica
+            return null;
         }
     }
 
+    private static Font createFont(float size, int style, Color color) {
+        if (BASE_FONT != null) {
+            return new Font(BASE_FONT, size, style, color);
+        }
+        return new Font(Font.HELVETICA, size, style, color);
+    }
+
+    /**
+     * Streams the purchase journal (Дневник за Покупки) to the given output.
+     * Column totals are computed with an aggregate query up front, then the entries are
+     * read as a cursor and written in page-sized table chunks.
+     */
     @Transactional(readOnly = true)
-    public byte[] exportPokupkiPdf(Integer returnId) {
-        VatReturnEntity vatReturn = vatReturnRepository.findById(returnId)
-                .orElseThrow(() -> new IllegalArgumentException("ДДС декларацията не е намерена: " + returnId));
+    public void writePokupkiPdf(Integer returnId, OutputStream out) {
+        VatReturnEntity vatReturn = findCalculatedReturn(returnId);
+        Integer companyId = vatReturn.getCompany().getId();
+        LocalDate fromDate = vatReturn.getPeriodFrom();
+        LocalDate toDate = vatReturn.getPeriodTo();
+
+        BigDecimal totalCol9 = BigDecimal.ZERO;
+        BigDecimal totalCol10 = BigDecimal.ZERO;
+        BigDecimal totalCol11 = BigDecimal.ZERO;
+        for (Object[] row : entryLineRepository.sumPurchaseJournalAmountsByOperation(companyId, fromDate, toDate)) {
+            BigDecimal baseAmount = (BigDecimal) row[1];
+            BigDecimal vatAmount = (BigDecimal) row[2];
+            if (isPurchaseWithoutTaxCredit((String) row[0])) {
+                totalCol9 = totalCol9.add(baseAmount);
+            } else {
+                totalCol10 = totalCol10.add(baseAmount);
+                totalCol11 = totalCol11.add(vatAmount);
+            }
+        }
 
-        if (vatReturn.getStatus() != VatReturnStatus.CALCULATED) {
-            throw new IllegalStateException("ДДС декларацията трябва да е в статус 'Изчислена'");
+        JournalLayout layout = new JournalLayout(
+                new float[]{25f, 25f, 70f, 55f, 80f, 150f, 70f},
+                new String[]{
+                        "кл. 1\n№ по ред", "кл. 3\nВид", "кл. 4\nДокумент номер", "кл. 5\nДата",
+                        "кл. 6\nНомер на контр.доставчик", "кл. 7\nИме на контрагента(доставчик)",
+                        "кл. 8\nВид на стоката услугата"
+                });
+        layout.addAmountColumn(60f, "кл. 9\nДО без право на дан.кред", totalCol9);
+        layout.addAmountColumn(60f, "кл. 10\nДО с право на ПДК", totalCol10);
+        layout.addAmountColumn(50f, "кл. 11\nДДС с право на пълен данъчен кредит", totalCol11);
+
+        try (Stream<JournalEntryEntity> entries =
+                     journalEntryRepository.streamPurchaseEntriesByVatDate(companyId, fromDate, toDate)) {
+            writeJournal(out, vatReturn, "Дневник за Покупки", layout, entries,
+                    (entry, baseAmount, vatAmount) -> isPurchaseWithoutTaxCredit(entry.getVatPurchaseOperation())
+                            ? new BigDecimal[]{baseAmount, BigDecimal.ZERO, BigDecimal.ZERO}
+                            : new BigDecimal[]{BigDecimal.ZERO, baseAmount, vatAmount});
         }
+    }
 
-        List<JournalEntryEntity> entries = journalEntryRepository.findByCompanyIdAndVatDateBetween(
-                vatReturn.getCompany().getId(), vatReturn.getPeriodFrom(), vatReturn.getPeriodTo()
-        ).stream().filter(e -> e.getVatPurchaseOperation() != null).toList();
+    /**
+     * Streams the sales journal (Дневник за Продажби) to the given output.
+     * See {@link #writePokupkiPdf(Integer, OutputStream)} for the streaming scheme.
+     */
+    @Transactional(readOnly = true)
+    public void writeProdajbiPdf(Integer returnId, OutputStream out) {
+        VatReturnEntity vatReturn = findCalculatedReturn(returnId);
+        Integer companyId = vatReturn.getCompany().getId();
+        LocalDate fromDate = vatReturn.getPeriodFrom();
+        LocalDate toDate = vatReturn.getPeriodTo();
+
+        BigDecimal totalBase = BigDecimal.ZERO;
+        BigDecimal totalVat = BigDecimal.ZERO;
+        for (Object[] row : entryLineRepository.sumSalesJournalAmounts(companyId, fromDate, toDate)) {
+            totalBase = totalBase.add((BigDecimal) row[0]);
+            totalVat = totalVat.add((BigDecimal) row[1]);
+        }
 
-        return generatePokupkiPdf(vatReturn, entries);
+        JournalLayout layout = new JournalLayout(
+                new float[]{25f, 25f, 65f, 55f, 75f, 140f, 60f},
+                new String[]{
+                        "кл. 1\n№ по ред", "кл. 3\nВид", "кл. 4\nДокумент номер", "кл. 5\nДата",
+                        "кл. 6\nНомер на контр.доставчик", "кл. 7\nИме на контрагента(получател)",
+                        "кл. 8\nВид на стоката услугата"
+                });
+        // For prodajbi - columns 9, 10 are totals, 11, 12 are 20% base and vat (assuming all are 20%)
+        layout.addAmountColumn(55f, "кл. 9\nОбщ размер на ДО за облагане с ДДС", totalBase);
+        layout.addAmountColumn(50f, "кл. 10\nВсичко начислен ДДС", totalVat);
+        layout.addAmountColumn(55f, "кл. 11\nДО на обл.дост. 20%", totalBase);
+        layout.addAmountColumn(50f, "кл. 12\nНачислен ДДС 20%", totalVat);
+
+        try (Stream<JournalEntryEntity> entries =
+                     journalEntryRepository.streamSalesEntriesByVatDate(companyId, fromDate, toDate)) {
+            writeJournal(out, vatReturn, "Дневник за Продажби", layout, entries,
+                    (entry, baseAmount, vatAmount) -> new BigDecimal[]{baseAmount, vatAmount, baseAmount, vatAmount});
+        }
     }
 
-    @Transactional(readOnly = true)
-    public byte[] exportProdajbiPdf(Integer returnId) {
+    private VatReturnEntity findCalculatedReturn(Integer returnId) {
         VatReturnEntity vatReturn = vatReturnRepository.findById(returnId)
                 .orElseThrow(() -> new IllegalArgumentException("ДДС декларацията не е намерена: " + returnId));
 
         if (vatReturn.getStatus() != VatReturnStatus.CALCULATED) {
             throw new IllegalStateException("ДДС декларацията трябва да е в статус 'Изчислена'");
         }
+        return vatReturn;
+    }
 
-        List<JournalEntryEntity> entries = journalEntryRepository.findByCompanyIdAndVatDateBetween(
-                vatReturn.getCompany().getId(), vatReturn.getPeriodFrom(), vatReturn.getPeriodTo()
-        ).stream().filter(e -> e.getVatSalesOperation() != null).toList();
-
-        return generateProdajbiPdf(vatReturn, entries);
+    private boolean isPurchaseWithoutTaxCredit(String operation) {
+        return "пок30".equals(operation) || "пок32".equals(operation);
     }
 
-    private byte[] generatePokupkiPdf(VatReturnEntity vatReturn, List<JournalEntryEntity> entries) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    private void writeJournal(OutputStream out, VatReturnEntity vatReturn, String titleText,
+                              JournalLayout layout, Stream<JournalEntryEntity> entries,
+                              AmountColumns amountColumns) {
         Document document = new Document(PageSize.A4.rotate(), 20, 20, 30, 30);
 
         try {
-            PdfWriter.getInstance(document, baos);
+            PdfWriter.getInstance(document, out);
             document.open();
 
             CompanyEntity company = vatReturn.getCompany();
             String period = vatReturn.getPeriodMonth() + "/" + vatReturn.getPeriodYear();
 
             // Title
-            Paragraph title = new Paragraph("Дневник за Покупки", titleFont);
+            Paragraph title = new Paragraph(titleText, TITLE_FONT);
             title.setAlignment(Element.ALIGN_CENTER);
             document.add(title);
 
-            Paragraph companyInfo = new Paragraph(company.getName() + " " + company.getVatNumber(), titleFont);
+            Paragraph companyInfo = new Paragraph(company.getName() + " " + company.getVatNumber(), TITLE_FONT);
             companyInfo.setAlignment(Element.ALIGN_CENTER);
             document.add(companyInfo);
 
-            Paragraph periodPara = new Paragraph(period, titleFont);
+            Paragraph periodPara = new Paragraph(period, TITLE_FONT);
             periodPara.setAlignment(Element.ALIGN_CENTER);
             periodPara.setSpacingAfter(15);
             document.add(periodPara);
 
-            // Analyze which columns have non-zero values
-            List<PokupkiRow> rows = new ArrayList<>();
-            BigDecimal totalCol9 = BigDecimal.ZERO;
-            BigDecimal totalCol10 = BigDecimal.ZERO;
-            BigDecimal totalCol11 = BigDecimal.ZERO;
-
-            int lineNum = 1;
-            for (JournalEntryEntity entry : entries) {
-                CounterpartEntity counterpart = entry.getEntryLines().stream()
-                        .map(EntryLineEntity::getCounterpart).filter(Objects::nonNull).findFirst().orElse(null);
-
-                if (counterpart == null) continue;
-
-                BigDecimal baseAmount = entry.getEntryLines().stream()
-                        .map(EntryLineEntity::getBaseAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
-                BigDecimal vatAmount = entry.getEntryLines().stream()
-                        .map(EntryLineEntity::getVatAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                PokupkiRow row = new PokupkiRow();
-                row.lineNum = lineNum++;
-                row.docType = entry.getVatDocumentType() != null ? entry.getVatDocumentType() : "01";
-                row.docNumber = entry.getDocumentNumber();
-                row.docDate = entry.getDocumentDate() != null ? entry.getDocumentDate().format(DATE_FMT) : "";
-                row.vatNumber = counterpart.getVatNumber() != null ? counterpart.getVatNumber() : counterpart.getEik();
-                row.name = counterpart.getName();
-                row.description = entry.getDescription();
-
-                // Determine which columns based on operation type
-                String op = entry.getVatPurchaseOperation();
-                if ("пок30".equals(op) || "пок32".equals(op)) {
-                    row.col9 = baseAmount;
-                    row.col10 = BigDecimal.ZERO;
-                    row.col11 = BigDecimal.ZERO;
-                } else {
-                    row.col9 = BigDecimal.ZERO;
-                    row.col10 = baseAmount;
-                    row.col11 = vatAmount;
-                }
-
-                totalCol9 = totalCol9.add(row.col9);
-                totalCol10 = totalCol10.add(row.col10);
-                totalCol11 = totalCol11.add(row.col11);
-
-                rows.add(row);
-            }
-
-            // Determine which columns to show (non-zero totals)
-            boolean showCol9 = totalCol9.compareTo(BigDecimal.ZERO) != 0;
-            boolean showCol10 = totalCol10.compareTo(BigDecimal.ZERO) != 0;
-            boolean showCol11 = totalCol11.compareTo(BigDecimal.ZERO) != 0;
-
-            // Build dynamic column widths
-            List<Float> widths = new ArrayList<>(Arrays.asList(25f, 25f, 70f, 55f, 80f, 150f, 70f));
-            List<String> headers = new ArrayList<>(Arrays.asList(
-                    "кл. 1\n№ по ред", "кл. 3\nВид", "кл. 4\nДокумент номер", "кл. 5\nДата",
-                    "кл. 6\nНомер на контр.доставчик", "кл. 7\nИме на контрагента(доставчик)",
-                    "кл. 8\nВид на стоката услугата"
-            ));
-
-            if (showCol9) {
-                widths.add(60f);
-                headers.add("кл. 9\nДО без право на дан.кред");
-            }
-            if (showCol10) {
-                widths.add(60f);
-                headers.add("кл. 10\nДО с право на ПДК");
-            }
-            if (showCol11) {
-                widths.add(50f);
-                headers.add("кл. 11\nДДС с право на пълен данъчен кредит");
-            }
-
-            float[] widthArray = new float[widths.size()];
-            for (int i = 0; i < widths.size(); i++) widthArray[i] = widths.get(i);
-
-            PdfPTable table = new PdfPTable(widthArray);
+            // Incomplete table: every document.add() writes the finished rows and drops them from memory
+            PdfPTable table = new PdfPTable(layout.widths());
             table.setWidthPercentage(100);
+            table.setHeaderRows(1);
+            table.setComplete(false);
 
-            // Header row
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Phrase(header, headerFont));
+            // Header row (repeated on every page)
+            for (String header : layout.headers) {
+                PdfPCell cell = new PdfPCell(new Phrase(header, HEADER_FONT));
                 cell.setBackgroundColor(HEADER_BG_COLOR);
                 cell.setHorizontalAlignment(Element.ALIGN_CENTER);
                 cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
@@ -201,78 +212,10 @@ public class VatPdfExportService {
             }
 
             // Data rows
-            int rowIndex = 0;
-            for (PokupkiRow row : rows) {
-                Color rowColor = (rowIndex++ % 2 == 0) ? Color.WHITE : ROW_ALT_COLOR;
-
-                addCell(table, String.valueOf(row.lineNum), cellFont, rowColor, Element.ALIGN_CENTER);
-                addCell(table, row.docType, cellFont, rowColor, Element.ALIGN_CENTER);
-                addCell(table, row.docNumber, cellFont, rowColor, Element.ALIGN_LEFT);
-                addCell(table, row.docDate, cellFont, rowColor, Element.ALIGN_CENTER);
-                addCell(table, row.vatNumber, cellFont, rowColor, Element.ALIGN_LEFT);
-                addCell(table, row.name, cellFont, rowColor, Element.ALIGN_LEFT);
-                addCell(table, row.description, cellFont, rowColor, Element.ALIGN_LEFT);
-
-                if (showCol9) addCell(table, formatAmount(row.col9), cellFont, rowColor, Element.ALIGN_RIGHT);
-                if (showCol10) addCell(table, formatAmount(row.col10), cellFont, rowColor, Element.ALIGN_RIGHT);
-                if (showCol11) addCell(table, formatAmount(row.col11), cellFont, rowColor, Element.ALIGN_RIGHT);
-            }
-
-            // Total row
-            int colspan = 7;
-            PdfPCell totalLabelCell = new PdfPCell(new Phrase("", totalFont));
-            totalLabelCell.setColspan(colspan);
-            totalLabelCell.setBorderWidth(0);
-            table.addCell(totalLabelCell);
-
-            if (showCol9) addCell(table, formatAmount(totalCol9), totalFont, Color.WHITE, Element.ALIGN_RIGHT);
-            if (showCol10) addCell(table, formatAmount(totalCol10), totalFont, Color.WHITE, Element.ALIGN_RIGHT);
-            if (showCol11) addCell(table, formatAmount(totalCol11), totalFont, Color.WHITE, Element.ALIGN_RIGHT);
-
-            document.add(table);
-            document.close();
-
-        } catch (DocumentException e) {
-            throw new RuntimeException("Грешка при генериране на PDF", e);
-        }
-
-        return baos.toByteArray();
-    }
-
-    private byte[] generateProdajbiPdf(VatReturnEntity vatReturn, List<JournalEntryEntity> entries) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document(PageSize.A4.rotate(), 20, 20, 30, 30);
-
-        try {
-            PdfWriter.getInstance(document, baos);
-            document.open();
-
-            CompanyEntity company = vatReturn.getCompany();
-            String period = vatReturn.getPeriodMonth() + "/" + vatReturn.getPeriodYear();
-
-            // Title
-            Paragraph title = new Paragraph("Дневник за Продажби", titleFont);
-            title.setAlignment(Element.ALIGN_CENTER);
-            document.add(title);
-
-            Paragraph companyInfo = new Paragraph(company.getName() + " " + company.getVatNumber(), titleFont);
-            companyInfo.setAlignment(Element.ALIGN_CENTER);
-            document.add(companyInfo);
-
-            Paragraph periodPara = new Paragraph(period, titleFont);
-            periodPara.setAlignment(Element.ALIGN_CENTER);
-            periodPara.setSpacingAfter(15);
-            document.add(periodPara);
-
-            // Analyze which columns have non-zero values
-            List<ProdajbiRow> rows = new ArrayList<>();
-            BigDecimal totalCol9 = BigDecimal.ZERO;
-            BigDecimal totalCol10 = BigDecimal.ZERO;
-            BigDecimal totalCol11 = BigDecimal.ZERO;
-            BigDecimal totalCol12 = BigDecimal.ZERO;
-
             int lineNum = 1;
-            for (JournalEntryEntity entry : entries) {
+            Iterator<JournalEntryEntity> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                JournalEntryEntity entry = iterator.next();
                 CounterpartEntity counterpart = entry.getEntryLines().stream()
                         .map(EntryLineEntity::getCounterpart).filter(Objects::nonNull).findFirst().orElse(null);
 
@@ -283,115 +226,54 @@ public class VatPdfExportService {
                 BigDecimal vatAmount = entry.getEntryLines().stream()
                         .map(EntryLineEntity::getVatAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
 
-                ProdajbiRow row = new ProdajbiRow();
-                row.lineNum = lineNum++;
-                row.docType = entry.getVatDocumentType() != null ? entry.getVatDocumentType() : "01";
-                row.docNumber = entry.getDocumentNumber();
-                row.docDate = entry.getDocumentDate() != null ? entry.getDocumentDate().format(DATE_FMT) : "";
-                row.vatNumber = counterpart.getVatNumber() != null ? counterpart.getVatNumber() : counterpart.getEik();
-                row.name = counterpart.getName();
-                row.description = entry.getDescription();
-
-                // For prodajbi - columns 9, 10 are totals, 11, 12 are 20% base and vat
-                row.col9 = baseAmount;
-                row.col10 = vatAmount;
-                row.col11 = baseAmount;  // Assuming all are 20%
-                row.col12 = vatAmount;
-
-                totalCol9 = totalCol9.add(row.col9);
-                totalCol10 = totalCol10.add(row.col10);
-                totalCol11 = totalCol11.add(row.col11);
-                totalCol12 = totalCol12.add(row.col12);
-
-                rows.add(row);
-            }
-
-            // Determine which columns to show
-            boolean showCol9 = totalCol9.compareTo(BigDecimal.ZERO) != 0;
-            boolean showCol10 = totalCol10.compareTo(BigDecimal.ZERO) != 0;
-            boolean showCol11 = totalCol11.compareTo(BigDecimal.ZERO) != 0;
-            boolean showCol12 = totalCol12.compareTo(BigDecimal.ZERO) != 0;
-
-            // Build dynamic column widths
-            List<Float> widths = new ArrayList<>(Arrays.asList(25f, 25f, 65f, 55f, 75f, 140f, 60f));
-            List<String> headers = new ArrayList<>(Arrays.asList(
-                    "кл. 1\n№ по ред", "кл. 3\nВид", "кл. 4\nДокумент номер", "кл. 5\nДата",
-                    "кл. 6\nНомер на контр.доставчик", "кл. 7\nИме на контрагента(получател)",
-                    "кл. 8\nВид на стоката услугата"
-            ));
-
-            if (showCol9) {
-                widths.add(55f);
-                headers.add("кл. 9\nОбщ размер на ДО за облагане с ДДС");
-            }
-            if (showCol10) {
-                widths.add(50f);
-                headers.add("кл. 10\nВсичко начислен ДДС");
-            }
-            if (showCol11) {
-                widths.add(55f);
-                headers.add("кл. 11\nДО на обл.дост. 20%");
-            }
-            if (showCol12) {
-                widths.add(50f);
-                headers.add("кл. 12\nНачислен ДДС 20%");
-            }
-
-            float[] widthArray = new float[widths.size()];
-            for (int i = 0; i < widths.size(); i++) widthArray[i] = widths.get(i);
-
-            PdfPTable table = new PdfPTable(widthArray);
-            table.setWidthPercentage(100);
-
-            // Header row
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Phrase(header, headerFont));
-                cell.setBackgroundColor(HEADER_BG_COLOR);
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-                cell.setPadding(4);
-                table.addCell(cell);
-            }
+                Color rowColor = (lineNum % 2 == 1) ? Color.WHITE : ROW_ALT_COLOR;
+                String docType = entry.getVatDocumentType() != null ? entry.getVatDocumentType() : "01";
+                String docDate = entry.getDocumentDate() != null ? entry.getDocumentDate().format(DATE_FMT) : "";
+                String vatNumber = counterpart.getVatNumber() != null ? counterpart.getVatNumber() : counterpart.getEik();
+
+                addCell(table, String.valueOf(lineNum), CELL_FONT, rowColor, Element.ALIGN_CENTER);
+                addCell(table, docType, CELL_FONT, rowColor, Element.ALIGN_CENTER);
+                addCell(table, entry.getDocumentNumber(), CELL_FONT, rowColor, Element.ALIGN_LEFT);
+                addCell(table, docDate, CELL_FONT, rowColor, Element.ALIGN_CENTER);
+                addCell(table, vatNumber, CELL_FONT, rowColor, Element.ALIGN_LEFT);
+                addCell(table, counterpart.getName(), CELL_FONT, rowColor, Element.ALIGN_LEFT);
+                addCell(table, entry.getDescription(), CELL_FONT, rowColor, Element.ALIGN_LEFT);
+
+                BigDecimal[] amounts = amountColumns.amounts(entry, baseAmount, vatAmount);
+                for (int i = 0; i < amounts.length; i++) {
+                    if (layout.isShown(i)) {
+                        addCell(table, formatAmount(amounts[i]), CELL_FONT, rowColor, Element.ALIGN_RIGHT);
+                    }
+                }
 
-            // Data rows
-            int rowIndex = 0;
-            for (ProdajbiRow row : rows) {
-                Color rowColor = (rowIndex++ % 2 == 0) ? Color.WHITE : ROW_ALT_COLOR;
-
-                addCell(table, String.valueOf(row.lineNum), cellFont, rowColor, Element.ALIGN_CENTER);
-                addCell(table, row.docType, cellFont, rowColor, Element.ALIGN_CENTER);
-                addCell(table, row.docNumber, cellFont, rowColor, Element.ALIGN_LEFT);
-                addCell(table, row.docDate, cellFont, rowColor, Element.ALIGN_CENTER);
-                addCell(table, row.vatNumber, cellFont, rowColor, Element.ALIGN_LEFT);
-                addCell(table, row.name, cellFont, rowColor, Element.ALIGN_LEFT);
-                addCell(table, row.description, cellFont, rowColor, Element.ALIGN_LEFT);
-
-                if (showCol9) addCell(table, formatAmount(row.col9), cellFont, rowColor, Element.ALIGN_RIGHT);
-                if (showCol10) addCell(table, formatAmount(row.col10), cellFont, rowColor, Element.ALIGN_RIGHT);
-                if (showCol11) addCell(table, formatAmount(row.col11), cellFont, rowColor, Element.ALIGN_RIGHT);
-                if (showCol12) addCell(table, formatAmount(row.col12), cellFont, rowColor, Element.ALIGN_RIGHT);
+                if (lineNum % ROWS_PER_CHUNK == 0) {
+                    document.add(table);
+                    out.flush();
+                    // Written entries are no longer needed - keep the persistence context bounded
+                    entityManager.clear();
+                }
+                lineNum++;
             }
 
             // Total row
-            int colspan = 7;
-            PdfPCell totalLabelCell = new PdfPCell(new Phrase("", totalFont));
-            totalLabelCell.setColspan(colspan);
+            PdfPCell totalLabelCell = new PdfPCell(new Phrase("", TOTAL_FONT));
+            totalLabelCell.setColspan(layout.fixedColumns);
             totalLabelCell.setBorderWidth(0);
             table.addCell(totalLabelCell);
 
-            if (showCol9) addCell(table, formatAmount(totalCol9), totalFont, Color.WHITE, Element.ALIGN_RIGHT);
-            if (showCol10) addCell(table, formatAmount(totalCol10), totalFont, Color.WHITE, Element.ALIGN_RIGHT);
-            if (showCol11) addCell(table, formatAmount(totalCol11), totalFont, Color.WHITE, Element.ALIGN_RIGHT);
-            if (showCol12) addCell(table, formatAmount(totalCol12), totalFont, Color.WHITE, Element.ALIGN_RIGHT);
+            for (int i = 0; i < layout.totals.size(); i++) {
+                if (layout.isShown(i)) {
+                    addCell(table, formatAmount(layout.totals.get(i)), TOTAL_FONT, Color.WHITE, Element.ALIGN_RIGHT);
+                }
+            }
 
+            table.setComplete(true);
             document.add(table);
             document.close();
 
-        } catch (DocumentException e) {
+        } catch (DocumentException | IOException e) {
             throw new RuntimeException("Грешка при генериране на PDF", e);
         }
-
-        return baos.toByteArray();
     }
 
     private void addCell(PdfPTable table, String text, Font font, Color bgColor, int alignment) {
@@ -410,31 +292,46 @@ public class VatPdfExportService {
         return String.format("%,.2f", amount);
     }
 
-    // Inner classes for row data
-    private static class PokupkiRow {
-        int lineNum;
-        String docType;
-        String docNumber;
-        String docDate;
-        String vatNumber;
-        String name;
-        String description;
-        BigDecimal col9 = BigDecimal.ZERO;
-        BigDecimal col10 = BigDecimal.ZERO;
-        BigDecimal col11 = BigDecimal.ZERO;
+    /**
+     * Maps a journal entry to the values of all amount columns (shown or not).
+     */
+    @FunctionalInterface
+    private interface AmountColumns {
+        BigDecimal[] amounts(JournalEntryEntity entry, BigDecimal baseAmount, BigDecimal vatAmount);
     }
 
-    private static class ProdajbiRow {
-        int lineNum;
-        String docType;
-        String docNumber;
-        String docDate;
-        String vatNumber;
-        String name;
-        String description;
-        BigDecimal col9 = BigDecimal.ZERO;
-        BigDecimal col10 = BigDecimal.ZERO;
-        BigDecimal col11 = BigDecimal.ZERO;
-        BigDecimal col12 = BigDecimal.ZERO;
+    /**
+     * Column layout of a VAT journal - the fixed descriptive columns plus the amount
+     * columns, which are shown only when their total is non-zero.
+     */
+    private static class JournalLayout {
+        final int fixedColumns;
+        final List<Float> widths = new ArrayList<>();
+        final List<String> headers = new ArrayList<>();
+        final List<BigDecimal> totals = new ArrayList<>();
+
+        JournalLayout(float[] fixedWidths, String[] fixedHeaders) {
+            this.fixedColumns = fixedWidths.length;
+            for (float width : fixedWidths) widths.add(width);
+            headers.addAll(Arrays.asList(fixedHeaders));
+        }
+
+        void addAmountColumn(float width, String header, BigDecimal total) {
+            totals.add(total);
+            if (total.compareTo(BigDecimal.ZERO) != 0) {
+                widths.add(width);
+                headers.add(header);
+            }
+        }
+
+        boolean isShown(int amountIndex) {
+            return totals.get(amountIndex).compareTo(BigDecimal.ZERO) != 0;
+        }
+
+        float[] widths() {
+            float[] widthArray = new float[widths.size()];
+            for (int i = 0; i < widths.size(); i++) widthArray[i] = widths.get(i);
+            return widthArray;
+        }
     }
 }
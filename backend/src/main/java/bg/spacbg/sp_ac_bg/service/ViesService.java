@@ -2,6 +2,9 @@ package bg.spacbg.sp_ac_bg.service;
 
 import bg.spacbg.sp_ac_bg.model.dto.ViesValidationResult;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Service for validating VAT numbers against the EU VIES (VAT Information Exchange System).
  */
@@ -9,9 +12,26 @@ public interface ViesService {
 
     /**
      * Validates a VAT number against VIES and returns company information.
+     * Results are cached in the global contragents table and reused until they expire.
      *
      * @param vatNumber The VAT number to validate (e.g., "BG123456789" or "DE123456789")
      * @return ViesValidationResult containing validation status and company data
      */
     ViesValidationResult validateVat(String vatNumber);
+
+    /**
+     * Validates many VAT numbers at once. Cached results are read with a single query, the rest
+     * are sent to VIES with bounded concurrency and retried with backoff on transient errors.
+     *
+     * @param vatNumbers VAT numbers in any format; duplicates are validated once
+     * @return results keyed by the normalized VAT number
+     */
+    Map<String, ViesValidationResult> validateBatch(Collection<String> vatNumbers);
+
+    /**
+     * Starts a background revalidation of the VAT numbers of all active counterparts of a company.
+     *
+     * @return number of distinct VAT numbers queued for validation
+     */
+    int revalidateCompanyCounterparts(Integer companyId);
 }
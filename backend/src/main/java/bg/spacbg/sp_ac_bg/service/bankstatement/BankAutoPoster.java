@@ -0,0 +1,164 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import bg.spacbg.sp_ac_bg.model.entity.BankProfileEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CompanyEntity;
+import bg.spacbg.sp_ac_bg.repository.EntryLineJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Books bank transactions that match a posting rule of the company.
+ *
+ * Each matched transaction becomes an unposted journal entry with two lines: the bank profile's account and
+ * the rule's account, debit or credit depending on the direction of the payment. Entries for a whole batch
+ * are written with one multi-row insert and their lines with a JDBC batch. Transactions that match no rule,
+ * and transactions in a currency other than the company's base currency, are left for manual processing.
+ */
+@Component
+public class BankAutoPoster {
+
+    private static final Logger log = LoggerFactory.getLogger(BankAutoPoster.class);
+
+    public static final String DOCUMENT_TYPE = "BANK";
+
+    private static final DateTimeFormatter ENTRY_NUMBER_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int DOCUMENT_NUMBER_LENGTH = 100;
+
+    private final BankPostingRuleCache ruleCache;
+    private final JournalEntryRepository journalEntryRepository;
+    private final JournalEntryJdbcRepository journalEntryJdbcRepository;
+    private final EntryLineJdbcRepository entryLineJdbcRepository;
+
+    public BankAutoPoster(BankPostingRuleCache ruleCache,
+                          JournalEntryRepository journalEntryRepository,
+                          JournalEntryJdbcRepository journalEntryJdbcRepository,
+                          EntryLineJdbcRepository entryLineJdbcRepository) {
+        this.ruleCache = ruleCache;
+        this.journalEntryRepository = journalEntryRepository;
+        this.journalEntryJdbcRepository = journalEntryJdbcRepository;
+        this.entryLineJdbcRepository = entryLineJdbcRepository;
+    }
+
+    /**
+     * Creates the journal entries for the matching transactions and returns, position by position, the id
+     * of the entry created for each transaction or {@code null} when it was not booked.
+     */
+    public Integer[] post(BankProfileEntity profile, Integer userId, List<ParsedBankTransaction> transactions) {
+        Integer[] journalEntryIds = new Integer[transactions.size()];
+        if (transactions.isEmpty()) {
+            return journalEntryIds;
+        }
+        CompanyEntity company = profile.getCompany();
+        BankPostingRuleMatcher matcher = ruleCache.getMatcher(company.getId());
+        if (matcher.isEmpty()) {
+            return journalEntryIds;
+        }
+        if (userId == null) {
+            log.warn("Bank transactions of profile {} are not booked automatically without a user", profile.getId());
+            return journalEntryIds;
+        }
+        String baseCurrency = company.getBaseCurrency() != null ? company.getBaseCurrency().getCode() : null;
+
+        // Entry numbers are unique across companies, so the prefix carries the company
+        String prefix = "BNK-" + company.getId() + "-" + LocalDate.now().format(ENTRY_NUMBER_DATE) + "-";
+        Integer maxNumber = journalEntryRepository.findMaxEntryNumberByPrefix(company.getId(), prefix);
+        int nextNumber = (maxNumber != null ? maxNumber : 0) + 1;
+
+        List<JournalEntryJdbcRepository.NewJournalEntry> entries = new ArrayList<>();
+        List<Integer> entryPositions = new ArrayList<>();
+        List<BankPostingRuleMatcher.Rule> entryRules = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < transactions.size(); i++) {
+            ParsedBankTransaction transaction = transactions.get(i);
+            if (baseCurrency != null && transaction.currencyCode() != null
+                    && !baseCurrency.equalsIgnoreCase(transaction.currencyCode())) {
+                continue;
+            }
+            text.setLength(0);
+            if (transaction.description() != null) {
+                text.append(transaction.description());
+            }
+            if (transaction.counterpartyName() != null) {
+                text.append(' ').append(transaction.counterpartyName());
+            }
+            BankPostingRuleMatcher.Rule rule = matcher.match(text, transaction.isCredit());
+            if (rule == null) {
+                continue;
+            }
+            String reference = transaction.reference();
+            entries.add(new JournalEntryJdbcRepository.NewJournalEntry(
+                    prefix + String.format("%04d", nextNumber++),
+                    company.getId(),
+                    transaction.bookingDate(),
+                    reference != null && reference.length() > DOCUMENT_NUMBER_LENGTH
+                            ? reference.substring(0, DOCUMENT_NUMBER_LENGTH) : reference,
+                    describe(rule, transaction),
+                    DOCUMENT_TYPE,
+                    transaction.amount().abs(),
+                    userId));
+            entryPositions.add(i);
+            entryRules.add(rule);
+        }
+        if (entries.isEmpty()) {
+            return journalEntryIds;
+        }
+
+        Map<String, Integer> idsByEntryNumber = journalEntryJdbcRepository.insertEntries(entries);
+        Integer bankAccountId = profile.getAccount().getId();
+        List<EntryLineJdbcRepository.NewEntryLine> lines = new ArrayList<>(entries.size() * 2);
+        for (int i = 0; i < entries.size(); i++) {
+            JournalEntryJdbcRepository.NewJournalEntry entry = entries.get(i);
+            Integer journalEntryId = idsByEntryNumber.get(entry.entryNumber());
+            ParsedBankTransaction transaction = transactions.get(entryPositions.get(i));
+            Integer ruleAccountId = entryRules.get(i).accountId();
+            BigDecimal amount = entry.totalAmount();
+            // Incoming: debit bank / credit rule account; outgoing: debit rule account / credit bank
+            Integer debitAccountId = transaction.isCredit() ? bankAccountId : ruleAccountId;
+            Integer creditAccountId = transaction.isCredit() ? ruleAccountId : bankAccountId;
+            lines.add(new EntryLineJdbcRepository.NewEntryLine(journalEntryId, debitAccountId,
+                    amount, BigDecimal.ZERO, amount, BigDecimal.ZERO, entry.description(), 1));
+            lines.add(new EntryLineJdbcRepository.NewEntryLine(journalEntryId, creditAccountId,
+                    BigDecimal.ZERO, amount, amount, BigDecimal.ZERO, entry.description(), 2));
+            journalEntryIds[entryPositions.get(i)] = journalEntryId;
+        }
+        entryLineJdbcRepository.insertLines(lines);
+
+        log.info("Booked {} of {} bank transactions of profile {} by posting rules",
+                entries.size(), transactions.size(), profile.getId());
+        return journalEntryIds;
+    }
+
+    /**
+     * The rule's description template with {description}, {counterparty}, {reference}, {date} and {amount}
+     * filled in; without a template the transaction's own description, or the rule name.
+     */
+    private static String describe(BankPostingRuleMatcher.Rule rule, ParsedBankTransaction transaction) {
+        String template = rule.descriptionTemplate();
+        if (template == null || template.isBlank()) {
+            if (transaction.description() != null) {
+                return transaction.description();
+            }
+            return rule.patternName() != null ? rule.patternName() : "Банкова транзакция";
+        }
+        return template
+                .replace("{description}", valueOrEmpty(transaction.description()))
+                .replace("{counterparty}", valueOrEmpty(transaction.counterpartyName()))
+                .replace("{reference}", valueOrEmpty(transaction.reference()))
+                .replace("{date}", transaction.bookingDate().toString())
+                .replace("{amount}", transaction.amount().abs().toPlainString());
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,88 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import bg.spacbg.sp_ac_bg.model.entity.AiBankAccountingSettingEntity;
+import bg.spacbg.sp_ac_bg.repository.AiBankAccountingSettingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled {@link BankPostingRuleMatcher} per company.
+ *
+ * A cached matcher is reused while the company's rule count and latest {@code updatedAt} are unchanged, so
+ * edits made by another instance or directly in the database are picked up on the next lookup; rule
+ * changes made through the bank service also drop the entry right away with {@link #invalidate}.
+ */
+@Component
+public class BankPostingRuleCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BankPostingRuleCache.class);
+
+    private record CachedMatcher(long ruleCount, OffsetDateTime lastUpdatedAt, BankPostingRuleMatcher matcher) {
+    }
+
+    private final AiBankAccountingSettingRepository settingRepository;
+    private final ConcurrentHashMap<Integer, CachedMatcher> matchers = new ConcurrentHashMap<>();
+
+    public BankPostingRuleCache(AiBankAccountingSettingRepository settingRepository) {
+        this.settingRepository = settingRepository;
+    }
+
+    public BankPostingRuleMatcher getMatcher(Integer companyId) {
+        Object[] version = settingRepository.findRuleVersion(companyId).get(0);
+        long ruleCount = ((Number) version[0]).longValue();
+        OffsetDateTime lastUpdatedAt = (OffsetDateTime) version[1];
+
+        CachedMatcher cached = matchers.get(companyId);
+        if (cached != null && cached.ruleCount() == ruleCount
+                && Objects.equals(cached.lastUpdatedAt(), lastUpdatedAt)) {
+            return cached.matcher();
+        }
+
+        List<BankPostingRuleMatcher.Rule> rules = settingRepository.findActiveByCompanyIdWithAccount(companyId)
+                .stream()
+                .filter(setting -> setting.getAccount() != null)
+                .map(BankPostingRuleCache::toRule)
+                .toList();
+        BankPostingRuleMatcher matcher = BankPostingRuleMatcher.compile(rules);
+        matchers.put(companyId, new CachedMatcher(ruleCount, lastUpdatedAt, matcher));
+        log.debug("Compiled {} bank posting rules for company {}", rules.size(), companyId);
+        return matcher;
+    }
+
+    public void invalidate(Integer companyId) {
+        matchers.remove(companyId);
+    }
+
+    private static BankPostingRuleMatcher.Rule toRule(AiBankAccountingSettingEntity setting) {
+        List<String> keywords = setting.getDescriptionKeywords() == null ? List.of()
+                : Arrays.asList(setting.getDescriptionKeywords().split("[,;\\n]"));
+        return new BankPostingRuleMatcher.Rule(
+                setting.getId(),
+                setting.getPatternName(),
+                keywords,
+                direction(setting.getDirection()),
+                setting.getAccount().getId(),
+                setting.getTransactionType(),
+                setting.getDescriptionTemplate());
+    }
+
+    // CREDIT/IN for incoming, DEBIT/OUT for outgoing payments, anything else for both
+    private static Boolean direction(String direction) {
+        if (direction == null) {
+            return null;
+        }
+        return switch (direction.strip().toUpperCase(Locale.ROOT)) {
+            case "CREDIT", "IN", "INCOMING" -> Boolean.TRUE;
+            case "DEBIT", "OUT", "OUTGOING" -> Boolean.FALSE;
+            default -> null;
+        };
+    }
+}
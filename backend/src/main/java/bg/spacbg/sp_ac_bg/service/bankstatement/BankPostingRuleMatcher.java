@@ -0,0 +1,167 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * All active posting rules of a company compiled into one Aho–Corasick automaton over their description
+ * keywords.
+ *
+ * Rules are given in precedence order (highest priority first). Every automaton state stores the best rule
+ * of each direction among the keywords ending there, including those reached through failure links, so
+ * classifying a text is one pass over its characters with a table lookup per character and no allocation.
+ * Rules without keywords match any transaction of their direction and act as fallbacks in the same
+ * precedence order. Matching is case-insensitive. Instances are immutable and safe to share.
+ */
+public final class BankPostingRuleMatcher {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    public record Rule(Integer id, String patternName, List<String> keywords, Boolean credit, Integer accountId,
+                       String transactionType, String descriptionTemplate) {
+
+        boolean appliesTo(boolean creditTransaction) {
+            return credit == null || credit == creditTransaction;
+        }
+    }
+
+    private final List<Rule> rules;
+    private final char[] alphabet;
+    private final int[] transitions;
+    private final int[] bestCredit;
+    private final int[] bestDebit;
+    private final int fallbackCredit;
+    private final int fallbackDebit;
+
+    private BankPostingRuleMatcher(List<Rule> rules, char[] alphabet, int[] transitions, int[] bestCredit,
+                                   int[] bestDebit, int fallbackCredit, int fallbackDebit) {
+        this.rules = rules;
+        this.alphabet = alphabet;
+        this.transitions = transitions;
+        this.bestCredit = bestCredit;
+        this.bestDebit = bestDebit;
+        this.fallbackCredit = fallbackCredit;
+        this.fallbackDebit = fallbackDebit;
+    }
+
+    public static BankPostingRuleMatcher compile(List<Rule> rulesInPrecedenceOrder) {
+        List<Rule> rules = List.copyOf(rulesInPrecedenceOrder);
+
+        // Trie of the lower-cased keywords; outputs are rule indexes, lower = higher precedence
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<int[]> outputs = new ArrayList<>();
+        children.add(new HashMap<>());
+        outputs.add(new int[]{NONE, NONE});
+        TreeSet<Character> symbols = new TreeSet<>();
+        int fallbackCredit = NONE;
+        int fallbackDebit = NONE;
+
+        for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+            Rule rule = rules.get(ruleIndex);
+            List<String> keywords = rule.keywords().stream()
+                    .map(keyword -> keyword.strip().toLowerCase(Locale.ROOT))
+                    .filter(keyword -> !keyword.isEmpty())
+                    .toList();
+            if (keywords.isEmpty()) {
+                if (rule.appliesTo(true)) {
+                    fallbackCredit = Math.min(fallbackCredit, ruleIndex);
+                }
+                if (rule.appliesTo(false)) {
+                    fallbackDebit = Math.min(fallbackDebit, ruleIndex);
+                }
+                continue;
+            }
+            for (String keyword : keywords) {
+                int state = 0;
+                for (int i = 0; i < keyword.length(); i++) {
+                    char c = keyword.charAt(i);
+                    symbols.add(c);
+                    Integer next = children.get(state).get(c);
+                    if (next == null) {
+                        next = children.size();
+                        children.get(state).put(c, next);
+                        children.add(new HashMap<>());
+                        outputs.add(new int[]{NONE, NONE});
+                    }
+                    state = next;
+                }
+                int[] output = outputs.get(state);
+                if (rule.appliesTo(true)) {
+                    output[0] = Math.min(output[0], ruleIndex);
+                }
+                if (rule.appliesTo(false)) {
+                    output[1] = Math.min(output[1], ruleIndex);
+                }
+            }
+        }
+
+        char[] alphabet = new char[symbols.size()];
+        int symbolIndex = 0;
+        for (Character symbol : symbols) {
+            alphabet[symbolIndex++] = symbol;
+        }
+        int width = alphabet.length;
+        int stateCount = children.size();
+        int[] transitions = new int[stateCount * width];
+        int[] failure = new int[stateCount];
+        int[] bestCredit = new int[stateCount];
+        int[] bestDebit = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            bestCredit[state] = outputs.get(state)[0];
+            bestDebit[state] = outputs.get(state)[1];
+        }
+
+        // Breadth-first: a state's failure target is complete before the state itself, so missing transitions
+        // are copied from it and its outputs are merged in, turning the trie into a full automaton
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int symbol = 0; symbol < width; symbol++) {
+                Integer child = children.get(state).get(alphabet[symbol]);
+                if (child == null) {
+                    transitions[state * width + symbol] = state == 0 ? 0 : transitions[failure[state] * width + symbol];
+                    continue;
+                }
+                transitions[state * width + symbol] = child;
+                int childFailure = state == 0 ? 0 : transitions[failure[state] * width + symbol];
+                failure[child] = childFailure;
+                bestCredit[child] = Math.min(bestCredit[child], bestCredit[childFailure]);
+                bestDebit[child] = Math.min(bestDebit[child], bestDebit[childFailure]);
+                queue.add(child);
+            }
+        }
+
+        return new BankPostingRuleMatcher(rules, alphabet, transitions, bestCredit, bestDebit,
+                fallbackCredit, fallbackDebit);
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * The highest-precedence rule whose keyword occurs in the text and whose direction fits, otherwise the
+     * first fallback rule of that direction, otherwise {@code null}.
+     */
+    public Rule match(CharSequence text, boolean credit) {
+        int[] best = credit ? bestCredit : bestDebit;
+        int result = credit ? fallbackCredit : fallbackDebit;
+        if (text != null && alphabet.length > 0) {
+            int width = alphabet.length;
+            int state = 0;
+            for (int i = 0; i < text.length() && result > 0; i++) {
+                int symbol = Arrays.binarySearch(alphabet, Character.toLowerCase(text.charAt(i)));
+                state = symbol < 0 ? 0 : transitions[state * width + symbol];
+                result = Math.min(result, best[state]);
+            }
+        }
+        return result == NONE ? null : rules.get(result);
+    }
+}
@@ -0,0 +1,306 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Proposes which open receivable or payable settles each line of a bank statement.
+ *
+ * The open items are indexed once in hash maps by amount, document number and counterpart, and the
+ * counterparts by IBAN, VAT number/EIK and name. Every statement line then looks up its candidates through
+ * those maps (amount of the line, tokens of its description and reference, its counterparty IBAN and name),
+ * so a statement is matched in one pass whatever the number of open items. Candidates are scored by the
+ * signals they share with the line, and the best pairs are assigned greedily so that an item is not
+ * proposed for more than its open amount. Incoming payments are matched to receivables, outgoing ones to
+ * payables.
+ */
+public final class BankReconciliationMatcher {
+
+    public static final String REASON_DOCUMENT_NUMBER = "DOCUMENT_NUMBER";
+    public static final String REASON_IBAN = "IBAN";
+    public static final String REASON_VAT_NUMBER = "VAT_NUMBER";
+    public static final String REASON_NAME = "NAME";
+    public static final String REASON_AMOUNT = "AMOUNT";
+    public static final String REASON_PARTIAL_AMOUNT = "PARTIAL_AMOUNT";
+
+    private static final double SCORE_DOCUMENT_NUMBER = 0.45;
+    private static final double SCORE_COUNTERPART = 0.30;
+    private static final double SCORE_NAME = 0.15;
+    private static final double SCORE_AMOUNT = 0.35;
+    private static final double SCORE_PARTIAL_AMOUNT = 0.10;
+    private static final double PENALTY_PAID_BEFORE_DOCUMENT = 0.10;
+    private static final double MIN_CONFIDENCE = 0.35;
+
+    // Amount alone only proposes a match when few open items share the amount
+    private static final int MAX_AMOUNT_ONLY_CANDIDATES = 20;
+    private static final int MIN_DOCUMENT_KEY_LENGTH = 3;
+    private static final int MAX_TOKEN_NGRAM = 3;
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern LEGAL_FORM = Pattern.compile(
+            "\\b(ЕООД|ООД|ЕАД|АД|ЕТ|КД|КДА|СД|LTD|LLC|GMBH|SRL|EOOD|OOD|EAD|AD|ET)\\b",
+            Pattern.UNICODE_CHARACTER_CLASS);
+
+    public record StatementLine(Integer id, int lineNumber, LocalDate bookingDate, BigDecimal amount,
+                                String description, String counterpartyName, String counterpartyIban,
+                                String reference) {
+    }
+
+    public record OpenItem(Integer journalEntryId, Integer accountId, Integer counterpartId, String counterpartName,
+                           String counterpartVatNumber, String counterpartEik, String counterpartIban,
+                           String documentNumber, LocalDate documentDate, boolean receivable,
+                           BigDecimal openAmount) {
+    }
+
+    public record Proposal(StatementLine line, OpenItem item, BigDecimal amount, double confidence,
+                           List<String> reasons) {
+    }
+
+    private record AmountKey(boolean receivable, BigDecimal amount) {
+    }
+
+    private record Candidate(StatementLine line, OpenItem item, double confidence, List<String> reasons) {
+    }
+
+    private final Map<AmountKey, List<OpenItem>> itemsByAmount = new HashMap<>();
+    private final Map<String, List<OpenItem>> itemsByDocument = new HashMap<>();
+    private final Map<Integer, List<OpenItem>> itemsByCounterpart = new HashMap<>();
+    private final Map<String, Integer> counterpartsByIban = new HashMap<>();
+    private final Map<String, Integer> counterpartsByTaxId = new HashMap<>();
+    private final Map<String, Integer> counterpartsByName = new HashMap<>();
+
+    private BankReconciliationMatcher(List<OpenItem> items) {
+        for (OpenItem item : items) {
+            itemsByAmount.computeIfAbsent(new AmountKey(item.receivable(), amountKey(item.openAmount())),
+                    key -> new ArrayList<>()).add(item);
+            String document = documentKey(item.documentNumber());
+            if (document != null) {
+                itemsByDocument.computeIfAbsent(document, key -> new ArrayList<>()).add(item);
+            }
+            if (item.counterpartId() == null) {
+                continue;
+            }
+            itemsByCounterpart.computeIfAbsent(item.counterpartId(), key -> new ArrayList<>()).add(item);
+            String iban = StatementValues.normalizeIban(item.counterpartIban());
+            if (iban != null) {
+                counterpartsByIban.putIfAbsent(iban, item.counterpartId());
+            }
+            for (String taxId : new String[]{taxIdKey(item.counterpartVatNumber()), taxIdKey(item.counterpartEik())}) {
+                if (taxId != null) {
+                    counterpartsByTaxId.putIfAbsent(taxId, item.counterpartId());
+                }
+            }
+            String name = nameKey(item.counterpartName());
+            if (name != null) {
+                counterpartsByName.putIfAbsent(name, item.counterpartId());
+            }
+        }
+    }
+
+    /**
+     * Best match for each statement line that has one above the minimum confidence, in line order.
+     */
+    public static List<Proposal> propose(List<StatementLine> lines, List<OpenItem> openItems) {
+        return new BankReconciliationMatcher(openItems).match(lines);
+    }
+
+    private List<Proposal> match(List<StatementLine> lines) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (StatementLine line : lines) {
+            collectCandidates(line, candidates);
+        }
+
+        // Strongest pairs first; each line is settled once and each item up to its open amount
+        candidates.sort(Comparator.comparingDouble(Candidate::confidence).reversed()
+                .thenComparing(candidate -> candidate.line().lineNumber())
+                .thenComparing(candidate -> candidate.item().journalEntryId()));
+        Map<StatementLine, Boolean> assignedLines = new IdentityHashMap<>();
+        Map<OpenItem, BigDecimal> remaining = new IdentityHashMap<>();
+        List<Proposal> proposals = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (assignedLines.containsKey(candidate.line())) {
+                continue;
+            }
+            OpenItem item = candidate.item();
+            BigDecimal open = remaining.getOrDefault(item, item.openAmount());
+            if (open.signum() <= 0) {
+                continue;
+            }
+            BigDecimal amount = candidate.line().amount().abs().min(open);
+            remaining.put(item, open.subtract(amount));
+            assignedLines.put(candidate.line(), Boolean.TRUE);
+            proposals.add(new Proposal(candidate.line(), item, amount, candidate.confidence(), candidate.reasons()));
+        }
+        proposals.sort(Comparator.comparingInt(proposal -> proposal.line().lineNumber()));
+        return proposals;
+    }
+
+    private void collectCandidates(StatementLine line, List<Candidate> candidates) {
+        if (line.amount() == null || line.amount().signum() == 0) {
+            return;
+        }
+        boolean receivable = line.amount().signum() > 0;
+        BigDecimal lineAmount = line.amount().abs();
+
+        // Items named by document number and the counterpart identified by IBAN, tax id or name
+        Map<OpenItem, Boolean> documentHits = new IdentityHashMap<>();
+        Integer counterpartId = null;
+        String counterpartReason = null;
+        String iban = StatementValues.normalizeIban(line.counterpartyIban());
+        if (iban != null && counterpartsByIban.containsKey(iban)) {
+            counterpartId = counterpartsByIban.get(iban);
+            counterpartReason = REASON_IBAN;
+        }
+        List<String> tokens = tokens(line.description(), line.reference());
+        for (int start = 0; start < tokens.size(); start++) {
+            StringBuilder joined = new StringBuilder();
+            for (int end = start; end < Math.min(tokens.size(), start + MAX_TOKEN_NGRAM); end++) {
+                joined.append(tokens.get(end));
+                String document = documentKey(joined.toString());
+                if (document != null) {
+                    for (OpenItem item : itemsByDocument.getOrDefault(document, List.of())) {
+                        documentHits.put(item, Boolean.TRUE);
+                    }
+                }
+            }
+            if (counterpartId == null) {
+                String taxId = taxIdKey(tokens.get(start));
+                if (taxId != null && counterpartsByTaxId.containsKey(taxId)) {
+                    counterpartId = counterpartsByTaxId.get(taxId);
+                    counterpartReason = REASON_VAT_NUMBER;
+                }
+            }
+        }
+        if (counterpartId == null) {
+            String name = nameKey(line.counterpartyName());
+            if (name != null && counterpartsByName.containsKey(name)) {
+                counterpartId = counterpartsByName.get(name);
+                counterpartReason = REASON_NAME;
+            }
+        }
+
+        Map<OpenItem, Boolean> seen = new IdentityHashMap<>();
+        for (OpenItem item : documentHits.keySet()) {
+            addCandidate(line, item, receivable, lineAmount, true, counterpartId, counterpartReason, seen, candidates);
+        }
+        if (counterpartId != null) {
+            for (OpenItem item : itemsByCounterpart.getOrDefault(counterpartId, List.of())) {
+                addCandidate(line, item, receivable, lineAmount, false, counterpartId, counterpartReason, seen,
+                        candidates);
+            }
+        }
+        List<OpenItem> sameAmount = itemsByAmount.getOrDefault(new AmountKey(receivable, amountKey(lineAmount)),
+                List.of());
+        if (sameAmount.size() <= MAX_AMOUNT_ONLY_CANDIDATES) {
+            for (OpenItem item : sameAmount) {
+                addCandidate(line, item, receivable, lineAmount, false, counterpartId, counterpartReason, seen,
+                        candidates);
+            }
+        }
+    }
+
+    private static void addCandidate(StatementLine line, OpenItem item, boolean receivable, BigDecimal lineAmount,
+                                     boolean documentHit, Integer counterpartId, String counterpartReason,
+                                     Map<OpenItem, Boolean> seen, List<Candidate> candidates) {
+        if (item.receivable() != receivable || seen.put(item, Boolean.TRUE) != null) {
+            return;
+        }
+        List<String> reasons = new ArrayList<>(3);
+        double score = 0;
+        if (documentHit) {
+            score += SCORE_DOCUMENT_NUMBER;
+            reasons.add(REASON_DOCUMENT_NUMBER);
+        }
+        if (counterpartId != null && counterpartId.equals(item.counterpartId())) {
+            score += REASON_NAME.equals(counterpartReason) ? SCORE_NAME : SCORE_COUNTERPART;
+            reasons.add(counterpartReason);
+        }
+        int amountComparison = lineAmount.compareTo(item.openAmount());
+        if (amountComparison == 0) {
+            score += SCORE_AMOUNT;
+            reasons.add(REASON_AMOUNT);
+        } else if (amountComparison < 0 && !reasons.isEmpty()) {
+            score += SCORE_PARTIAL_AMOUNT;
+            reasons.add(REASON_PARTIAL_AMOUNT);
+        }
+        if (item.documentDate() != null && line.bookingDate() != null
+                && item.documentDate().isAfter(line.bookingDate())) {
+            score -= PENALTY_PAID_BEFORE_DOCUMENT;
+        }
+        double confidence = BigDecimal.valueOf(Math.min(1.0, score)).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        if (confidence >= MIN_CONFIDENCE) {
+            candidates.add(new Candidate(line, item, confidence, reasons));
+        }
+    }
+
+    private static List<String> tokens(String description, String reference) {
+        List<String> tokens = new ArrayList<>();
+        for (String text : new String[]{description, reference}) {
+            if (text == null) {
+                continue;
+            }
+            for (String token : TOKEN_SEPARATOR.split(text.toUpperCase(Locale.ROOT))) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static BigDecimal amountKey(BigDecimal amount) {
+        return amount.abs().setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // Letters and digits only, upper case, without leading zeros: "0000001234", "№ 1234" and "1234" are one key
+    static String documentKey(String documentNumber) {
+        if (documentNumber == null) {
+            return null;
+        }
+        String key = TOKEN_SEPARATOR.matcher(documentNumber.toUpperCase(Locale.ROOT)).replaceAll("");
+        int start = 0;
+        while (start < key.length() - 1 && key.charAt(start) == '0') {
+            start++;
+        }
+        key = key.substring(start);
+        return key.length() >= MIN_DOCUMENT_KEY_LENGTH ? key : null;
+    }
+
+    // Digits of a Bulgarian EIK (9 or 13) or VAT number (BG + 9 or 10 digits)
+    static String taxIdKey(String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.strip().toUpperCase(Locale.ROOT);
+        if (key.startsWith("BG")) {
+            key = key.substring(2);
+        }
+        if (key.length() < 9 || key.length() > 13) {
+            return null;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (!Character.isDigit(key.charAt(i))) {
+                return null;
+            }
+        }
+        return key;
+    }
+
+    static String nameKey(String name) {
+        if (name == null) {
+            return null;
+        }
+        String key = LEGAL_FORM.matcher(name.toUpperCase(Locale.ROOT).replace('"', ' ')).replaceAll(" ");
+        key = TOKEN_SEPARATOR.matcher(key).replaceAll("");
+        return key.length() >= 3 ? key : null;
+    }
+}
@@ -0,0 +1,22 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import bg.spacbg.sp_ac_bg.model.enums.BankImportFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for one family of bank statement file formats.
+ *
+ * Implementations read the input once, front to back, and hand every transaction to the consumer as soon
+ * as it is complete, so memory use does not grow with the size of the statement. Malformed content is
+ * reported with {@link IllegalArgumentException}. The caller owns and closes the stream.
+ */
+public interface BankStatementParser {
+
+    Set<BankImportFormat> supportedFormats();
+
+    void parse(InputStream input, Consumer<ParsedBankTransaction> consumer) throws IOException;
+}
@@ -0,0 +1,38 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import bg.spacbg.sp_ac_bg.model.enums.BankImportFormat;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the {@link BankStatementParser} for a bank profile's import format. New formats are added by
+ * registering another parser bean.
+ */
+@Component
+public class BankStatementParserRegistry {
+
+    private final Map<BankImportFormat, BankStatementParser> parsers = new EnumMap<>(BankImportFormat.class);
+
+    public BankStatementParserRegistry(List<BankStatementParser> parsers) {
+        for (BankStatementParser parser : parsers) {
+            for (BankImportFormat format : parser.supportedFormats()) {
+                BankStatementParser previous = this.parsers.putIfAbsent(format, parser);
+                if (previous != null) {
+                    throw new IllegalStateException("Format " + format + " is handled by both "
+                            + previous.getClass().getSimpleName() + " and " + parser.getClass().getSimpleName());
+                }
+            }
+        }
+    }
+
+    public BankStatementParser getParser(BankImportFormat format) {
+        BankStatementParser parser = format != null ? parsers.get(format) : null;
+        if (parser == null) {
+            throw new IllegalArgumentException("Неподдържан формат на банково извлечение: " + format);
+        }
+        return parser;
+    }
+}
@@ -0,0 +1,117 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import bg.spacbg.sp_ac_bg.model.enums.BankImportFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Proprietary XML statement exports of Postbank (Eurobank Bulgaria) and ОББ (United Bulgarian Bank).
+ *
+ * Both exports are a flat list of movement records whose fields are child elements or attributes. The
+ * document is read with StAX; every element named like a record ({@code Transaction}, {@code Movement},
+ * {@code Row}, ...) collects its leaf values and attributes into a small map that is mapped through
+ * {@link StatementRecordMapper} when the record closes. Nested leaves are also stored under the parent name
+ * prefixed ({@code <Counterparty><Iban>} as {@code counterpartyiban}), which covers grouped counterparty
+ * blocks. Amounts are written in the locale of the export ({@code bank-statements.xml-locale}, a decimal
+ * point by default).
+ */
+@Component
+public class BankXmlStatementParser implements BankStatementParser {
+
+    private static final Set<String> RECORD_ELEMENTS = Set.of(
+            "transaction", "trn", "movement", "operation", "row", "statementline", "record", "entry");
+
+    private final XMLInputFactory xmlInputFactory = StatementValues.newXmlInputFactory();
+    private final char decimalSeparator;
+
+    public BankXmlStatementParser(@Value("${bank-statements.xml-locale:en}") String locale) {
+        this.decimalSeparator = StatementValues.decimalSeparator(locale);
+    }
+
+    @Override
+    public Set<BankImportFormat> supportedFormats() {
+        return EnumSet.of(BankImportFormat.POSTBANK_XML, BankImportFormat.OBB_XML);
+    }
+
+    @Override
+    public void parse(InputStream input, Consumer<ParsedBankTransaction> consumer) throws IOException {
+        XMLStreamReader reader = null;
+        int recordNumber = 0;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(input);
+            List<String> path = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            Map<String, String> fields = new HashMap<>();
+            int recordDepth = 0;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = StatementValues.normalizeKey(reader.getLocalName());
+                    path.add(name);
+                    text.setLength(0);
+                    if (recordDepth == 0 && RECORD_ELEMENTS.contains(name)) {
+                        recordDepth = path.size();
+                        recordNumber++;
+                        fields.clear();
+                    }
+                    if (recordDepth > 0) {
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            String attribute = StatementValues.normalizeKey(reader.getAttributeLocalName(i));
+                            String value = reader.getAttributeValue(i);
+                            fields.putIfAbsent(attribute, value);
+                            fields.putIfAbsent(name + attribute, value);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = path.get(path.size() - 1);
+                    if (recordDepth > 0 && path.size() == recordDepth) {
+                        ParsedBankTransaction transaction = StatementRecordMapper.map(fields, decimalSeparator);
+                        if (transaction != null) {
+                            consumer.accept(transaction);
+                        }
+                        recordDepth = 0;
+                    } else if (recordDepth > 0) {
+                        String value = StatementValues.trimToNull(text.toString());
+                        if (value != null) {
+                            fields.putIfAbsent(name, value);
+                            if (path.size() > recordDepth + 1) {
+                                fields.putIfAbsent(path.get(path.size() - 2) + name, value);
+                            }
+                        }
+                    }
+                    path.remove(path.size() - 1);
+                    text.setLength(0);
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Невалиден XML файл: " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Запис " + recordNumber + ": " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // the underlying stream is closed by the caller
+                }
+            }
+        }
+    }
+}
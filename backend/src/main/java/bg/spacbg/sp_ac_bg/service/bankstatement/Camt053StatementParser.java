@@ -0,0 +1,226 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import bg.spacbg.sp_ac_bg.model.enums.BankImportFormat;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * ISO 20022 camt.053 bank-to-customer statements (Wise, Revolut, Paysera).
+ *
+ * The document is read with StAX and each {@code Ntry} is emitted as soon as its end tag is reached; only
+ * the element path and the fields of the current entry are kept. Elements are matched by local name, so
+ * the 001.02 to 001.08 schema versions used by the three providers share one parser. Pending and
+ * informational entries are skipped. An entry with several {@code TxDtls} (batch booking) is imported as
+ * one transaction for the booked amount. Amounts are ISO 20022 decimals with a decimal point.
+ */
+@Component
+public class Camt053StatementParser implements BankStatementParser {
+
+    private final XMLInputFactory xmlInputFactory = StatementValues.newXmlInputFactory();
+
+    @Override
+    public Set<BankImportFormat> supportedFormats() {
+        return EnumSet.of(BankImportFormat.WISE_CAMT053, BankImportFormat.REVOLUT_CAMT053,
+                BankImportFormat.PAYSERA_CAMT053);
+    }
+
+    @Override
+    public void parse(InputStream input, Consumer<ParsedBankTransaction> consumer) throws IOException {
+        XMLStreamReader reader = null;
+        int entryNumber = 0;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(input);
+            List<String> path = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            String statementCurrency = null;
+            Entry entry = null;
+            int entryDepth = 0;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    path.add(name);
+                    text.setLength(0);
+                    if (entry == null && name.equals("Ntry")) {
+                        entry = new Entry();
+                        entryDepth = path.size();
+                        entryNumber++;
+                    } else if (entry != null && name.equals("Amt") && path.size() == entryDepth + 1) {
+                        entry.currency = reader.getAttributeValue(null, "Ccy");
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = path.get(path.size() - 1);
+                    String parent = path.size() > 1 ? path.get(path.size() - 2) : "";
+                    String value = StatementValues.trimToNull(text.toString());
+                    if (entry != null && name.equals("Ntry")) {
+                        ParsedBankTransaction transaction = entry.toTransaction(statementCurrency);
+                        if (transaction != null) {
+                            consumer.accept(transaction);
+                        }
+                        entry = null;
+                    } else if (entry != null && value != null) {
+                        entry.field(name, parent, path, entryDepth, value);
+                    } else if (entry == null && name.equals("Ccy") && parent.equals("Acct")) {
+                        statementCurrency = value;
+                    }
+                    path.remove(path.size() - 1);
+                    text.setLength(0);
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Невалиден CAMT.053 файл: " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Запис " + entryNumber + ": " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // the underlying stream is closed by the caller
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private String amount;
+        private String currency;
+        private String creditDebit;
+        private String status;
+        private LocalDate bookingDate;
+        private LocalDate valueDate;
+        private String accountServicerReference;
+        private String endToEndId;
+        private final StringBuilder remittance = new StringBuilder();
+        private final StringBuilder additionalInfo = new StringBuilder();
+        private String debtorName;
+        private String creditorName;
+        private String debtorIban;
+        private String creditorIban;
+
+        void field(String name, String parent, List<String> path, int entryDepth, String value) {
+            boolean direct = path.size() == entryDepth + 1;
+            switch (name) {
+                case "Amt" -> {
+                    if (direct) {
+                        amount = value;
+                    }
+                }
+                case "CdtDbtInd" -> {
+                    if (direct) {
+                        creditDebit = value;
+                    }
+                }
+                case "Sts" -> {
+                    if (direct) {
+                        status = value;
+                    }
+                }
+                case "Cd" -> {
+                    if (parent.equals("Sts") && path.size() == entryDepth + 2) {
+                        status = value;
+                    }
+                }
+                case "Dt", "DtTm" -> {
+                    if (parent.equals("BookgDt")) {
+                        bookingDate = StatementValues.parseDate(value);
+                    } else if (parent.equals("ValDt")) {
+                        valueDate = StatementValues.parseDate(value);
+                    }
+                }
+                case "AcctSvcrRef" -> {
+                    if (accountServicerReference == null) {
+                        accountServicerReference = value;
+                    }
+                }
+                case "EndToEndId" -> {
+                    if (endToEndId == null && !value.equals("NOTPROVIDED")) {
+                        endToEndId = value;
+                    }
+                }
+                case "Ustrd" -> append(remittance, value);
+                case "AddtlTxInf", "AddtlNtryInf" -> append(additionalInfo, value);
+                case "Nm" -> {
+                    String party = party(path, entryDepth);
+                    if ("Dbtr".equals(party) && debtorName == null) {
+                        debtorName = value;
+                    } else if ("Cdtr".equals(party) && creditorName == null) {
+                        creditorName = value;
+                    }
+                }
+                case "IBAN" -> {
+                    if (parent.equals("Id") && path.contains("DbtrAcct") && debtorIban == null) {
+                        debtorIban = StatementValues.normalizeIban(value);
+                    } else if (parent.equals("Id") && path.contains("CdtrAcct") && creditorIban == null) {
+                        creditorIban = StatementValues.normalizeIban(value);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        ParsedBankTransaction toTransaction(String statementCurrency) {
+            if ("PDNG".equals(status) || "INFO".equals(status)) {
+                return null;
+            }
+            BigDecimal signedAmount = StatementValues.parseAmount(amount, StatementValues.DECIMAL_POINT);
+            if (signedAmount == null) {
+                throw new IllegalArgumentException("Липсва сума");
+            }
+            LocalDate date = bookingDate != null ? bookingDate : valueDate;
+            if (date == null) {
+                throw new IllegalArgumentException("Липсва дата на осчетоводяване");
+            }
+            boolean debit = "DBIT".equals(creditDebit);
+            if (debit) {
+                signedAmount = signedAmount.negate();
+            }
+            String description = !remittance.isEmpty() ? remittance.toString() : additionalInfo.toString();
+            return new ParsedBankTransaction(
+                    date,
+                    valueDate,
+                    signedAmount,
+                    currency != null ? currency : statementCurrency,
+                    StatementValues.trimToNull(description),
+                    debit ? creditorName : debtorName,
+                    debit ? creditorIban : debtorIban,
+                    endToEndId != null ? endToEndId : accountServicerReference);
+        }
+
+        // Nearest enclosing Dbtr/Cdtr; agents and ultimate parties are not the counterparty
+        private static String party(List<String> path, int entryDepth) {
+            for (int i = path.size() - 2; i >= entryDepth; i--) {
+                String element = path.get(i);
+                if (element.equals("Dbtr") || element.equals("Cdtr")) {
+                    return element;
+                }
+            }
+            return null;
+        }
+
+        private static void append(StringBuilder target, String value) {
+            if (!target.isEmpty()) {
+                target.append(' ');
+            }
+            target.append(value);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import bg.spacbg.sp_ac_bg.model.enums.BankImportFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * CSV statement export of ЦКБ (Central Cooperative Bank).
+ *
+ * The export may start with account and period lines before the column header, so the header is the first
+ * line whose columns include a date and an amount (or debit/credit) column. The delimiter (semicolon, tab or
+ * comma) is detected from that line. Rows are tokenized one at a time, including quoted fields that span
+ * lines, and mapped by column name through {@link StatementRecordMapper}. Amounts are written in the locale
+ * of the export ({@code bank-statements.csv-locale}, Bulgarian by default: "1 234,56"), so a lone comma or dot
+ * is never guessed to be digit grouping or a decimal separator. Files without a UTF-8 byte order mark are
+ * read as Windows-1251.
+ */
+@Component
+public class CcbCsvStatementParser implements BankStatementParser {
+
+    private static final int MAX_PREAMBLE_LINES = 50;
+    private static final char[] DELIMITERS = {';', '\t', ','};
+
+    private final char decimalSeparator;
+
+    public CcbCsvStatementParser(@Value("${bank-statements.csv-locale:bg-BG}") String locale) {
+        this.decimalSeparator = StatementValues.decimalSeparator(locale);
+    }
+
+    @Override
+    public Set<BankImportFormat> supportedFormats() {
+        return EnumSet.of(BankImportFormat.CCB_CSV);
+    }
+
+    @Override
+    public void parse(InputStream input, Consumer<ParsedBankTransaction> consumer) throws IOException {
+        BufferedReader reader = StatementValues.openReader(input, StatementValues.WINDOWS_1251);
+
+        String[] header = null;
+        char delimiter = ';';
+        int lineNumber = 0;
+        while (header == null) {
+            String line = reader.readLine();
+            lineNumber++;
+            if (line == null || lineNumber > MAX_PREAMBLE_LINES) {
+                throw new IllegalArgumentException("CSV файлът няма заглавен ред с колони за дата и сума");
+            }
+            char candidate = detectDelimiter(line);
+            List<String> cells = tokenize(line, candidate);
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < cells.size(); i++) {
+                columns.putIfAbsent(StatementValues.normalizeKey(cells.get(i)), i);
+            }
+            if (StatementRecordMapper.hasDateAndAmountFields(columns)) {
+                header = new String[cells.size()];
+                for (int i = 0; i < cells.size(); i++) {
+                    header[i] = StatementValues.normalizeKey(cells.get(i));
+                }
+                delimiter = candidate;
+            }
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        List<String> cells;
+        int rowNumber = lineNumber;
+        while ((cells = readRecord(reader, delimiter)) != null) {
+            rowNumber++;
+            fields.clear();
+            for (int i = 0; i < cells.size() && i < header.length; i++) {
+                fields.putIfAbsent(header[i], cells.get(i));
+            }
+            ParsedBankTransaction transaction;
+            try {
+                transaction = StatementRecordMapper.map(fields, decimalSeparator);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Ред " + rowNumber + ": " + e.getMessage(), e);
+            }
+            if (transaction != null) {
+                consumer.accept(transaction);
+            }
+        }
+    }
+
+    private static char detectDelimiter(String line) {
+        char best = DELIMITERS[0];
+        int bestCount = -1;
+        for (char delimiter : DELIMITERS) {
+            int count = tokenize(line, delimiter).size();
+            if (count > bestCount) {
+                best = delimiter;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private static List<String> tokenize(String line, char delimiter) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        tokenizeLine(line, delimiter, cells, cell, false);
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    /**
+     * Reads one CSV record; a quoted field left open at the end of a line continues on the next line.
+     * Returns {@code null} at the end of the input.
+     */
+    private static List<String> readRecord(BufferedReader reader, char delimiter) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = tokenizeLine(line, delimiter, cells, cell, false);
+        while (quoted) {
+            line = reader.readLine();
+            if (line == null) {
+                throw new IllegalArgumentException("CSV файлът завършва с незатворени кавички");
+            }
+            cell.append('\n');
+            quoted = tokenizeLine(line, delimiter, cells, cell, true);
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    /**
+     * Splits one physical line into {@code cells}, leaving the last cell in {@code cell}. Returns whether the
+     * line ended inside a quoted field.
+     */
+    private static boolean tokenizeLine(String line, char delimiter, List<String> cells, StringBuilder cell,
+                                        boolean quoted) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"' && cell.isEmpty()) {
+                quoted = true;
+            } else if (c == delimiter) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        return quoted;
+    }
+}
@@ -0,0 +1,217 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import bg.spacbg.sp_ac_bg.model.enums.BankImportFormat;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SWIFT MT940 statements (UniCredit Bulbank).
+ *
+ * The file is tokenized line by line into tagged fields; continuation lines are appended to the open field.
+ * A {@code :61:} statement line is held until the following {@code :86:} information field (or the next
+ * tag) completes it, so only one transaction is in memory at a time. The currency comes from the opening
+ * balance {@code :60F:}/{@code :60M:} of each statement in the file. Structured {@code :86:} content with
+ * {@code ?nn} subfields is split into purpose, counterparty name and IBAN; free-form content becomes the
+ * description. Amounts use the SWIFT decimal comma. Files without a UTF-8 byte order mark are read as
+ * Windows-1251.
+ */
+@Component
+public class Mt940StatementParser implements BankStatementParser {
+
+    // :61: value date, optional entry date (MMDD), mark, optional funds code, amount, type, references
+    private static final Pattern STATEMENT_LINE = Pattern.compile(
+            "(\\d{6})(\\d{4})?(RC|RD|C|D)([A-Z])?(\\d+,\\d*)([A-Z][A-Z0-9]{3})?([^/\\n]*)(?://([^\\n]*))?(?:\\n(.*))?",
+            Pattern.DOTALL);
+    private static final Pattern TAG = Pattern.compile(":(\\d{2}[A-Z]?):(.*)");
+    private static final Pattern SUBFIELD = Pattern.compile("\\?(\\d{2})");
+
+    @Override
+    public Set<BankImportFormat> supportedFormats() {
+        return EnumSet.of(BankImportFormat.UNICREDIT_MT940);
+    }
+
+    @Override
+    public void parse(InputStream input, Consumer<ParsedBankTransaction> consumer) throws IOException {
+        BufferedReader reader = StatementValues.openReader(input, StatementValues.WINDOWS_1251);
+        State state = new State(consumer);
+
+        String tag = null;
+        StringBuilder value = new StringBuilder();
+        String line;
+        int lineNumber = 0;
+        int tagLine = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            // SWIFT envelope: "{1:...}{2:...}{4:" opens the text block, "-}" closes it
+            int textBlock = line.indexOf("{4:");
+            if (textBlock >= 0) {
+                line = line.substring(textBlock + 3);
+            }
+            String trimmed = line.strip();
+            if (trimmed.equals("-") || trimmed.equals("-}")) {
+                state.field(tag, value, tagLine);
+                state.endOfMessage();
+                tag = null;
+                value.setLength(0);
+                continue;
+            }
+            Matcher matcher = TAG.matcher(line);
+            if (matcher.matches()) {
+                state.field(tag, value, tagLine);
+                tag = matcher.group(1);
+                tagLine = lineNumber;
+                value.setLength(0);
+                value.append(matcher.group(2));
+            } else if (tag != null && !line.isBlank()) {
+                value.append('\n').append(line);
+            }
+        }
+        state.field(tag, value, tagLine);
+        state.endOfMessage();
+    }
+
+    private static final class State {
+
+        private final Consumer<ParsedBankTransaction> consumer;
+        private String currencyCode;
+        private ParsedBankTransaction pending;
+
+        private State(Consumer<ParsedBankTransaction> consumer) {
+            this.consumer = consumer;
+        }
+
+        void field(String tag, CharSequence value, int lineNumber) {
+            if (tag == null) {
+                return;
+            }
+            try {
+                switch (tag) {
+                    case "60F", "60M" -> {
+                        flush();
+                        String balance = value.toString().strip();
+                        currencyCode = balance.length() >= 10 ? balance.substring(7, 10) : null;
+                    }
+                    case "61" -> {
+                        flush();
+                        pending = statementLine(value.toString());
+                    }
+                    case "86" -> {
+                        if (pending != null) {
+                            consumer.accept(withInformation(pending, value.toString()));
+                            pending = null;
+                        }
+                    }
+                    default -> flush();
+                }
+            } catch (IllegalArgumentException | DateTimeException e) {
+                throw new IllegalArgumentException("Ред " + lineNumber + " (:" + tag + ":): " + e.getMessage(), e);
+            }
+        }
+
+        void endOfMessage() {
+            flush();
+            currencyCode = null;
+        }
+
+        private void flush() {
+            if (pending != null) {
+                consumer.accept(pending);
+                pending = null;
+            }
+        }
+
+        private ParsedBankTransaction statementLine(String value) {
+            Matcher matcher = STATEMENT_LINE.matcher(value.strip());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Невалиден ред от извлечение: " + value);
+            }
+            LocalDate valueDate = parseYyMmDd(matcher.group(1));
+            LocalDate entryDate = matcher.group(2) != null ? entryDate(valueDate, matcher.group(2)) : valueDate;
+            BigDecimal amount = StatementValues.parseAmount(matcher.group(5), StatementValues.DECIMAL_COMMA);
+            String mark = matcher.group(3);
+            if (mark.equals("D") || mark.equals("RC")) {
+                amount = amount.negate();
+            }
+            String reference = StatementValues.trimToNull(matcher.group(7));
+            if (reference == null || reference.equals("NONREF")) {
+                reference = StatementValues.trimToNull(matcher.group(8));
+            }
+            return new ParsedBankTransaction(entryDate, valueDate, amount, currencyCode,
+                    StatementValues.trimToNull(matcher.group(9)), null, null, reference);
+        }
+
+        private static ParsedBankTransaction withInformation(ParsedBankTransaction line, String information) {
+            String description;
+            String name = null;
+            String iban = null;
+            Matcher subfields = SUBFIELD.matcher(information);
+            if (subfields.find()) {
+                // Subfields may be wrapped anywhere, so line breaks carry no meaning
+                String text = information.replace("\n", "");
+                subfields = SUBFIELD.matcher(text);
+                StringBuilder purpose = new StringBuilder();
+                StringBuilder counterparty = new StringBuilder();
+                int code = -1;
+                int start = 0;
+                while (true) {
+                    boolean found = subfields.find();
+                    int end = found ? subfields.start() : text.length();
+                    if (code >= 0) {
+                        String content = text.substring(start, end);
+                        if ((code >= 20 && code <= 29) || (code >= 60 && code <= 63)) {
+                            purpose.append(content);
+                        } else if (code == 32 || code == 33) {
+                            counterparty.append(content);
+                        } else if (code == 31) {
+                            iban = StatementValues.normalizeIban(content);
+                        }
+                    }
+                    if (!found) {
+                        break;
+                    }
+                    code = Integer.parseInt(subfields.group(1));
+                    start = subfields.end();
+                }
+                description = StatementValues.trimToNull(purpose.toString());
+                name = StatementValues.trimToNull(counterparty.toString());
+            } else {
+                description = StatementValues.trimToNull(information.replace('\n', ' '));
+            }
+            if (description == null) {
+                description = line.description();
+            }
+            return new ParsedBankTransaction(line.bookingDate(), line.valueDate(), line.amount(),
+                    line.currencyCode(), description, name, iban, line.reference());
+        }
+
+        private static LocalDate parseYyMmDd(String value) {
+            int year = Integer.parseInt(value.substring(0, 2));
+            return LocalDate.of(year < 80 ? 2000 + year : 1900 + year,
+                    Integer.parseInt(value.substring(2, 4)), Integer.parseInt(value.substring(4, 6)));
+        }
+
+        // The entry date has no year; it can fall in the year before or after the value date
+        private static LocalDate entryDate(LocalDate valueDate, String mmdd) {
+            int month = Integer.parseInt(mmdd.substring(0, 2));
+            int day = Integer.parseInt(mmdd.substring(2, 4));
+            int year = valueDate.getYear();
+            if (month == 12 && valueDate.getMonthValue() == 1) {
+                year--;
+            } else if (month == 1 && valueDate.getMonthValue() == 12) {
+                year++;
+            }
+            return LocalDate.of(year, month, day);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One transaction read from a bank statement file.
+ *
+ * The amount is signed from the account holder's point of view: positive for credits (incoming),
+ * negative for debits (outgoing). The currency is {@code null} when the file does not state it; the
+ * importer then falls back to the currency of the bank profile.
+ */
+public record ParsedBankTransaction(LocalDate bookingDate, LocalDate valueDate, BigDecimal amount,
+                                    String currencyCode, String description, String counterpartyName,
+                                    String counterpartyIban, String reference) {
+
+    public boolean isCredit() {
+        return amount.signum() > 0;
+    }
+
+    public ParsedBankTransaction withDefaultCurrency(String defaultCurrencyCode) {
+        if (currencyCode != null) {
+            return this;
+        }
+        return new ParsedBankTransaction(bookingDate, valueDate, amount, defaultCurrencyCode, description,
+                counterpartyName, counterpartyIban, reference);
+    }
+}
@@ -0,0 +1,134 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps a flat record of named fields (a CSV row or the leaf elements of an XML record) to a transaction.
+ *
+ * Field names are matched case-insensitively against Bulgarian and English aliases, so the same mapping
+ * serves the column headers and element names of the different bank exports. Amounts come either as one
+ * signed or direction-qualified amount, or as separate debit and credit columns, written with the decimal
+ * separator of the export.
+ */
+final class StatementRecordMapper {
+
+    private static final List<String> BOOKING_DATE = List.of(
+            "bookingdate", "booking date", "transactiondate", "transaction date", "postingdate", "posting date",
+            "date", "trdate", "opdate", "дата", "дата на операция", "дата на осчетоводяване", "дата на плащане");
+    private static final List<String> VALUE_DATE = List.of(
+            "valuedate", "value date", "valdate", "вальор", "дата вальор");
+    private static final List<String> AMOUNT = List.of(
+            "amount", "amt", "sum", "сума");
+    private static final List<String> DEBIT = List.of(
+            "debit", "debitamount", "debit amount", "dt", "дебит", "дебит сума", "сума дебит");
+    private static final List<String> CREDIT = List.of(
+            "credit", "creditamount", "credit amount", "ct", "кредит", "кредит сума", "сума кредит");
+    private static final List<String> DIRECTION = List.of(
+            "dc", "d/c", "cdtdbtind", "direction", "type", "д/к", "вид");
+    private static final List<String> CURRENCY = List.of(
+            "currency", "ccy", "currencycode", "amountcurrency", "amountccy", "валута");
+    private static final List<String> DESCRIPTION = List.of(
+            "description", "details", "narrative", "reason", "remittanceinformation", "purpose", "основание",
+            "описание", "основание за плащане", "допълнително пояснение", "пояснение");
+    private static final List<String> COUNTERPARTY_NAME = List.of(
+            "counterpartyname", "counterparty", "counterparty name", "contragent", "contragentname", "partnername",
+            "partner", "name", "контрагент", "наредител/получател", "наредител / получател", "име на контрагент");
+    private static final List<String> COUNTERPARTY_IBAN = List.of(
+            "counterpartyiban", "counterpartyaccount", "counterparty iban", "counterparty account", "contragentiban",
+            "contragentaccount", "partneriban", "partneraccount", "iban", "сметка на контрагент",
+            "iban на контрагент", "сметка");
+    private static final List<String> REFERENCE = List.of(
+            "reference", "ref", "referenceno", "docno", "documentnumber", "document number", "transactionid",
+            "id", "референция", "номер на документ", "документ", "№ на документ");
+
+    private StatementRecordMapper() {
+    }
+
+    static boolean hasDateAndAmountFields(Map<String, ?> fields) {
+        return containsAny(fields, BOOKING_DATE)
+                && (containsAny(fields, AMOUNT) || containsAny(fields, DEBIT) || containsAny(fields, CREDIT));
+    }
+
+    /**
+     * Returns the transaction, or {@code null} for rows without a date or a non-zero amount (balance, total
+     * and separator rows). {@code fields} must be keyed by {@link StatementValues#normalizeKey}.
+     */
+    static ParsedBankTransaction map(Map<String, String> fields, char decimalSeparator) {
+        // Total and balance rows carry a label such as "Общо" in the date column
+        String dateText = first(fields, BOOKING_DATE);
+        if (dateText == null || dateText.chars().noneMatch(Character::isDigit)) {
+            return null;
+        }
+        LocalDate bookingDate = StatementValues.parseDate(dateText);
+        BigDecimal amount = signedAmount(fields, decimalSeparator);
+        if (amount == null || amount.signum() == 0) {
+            return null;
+        }
+        String currency = StatementValues.trimToNull(first(fields, CURRENCY));
+        return new ParsedBankTransaction(
+                bookingDate,
+                StatementValues.parseDate(first(fields, VALUE_DATE)),
+                amount,
+                currency != null ? currency.toUpperCase(Locale.ROOT) : null,
+                StatementValues.trimToNull(first(fields, DESCRIPTION)),
+                StatementValues.trimToNull(first(fields, COUNTERPARTY_NAME)),
+                StatementValues.normalizeIban(first(fields, COUNTERPARTY_IBAN)),
+                StatementValues.trimToNull(first(fields, REFERENCE)));
+    }
+
+    private static BigDecimal signedAmount(Map<String, String> fields, char decimalSeparator) {
+        BigDecimal amount = StatementValues.parseAmount(first(fields, AMOUNT), decimalSeparator);
+        if (amount != null) {
+            String direction = StatementValues.trimToNull(first(fields, DIRECTION));
+            return isDebit(direction) ? amount.abs().negate() : isCredit(direction) ? amount.abs() : amount;
+        }
+        BigDecimal debit = StatementValues.parseAmount(first(fields, DEBIT), decimalSeparator);
+        BigDecimal credit = StatementValues.parseAmount(first(fields, CREDIT), decimalSeparator);
+        if (debit == null && credit == null) {
+            return null;
+        }
+        BigDecimal result = credit != null ? credit.abs() : BigDecimal.ZERO;
+        return debit != null ? result.subtract(debit.abs()) : result;
+    }
+
+    private static boolean isDebit(String direction) {
+        if (direction == null) {
+            return false;
+        }
+        String value = direction.toUpperCase(Locale.ROOT);
+        return value.equals("D") || value.equals("DR") || value.equals("DBIT") || value.equals("DEBIT")
+                || value.equals("Д") || value.equals("ДЕБИТ");
+    }
+
+    private static boolean isCredit(String direction) {
+        if (direction == null) {
+            return false;
+        }
+        String value = direction.toUpperCase(Locale.ROOT);
+        return value.equals("C") || value.equals("CR") || value.equals("CRDT") || value.equals("CREDIT")
+                || value.equals("К") || value.equals("КРЕДИТ");
+    }
+
+    private static String first(Map<String, String> fields, List<String> aliases) {
+        for (String alias : aliases) {
+            String value = fields.get(alias);
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static boolean containsAny(Map<String, ?> fields, List<String> aliases) {
+        for (String alias : aliases) {
+            if (fields.containsKey(alias)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
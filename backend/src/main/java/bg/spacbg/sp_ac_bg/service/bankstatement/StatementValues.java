@@ -0,0 +1,194 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import javax.xml.stream.XMLInputFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Value parsing shared by the statement parsers: amounts and dates in the notations used by Bulgarian and
+ * international bank exports, IBAN normalisation and stream setup.
+ */
+final class StatementValues {
+
+    static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+
+    // ISO 20022 XML amounts; SWIFT MT amounts
+    static final char DECIMAL_POINT = '.';
+    static final char DECIMAL_COMMA = ',';
+
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("dd.MM.yyyy"),
+            DateTimeFormatter.ofPattern("d.M.yyyy"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"),
+            DateTimeFormatter.ofPattern("dd.MM.yy"),
+            DateTimeFormatter.BASIC_ISO_DATE);
+
+    private static final Pattern IBAN = Pattern.compile("[A-Z]{2}\\d{2}[A-Z0-9]{10,30}");
+
+    private StatementValues() {
+    }
+
+    static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.strip();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * Parses an amount written with the given decimal separator ('.' or ','). The other one, spaces and
+     * apostrophes are digit grouping, so "1 234,56", "1.234,56" and "12,50-" parse with a decimal comma and
+     * "1,234.56" and "1'234.56" with a decimal point; "1,234" is 1.234 with a comma and 1234 with a point.
+     * A second decimal separator, or grouping after it, makes the amount invalid.
+     */
+    static BigDecimal parseAmount(String value, char decimalSeparator) {
+        String text = trimToNull(value);
+        if (text == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(text.length());
+        boolean negative = false;
+        boolean fraction = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == decimalSeparator && !fraction) {
+                digits.append('.');
+                fraction = true;
+            } else if (c == '-' || c == '\u2212') {
+                negative = true;
+            } else if (c == ',' || c == '.' || c == '\'') {
+                if (fraction) {
+                    throw new IllegalArgumentException("Невалидна сума: " + value);
+                }
+            } else if (c != '+' && c != '\u00A0' && c != '\u202F' && !Character.isWhitespace(c)) {
+                throw new IllegalArgumentException("Невалидна сума: " + value);
+            }
+        }
+        if (digits.isEmpty()) {
+            throw new IllegalArgumentException("Невалидна сума: " + value);
+        }
+        try {
+            BigDecimal amount = new BigDecimal(digits.toString());
+            return negative ? amount.negate() : amount;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Невалидна сума: " + value);
+        }
+    }
+
+    /**
+     * Decimal separator of amounts written in the given locale, e.g. ',' for "bg-BG" and '.' for "en".
+     */
+    static char decimalSeparator(String languageTag) {
+        char separator = DecimalFormatSymbols.getInstance(Locale.forLanguageTag(languageTag)).getDecimalSeparator();
+        if (separator != '.' && separator != ',') {
+            throw new IllegalArgumentException("Неподдържан десетичен разделител '" + separator +
+                    "' на локала " + languageTag);
+        }
+        return separator;
+    }
+
+    /**
+     * Parses a date in one of the usual export notations; a time part after 'T' or a space is ignored.
+     */
+    static LocalDate parseDate(String value) {
+        String text = trimToNull(value);
+        if (text == null) {
+            return null;
+        }
+        int timeStart = indexOfTimePart(text);
+        if (timeStart > 0) {
+            text = text.substring(0, timeStart);
+        }
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(text, format);
+            } catch (DateTimeParseException ignored) {
+                // try the next notation
+            }
+        }
+        throw new IllegalArgumentException("Невалидна дата: " + value);
+    }
+
+    private static int indexOfTimePart(String text) {
+        for (int i = 8; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == 'T' || c == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the IBAN without spaces in upper case, or {@code null} when the value is not an IBAN
+     * (domestic account numbers, card numbers and free text are dropped).
+     */
+    static String normalizeIban(String value) {
+        String text = trimToNull(value);
+        if (text == null) {
+            return null;
+        }
+        StringBuilder iban = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                iban.append(Character.toUpperCase(c));
+            }
+        }
+        return IBAN.matcher(iban).matches() ? iban.toString() : null;
+    }
+
+    static String normalizeKey(String value) {
+        if (value == null) {
+            return "";
+        }
+        String key = value.replace("\uFEFF", "").strip().toLowerCase(Locale.ROOT);
+        return key.replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Opens a buffered reader that honours a UTF-8 byte order mark and otherwise decodes with the given
+     * charset.
+     */
+    static BufferedReader openReader(InputStream input, Charset defaultCharset) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(3);
+        byte[] bom = buffered.readNBytes(3);
+        Charset charset = defaultCharset;
+        if (bom.length == 3 && (bom[0] & 0xFF) == 0xEF && (bom[1] & 0xFF) == 0xBB && (bom[2] & 0xFF) == 0xBF) {
+            charset = StandardCharsets.UTF_8;
+        } else {
+            buffered.reset();
+        }
+        return new BufferedReader(new InputStreamReader(buffered, charset));
+    }
+
+    /**
+     * StAX factory with DTDs and external entities disabled, since statement files come from users.
+     */
+    static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
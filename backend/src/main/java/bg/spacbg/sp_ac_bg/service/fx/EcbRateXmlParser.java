@@ -0,0 +1,70 @@
+package bg.spacbg.sp_ac_bg.service.fx;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Streaming parser of the ECB euro reference rate files (daily, 90-day and full history).
+ *
+ * The files nest {@code <Cube currency='USD' rate='1.0876'/>} elements in one {@code <Cube time='...'>} per
+ * day; each rate is handed to the consumer as it is read, so a full-history file is never held in memory.
+ */
+public final class EcbRateXmlParser {
+
+    @FunctionalInterface
+    public interface RateConsumer {
+        void onRate(LocalDate date, String currencyCode, BigDecimal rate);
+    }
+
+    private final XMLInputFactory xmlInputFactory;
+
+    public EcbRateXmlParser() {
+        xmlInputFactory = XMLInputFactory.newFactory();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public void parse(InputStream input, RateConsumer consumer) {
+        XMLStreamReader reader = null;
+        LocalDate date = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(input);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT || !reader.getLocalName().equals("Cube")) {
+                    continue;
+                }
+                String time = reader.getAttributeValue(null, "time");
+                if (time != null) {
+                    date = LocalDate.parse(time);
+                    continue;
+                }
+                String currency = reader.getAttributeValue(null, "currency");
+                String rate = reader.getAttributeValue(null, "rate");
+                if (currency != null && rate != null) {
+                    if (date == null) {
+                        throw new IllegalArgumentException("Курс на " + currency + " без дата");
+                    }
+                    consumer.onRate(date, currency.strip(), new BigDecimal(rate.strip()));
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Невалиден файл с курсове на ЕЦБ: " + e.getMessage(), e);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Невалиден курс на ЕЦБ след " + date + ": " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // the underlying stream is closed by the caller
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package bg.spacbg.sp_ac_bg.service.fx;
+
+import bg.spacbg.sp_ac_bg.repository.ExchangeRateJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory exchange rates: one {@link RateSeries} per currency pair, loaded at start-up.
+ *
+ * Rates written through the exchange rate service refresh their pair once the transaction commits; a periodic
+ * full reload picks up rates written by other instances or directly in the database. A pair without a series
+ * of its own is answered from the reverse pair, and failing that across {@code cross-currency} (EUR, the base
+ * of the ECB rates). A cross rate multiplies and divides the stored rates and rounds once at the end, so it is
+ * the exact quotient of the two ECB rates to {@link RateSeries#REVERSE_RATE_SCALE} decimals.
+ */
+@Component
+public class ExchangeRateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRateCache.class);
+
+    public record CurrencyPair(String fromCode, String toCode) {
+    }
+
+    @Value("${exchange-rates.cross-currency:EUR}")
+    private String crossCurrency;
+
+    private final ExchangeRateJdbcRepository rateRepository;
+
+    // from code -> to code -> series; replaced as a whole, never modified in place
+    private volatile Map<String, Map<String, RateSeries>> seriesByPair = Map.of();
+
+    public ExchangeRateCache(ExchangeRateJdbcRepository rateRepository) {
+        this.rateRepository = rateRepository;
+    }
+
+    @PostConstruct
+    void load() {
+        reload();
+    }
+
+    @Scheduled(initialDelayString = "${exchange-rates.cache-reload-ms:900000}",
+            fixedDelayString = "${exchange-rates.cache-reload-ms:900000}")
+    public synchronized void reload() {
+        Map<String, Map<String, RateSeries.Builder>> builders = new HashMap<>();
+        int[] count = new int[1];
+        rateRepository.forEachActiveRate((fromCode, toCode, validDate, rate) -> {
+            builders.computeIfAbsent(fromCode, code -> new HashMap<>())
+                    .computeIfAbsent(toCode, code -> new RateSeries.Builder())
+                    .add(validDate, rate);
+            count[0]++;
+        });
+
+        Map<String, Map<String, RateSeries>> loaded = new HashMap<>();
+        builders.forEach((fromCode, byTo) -> {
+            Map<String, RateSeries> series = new HashMap<>();
+            byTo.forEach((toCode, builder) -> series.put(toCode, builder.build()));
+            loaded.put(fromCode, Map.copyOf(series));
+        });
+        seriesByPair = Map.copyOf(loaded);
+        log.debug("Loaded {} exchange rates for {} currency pairs", count[0],
+                loaded.values().stream().mapToInt(Map::size).sum());
+    }
+
+    /**
+     * Reloads the series of one pair from the database.
+     */
+    public synchronized void refresh(String fromCode, String toCode) {
+        RateSeries.Builder builder = new RateSeries.Builder();
+        rateRepository.forEachActiveRate(fromCode, toCode,
+                (from, to, validDate, rate) -> builder.add(validDate, rate));
+        RateSeries series = builder.build();
+
+        Map<String, Map<String, RateSeries>> updated = new HashMap<>(seriesByPair);
+        Map<String, RateSeries> byTo = new HashMap<>(updated.getOrDefault(fromCode, Map.of()));
+        if (series.size() == 0) {
+            byTo.remove(toCode);
+        } else {
+            byTo.put(toCode, series);
+        }
+        updated.put(fromCode, Map.copyOf(byTo));
+        seriesByPair = Map.copyOf(updated);
+    }
+
+    /**
+     * Refreshes the given pairs after the current transaction commits, or right away outside a transaction.
+     */
+    public void refreshAfterCommit(Collection<CurrencyPair> pairs) {
+        List<CurrencyPair> toRefresh = List.copyOf(pairs);
+        if (toRefresh.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            toRefresh.forEach(pair -> refresh(pair.fromCode(), pair.toCode()));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                toRefresh.forEach(pair -> refresh(pair.fromCode(), pair.toCode()));
+            }
+        });
+    }
+
+    /**
+     * The stored series of the pair, for callers converting many amounts; {@code null} if there is none.
+     */
+    public RateSeries series(String fromCode, String toCode) {
+        Map<String, RateSeries> byTo = seriesByPair.get(fromCode.toUpperCase(Locale.ROOT));
+        return byTo == null ? null : byTo.get(toCode.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Units of {@code toCode} per unit of {@code fromCode} as of {@code date}, or {@code null} if no rate is
+     * known on or before that date.
+     */
+    public BigDecimal rateAsOf(String fromCode, String toCode, LocalDate date) {
+        if (fromCode.equalsIgnoreCase(toCode)) {
+            return BigDecimal.ONE;
+        }
+        Ratio rate = directRatioAsOf(fromCode, toCode, date);
+        if (rate != null || fromCode.equalsIgnoreCase(crossCurrency) || toCode.equalsIgnoreCase(crossCurrency)) {
+            return rate == null ? null : rate.value();
+        }
+        Ratio toCross = directRatioAsOf(fromCode, crossCurrency, date);
+        Ratio fromCross = toCross == null ? null : directRatioAsOf(crossCurrency, toCode, date);
+        return fromCross == null ? null : toCross.times(fromCross).value();
+    }
+
+    /**
+     * {@code amount} in {@code fromCode} converted to {@code toCode} at the rate as of {@code date}.
+     */
+    public BigDecimal convert(BigDecimal amount, String fromCode, String toCode, LocalDate date) {
+        BigDecimal rate = rateAsOf(fromCode, toCode, date);
+        if (rate == null) {
+            throw new IllegalStateException("Няма курс " + fromCode + "/" + toCode + " към " + date);
+        }
+        return amount.multiply(rate);
+    }
+
+    /**
+     * Rate of the pair from its own series, or as one over the rate of the reverse pair.
+     */
+    private Ratio directRatioAsOf(String fromCode, String toCode, LocalDate date) {
+        RateSeries direct = series(fromCode, toCode);
+        BigDecimal rate = direct == null ? null : direct.rateAsOf(date);
+        if (rate != null) {
+            return new Ratio(rate, BigDecimal.ONE);
+        }
+        RateSeries reverse = series(toCode, fromCode);
+        BigDecimal reverseRate = reverse == null ? null : reverse.rateAsOf(date);
+        return reverseRate == null || reverseRate.signum() == 0 ? null : new Ratio(BigDecimal.ONE, reverseRate);
+    }
+
+    /**
+     * A rate kept as stored rates over stored rates until the single division in {@link #value()}.
+     */
+    private record Ratio(BigDecimal numerator, BigDecimal denominator) {
+
+        Ratio times(Ratio other) {
+            return new Ratio(numerator.multiply(other.numerator), denominator.multiply(other.denominator));
+        }
+
+        BigDecimal value() {
+            return denominator.compareTo(BigDecimal.ONE) == 0 ? numerator
+                    : numerator.divide(denominator, RateSeries.REVERSE_RATE_SCALE, RoundingMode.HALF_EVEN);
+        }
+    }
+}
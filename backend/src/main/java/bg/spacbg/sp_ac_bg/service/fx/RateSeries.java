@@ -0,0 +1,108 @@
+package bg.spacbg.sp_ac_bg.service.fx;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Immutable time series of one currency pair: parallel arrays of dates (as epoch days, ascending) and rates.
+ *
+ * As-of lookups are a binary search over the date array and return the stored {@link BigDecimal}, so they
+ * neither allocate nor touch the database. The rate as of a date is the one valid on that date or, for a
+ * weekend or holiday without a fixing, on the nearest earlier date that has one.
+ *
+ * Reverse rates are computed from the rates to {@link #REVERSE_RATE_SCALE} decimals; the stored reverse
+ * column has only 4, which is about 1% off for currencies such as HUF or JPY.
+ */
+public final class RateSeries {
+
+    public static final int REVERSE_RATE_SCALE = 10;
+
+    private final int[] days;
+    private final BigDecimal[] rates;
+    private final BigDecimal[] reverseRates;
+
+    private RateSeries(int[] days, BigDecimal[] rates, BigDecimal[] reverseRates) {
+        this.days = days;
+        this.rates = rates;
+        this.reverseRates = reverseRates;
+    }
+
+    public int size() {
+        return days.length;
+    }
+
+    /**
+     * Index of the rate valid on {@code date}, or -1 if the series starts later.
+     */
+    public int indexAsOf(LocalDate date) {
+        int found = Arrays.binarySearch(days, (int) date.toEpochDay());
+        return found >= 0 ? found : -found - 2;
+    }
+
+    public LocalDate dateAt(int index) {
+        return LocalDate.ofEpochDay(days[index]);
+    }
+
+    public BigDecimal rateAt(int index) {
+        return rates[index];
+    }
+
+    public BigDecimal reverseRateAt(int index) {
+        return reverseRates[index];
+    }
+
+    /**
+     * Rate valid on {@code date}, or {@code null} if the series starts later.
+     */
+    public BigDecimal rateAsOf(LocalDate date) {
+        int index = indexAsOf(date);
+        return index < 0 ? null : rates[index];
+    }
+
+    public BigDecimal reverseRateAsOf(LocalDate date) {
+        int index = indexAsOf(date);
+        return index < 0 ? null : reverseRates[index];
+    }
+
+    public BigDecimal latestRate() {
+        return days.length == 0 ? null : rates[days.length - 1];
+    }
+
+    /**
+     * Collects rates in date order. A date given twice keeps the later value.
+     */
+    static final class Builder {
+
+        private int[] days = new int[64];
+        private BigDecimal[] rates = new BigDecimal[64];
+        private BigDecimal[] reverseRates = new BigDecimal[64];
+        private int size;
+
+        void add(LocalDate date, BigDecimal rate) {
+            int day = (int) date.toEpochDay();
+            if (size > 0 && days[size - 1] > day) {
+                throw new IllegalArgumentException("Курсовете трябва да са подредени по дата");
+            }
+            if (size > 0 && days[size - 1] == day) {
+                size--;
+            } else if (size == days.length) {
+                int capacity = size * 2;
+                days = Arrays.copyOf(days, capacity);
+                rates = Arrays.copyOf(rates, capacity);
+                reverseRates = Arrays.copyOf(reverseRates, capacity);
+            }
+            days[size] = day;
+            rates[size] = rate;
+            reverseRates[size] = rate.signum() == 0 ? null
+                    : BigDecimal.ONE.divide(rate, REVERSE_RATE_SCALE, RoundingMode.HALF_EVEN);
+            size++;
+        }
+
+        RateSeries build() {
+            return new RateSeries(Arrays.copyOf(days, size), Arrays.copyOf(rates, size),
+                    Arrays.copyOf(reverseRates, size));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package bg.spacbg.sp_ac_bg.service.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram of outbound calls. Buckets are cumulative upper bounds in milliseconds, the
+ * last one catching everything slower.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long millis = nanos / 1_000_000L;
+        int i = 0;
+        while (i < BOUNDS_MS.length && millis > BOUNDS_MS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Call count, mean and the cumulative count per bucket ({@code le} = "less than or equal", in ms).
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Long> cumulative = new LinkedHashMap<>();
+        long running = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            running += buckets[i].sum();
+            cumulative.put(i < BOUNDS_MS.length ? "le" + BOUNDS_MS[i] : "inf", running);
+        }
+        long total = count.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", total);
+        snapshot.put("meanMs", total == 0 ? 0 : sumNanos.sum() / total / 1_000_000L);
+        snapshot.put("buckets", cumulative);
+        return snapshot;
+    }
+}
@@ -0,0 +1,152 @@
+package bg.spacbg.sp_ac_bg.service.http;
+
+import bg.spacbg.sp_ac_bg.config.OutboundHttpConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Outbound HTTP access to one upstream.
+ *
+ * All calls share one JDK {@link HttpClient}, which keeps connections to the upstream alive and reuses them.
+ * Every call is bounded by the configured connect and read timeouts, waits at most {@code bulkheadWaitMs} for
+ * one of {@code maxConcurrentCalls} slots, and is refused while the circuit breaker is open. Timeouts,
+ * connection errors and 5xx answers count as failures; 4xx answers are the caller's problem and do not.
+ */
+public class OutboundHttpClient {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundHttpClient.class);
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final long bulkheadWaitMs;
+    private final Duration readTimeout;
+
+    private final HttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejectedByBulkhead = new AtomicLong();
+    private final AtomicLong rejectedByBreaker = new AtomicLong();
+
+    public OutboundHttpClient(String name, OutboundHttpConfig.Upstream settings) {
+        this.name = name;
+        this.maxConcurrentCalls = Math.max(1, settings.getMaxConcurrentCalls());
+        this.bulkheadWaitMs = settings.getBulkheadWaitMs();
+        this.readTimeout = Duration.ofMillis(settings.getReadTimeoutMs());
+
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(settings.getConnectTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        this.restTemplate = new RestTemplate(requestFactory);
+
+        this.bulkhead = new Semaphore(maxConcurrentCalls, true);
+        this.circuitBreaker = new CircuitBreaker(settings.getFailureThreshold(), settings.getOpenDurationMs());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Runs a call through the shared {@link RestTemplate}.
+     */
+    public <T> T rest(Function<RestTemplate, T> call) {
+        acquire();
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return call.apply(restTemplate);
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            failed = true;
+            throw e;
+        } finally {
+            release(start, failed);
+        }
+    }
+
+    /**
+     * Sends a request through the shared {@link HttpClient}. A request without its own timeout gets the
+     * upstream's read timeout.
+     */
+    public HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        if (request.timeout().isEmpty()) {
+            request = HttpRequest.newBuilder(request, (header, value) -> true).timeout(readTimeout).build();
+        }
+        acquire();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            failed = response.statusCode() >= 500;
+            return response;
+        } finally {
+            release(start, failed);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("circuitState", circuitBreaker.state().name());
+        stats.put("consecutiveFailures", circuitBreaker.consecutiveFailures());
+        stats.put("inFlight", maxConcurrentCalls - bulkhead.availablePermits());
+        stats.put("maxConcurrentCalls", maxConcurrentCalls);
+        stats.put("failures", failures.get());
+        stats.put("rejectedByBulkhead", rejectedByBulkhead.get());
+        stats.put("rejectedByCircuitBreaker", rejectedByBreaker.get());
+        stats.put("latency", latency.snapshot());
+        return stats;
+    }
+
+    private void acquire() {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedByBulkhead.incrementAndGet();
+            throw new IllegalStateException("Твърде много едновременни заявки към " + name);
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            rejectedByBreaker.incrementAndGet();
+            throw new IllegalStateException("Услугата " + name + " е временно недостъпна (circuit breaker е отворен)");
+        }
+    }
+
+    private void release(long start, boolean failed) {
+        bulkhead.release();
+        latency.record(System.nanoTime() - start);
+        if (failed) {
+            failures.incrementAndGet();
+            circuitBreaker.onFailure();
+            log.debug("Outbound call to {} failed, circuit {}", name, circuitBreaker.state());
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package bg.spacbg.sp_ac_bg.service.http;
+
+import bg.spacbg.sp_ac_bg.config.OutboundHttpConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the outbound HTTP clients, one per upstream name, created on first use from
+ * {@code outbound-http} settings.
+ */
+@Component
+public class OutboundHttpClients {
+
+    private final OutboundHttpConfig config;
+    private final Map<String, OutboundHttpClient> clients = new ConcurrentHashMap<>();
+
+    public OutboundHttpClients(OutboundHttpConfig config) {
+        this.config = config;
+    }
+
+    public OutboundHttpClient get(String upstream) {
+        return clients.computeIfAbsent(upstream, name -> new OutboundHttpClient(name, config.settingsFor(name)));
+    }
+
+    /**
+     * Circuit state, bulkhead usage and latency histogram per upstream used so far.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        clients.forEach((name, client) -> stats.put(name, client.stats()));
+        return stats;
+    }
+}
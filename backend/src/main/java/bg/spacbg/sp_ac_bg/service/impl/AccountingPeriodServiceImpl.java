@@ -9,6 +9,7 @@ import bg.spacbg.sp_ac_bg.repository.AccountingPeriodRepository;
 import bg.spacbg.sp_ac_bg.repository.CompanyRepository;
 import bg.spacbg.sp_ac_bg.repository.UserRepository;
 import bg.spacbg.sp_ac_bg.service.AccountingPeriodService;
+import bg.spacbg.sp_ac_bg.service.InventoryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -16,6 +17,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,14 +30,17 @@ public class AccountingPeriodServiceImpl implements AccountingPeriodService {
     private final AccountingPeriodRepository accountingPeriodRepository;
     private final CompanyRepository companyRepository;
     private final UserRepository userRepository;
+    private final InventoryService inventoryService;
 
     public AccountingPeriodServiceImpl(
             AccountingPeriodRepository accountingPeriodRepository,
             CompanyRepository companyRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            InventoryService inventoryService) {
         this.accountingPeriodRepository = accountingPeriodRepository;
         this.companyRepository = companyRepository;
         this.userRepository = userRepository;
+        this.inventoryService = inventoryService;
     }
 
     @Override
@@ -103,6 +108,10 @@ public class AccountingPeriodServiceImpl implements AccountingPeriodService {
         period.setClosedAt(OffsetDateTime.now());
 
         AccountingPeriodEntity saved = accountingPeriodRepository.save(period);
+
+        // Freeze stock quantities and values at the period end as a starting point for later stock reports
+        inventoryService.createPeriodSnapshot(companyId, YearMonth.of(year, month).atEndOfMonth());
+
         log.info("Successfully closed accounting period {}/{} for company {}", year, month, companyId);
         return saved;
     }
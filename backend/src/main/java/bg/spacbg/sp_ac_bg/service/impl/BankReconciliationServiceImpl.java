@@ -0,0 +1,249 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.model.dto.BankReconciliationProposalDto;
+import bg.spacbg.sp_ac_bg.model.dto.BankReconciliationResultDto;
+import bg.spacbg.sp_ac_bg.model.dto.input.ConfirmBankMatchInput;
+import bg.spacbg.sp_ac_bg.model.entity.AccountEntity;
+import bg.spacbg.sp_ac_bg.model.entity.BankImportEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CompanyEntity;
+import bg.spacbg.sp_ac_bg.repository.BankImportRepository;
+import bg.spacbg.sp_ac_bg.repository.BankReconciliationJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.BankStatementLineJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.EntryLineJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryRepository;
+import bg.spacbg.sp_ac_bg.service.BankReconciliationService;
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankAutoPoster;
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankReconciliationMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional
+public class BankReconciliationServiceImpl implements BankReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(BankReconciliationServiceImpl.class);
+
+    // Used when the company has no default customers/suppliers account
+    private static final String DEFAULT_RECEIVABLE_PREFIX = "411";
+    private static final String DEFAULT_PAYABLE_PREFIX = "401";
+
+    private static final DateTimeFormatter ENTRY_NUMBER_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int DOCUMENT_NUMBER_LENGTH = 100;
+
+    private final BankImportRepository bankImportRepository;
+    private final BankReconciliationJdbcRepository reconciliationRepository;
+    private final BankStatementLineJdbcRepository statementLineRepository;
+    private final JournalEntryRepository journalEntryRepository;
+    private final JournalEntryJdbcRepository journalEntryJdbcRepository;
+    private final EntryLineJdbcRepository entryLineJdbcRepository;
+
+    public BankReconciliationServiceImpl(BankImportRepository bankImportRepository,
+                                         BankReconciliationJdbcRepository reconciliationRepository,
+                                         BankStatementLineJdbcRepository statementLineRepository,
+                                         JournalEntryRepository journalEntryRepository,
+                                         JournalEntryJdbcRepository journalEntryJdbcRepository,
+                                         EntryLineJdbcRepository entryLineJdbcRepository) {
+        this.bankImportRepository = bankImportRepository;
+        this.reconciliationRepository = reconciliationRepository;
+        this.statementLineRepository = statementLineRepository;
+        this.journalEntryRepository = journalEntryRepository;
+        this.journalEntryJdbcRepository = journalEntryJdbcRepository;
+        this.entryLineJdbcRepository = entryLineJdbcRepository;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BankReconciliationProposalDto> proposeMatches(Integer bankImportId) {
+        BankImportEntity importEntity = findImport(bankImportId);
+        List<BankReconciliationMatcher.StatementLine> lines = reconciliationRepository.findOpenLines(bankImportId);
+        if (lines.isEmpty()) {
+            return List.of();
+        }
+        CompanyEntity company = importEntity.getCompany();
+        List<BankReconciliationMatcher.OpenItem> openItems = reconciliationRepository.findOpenItems(
+                company.getId(), receivablePrefix(company), payablePrefix(company));
+
+        List<BankReconciliationMatcher.Proposal> proposals = BankReconciliationMatcher.propose(lines, openItems);
+        log.info("Proposed {} reconciliation matches for {} lines of bank import {} against {} open items",
+                proposals.size(), lines.size(), bankImportId, openItems.size());
+        return proposals.stream()
+                .map(BankReconciliationProposalDto::fromProposal)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public BankReconciliationResultDto confirmMatches(Integer bankImportId, List<ConfirmBankMatchInput> matches,
+                                                      Integer userId) {
+        if (matches == null || matches.isEmpty()) {
+            throw new IllegalArgumentException("Няма избрани съвпадения за потвърждаване");
+        }
+        BankImportEntity importEntity = findImport(bankImportId);
+        CompanyEntity company = importEntity.getCompany();
+        Integer bankAccountId = importEntity.getBankProfile().getAccount().getId();
+
+        Map<Integer, ConfirmBankMatchInput> matchesByLine = new LinkedHashMap<>();
+        for (ConfirmBankMatchInput match : matches) {
+            if (matchesByLine.put(match.getStatementLineId(), match) != null) {
+                throw new IllegalArgumentException("Ред " + match.getStatementLineId() + " е избран повече от веднъж");
+            }
+        }
+        List<BankReconciliationMatcher.StatementLine> lines =
+                reconciliationRepository.findOpenLines(bankImportId, matchesByLine.keySet());
+        if (lines.size() != matchesByLine.size()) {
+            throw new IllegalArgumentException("Някои от редовете не са намерени или вече са обработени");
+        }
+
+        // Open items by journal entry, account and counterpart; reduced as lines are applied to them
+        Map<String, BankReconciliationMatcher.OpenItem> openItems = new HashMap<>();
+        for (BankReconciliationMatcher.OpenItem item : reconciliationRepository.findOpenItems(
+                company.getId(), receivablePrefix(company), payablePrefix(company))) {
+            openItems.put(itemKey(item.journalEntryId(), item.accountId(), item.counterpartId()), item);
+        }
+        Map<String, BigDecimal> remaining = new HashMap<>();
+
+        // Entry numbers are unique across companies, so the prefix carries the company
+        String prefix = "BRC-" + company.getId() + "-" + LocalDate.now().format(ENTRY_NUMBER_DATE) + "-";
+        Integer maxNumber = journalEntryRepository.findMaxEntryNumberByPrefix(company.getId(), prefix);
+        int nextNumber = (maxNumber != null ? maxNumber : 0) + 1;
+
+        List<JournalEntryJdbcRepository.NewJournalEntry> entries = new ArrayList<>(lines.size());
+        List<BankReconciliationMatcher.OpenItem> entryItems = new ArrayList<>(lines.size());
+        for (BankReconciliationMatcher.StatementLine line : lines) {
+            ConfirmBankMatchInput match = matchesByLine.get(line.id());
+            String key = itemKey(match.getJournalEntryId(), match.getAccountId(), match.getCounterpartId());
+            BankReconciliationMatcher.OpenItem item = openItems.get(key);
+            if (item == null) {
+                throw new IllegalArgumentException("Ред " + line.lineNumber() +
+                        ": отвореното перо не е намерено или вече е приключено");
+            }
+            if (item.receivable() != (line.amount().signum() > 0)) {
+                throw new IllegalArgumentException("Ред " + line.lineNumber() +
+                        ": посоката на плащането не съответства на перото");
+            }
+            BigDecimal open = remaining.getOrDefault(key, item.openAmount());
+            BigDecimal lineAmount = line.amount().abs();
+            BigDecimal amount = match.getAmount() != null ? match.getAmount() : lineAmount.min(open);
+            if (amount.signum() <= 0 || amount.compareTo(lineAmount) > 0 || amount.compareTo(open) > 0) {
+                throw new IllegalArgumentException("Ред " + line.lineNumber() + ": сумата " + amount.toPlainString() +
+                        " надвишава сумата на реда или остатъка по перото (" + open.toPlainString() + ")");
+            }
+            remaining.put(key, open.subtract(amount));
+
+            String documentNumber = item.documentNumber();
+            entries.add(new JournalEntryJdbcRepository.NewJournalEntry(
+                    prefix + String.format("%04d", nextNumber++),
+                    company.getId(),
+                    line.bookingDate(),
+                    documentNumber != null && documentNumber.length() > DOCUMENT_NUMBER_LENGTH
+                            ? documentNumber.substring(0, DOCUMENT_NUMBER_LENGTH) : documentNumber,
+                    describe(item),
+                    BankAutoPoster.DOCUMENT_TYPE,
+                    amount,
+                    userId));
+            entryItems.add(item);
+        }
+
+        Map<String, Integer> idsByEntryNumber = journalEntryJdbcRepository.insertEntries(entries);
+        List<EntryLineJdbcRepository.NewEntryLine> entryLines = new ArrayList<>(entries.size() * 2);
+        List<BankReconciliationJdbcRepository.NewMatch> newMatches = new ArrayList<>(entries.size());
+        List<BankStatementLineJdbcRepository.ProcessedLine> processedLines = new ArrayList<>(entries.size());
+        List<BankReconciliationJdbcRepository.CounterpartIban> learnedIbans = new ArrayList<>();
+        List<Integer> journalEntryIds = new ArrayList<>(entries.size());
+        int partialLines = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            JournalEntryJdbcRepository.NewJournalEntry entry = entries.get(i);
+            BankReconciliationMatcher.OpenItem item = entryItems.get(i);
+            BankReconciliationMatcher.StatementLine line = lines.get(i);
+            ConfirmBankMatchInput match = matchesByLine.get(line.id());
+            Integer journalEntryId = idsByEntryNumber.get(entry.entryNumber());
+            BigDecimal amount = entry.totalAmount();
+            boolean lineSettled = amount.compareTo(line.amount().abs()) == 0;
+
+            // Customer payment: debit bank / credit receivable; supplier payment: debit payable / credit bank
+            if (item.receivable()) {
+                entryLines.add(new EntryLineJdbcRepository.NewEntryLine(journalEntryId, bankAccountId,
+                        amount, BigDecimal.ZERO, amount, BigDecimal.ZERO, entry.description(), 1, null));
+                entryLines.add(new EntryLineJdbcRepository.NewEntryLine(journalEntryId, item.accountId(),
+                        BigDecimal.ZERO, amount, amount, BigDecimal.ZERO, entry.description(), 2,
+                        item.counterpartId()));
+            } else {
+                entryLines.add(new EntryLineJdbcRepository.NewEntryLine(journalEntryId, item.accountId(),
+                        amount, BigDecimal.ZERO, amount, BigDecimal.ZERO, entry.description(), 1,
+                        item.counterpartId()));
+                entryLines.add(new EntryLineJdbcRepository.NewEntryLine(journalEntryId, bankAccountId,
+                        BigDecimal.ZERO, amount, amount, BigDecimal.ZERO, entry.description(), 2, null));
+            }
+            newMatches.add(new BankReconciliationJdbcRepository.NewMatch(company.getId(), line.id(),
+                    item.journalEntryId(), item.accountId(), item.counterpartId(), amount, match.getConfidence(),
+                    journalEntryId, userId));
+            // A partly matched line stays open with the rest of its amount for another item or for booking
+            if (lineSettled) {
+                processedLines.add(new BankStatementLineJdbcRepository.ProcessedLine(line.lineNumber(),
+                        journalEntryId));
+            } else {
+                partialLines++;
+            }
+            if (item.counterpartId() != null && item.counterpartIban() == null && line.counterpartyIban() != null) {
+                learnedIbans.add(new BankReconciliationJdbcRepository.CounterpartIban(
+                        item.counterpartId(), line.counterpartyIban()));
+            }
+            journalEntryIds.add(journalEntryId);
+        }
+        entryLineJdbcRepository.insertLines(entryLines);
+        reconciliationRepository.insertMatches(newMatches);
+        statementLineRepository.markProcessed(bankImportId, processedLines);
+        reconciliationRepository.updateMissingCounterpartIbans(learnedIbans);
+
+        int previous = importEntity.getCreatedJournalEntries() != null ? importEntity.getCreatedJournalEntries() : 0;
+        importEntity.setCreatedJournalEntries(previous + journalEntryIds.size());
+        bankImportRepository.save(importEntity);
+
+        log.info("Confirmed {} reconciliation matches for bank import {}, {} lines left partly open",
+                journalEntryIds.size(), bankImportId, partialLines);
+        return new BankReconciliationResultDto(journalEntryIds.size(), partialLines, journalEntryIds);
+    }
+
+    private BankImportEntity findImport(Integer bankImportId) {
+        return bankImportRepository.findById(bankImportId)
+                .orElseThrow(() -> new IllegalArgumentException("Импортът не е намерен: " + bankImportId));
+    }
+
+    private static String receivablePrefix(CompanyEntity company) {
+        AccountEntity account = company.getDefaultCustomersAccount();
+        return account != null ? account.getCode() : DEFAULT_RECEIVABLE_PREFIX;
+    }
+
+    private static String payablePrefix(CompanyEntity company) {
+        AccountEntity account = company.getDefaultSuppliersAccount();
+        return account != null ? account.getCode() : DEFAULT_PAYABLE_PREFIX;
+    }
+
+    private static String itemKey(Integer journalEntryId, Integer accountId, Integer counterpartId) {
+        return journalEntryId + ":" + accountId + ":" + Objects.toString(counterpartId, "");
+    }
+
+    private static String describe(BankReconciliationMatcher.OpenItem item) {
+        String text = item.receivable() ? "Плащане от клиент" : "Плащане към доставчик";
+        if (item.counterpartName() != null) {
+            text += " " + item.counterpartName();
+        }
+        if (item.documentNumber() != null) {
+            text += " по документ " + item.documentNumber();
+        }
+        return text;
+    }
+}
@@ -1,6 +1,8 @@
 package bg.spacbg.sp_ac_bg.service.impl;
 
+import bg.spacbg.sp_ac_bg.model.dto.input.CreateBankPostingRuleInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.CreateBankProfileInput;
+import bg.spacbg.sp_ac_bg.model.dto.input.UpdateBankPostingRuleInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.UpdateBankProfileInput;
 import bg.spacbg.sp_ac_bg.model.dto.saltedge.SaltEdgeConnectSession;
 import bg.spacbg.sp_ac_bg.model.entity.*;
@@ -10,14 +12,26 @@ import bg.spacbg.sp_ac_bg.repository.*;
 import bg.spacbg.sp_ac_bg.service.BankService;
 import bg.spacbg.sp_ac_bg.service.S3Service;
 import bg.spacbg.sp_ac_bg.service.SaltEdgeService;
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankAutoPoster;
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankPostingRuleCache;
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankStatementParser;
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankStatementParserRegistry;
+import bg.spacbg.sp_ac_bg.service.bankstatement.ParsedBankTransaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -28,6 +42,10 @@ public class BankServiceImpl implements BankService {
 
     private static final Logger log = LoggerFactory.getLogger(BankServiceImpl.class);
 
+    // Parsed lines buffered before one JDBC batch insert while the statement is streamed
+    private static final int STATEMENT_LINE_BATCH_SIZE = 500;
+    private static final int POSTING_BATCH_SIZE = 500;
+
     private final BankProfileRepository bankProfileRepository;
     private final BankImportRepository bankImportRepository;
     private final CompanyRepository companyRepository;
@@ -35,6 +53,13 @@ public class BankServiceImpl implements BankService {
     private final UserRepository userRepository;
     private final S3Service s3Service;
     private final SaltEdgeService saltEdgeService;
+    private final BankStatementParserRegistry parserRegistry;
+    private final BankStatementLineJdbcRepository statementLineJdbcRepository;
+    private final AiBankAccountingSettingRepository postingRuleRepository;
+    private final SaltEdgeTransactionJdbcRepository saltEdgeTransactionJdbcRepository;
+    private final BankPostingRuleCache postingRuleCache;
+    private final BankAutoPoster autoPoster;
+    private final TransactionTemplate importTransaction;
 
     public BankServiceImpl(
             BankProfileRepository bankProfileRepository,
@@ -43,7 +68,14 @@ public class BankServiceImpl implements BankService {
             AccountRepository accountRepository,
             UserRepository userRepository,
             S3Service s3Service,
-            SaltEdgeService saltEdgeService) {
+            SaltEdgeService saltEdgeService,
+            BankStatementParserRegistry parserRegistry,
+            BankStatementLineJdbcRepository statementLineJdbcRepository,
+            AiBankAccountingSettingRepository postingRuleRepository,
+            SaltEdgeTransactionJdbcRepository saltEdgeTransactionJdbcRepository,
+            BankPostingRuleCache postingRuleCache,
+            BankAutoPoster autoPoster,
+            PlatformTransactionManager transactionManager) {
         this.bankProfileRepository = bankProfileRepository;
         this.bankImportRepository = bankImportRepository;
         this.companyRepository = companyRepository;
@@ -51,6 +83,15 @@ public class BankServiceImpl implements BankService {
         this.userRepository = userRepository;
         this.s3Service = s3Service;
         this.saltEdgeService = saltEdgeService;
+        this.parserRegistry = parserRegistry;
+        this.statementLineJdbcRepository = statementLineJdbcRepository;
+        this.postingRuleRepository = postingRuleRepository;
+        this.saltEdgeTransactionJdbcRepository = saltEdgeTransactionJdbcRepository;
+        this.postingRuleCache = postingRuleCache;
+        this.autoPoster = autoPoster;
+        // Statement imports commit or roll back independently of the caller's transaction
+        this.importTransaction = new TransactionTemplate(transactionManager);
+        this.importTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     // ========== Bank Profile Operations ==========
@@ -161,6 +202,82 @@ public class BankServiceImpl implements BankService {
         return true;
     }
 
+    // ========== Bank Posting Rule Operations ==========
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AiBankAccountingSettingEntity> findPostingRulesByCompanyId(Integer companyId) {
+        return postingRuleRepository.findByCompanyIdOrderByPriority(companyId);
+    }
+
+    @Override
+    public AiBankAccountingSettingEntity createPostingRule(CreateBankPostingRuleInput input) {
+        if (input.getPatternName() == null || input.getPatternName().isBlank()) {
+            throw new IllegalArgumentException("Името на правилото е задължително");
+        }
+
+        CompanyEntity company = companyRepository.findById(input.getCompanyId())
+                .orElseThrow(() -> new IllegalArgumentException("Компанията не е намерена: " + input.getCompanyId()));
+
+        AiBankAccountingSettingEntity rule = new AiBankAccountingSettingEntity();
+        rule.setCompany(company);
+        rule.setPatternName(input.getPatternName());
+        rule.setDescriptionKeywords(input.getDescriptionKeywords());
+        rule.setTransactionType(input.getTransactionType() != null ? input.getTransactionType() : "PAYMENT");
+        rule.setAccount(findRuleAccount(company.getId(), input.getAccountId()));
+        rule.setDirection(input.getDirection() != null ? input.getDirection() : "BOTH");
+        rule.setDescriptionTemplate(input.getDescriptionTemplate());
+        rule.setPriority(input.getPriority() != null ? input.getPriority() : 0);
+        rule.setActive(true);
+
+        AiBankAccountingSettingEntity saved = postingRuleRepository.save(rule);
+        postingRuleCache.invalidate(company.getId());
+        return saved;
+    }
+
+    @Override
+    public AiBankAccountingSettingEntity updatePostingRule(Integer id, UpdateBankPostingRuleInput input) {
+        AiBankAccountingSettingEntity rule = postingRuleRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Правилото не е намерено: " + id));
+        Integer companyId = rule.getCompany().getId();
+
+        if (input.getPatternName() != null) rule.setPatternName(input.getPatternName());
+        if (input.getDescriptionKeywords() != null) rule.setDescriptionKeywords(input.getDescriptionKeywords());
+        if (input.getTransactionType() != null) rule.setTransactionType(input.getTransactionType());
+        if (input.getAccountId() != null) rule.setAccount(findRuleAccount(companyId, input.getAccountId()));
+        if (input.getDirection() != null) rule.setDirection(input.getDirection());
+        if (input.getDescriptionTemplate() != null) rule.setDescriptionTemplate(input.getDescriptionTemplate());
+        if (input.getPriority() != null) rule.setPriority(input.getPriority());
+        if (input.getIsActive() != null) rule.setActive(input.getIsActive());
+
+        AiBankAccountingSettingEntity saved = postingRuleRepository.save(rule);
+        postingRuleCache.invalidate(companyId);
+        return saved;
+    }
+
+    @Override
+    public boolean deletePostingRule(Integer id) {
+        Optional<AiBankAccountingSettingEntity> rule = postingRuleRepository.findById(id);
+        if (rule.isEmpty()) {
+            return false;
+        }
+        postingRuleRepository.delete(rule.get());
+        postingRuleCache.invalidate(rule.get().getCompany().getId());
+        return true;
+    }
+
+    private AccountEntity findRuleAccount(Integer companyId, Integer accountId) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("Сметката на правилото е задължителна");
+        }
+        AccountEntity account = accountRepository.findById(accountId)
+                .orElseThrow(() -> new IllegalArgumentException("Сметката не е намерена: " + accountId));
+        if (!account.getCompany().getId().equals(companyId)) {
+            throw new IllegalArgumentException("Сметката не принадлежи на компанията");
+        }
+        return account;
+    }
+
     // ========== Bank Import Operations ==========
 
     @Override
@@ -192,28 +309,39 @@ public class BankServiceImpl implements BankService {
 
         UserEntity user = userRepository.findById(userId).orElse(null);
 
-        BankImportEntity importEntity = new BankImportEntity();
-        importEntity.setBankProfile(profile);
-        importEntity.setCompany(profile.getCompany());
-        importEntity.setFileName(fileKey);
-        importEntity.setImportFormat(profile.getImportFormat().getValue());
-        importEntity.setImportedAt(OffsetDateTime.now());
-        importEntity.setStatus(BankImportStatus.IN_PROGRESS);
-        importEntity.setTransactionsCount(0);
-        importEntity.setTotalCredit(BigDecimal.ZERO);
-        importEntity.setTotalDebit(BigDecimal.ZERO);
-        importEntity.setCreatedJournalEntries(0);
-        importEntity.setCreatedBy(user);
-
-        importEntity = bankImportRepository.save(importEntity);
-
+        BankImportEntity newImport = new BankImportEntity();
+        newImport.setBankProfile(profile);
+        newImport.setCompany(profile.getCompany());
+        newImport.setFileName(fileKey);
+        newImport.setImportFormat(profile.getImportFormat().getValue());
+        newImport.setImportedAt(OffsetDateTime.now());
+        newImport.setStatus(BankImportStatus.IN_PROGRESS);
+        newImport.setTransactionsCount(0);
+        newImport.setTotalCredit(BigDecimal.ZERO);
+        newImport.setTotalDebit(BigDecimal.ZERO);
+        newImport.setCreatedJournalEntries(0);
+        newImport.setCreatedBy(user);
+
+        // The import row is committed first and the statement is written in a transaction of its own: a failure
+        // rolls back all lines and journal entries of the import, while this transaction, which a database
+        // error would otherwise have aborted, can still record the import as FAILED
+        BankImportEntity importEntity = importTransaction.execute(status -> bankImportRepository.save(newImport));
+
+        StatementLineWriter writer = new StatementLineWriter(
+                importEntity, profile, user != null ? user.getId() : null);
         try {
-            // TODO: Implement actual bank file parsing based on format
-            // For now, just mark as completed
-            // parseAndProcessBankFile(importEntity, fileKey);
+            importTransaction.executeWithoutResult(status -> writeStatement(profile, fileKey, writer));
 
+            importEntity.setTransactionsCount(writer.count);
+            importEntity.setTotalCredit(writer.totalCredit);
+            importEntity.setTotalDebit(writer.totalDebit);
+            importEntity.setCreatedJournalEntries(writer.createdJournalEntries);
             importEntity.setStatus(BankImportStatus.COMPLETED);
-        } catch (Exception e) {
+            log.info("Импортирани {} банкови транзакции от {} за профил {}", writer.count, fileKey, bankProfileId);
+        } catch (RuntimeException e) {
+            log.warn("Неуспешен импорт на банково извлечение {} за профил {}: {}",
+                    fileKey, bankProfileId, e.getMessage());
+            importEntity.setCreatedJournalEntries(0);
             importEntity.setStatus(BankImportStatus.FAILED);
             importEntity.setErrorMessage(e.getMessage());
         }
@@ -221,6 +349,81 @@ public class BankServiceImpl implements BankService {
         return bankImportRepository.save(importEntity);
     }
 
+    /**
+     * Streams the file from S3 through the format's parser; lines are written in batches as they arrive,
+     * so memory use does not depend on the size of the statement.
+     */
+    private void writeStatement(BankProfileEntity profile, String fileKey, StatementLineWriter writer) {
+        try (InputStream input = s3Service.downloadFile(fileKey)) {
+            BankStatementParser parser = parserRegistry.getParser(profile.getImportFormat());
+            parser.parse(input, writer::add);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Numbers the parsed lines of one import, keeps its totals and writes the lines in JDBC batches; each
+     * batch is then booked by the company's posting rules.
+     */
+    private final class StatementLineWriter {
+
+        private final Integer importId;
+        private final BankProfileEntity profile;
+        private final Integer companyId;
+        private final Integer userId;
+        private final String defaultCurrency;
+        private final List<BankStatementLineJdbcRepository.NumberedLine> buffer =
+                new ArrayList<>(STATEMENT_LINE_BATCH_SIZE);
+        private int count;
+        private BigDecimal totalCredit = BigDecimal.ZERO;
+        private BigDecimal totalDebit = BigDecimal.ZERO;
+        private int createdJournalEntries;
+
+        private StatementLineWriter(BankImportEntity importEntity, BankProfileEntity profile, Integer userId) {
+            this.importId = importEntity.getId();
+            this.profile = profile;
+            this.companyId = profile.getCompany().getId();
+            this.userId = userId;
+            this.defaultCurrency = profile.getCurrencyCode();
+        }
+
+        void add(ParsedBankTransaction transaction) {
+            count++;
+            if (transaction.isCredit()) {
+                totalCredit = totalCredit.add(transaction.amount());
+            } else {
+                totalDebit = totalDebit.add(transaction.amount().negate());
+            }
+            buffer.add(new BankStatementLineJdbcRepository.NumberedLine(
+                    count, transaction.withDefaultCurrency(defaultCurrency)));
+            if (buffer.size() >= STATEMENT_LINE_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            statementLineJdbcRepository.insertLines(importId, profile.getId(), companyId, buffer);
+
+            List<ParsedBankTransaction> transactions = buffer.stream()
+                    .map(BankStatementLineJdbcRepository.NumberedLine::transaction)
+                    .toList();
+            Integer[] journalEntryIds = autoPoster.post(profile, userId, transactions);
+            List<BankStatementLineJdbcRepository.ProcessedLine> processed = new ArrayList<>();
+            for (int i = 0; i < journalEntryIds.length; i++) {
+                if (journalEntryIds[i] != null) {
+                    processed.add(new BankStatementLineJdbcRepository.ProcessedLine(
+                            buffer.get(i).lineNumber(), journalEntryIds[i]));
+                }
+            }
+            statementLineJdbcRepository.markProcessed(importId, processed);
+            createdJournalEntries += processed.size();
+
+            buffer.clear();
+        }
+    }
+
     @Override
     public boolean deleteImport(Integer id) {
         if (!bankImportRepository.existsById(id)) {
@@ -335,10 +538,44 @@ public class BankServiceImpl implements BankService {
 
         importEntity = bankImportRepository.save(importEntity);
 
-        // TODO: Create journal entries from transactions
-        // For now, just mark as completed
+        // Book the settled transactions by the company's posting rules, one batch at a time
+        List<SaltEdgeTransactionEntity> postable = unprocessed.stream()
+                .filter(transaction -> "posted".equals(transaction.getStatus()))
+                .filter(transaction -> !Boolean.TRUE.equals(transaction.getDuplicated()))
+                .toList();
+        List<Integer> journalEntryIds = new ArrayList<>();
+        for (int from = 0; from < postable.size(); from += POSTING_BATCH_SIZE) {
+            List<SaltEdgeTransactionEntity> batch =
+                    postable.subList(from, Math.min(from + POSTING_BATCH_SIZE, postable.size()));
+            List<ParsedBankTransaction> transactions = batch.stream()
+                    .map(BankServiceImpl::toParsedTransaction)
+                    .toList();
+            Integer[] createdIds = autoPoster.post(profile, user != null ? user.getId() : null, transactions);
+            List<SaltEdgeTransactionJdbcRepository.ProcessedTransaction> processed = new ArrayList<>();
+            for (int i = 0; i < createdIds.length; i++) {
+                if (createdIds[i] != null) {
+                    processed.add(new SaltEdgeTransactionJdbcRepository.ProcessedTransaction(
+                            batch.get(i).getId(), createdIds[i]));
+                    journalEntryIds.add(createdIds[i]);
+                }
+            }
+            saltEdgeTransactionJdbcRepository.markProcessed(processed);
+        }
+
+        importEntity.setCreatedJournalEntries(journalEntryIds.size());
+        if (!journalEntryIds.isEmpty()) {
+            importEntity.setJournalEntryIds(journalEntryIds.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(",", "[", "]")));
+        }
         importEntity.setStatus(BankImportStatus.COMPLETED);
 
         return bankImportRepository.save(importEntity);
     }
+
+    private static ParsedBankTransaction toParsedTransaction(SaltEdgeTransactionEntity transaction) {
+        return new ParsedBankTransaction(transaction.getMadeOn(), null, transaction.getAmount(),
+                transaction.getCurrencyCode(), transaction.getDescription(), null, null,
+                transaction.getSaltEdgeTransactionId());
+    }
 }
@@ -0,0 +1,347 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.model.entity.AccountEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CompanyEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyRevaluationRunEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyRevaluationSettingsEntity;
+import bg.spacbg.sp_ac_bg.model.enums.CurrencyRevaluationRunStatus;
+import bg.spacbg.sp_ac_bg.repository.CompanyRepository;
+import bg.spacbg.sp_ac_bg.repository.CurrencyRevaluationJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.CurrencyRevaluationRunRepository;
+import bg.spacbg.sp_ac_bg.repository.CurrencyRevaluationSettingsRepository;
+import bg.spacbg.sp_ac_bg.repository.EntryLineJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryRepository;
+import bg.spacbg.sp_ac_bg.scheduler.ScheduledJobRunner;
+import bg.spacbg.sp_ac_bg.service.CurrencyRevaluationService;
+import bg.spacbg.sp_ac_bg.service.fx.ExchangeRateCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Month-end revaluation of foreign currency receivables, payables and bank/cash balances.
+ *
+ * The open balances of a company are read with one grouped query, valued at the closing rate from
+ * {@link ExchangeRateCache} and the differences to the book balances are booked as one journal entry:
+ * every revalued position against the company's FX revenue (gain) or expense (loss) account. The
+ * revaluation lines carry the currency with a zero currency amount, so the next run starts from the
+ * revalued book balance. Runs for different companies are executed in parallel on the batch job pool.
+ *
+ * A company has at most one RUNNING run, enforced by a unique partial index; a run that stays RUNNING
+ * longer than {@code stale-run-minutes} (its instance died) is marked FAILED before new runs are created.
+ */
+@Service
+public class CurrencyRevaluationServiceImpl implements CurrencyRevaluationService {
+
+    private static final Logger log = LoggerFactory.getLogger(CurrencyRevaluationServiceImpl.class);
+
+    // Used when the company has no default customers/suppliers account
+    private static final String DEFAULT_RECEIVABLE_PREFIX = "411";
+    private static final String DEFAULT_PAYABLE_PREFIX = "401";
+    // Cash and bank accounts (501 Каса, 503/504 Разплащателни сметки)
+    private static final String BANK_ACCOUNT_PREFIX = "50";
+
+    public static final String DOCUMENT_TYPE = "FX_REVALUATION";
+    private static final DateTimeFormatter ENTRY_NUMBER_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter DESCRIPTION_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private static final String MONTH_END_JOB = "currency-revaluation-month-end";
+
+    @Value("${currency-revaluation.user-id:#{null}}")
+    private Integer scheduledRunUserId;
+
+    @Value("${currency-revaluation.stale-run-minutes:180}")
+    private long staleRunMinutes;
+
+    @Value("${currency-revaluation.lock-lease-minutes:30}")
+    private long lockLeaseMinutes;
+
+    private final CurrencyRevaluationRunRepository runRepository;
+    private final CurrencyRevaluationSettingsRepository settingsRepository;
+    private final CurrencyRevaluationJdbcRepository revaluationRepository;
+    private final CompanyRepository companyRepository;
+    private final JournalEntryRepository journalEntryRepository;
+    private final JournalEntryJdbcRepository journalEntryJdbcRepository;
+    private final EntryLineJdbcRepository entryLineJdbcRepository;
+    private final ExchangeRateCache rateCache;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor batchJobExecutor;
+    private final ScheduledJobRunner jobRunner;
+
+    public CurrencyRevaluationServiceImpl(
+            CurrencyRevaluationRunRepository runRepository,
+            CurrencyRevaluationSettingsRepository settingsRepository,
+            CurrencyRevaluationJdbcRepository revaluationRepository,
+            CompanyRepository companyRepository,
+            JournalEntryRepository journalEntryRepository,
+            JournalEntryJdbcRepository journalEntryJdbcRepository,
+            EntryLineJdbcRepository entryLineJdbcRepository,
+            ExchangeRateCache rateCache,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("batchJobExecutor") TaskExecutor batchJobExecutor,
+            ScheduledJobRunner jobRunner) {
+        this.runRepository = runRepository;
+        this.settingsRepository = settingsRepository;
+        this.revaluationRepository = revaluationRepository;
+        this.companyRepository = companyRepository;
+        this.journalEntryRepository = journalEntryRepository;
+        this.journalEntryJdbcRepository = journalEntryJdbcRepository;
+        this.entryLineJdbcRepository = entryLineJdbcRepository;
+        this.rateCache = rateCache;
+        this.transactionTemplate = transactionTemplate;
+        this.batchJobExecutor = batchJobExecutor;
+        this.jobRunner = jobRunner;
+    }
+
+    @Override
+    public List<CurrencyRevaluationRunEntity> startRevaluation(Integer companyId, LocalDate revaluationDate,
+                                                               Integer userId) {
+        if (revaluationDate == null) {
+            throw new IllegalArgumentException("Датата на преоценката е задължителна");
+        }
+        if (userId == null) {
+            throw new IllegalArgumentException("Потребителят е задължителен");
+        }
+
+        List<Integer> companyIds = transactionTemplate.execute(status -> {
+            if (companyId != null) {
+                if (settingsRepository.findByCompany_Id(companyId).isEmpty()) {
+                    throw new IllegalArgumentException("Няма настройки за валутна преоценка на компания " + companyId);
+                }
+                return List.of(companyId);
+            }
+            return settingsRepository.findActiveCompanyIds();
+        });
+
+        failStaleRuns();
+
+        List<CurrencyRevaluationRunEntity> runs = new ArrayList<>();
+        for (Integer id : companyIds) {
+            CurrencyRevaluationRunEntity run = createRun(id, revaluationDate);
+            if (run != null) {
+                runs.add(run);
+            }
+        }
+
+        // Submitted after the commits above, so the workers always see their run
+        for (CurrencyRevaluationRunEntity run : runs) {
+            Integer runId = run.getId();
+            Integer runCompanyId = run.getCompany().getId();
+            batchJobExecutor.execute(() -> executeRun(runId, runCompanyId, revaluationDate, userId));
+        }
+        return runs;
+    }
+
+    /**
+     * Revaluation of all companies as of the last day of the previous month, on the first of the month.
+     * Runs only when {@code currency-revaluation.user-id} names the user the entries are booked by, and is
+     * started by one instance.
+     */
+    @Scheduled(cron = "${currency-revaluation.cron:0 0 4 1 * *}")
+    public void runMonthEndRevaluation() {
+        if (scheduledRunUserId == null) {
+            log.debug("Month-end currency revaluation is not scheduled: currency-revaluation.user-id is not set");
+            return;
+        }
+        jobRunner.runExclusive(MONTH_END_JOB, Duration.ofMinutes(lockLeaseMinutes), () -> {
+            LocalDate revaluationDate = LocalDate.now().withDayOfMonth(1).minusDays(1);
+            List<CurrencyRevaluationRunEntity> runs = startRevaluation(null, revaluationDate, scheduledRunUserId);
+            log.info("Started month-end currency revaluation for {} companies as of {}", runs.size(), revaluationDate);
+            return runs.size();
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CurrencyRevaluationRunEntity> findRunsByCompanyId(Integer companyId) {
+        return runRepository.findByCompany_IdOrderByStartedAtDesc(companyId);
+    }
+
+    /**
+     * Creates the RUNNING run of one company in its own transaction. Returns {@code null} when the company
+     * already has a running revaluation, also one that another instance inserted at the same moment.
+     */
+    private CurrencyRevaluationRunEntity createRun(Integer companyId, LocalDate revaluationDate) {
+        try {
+            return transactionTemplate.execute(status -> {
+                if (runRepository.existsByCompany_IdAndStatus(companyId, CurrencyRevaluationRunStatus.RUNNING)) {
+                    log.info("Currency revaluation already running for company {}, skipping", companyId);
+                    return null;
+                }
+                CurrencyRevaluationRunEntity run = new CurrencyRevaluationRunEntity();
+                run.setCompany(companyRepository.getReferenceById(companyId));
+                run.setRevaluationDate(revaluationDate);
+                run.setStatus(CurrencyRevaluationRunStatus.RUNNING);
+                run.setStartedAt(OffsetDateTime.now());
+                return runRepository.saveAndFlush(run);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("Currency revaluation for company {} was started concurrently, skipping", companyId);
+            return null;
+        }
+    }
+
+    private void failStaleRuns() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Integer failed = transactionTemplate.execute(status -> runRepository.failStaleRuns(
+                CurrencyRevaluationRunStatus.RUNNING, CurrencyRevaluationRunStatus.FAILED,
+                now.minusMinutes(staleRunMinutes),
+                "Преоценката не е завършила в рамките на " + staleRunMinutes + " минути", now));
+        if (failed != null && failed > 0) {
+            log.warn("Marked {} stale currency revaluation runs as failed", failed);
+        }
+    }
+
+    private void executeRun(Integer runId, Integer companyId, LocalDate revaluationDate, Integer userId) {
+        long started = System.currentTimeMillis();
+        try {
+            transactionTemplate.executeWithoutResult(status -> revalue(runId, companyId, revaluationDate, userId));
+            log.info("Currency revaluation {} for company {} as of {} finished in {} ms",
+                    runId, companyId, revaluationDate, System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Currency revaluation {} for company {} failed", runId, companyId, e);
+            transactionTemplate.executeWithoutResult(status -> runRepository.findById(runId).ifPresent(run -> {
+                run.setStatus(CurrencyRevaluationRunStatus.FAILED);
+                run.setErrorMessage(e.getMessage());
+                run.setFinishedAt(OffsetDateTime.now());
+            }));
+        }
+    }
+
+    private void revalue(Integer runId, Integer companyId, LocalDate revaluationDate, Integer userId) {
+        CurrencyRevaluationSettingsEntity settings = settingsRepository.findByCompany_Id(companyId)
+                .orElseThrow(() -> new IllegalStateException("Няма настройки за валутна преоценка"));
+        CompanyEntity company = settings.getCompany();
+        if (company.getBaseCurrency() == null) {
+            throw new IllegalStateException("Компанията няма базова валута");
+        }
+        if (settings.getRevenueAccount() == null || settings.getExpenseAccount() == null) {
+            throw new IllegalStateException("Не са зададени сметки за положителни и отрицателни курсови разлики");
+        }
+        String baseCurrency = company.getBaseCurrency().getCode();
+        Integer revenueAccountId = settings.getRevenueAccount().getId();
+        Integer expenseAccountId = settings.getExpenseAccount().getId();
+
+        List<CurrencyRevaluationJdbcRepository.OpenPosition> positions = revaluationRepository.findOpenPositions(
+                companyId, revaluationDate, baseCurrency, accountPrefixes(settings, company));
+
+        // Closing rate per currency; all missing rates are reported together
+        Map<String, BigDecimal> closingRates = new HashMap<>();
+        TreeSet<String> missingRates = new TreeSet<>();
+        for (CurrencyRevaluationJdbcRepository.OpenPosition position : positions) {
+            closingRates.computeIfAbsent(position.currencyCode(), currency -> {
+                BigDecimal rate = rateCache.rateAsOf(currency, baseCurrency, revaluationDate);
+                if (rate == null) {
+                    missingRates.add(currency);
+                }
+                return rate;
+            });
+        }
+        if (!missingRates.isEmpty()) {
+            throw new IllegalStateException("Няма курс към " + revaluationDate + " за "
+                    + String.join(", ", missingRates));
+        }
+
+        String description = "Преоценка на валутни позиции към " + revaluationDate.format(DESCRIPTION_DATE);
+        List<EntryLineJdbcRepository.NewEntryLine> lines = new ArrayList<>();
+        BigDecimal totalGain = BigDecimal.ZERO;
+        BigDecimal totalLoss = BigDecimal.ZERO;
+        int order = 1;
+        for (CurrencyRevaluationJdbcRepository.OpenPosition position : positions) {
+            BigDecimal rate = closingRates.get(position.currencyCode());
+            BigDecimal revalued = position.currencyBalance().multiply(rate).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal difference = revalued.subtract(position.bookBalance()).setScale(2, RoundingMode.HALF_UP);
+            if (difference.signum() == 0) {
+                continue;
+            }
+            // A higher value of the position is a gain for assets (debit balance), lower for liabilities
+            BigDecimal amount = difference.abs();
+            BigDecimal debit = difference.signum() > 0 ? amount : BigDecimal.ZERO;
+            BigDecimal credit = difference.signum() > 0 ? BigDecimal.ZERO : amount;
+            if (difference.signum() > 0) {
+                totalGain = totalGain.add(amount);
+            } else {
+                totalLoss = totalLoss.add(amount);
+            }
+            // journal entry id is filled in once the header is inserted
+            lines.add(new EntryLineJdbcRepository.NewEntryLine(null, position.accountId(), debit, credit, amount,
+                    BigDecimal.ZERO, description + " (" + position.currencyCode() + " " + rate.toPlainString() + ")",
+                    order++, position.counterpartId(), position.currencyCode(), BigDecimal.ZERO, rate));
+        }
+
+        Integer journalEntryId = null;
+        if (!lines.isEmpty()) {
+            if (totalGain.signum() > 0) {
+                lines.add(new EntryLineJdbcRepository.NewEntryLine(null, revenueAccountId, BigDecimal.ZERO, totalGain,
+                        totalGain, BigDecimal.ZERO, description, order++, null));
+            }
+            if (totalLoss.signum() > 0) {
+                lines.add(new EntryLineJdbcRepository.NewEntryLine(null, expenseAccountId, totalLoss, BigDecimal.ZERO,
+                        totalLoss, BigDecimal.ZERO, description, order++, null));
+            }
+
+            // Entry numbers are unique across companies, so the prefix carries the company
+            String prefix = "FXR-" + companyId + "-" + revaluationDate.format(ENTRY_NUMBER_DATE) + "-";
+            Integer maxNumber = journalEntryRepository.findMaxEntryNumberByPrefix(companyId, prefix);
+            String entryNumber = prefix + String.format("%04d", (maxNumber != null ? maxNumber : 0) + 1);
+            // Gains are debited to the positions, losses to the expense account
+            BigDecimal totalDebit = totalGain.add(totalLoss);
+            journalEntryId = journalEntryJdbcRepository.insertEntries(List.of(
+                    new JournalEntryJdbcRepository.NewJournalEntry(entryNumber, companyId, revaluationDate,
+                            entryNumber, description, DOCUMENT_TYPE, totalDebit, userId)))
+                    .get(entryNumber);
+
+            Integer entryId = journalEntryId;
+            entryLineJdbcRepository.insertLines(lines.stream()
+                    .map(line -> new EntryLineJdbcRepository.NewEntryLine(entryId, line.accountId(),
+                            line.debitAmount(), line.creditAmount(), line.baseAmount(), line.vatAmount(),
+                            line.description(), line.lineOrder(), line.counterpartId(), line.currencyCode(),
+                            line.currencyAmount(), line.exchangeRate()))
+                    .toList());
+        }
+
+        CurrencyRevaluationRunEntity run = runRepository.findById(runId).orElseThrow();
+        run.setPositionsCount(positions.size());
+        run.setTotalGain(totalGain);
+        run.setTotalLoss(totalLoss);
+        run.setJournalEntryId(journalEntryId);
+        run.setStatus(CurrencyRevaluationRunStatus.COMPLETED);
+        run.setFinishedAt(OffsetDateTime.now());
+    }
+
+    private static List<String> accountPrefixes(CurrencyRevaluationSettingsEntity settings, CompanyEntity company) {
+        List<String> prefixes = new ArrayList<>(3);
+        if (settings.isRevalueReceivables()) {
+            AccountEntity account = company.getDefaultCustomersAccount();
+            prefixes.add(account != null ? account.getCode() : DEFAULT_RECEIVABLE_PREFIX);
+        }
+        if (settings.isRevaluePayables()) {
+            AccountEntity account = company.getDefaultSuppliersAccount();
+            prefixes.add(account != null ? account.getCode() : DEFAULT_PAYABLE_PREFIX);
+        }
+        if (settings.isRevalueBankAccounts()) {
+            prefixes.add(BANK_ACCOUNT_PREFIX);
+        }
+        return prefixes;
+    }
+}
@@ -12,6 +12,7 @@ import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -26,33 +27,37 @@ public class DepreciationServiceImpl implements DepreciationService {
     private static final String STATUS_ACTIVE = "ACTIVE";
     private static final String DEPRECIATION_METHOD_LINEAR = "LINEAR";
     private static final String DEPRECIATION_METHOD_DECLINING = "DECLINING_BALANCE";
+    private static final int MAX_FORECAST_MONTHS = 600;
 
     private final FixedAssetRepository fixedAssetRepository;
     private final FixedAssetCategoryRepository categoryRepository;
     private final DepreciationJournalRepository depreciationJournalRepository;
     private final JournalEntryRepository journalEntryRepository;
-    private final EntryLineRepository entryLineRepository;
     private final AccountRepository accountRepository;
     private final CompanyRepository companyRepository;
     private final UserRepository userRepository;
+    private final DepreciationJdbcRepository depreciationJdbcRepository;
+    private final EntryLineJdbcRepository entryLineJdbcRepository;
 
     public DepreciationServiceImpl(
             FixedAssetRepository fixedAssetRepository,
             FixedAssetCategoryRepository categoryRepository,
             DepreciationJournalRepository depreciationJournalRepository,
             JournalEntryRepository journalEntryRepository,
-            EntryLineRepository entryLineRepository,
             AccountRepository accountRepository,
             CompanyRepository companyRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            DepreciationJdbcRepository depreciationJdbcRepository,
+            EntryLineJdbcRepository entryLineJdbcRepository) {
         this.fixedAssetRepository = fixedAssetRepository;
         this.categoryRepository = categoryRepository;
         this.depreciationJournalRepository = depreciationJournalRepository;
         this.journalEntryRepository = journalEntryRepository;
-        this.entryLineRepository = entryLineRepository;
         this.accountRepository = accountRepository;
         this.companyRepository = companyRepository;
         this.userRepository = userRepository;
+        this.depreciationJdbcRepository = depreciationJdbcRepository;
+        this.entryLineJdbcRepository = entryLineJdbcRepository;
     }
 
     @Override
@@ -91,18 +96,14 @@ public class DepreciationServiceImpl implements DepreciationService {
         // Validate sequential period calculation
         validateSequentialPeriod(asset, normalizedPeriod);
 
-        // Calculate accounting depreciation
-        BigDecimal accountingMonthly = calculateAccountingDepreciation(asset);
-        BigDecimal accountingBookValueBefore = asset.getAccountingBookValue();
-        BigDecimal accountingBookValueAfter = accountingBookValueBefore.subtract(accountingMonthly)
-                .max(asset.getAccountingSalvageValue());
-        BigDecimal actualAccountingAmount = accountingBookValueBefore.subtract(accountingBookValueAfter);
-
-        // Calculate tax depreciation
-        BigDecimal taxMonthly = calculateTaxDepreciation(asset);
-        BigDecimal taxBookValueBefore = asset.getTaxBookValue();
-        BigDecimal taxBookValueAfter = taxBookValueBefore.subtract(taxMonthly).max(BigDecimal.ZERO);
-        BigDecimal actualTaxAmount = taxBookValueBefore.subtract(taxBookValueAfter);
+        // Calculate accounting and tax depreciation
+        DepreciationJdbcRepository.AssetDepreciation amounts = computeDepreciation(asset, normalizedPeriod);
+        BigDecimal accountingBookValueBefore = amounts.accountingBookValueBefore();
+        BigDecimal accountingBookValueAfter = amounts.accountingBookValueAfter();
+        BigDecimal actualAccountingAmount = amounts.accountingAmount();
+        BigDecimal taxBookValueBefore = amounts.taxBookValueBefore();
+        BigDecimal taxBookValueAfter = amounts.taxBookValueAfter();
+        BigDecimal actualTaxAmount = amounts.taxAmount();
 
         // Create depreciation journal entry
         DepreciationJournalEntity depreciationJournal = new DepreciationJournalEntity();
@@ -131,31 +132,185 @@ public class DepreciationServiceImpl implements DepreciationService {
         return saved;
     }
 
+    /**
+     * Loads the eligible assets and the already depreciated ones with two queries, computes the
+     * depreciation of all assets in parallel and writes the journal rows and book values in JDBC batches.
+     * The loaded asset entities are left untouched so the persistence context does not flush them one by one.
+     */
     @Override
     public DepreciationCalculationResult calculateBulkDepreciation(Integer companyId, LocalDate period) {
         LocalDate normalizedPeriod = period.withDayOfMonth(1);
+        LocalDate previousPeriod = normalizedPeriod.minusMonths(1);
 
-        List<FixedAssetEntity> assets = getAssetsNeedingDepreciation(companyId, normalizedPeriod);
+        List<FixedAssetEntity> activeAssets = fixedAssetRepository.findActiveAssetsForDepreciation(
+                companyId, normalizedPeriod.plusMonths(1).minusDays(1));
+        Map<LocalDate, Set<Integer>> depreciated = findDepreciatedAssets(companyId, previousPeriod, normalizedPeriod);
+        Set<Integer> depreciatedInPreviousPeriod = depreciated.getOrDefault(previousPeriod, Set.of());
+        List<FixedAssetEntity> assets = filterAssetsNeedingDepreciation(
+                activeAssets, depreciated.getOrDefault(normalizedPeriod, Set.of()));
+
+        // Assets are independent of each other - accounting and tax amounts are computed in parallel
+        List<BulkOutcome> outcomes = assets.parallelStream()
+                .map(asset -> {
+                    try {
+                        validateSequentialPeriod(asset, normalizedPeriod,
+                                previous -> depreciatedInPreviousPeriod.contains(asset.getId()));
+                        return new BulkOutcome(computeDepreciation(asset, normalizedPeriod), null);
+                    } catch (Exception e) {
+                        return new BulkOutcome(null,
+                                new DepreciationError(asset.getId(), asset.getName(), e.getMessage()));
+                    }
+                })
+                .toList();
+
+        List<DepreciationJdbcRepository.AssetDepreciation> depreciations = new ArrayList<>();
+        List<DepreciationError> errors = new ArrayList<>();
+        BigDecimal totalAccountingAmount = BigDecimal.ZERO;
+        BigDecimal totalTaxAmount = BigDecimal.ZERO;
 
-        List<DepreciationJournalEntity> calculated = new ArrayList<>();
+        for (BulkOutcome outcome : outcomes) {
+            if (outcome.error() != null) {
+                errors.add(outcome.error());
+                continue;
+            }
+            depreciations.add(outcome.depreciation());
+            totalAccountingAmount = totalAccountingAmount.add(outcome.depreciation().accountingAmount());
+            totalTaxAmount = totalTaxAmount.add(outcome.depreciation().taxAmount());
+        }
+
+        if (depreciations.isEmpty()) {
+            return new DepreciationCalculationResult(List.of(), errors, totalAccountingAmount, totalTaxAmount);
+        }
+
+        depreciationJdbcRepository.insertJournals(depreciations);
+        depreciationJdbcRepository.updateAssetBookValues(depreciations);
+
+        List<Integer> assetIds = depreciations.stream()
+                .map(DepreciationJdbcRepository.AssetDepreciation::fixedAssetId)
+                .toList();
+        List<DepreciationJournalEntity> calculated = depreciationJournalRepository
+                .findByCompanyIdAndPeriodAndFixedAssetIds(companyId, normalizedPeriod, assetIds);
+
+        return new DepreciationCalculationResult(calculated, errors, totalAccountingAmount, totalTaxAmount);
+    }
+
+    /**
+     * Computes every missing period up to toPeriod for all assets in memory, starting from the last
+     * depreciated period of each asset, and writes the journal rows and the final book values in JDBC batches.
+     * Besides the writes, the run issues one query for the assets and one for their last depreciated periods.
+     */
+    @Override
+    public DepreciationCalculationResult catchUpDepreciation(Integer companyId, LocalDate toPeriod) {
+        LocalDate normalizedToPeriod = toPeriod.withDayOfMonth(1);
+
+        List<FixedAssetEntity> assets = fixedAssetRepository.findActiveAssetsForDepreciation(
+                companyId, normalizedToPeriod.plusMonths(1).minusDays(1));
+        Map<Integer, LocalDate> lastDepreciatedPeriods = findLastDepreciatedPeriods(companyId);
+
+        List<CatchUpOutcome> outcomes = assets.parallelStream()
+                .map(asset -> {
+                    LocalDate fromPeriod = firstMissingPeriod(asset, lastDepreciatedPeriods);
+                    try {
+                        return new CatchUpOutcome(fromPeriod,
+                                scheduleDepreciation(asset, fromPeriod, normalizedToPeriod), null);
+                    } catch (Exception e) {
+                        return new CatchUpOutcome(fromPeriod, List.of(),
+                                new DepreciationError(asset.getId(), asset.getName(), e.getMessage()));
+                    }
+                })
+                .toList();
+
+        List<DepreciationJdbcRepository.AssetDepreciation> depreciations = new ArrayList<>();
+        List<DepreciationJdbcRepository.AssetDepreciation> assetTotals = new ArrayList<>();
+        Map<Integer, LocalDate> fromPeriods = new HashMap<>();
         List<DepreciationError> errors = new ArrayList<>();
         BigDecimal totalAccountingAmount = BigDecimal.ZERO;
         BigDecimal totalTaxAmount = BigDecimal.ZERO;
+        LocalDate earliestPeriod = normalizedToPeriod;
 
-        for (FixedAssetEntity asset : assets) {
-            try {
-                DepreciationJournalEntity depreciation = calculateMonthlyDepreciation(asset.getId(), normalizedPeriod);
-                calculated.add(depreciation);
-                totalAccountingAmount = totalAccountingAmount.add(depreciation.getAccountingDepreciationAmount());
-                totalTaxAmount = totalTaxAmount.add(depreciation.getTaxDepreciationAmount());
-            } catch (Exception e) {
-                errors.add(new DepreciationError(asset.getId(), asset.getName(), e.getMessage()));
+        for (CatchUpOutcome outcome : outcomes) {
+            if (outcome.error() != null) {
+                errors.add(outcome.error());
+                continue;
+            }
+            if (outcome.schedule().isEmpty()) {
+                continue;
+            }
+            List<DepreciationJdbcRepository.AssetDepreciation> schedule = outcome.schedule();
+            DepreciationJdbcRepository.AssetDepreciation first = schedule.get(0);
+            DepreciationJdbcRepository.AssetDepreciation last = schedule.get(schedule.size() - 1);
+            BigDecimal assetAccountingAmount = BigDecimal.ZERO;
+            BigDecimal assetTaxAmount = BigDecimal.ZERO;
+            for (DepreciationJdbcRepository.AssetDepreciation depreciation : schedule) {
+                assetAccountingAmount = assetAccountingAmount.add(depreciation.accountingAmount());
+                assetTaxAmount = assetTaxAmount.add(depreciation.taxAmount());
+            }
+
+            depreciations.addAll(schedule);
+            // One book value update per asset covering all of its caught-up periods
+            assetTotals.add(new DepreciationJdbcRepository.AssetDepreciation(
+                    first.fixedAssetId(), first.companyId(), last.period(),
+                    assetAccountingAmount, first.accountingBookValueBefore(), last.accountingBookValueAfter(),
+                    assetTaxAmount, first.taxBookValueBefore(), last.taxBookValueAfter()));
+            fromPeriods.put(first.fixedAssetId(), outcome.fromPeriod());
+            totalAccountingAmount = totalAccountingAmount.add(assetAccountingAmount);
+            totalTaxAmount = totalTaxAmount.add(assetTaxAmount);
+            if (outcome.fromPeriod().isBefore(earliestPeriod)) {
+                earliestPeriod = outcome.fromPeriod();
             }
         }
 
+        if (depreciations.isEmpty()) {
+            return new DepreciationCalculationResult(List.of(), errors, totalAccountingAmount, totalTaxAmount);
+        }
+
+        depreciationJdbcRepository.insertJournals(depreciations);
+        depreciationJdbcRepository.updateAssetBookValues(assetTotals);
+
+        List<DepreciationJournalEntity> calculated = depreciationJournalRepository
+                .findByCompanyIdAndPeriodBetweenAndFixedAssetIds(
+                        companyId, earliestPeriod, normalizedToPeriod, fromPeriods.keySet())
+                .stream()
+                .filter(entry -> !entry.getPeriod().isBefore(fromPeriods.get(entry.getFixedAsset().getId())))
+                .collect(Collectors.toList());
+
         return new DepreciationCalculationResult(calculated, errors, totalAccountingAmount, totalTaxAmount);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<DepreciationForecastEntry> getDepreciationForecast(Integer companyId, LocalDate fromPeriod,
+                                                                   int months) {
+        if (months < 1 || months > MAX_FORECAST_MONTHS) {
+            throw new IllegalArgumentException("Броят месеци за прогнозата трябва да е между 1 и " + MAX_FORECAST_MONTHS);
+        }
+        LocalDate normalizedFromPeriod = fromPeriod.withDayOfMonth(1);
+        LocalDate toPeriod = normalizedFromPeriod.plusMonths(months - 1);
+
+        List<FixedAssetEntity> assets = fixedAssetRepository.findActiveAssetsForDepreciation(
+                companyId, toPeriod.plusMonths(1).minusDays(1));
+        Map<Integer, LocalDate> lastDepreciatedPeriods = findLastDepreciatedPeriods(companyId);
+
+        // Periods before fromPeriod that are not calculated yet are simulated, so the forecast starts
+        // from the book values the asset will actually have
+        return assets.parallelStream()
+                .flatMap(asset -> scheduleDepreciation(
+                        asset, firstMissingPeriod(asset, lastDepreciatedPeriods), toPeriod).stream()
+                        .filter(depreciation -> !depreciation.period().isBefore(normalizedFromPeriod))
+                        .map(depreciation -> new DepreciationForecastEntry(
+                                asset.getId(),
+                                asset.getName(),
+                                asset.getInventoryNumber(),
+                                depreciation.period(),
+                                depreciation.accountingAmount(),
+                                depreciation.accountingBookValueAfter(),
+                                depreciation.taxAmount(),
+                                depreciation.taxBookValueAfter())))
+                .sorted(Comparator.comparing(DepreciationForecastEntry::period)
+                        .thenComparing(DepreciationForecastEntry::assetName))
+                .collect(Collectors.toList());
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<DepreciationJournalEntity> getDepreciationJournal(Integer companyId, Integer year, Integer month) {
@@ -174,14 +329,9 @@ public class DepreciationServiceImpl implements DepreciationService {
         List<FixedAssetEntity> activeAssets = fixedAssetRepository.findActiveAssetsForDepreciation(
                 companyId, normalizedPeriod.plusMonths(1).minusDays(1));
 
-        // Filter out assets that already have depreciation for this period
-        // and assets that are fully depreciated
-        return activeAssets.stream()
-                .filter(asset -> !depreciationJournalRepository.existsByFixedAssetIdAndPeriod(
-                        asset.getId(), normalizedPeriod))
-                .filter(asset -> asset.getAccountingBookValue().compareTo(asset.getAccountingSalvageValue()) > 0
-                        || asset.getTaxBookValue().compareTo(BigDecimal.ZERO) > 0)
-                .collect(Collectors.toList());
+        return filterAssetsNeedingDepreciation(activeAssets,
+                findDepreciatedAssets(companyId, normalizedPeriod, normalizedPeriod)
+                        .getOrDefault(normalizedPeriod, Set.of()));
     }
 
     @Override
@@ -220,39 +370,54 @@ public class DepreciationServiceImpl implements DepreciationService {
         return result;
     }
 
+    /**
+     * Posts the period with a fixed number of statements regardless of the register size: the amounts are
+     * summed per category in the database, categories and accounts are loaded once, the entry lines are
+     * inserted in one JDBC batch and the depreciation rows are flagged posted with a single update.
+     */
     @Override
     public JournalEntryEntity postDepreciation(Integer companyId, LocalDate period, Integer userId) {
         LocalDate normalizedPeriod = period.withDayOfMonth(1);
 
-        // Get unposted depreciation entries for the period
-        List<DepreciationJournalEntity> unpostedEntries = depreciationJournalRepository
-                .findByCompanyIdAndPeriodAndIsPostedFalse(companyId, normalizedPeriod);
-
-        if (unpostedEntries.isEmpty()) {
+        if (!depreciationJournalRepository.existsByCompanyIdAndPeriodAndIsPostedFalse(companyId, normalizedPeriod)) {
             throw new IllegalStateException("Няма неосчетоводени амортизации за този период");
         }
 
-        // Filter out zero amounts
-        List<DepreciationJournalEntity> nonZeroEntries = unpostedEntries.stream()
-                .filter(e -> e.getAccountingDepreciationAmount().compareTo(BigDecimal.ZERO) > 0)
-                .collect(Collectors.toList());
+        // Non-zero unposted amounts grouped by category
+        Map<Integer, BigDecimal> amountByCategory = new HashMap<>();
+        for (Object[] row : depreciationJournalRepository.sumUnpostedAccountingAmountByCategory(
+                companyId, normalizedPeriod)) {
+            amountByCategory.put((Integer) row[0], (BigDecimal) row[1]);
+        }
 
-        if (nonZeroEntries.isEmpty()) {
+        if (amountByCategory.isEmpty()) {
             throw new IllegalStateException("Всички амортизации за периода са с нулева стойност");
         }
 
         CompanyEntity company = companyRepository.findById(companyId)
                 .orElseThrow(() -> new IllegalArgumentException("Компанията не е намерена: " + companyId));
 
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("Потребителят не е намерен: " + userId));
+        if (!userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("Потребителят не е намерен: " + userId);
+        }
+
+        List<FixedAssetCategoryEntity> categories = new ArrayList<>(
+                categoryRepository.findAllById(amountByCategory.keySet()));
+        if (categories.size() != amountByCategory.size()) {
+            throw new IllegalArgumentException("Категорията не е намерена");
+        }
+        categories.sort(Comparator.comparing(FixedAssetCategoryEntity::getCode));
 
-        // Group by category to get proper account codes
-        Map<Integer, List<DepreciationJournalEntity>> byCategory = nonZeroEntries.stream()
-                .collect(Collectors.groupingBy(e -> e.getFixedAsset().getCategory().getId()));
+        Set<String> accountCodes = new HashSet<>();
+        for (FixedAssetCategoryEntity category : categories) {
+            accountCodes.add(category.getExpenseAccountCode());
+            accountCodes.add(category.getDepreciationAccountCode());
+        }
+        Map<String, AccountEntity> accountsByCode = accountRepository.findByCompanyIdAndCodeIn(companyId, accountCodes)
+                .stream()
+                .collect(Collectors.toMap(AccountEntity::getCode, account -> account));
 
-        BigDecimal totalAmount = nonZeroEntries.stream()
-                .map(DepreciationJournalEntity::getAccountingDepreciationAmount)
+        BigDecimal totalAmount = amountByCategory.values().stream()
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         // Generate entry number
@@ -280,71 +445,170 @@ public class DepreciationServiceImpl implements DepreciationService {
         JournalEntryEntity savedEntry = journalEntryRepository.save(journalEntry);
 
         // Create entry lines for each category
+        List<EntryLineJdbcRepository.NewEntryLine> lines = new ArrayList<>();
         int lineOrder = 1;
-        for (Map.Entry<Integer, List<DepreciationJournalEntity>> categoryEntry : byCategory.entrySet()) {
-            FixedAssetCategoryEntity category = categoryRepository.findById(categoryEntry.getKey())
-                    .orElseThrow(() -> new IllegalArgumentException("Категорията не е намерена"));
-
-            BigDecimal categoryAmount = categoryEntry.getValue().stream()
-                    .map(DepreciationJournalEntity::getAccountingDepreciationAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        for (FixedAssetCategoryEntity category : categories) {
+            BigDecimal categoryAmount = amountByCategory.get(category.getId());
 
             // Find accounts
-            AccountEntity expenseAccount = accountRepository
-                    .findByCompanyIdAndCode(companyId, category.getExpenseAccountCode())
-                    .orElseThrow(() -> new IllegalArgumentException(
-                            "Сметка за разходи " + category.getExpenseAccountCode() + " не е намерена"));
+            AccountEntity expenseAccount = accountsByCode.get(category.getExpenseAccountCode());
+            if (expenseAccount == null) {
+                throw new IllegalArgumentException(
+                        "Сметка за разходи " + category.getExpenseAccountCode() + " не е намерена");
+            }
 
-            AccountEntity depreciationAccount = accountRepository
-                    .findByCompanyIdAndCode(companyId, category.getDepreciationAccountCode())
-                    .orElseThrow(() -> new IllegalArgumentException(
-                            "Сметка за амортизация " + category.getDepreciationAccountCode() + " не е намерена"));
+            AccountEntity depreciationAccount = accountsByCode.get(category.getDepreciationAccountCode());
+            if (depreciationAccount == null) {
+                throw new IllegalArgumentException(
+                        "Сметка за амортизация " + category.getDepreciationAccountCode() + " не е намерена");
+            }
 
             // Debit expense account (603)
-            EntryLineEntity expenseLine = new EntryLineEntity();
-            expenseLine.setJournalEntry(savedEntry);
-            expenseLine.setAccount(expenseAccount);
-            expenseLine.setDebitAmount(categoryAmount);
-            expenseLine.setCreditAmount(BigDecimal.ZERO);
-            expenseLine.setDescription(String.format("Амортизация %s - %s", category.getCode(), category.getName()));
-            expenseLine.setLineOrder(lineOrder++);
-            expenseLine.setBaseAmount(categoryAmount);
-            expenseLine.setVatAmount(BigDecimal.ZERO);
-            entryLineRepository.save(expenseLine);
+            lines.add(new EntryLineJdbcRepository.NewEntryLine(
+                    savedEntry.getId(), expenseAccount.getId(), categoryAmount, BigDecimal.ZERO,
+                    categoryAmount, BigDecimal.ZERO,
+                    String.format("Амортизация %s - %s", category.getCode(), category.getName()),
+                    lineOrder++));
 
             // Credit accumulated depreciation account (241)
-            EntryLineEntity depreciationLine = new EntryLineEntity();
-            depreciationLine.setJournalEntry(savedEntry);
-            depreciationLine.setAccount(depreciationAccount);
-            depreciationLine.setDebitAmount(BigDecimal.ZERO);
-            depreciationLine.setCreditAmount(categoryAmount);
-            depreciationLine.setDescription(String.format("Натрупана амортизация %s - %s",
-                    category.getCode(), category.getName()));
-            depreciationLine.setLineOrder(lineOrder++);
-            depreciationLine.setBaseAmount(categoryAmount);
-            depreciationLine.setVatAmount(BigDecimal.ZERO);
-            entryLineRepository.save(depreciationLine);
+            lines.add(new EntryLineJdbcRepository.NewEntryLine(
+                    savedEntry.getId(), depreciationAccount.getId(), BigDecimal.ZERO, categoryAmount,
+                    categoryAmount, BigDecimal.ZERO,
+                    String.format("Натрупана амортизация %s - %s", category.getCode(), category.getName()),
+                    lineOrder++));
         }
+        entryLineJdbcRepository.insertLines(lines);
 
         // Mark all depreciation entries as posted
-        OffsetDateTime now = OffsetDateTime.now();
-        for (DepreciationJournalEntity depreciation : nonZeroEntries) {
-            depreciation.setPosted(true);
-            depreciation.setJournalEntry(savedEntry);
-            depreciation.setPostedAt(now);
-            depreciation.setPostedBy(user);
-            depreciationJournalRepository.save(depreciation);
-        }
+        depreciationJdbcRepository.markPosted(companyId, normalizedPeriod, savedEntry.getId(), userId);
 
         return savedEntry;
     }
 
     /**
-     * Calculate accounting depreciation amount for a single month
+     * Ids of the assets with a depreciation journal row, grouped by period, for the periods from - to
+     */
+    private Map<LocalDate, Set<Integer>> findDepreciatedAssets(Integer companyId, LocalDate fromPeriod,
+                                                               LocalDate toPeriod) {
+        Map<LocalDate, Set<Integer>> result = new HashMap<>();
+        for (Object[] row : depreciationJournalRepository.findDepreciatedAssetPeriods(companyId, fromPeriod, toPeriod)) {
+            result.computeIfAbsent((LocalDate) row[1], p -> new HashSet<>()).add((Integer) row[0]);
+        }
+        return result;
+    }
+
+    /**
+     * Drop assets already depreciated for the period and assets that are fully depreciated
+     */
+    private List<FixedAssetEntity> filterAssetsNeedingDepreciation(List<FixedAssetEntity> activeAssets,
+                                                                   Set<Integer> depreciatedInPeriod) {
+        return activeAssets.stream()
+                .filter(asset -> !depreciatedInPeriod.contains(asset.getId()))
+                .filter(asset -> asset.getAccountingBookValue().compareTo(asset.getAccountingSalvageValue()) > 0
+                        || asset.getTaxBookValue().compareTo(BigDecimal.ZERO) > 0)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Accounting and tax depreciation of an asset for a single month at its current book values
+     */
+    private DepreciationJdbcRepository.AssetDepreciation computeDepreciation(FixedAssetEntity asset, LocalDate period) {
+        return computeDepreciation(asset, period, asset.getAccountingBookValue(), asset.getTaxBookValue());
+    }
+
+    /**
+     * Accounting and tax depreciation of an asset for a single month starting from the given book values,
+     * capped at the salvage value and at zero tax book value respectively
+     */
+    private DepreciationJdbcRepository.AssetDepreciation computeDepreciation(FixedAssetEntity asset, LocalDate period,
+                                                                             BigDecimal accountingBookValueBefore,
+                                                                             BigDecimal taxBookValueBefore) {
+        BigDecimal accountingMonthly = calculateAccountingDepreciation(asset, accountingBookValueBefore);
+        BigDecimal accountingBookValueAfter = accountingBookValueBefore.subtract(accountingMonthly)
+                .max(asset.getAccountingSalvageValue());
+
+        BigDecimal taxMonthly = calculateTaxDepreciation(asset, taxBookValueBefore);
+        BigDecimal taxBookValueAfter = taxBookValueBefore.subtract(taxMonthly).max(BigDecimal.ZERO);
+
+        return new DepreciationJdbcRepository.AssetDepreciation(
+                asset.getId(),
+                asset.getCompany().getId(),
+                period,
+                accountingBookValueBefore.subtract(accountingBookValueAfter),
+                accountingBookValueBefore,
+                accountingBookValueAfter,
+                taxBookValueBefore.subtract(taxBookValueAfter),
+                taxBookValueBefore,
+                taxBookValueAfter);
+    }
+
+    /**
+     * Last depreciated period of every asset of the company that has depreciation journal rows
      */
-    private BigDecimal calculateAccountingDepreciation(FixedAssetEntity asset) {
+    private Map<Integer, LocalDate> findLastDepreciatedPeriods(Integer companyId) {
+        Map<Integer, LocalDate> result = new HashMap<>();
+        for (Object[] row : depreciationJournalRepository.findLastDepreciatedPeriods(companyId)) {
+            result.put((Integer) row[0], (LocalDate) row[1]);
+        }
+        return result;
+    }
+
+    /**
+     * First period without a depreciation journal row - the month after the last depreciated one
+     * or the month the asset was put into service
+     */
+    private LocalDate firstMissingPeriod(FixedAssetEntity asset, Map<Integer, LocalDate> lastDepreciatedPeriods) {
+        LocalDate lastPeriod = lastDepreciatedPeriods.get(asset.getId());
+        return lastPeriod != null
+                ? lastPeriod.plusMonths(1)
+                : asset.getPutIntoServiceDate().withDayOfMonth(1);
+    }
+
+    /**
+     * Month by month depreciation of an asset from its current book values, computed in memory.
+     * Stops at toPeriod (inclusive) or once the asset is fully depreciated for both accounting and tax.
+     */
+    private List<DepreciationJdbcRepository.AssetDepreciation> scheduleDepreciation(FixedAssetEntity asset,
+                                                                                   LocalDate fromPeriod,
+                                                                                   LocalDate toPeriod) {
+        List<DepreciationJdbcRepository.AssetDepreciation> schedule = new ArrayList<>();
+        BigDecimal accountingBookValue = asset.getAccountingBookValue();
+        BigDecimal taxBookValue = asset.getTaxBookValue();
+
+        for (LocalDate period = fromPeriod; !period.isAfter(toPeriod); period = period.plusMonths(1)) {
+            if (accountingBookValue.compareTo(asset.getAccountingSalvageValue()) <= 0
+                    && taxBookValue.compareTo(BigDecimal.ZERO) <= 0) {
+                break;
+            }
+            DepreciationJdbcRepository.AssetDepreciation depreciation =
+                    computeDepreciation(asset, period, accountingBookValue, taxBookValue);
+            schedule.add(depreciation);
+            accountingBookValue = depreciation.accountingBookValueAfter();
+            taxBookValue = depreciation.taxBookValueAfter();
+        }
+        return schedule;
+    }
+
+    /**
+     * Outcome of a single asset in a catch-up run - either its missing periods or the error
+     */
+    private record CatchUpOutcome(LocalDate fromPeriod,
+                                  List<DepreciationJdbcRepository.AssetDepreciation> schedule,
+                                  DepreciationError error) {
+    }
+
+    /**
+     * Outcome of a single asset in a bulk run - either the computed depreciation or the error
+     */
+    private record BulkOutcome(DepreciationJdbcRepository.AssetDepreciation depreciation, DepreciationError error) {
+    }
+
+    /**
+     * Calculate accounting depreciation amount for a single month from the given book value
+     */
+    private BigDecimal calculateAccountingDepreciation(FixedAssetEntity asset, BigDecimal bookValue) {
         // If fully depreciated, return zero
-        if (asset.getAccountingBookValue().compareTo(asset.getAccountingSalvageValue()) <= 0) {
+        if (bookValue.compareTo(asset.getAccountingSalvageValue()) <= 0) {
             return BigDecimal.ZERO;
         }
 
@@ -370,9 +634,9 @@ public class DepreciationServiceImpl implements DepreciationService {
                 BigDecimal monthlyRate = asset.getAccountingDepreciationRate()
                         .divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP)
                         .divide(BigDecimal.valueOf(12), 6, RoundingMode.HALF_UP);
-                BigDecimal monthlyAmount = asset.getAccountingBookValue().multiply(monthlyRate);
+                BigDecimal monthlyAmount = bookValue.multiply(monthlyRate);
                 // Ensure we don't depreciate below salvage value
-                BigDecimal maxDepreciation = asset.getAccountingBookValue()
+                BigDecimal maxDepreciation = bookValue
                         .subtract(asset.getAccountingSalvageValue());
                 return monthlyAmount.min(maxDepreciation);
 
@@ -382,12 +646,12 @@ public class DepreciationServiceImpl implements DepreciationService {
     }
 
     /**
-     * Calculate tax depreciation amount for a single month
+     * Calculate tax depreciation amount for a single month from the given tax book value
      * Tax depreciation in Bulgaria is always straight-line
      */
-    private BigDecimal calculateTaxDepreciation(FixedAssetEntity asset) {
+    private BigDecimal calculateTaxDepreciation(FixedAssetEntity asset, BigDecimal bookValue) {
         // If fully depreciated for tax purposes, return zero
-        if (asset.getTaxBookValue().compareTo(BigDecimal.ZERO) <= 0) {
+        if (bookValue.compareTo(BigDecimal.ZERO) <= 0) {
             return BigDecimal.ZERO;
         }
 
@@ -398,13 +662,22 @@ public class DepreciationServiceImpl implements DepreciationService {
         BigDecimal monthlyAmount = annualAmount.divide(BigDecimal.valueOf(12), 4, RoundingMode.HALF_UP);
 
         // Ensure we don't depreciate below zero
-        return monthlyAmount.min(asset.getTaxBookValue());
+        return monthlyAmount.min(bookValue);
     }
 
     /**
      * Validate that depreciation is calculated sequentially
      */
     private void validateSequentialPeriod(FixedAssetEntity asset, LocalDate period) {
+        validateSequentialPeriod(asset, period, previousPeriod -> depreciationJournalRepository
+                .existsByFixedAssetIdAndPeriod(asset.getId(), previousPeriod));
+    }
+
+    /**
+     * Validate that depreciation is calculated sequentially, checking the previous period with the given predicate
+     */
+    private void validateSequentialPeriod(FixedAssetEntity asset, LocalDate period,
+                                          Predicate<LocalDate> depreciatedInPeriod) {
         LocalDate startDate = asset.getPutIntoServiceDate();
         if (startDate == null) {
             startDate = asset.getAcquisitionDate();
@@ -422,8 +695,7 @@ public class DepreciationServiceImpl implements DepreciationService {
 
         // Check if previous period exists (only if it's after the service start)
         if (!previousPeriod.isBefore(startPeriod)) {
-            boolean previousExists = depreciationJournalRepository
-                    .existsByFixedAssetIdAndPeriod(asset.getId(), previousPeriod);
+            boolean previousExists = depreciatedInPeriod.test(previousPeriod);
 
             if (!previousExists) {
                 throw new IllegalStateException(String.format(
@@ -1,39 +1,75 @@
 package bg.spacbg.sp_ac_bg.service.impl;
 
+import bg.spacbg.sp_ac_bg.model.dto.EcbBackfillResultDto;
 import bg.spacbg.sp_ac_bg.model.dto.input.CreateExchangeRateInput;
 import bg.spacbg.sp_ac_bg.model.entity.CurrencyEntity;
 import bg.spacbg.sp_ac_bg.model.entity.ExchangeRateEntity;
+import bg.spacbg.sp_ac_bg.model.enums.EcbRateFeed;
 import bg.spacbg.sp_ac_bg.model.enums.RateSource;
 import bg.spacbg.sp_ac_bg.repository.CurrencyRepository;
+import bg.spacbg.sp_ac_bg.repository.ExchangeRateJdbcRepository;
 import bg.spacbg.sp_ac_bg.repository.ExchangeRateRepository;
 import bg.spacbg.sp_ac_bg.service.ExchangeRateService;
+import bg.spacbg.sp_ac_bg.service.fx.EcbRateXmlParser;
+import bg.spacbg.sp_ac_bg.service.fx.ExchangeRateCache;
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClient;
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Service
 @Transactional
 public class ExchangeRateServiceImpl implements ExchangeRateService {
 
-    private static final String ECB_DAILY_URL = "https://www.ecb.europa.eu/stats/eurofxref/eurofxref-daily.xml";
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRateServiceImpl.class);
+
+    private static final int BACKFILL_CHUNK_SIZE = 5000;
+
+    @Value("${ecb.daily-url:https://www.ecb.europa.eu/stats/eurofxref/eurofxref-daily.xml}")
+    private String ecbDailyUrl;
+
+    @Value("${ecb.hist-90d-url:https://www.ecb.europa.eu/stats/eurofxref/eurofxref-hist-90d.xml}")
+    private String ecbHist90dUrl;
+
+    @Value("${ecb.hist-url:https://www.ecb.europa.eu/stats/eurofxref/eurofxref-hist.xml}")
+    private String ecbHistUrl;
 
     private final ExchangeRateRepository exchangeRateRepository;
+    private final ExchangeRateJdbcRepository exchangeRateJdbcRepository;
     private final CurrencyRepository currencyRepository;
-    private final RestTemplate restTemplate;
+    private final OutboundHttpClient ecbClient;
+    private final ExchangeRateCache rateCache;
+    private final EcbRateXmlParser ecbRateXmlParser = new EcbRateXmlParser();
 
     public ExchangeRateServiceImpl(
             ExchangeRateRepository exchangeRateRepository,
-            CurrencyRepository currencyRepository) {
+            ExchangeRateJdbcRepository exchangeRateJdbcRepository,
+            CurrencyRepository currencyRepository,
+            OutboundHttpClients outboundHttpClients,
+            ExchangeRateCache rateCache) {
         this.exchangeRateRepository = exchangeRateRepository;
+        this.exchangeRateJdbcRepository = exchangeRateJdbcRepository;
         this.currencyRepository = currencyRepository;
-        this.restTemplate = new RestTemplate();
+        this.ecbClient = outboundHttpClients.get("ecb");
+        this.rateCache = rateCache;
     }
 
     @Override
@@ -67,6 +103,12 @@ public class ExchangeRateServiceImpl implements ExchangeRateService {
         return exchangeRateRepository.findLatestByCodesActive(fromCode.toUpperCase(), toCode.toUpperCase());
     }
 
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<BigDecimal> findRateAsOf(String fromCode, String toCode, LocalDate date) {
+        return Optional.ofNullable(rateCache.rateAsOf(fromCode, toCode, date));
+    }
+
     @Override
     public ExchangeRateEntity create(CreateExchangeRateInput input) {
         CurrencyEntity fromCurrency = currencyRepository.findByCode(input.getFromCurrencyCode().toUpperCase())
@@ -90,89 +132,152 @@ public class ExchangeRateServiceImpl implements ExchangeRateService {
         rate.setNotes(input.getNotes());
         rate.setActive(true);
 
-        return exchangeRateRepository.save(rate);
+        ExchangeRateEntity saved = exchangeRateRepository.save(rate);
+        rateCache.refreshAfterCommit(List.of(
+                new ExchangeRateCache.CurrencyPair(fromCurrency.getCode(), toCurrency.getCode())));
+        return saved;
     }
 
     @Override
     public List<ExchangeRateEntity> fetchEcbRates(LocalDate date) {
+        CurrencyEntity eurCurrency = currencyRepository.findByCode("EUR")
+                .orElseThrow(() -> new IllegalArgumentException("EUR валутата не е конфигурирана"));
+        Map<String, CurrencyEntity> currencies = currenciesByCode();
+
         List<ExchangeRateEntity> rates = new ArrayList<>();
+        try {
+            readEcbFeed(ecbDailyUrl, (feedDate, currencyCode, rateValue) -> {
+                // Дата от заявката, иначе датата от XML: <Cube time='2025-11-28'>
+                LocalDate rateDate = date != null ? date : feedDate;
+                CurrencyEntity targetCurrency = currencies.get(currencyCode);
+                if (targetCurrency == null || targetCurrency.getId().equals(eurCurrency.getId())
+                        || rateValue.signum() <= 0) {
+                    return;
+                }
+                ExchangeRateEntity rate = new ExchangeRateEntity();
+                rate.setFromCurrency(eurCurrency);
+                rate.setToCurrency(targetCurrency);
+                rate.setRate(rateValue);
+                rate.setReverseRate(BigDecimal.ONE.divide(rateValue, 6, RoundingMode.HALF_UP));
+                rate.setValidDate(rateDate);
+                rate.setRateSource(RateSource.ECB);
+                rate.setActive(true);
+                rates.add(rate);
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("Грешка при получаване на курсове от ЕЦБ: " + e.getMessage(), e);
+        }
+
+        // Проверка дали вече съществуват - една заявка за всички курсове от EUR
+        Set<Long> existing = existingRateKeys(eurCurrency.getId());
+        List<ExchangeRateEntity> newRates = rates.stream()
+                .filter(rate -> existing.add(rateKey(rate.getToCurrency().getId(), rate.getValidDate())))
+                .toList();
+        List<ExchangeRateEntity> saved = exchangeRateRepository.saveAll(newRates);
+
+        rateCache.refreshAfterCommit(saved.stream()
+                .map(rate -> new ExchangeRateCache.CurrencyPair(
+                        rate.getFromCurrency().getCode(), rate.getToCurrency().getCode()))
+                .distinct()
+                .toList());
+        return saved;
+    }
+
+    @Override
+    public EcbBackfillResultDto backfillEcbRates(EcbRateFeed feed) {
+        long start = System.nanoTime();
+        String url = switch (feed) {
+            case DAILY -> ecbDailyUrl;
+            case LAST_90_DAYS -> ecbHist90dUrl;
+            case FULL_HISTORY -> ecbHistUrl;
+        };
+
+        CurrencyEntity eurCurrency = currencyRepository.findByCode("EUR")
+                .orElseThrow(() -> new IllegalArgumentException("EUR валутата не е конфигурирана"));
+        Map<String, CurrencyEntity> currencies = currenciesByCode();
+        Set<Long> existing = existingRateKeys(eurCurrency.getId());
+
+        EcbBackfillResultDto result = new EcbBackfillResultDto();
+        result.setFeed(feed);
+        Set<String> unknownCurrencies = new TreeSet<>();
+        Set<String> loadedCodes = new HashSet<>();
+        List<ExchangeRateJdbcRepository.NewRate> pending = new ArrayList<>(BACKFILL_CHUNK_SIZE);
 
         try {
-            String xml = restTemplate.getForObject(ECB_DAILY_URL, String.class);
-            if (xml == null) {
-                throw new RuntimeException("Не може да се получат курсове от ЕЦБ");
-            }
-
-            CurrencyEntity eurCurrency = currencyRepository.findByCode("EUR")
-                    .orElseThrow(() -> new IllegalArgumentException("EUR валутата не е конфигурирана"));
-
-            // Извличаме датата от XML: <Cube time='2025-11-28'>
-            LocalDate rateDate = date;
-            if (rateDate == null) {
-                String timeAttr = extractAttribute(xml, "time");
-                if (timeAttr != null) {
-                    rateDate = LocalDate.parse(timeAttr);
-                } else {
-                    rateDate = LocalDate.now();
+            readEcbFeed(url, (rateDate, currencyCode, rateValue) -> {
+                result.setParsedRates(result.getParsedRates() + 1);
+                if (result.getFirstDate() == null || rateDate.isBefore(result.getFirstDate())) {
+                    result.setFirstDate(rateDate);
                 }
-            }
-
-            // Парсване на XML - разделяме по <Cube
-            // Формат: <Cube currency='USD' rate='1.0876'/>
-            String[] cubes = xml.split("<Cube ");
-            for (String cube : cubes) {
-                if (cube.contains("currency=") && cube.contains("rate=")) {
-                    String currency = extractAttribute(cube, "currency");
-                    String rateStr = extractAttribute(cube, "rate");
-
-                    if (currency != null && rateStr != null) {
-                        Optional<CurrencyEntity> targetCurrency = currencyRepository.findByCode(currency);
-                        if (targetCurrency.isPresent()) {
-                            BigDecimal rateValue = new BigDecimal(rateStr);
-
-                            // Проверка дали вече съществува
-                            if (!exchangeRateRepository.existsByFromCurrencyIdAndToCurrencyIdAndValidDate(
-                                    eurCurrency.getId(), targetCurrency.get().getId(), rateDate)) {
-
-                                ExchangeRateEntity rate = new ExchangeRateEntity();
-                                rate.setFromCurrency(eurCurrency);
-                                rate.setToCurrency(targetCurrency.get());
-                                rate.setRate(rateValue);
-                                rate.setReverseRate(BigDecimal.ONE.divide(rateValue, 6, RoundingMode.HALF_UP));
-                                rate.setValidDate(rateDate);
-                                rate.setRateSource(RateSource.ECB);
-                                rate.setActive(true);
-
-                                rates.add(exchangeRateRepository.save(rate));
-                            }
-                        }
+                if (result.getLastDate() == null || rateDate.isAfter(result.getLastDate())) {
+                    result.setLastDate(rateDate);
+                }
+
+                CurrencyEntity targetCurrency = currencies.get(currencyCode);
+                if (targetCurrency == null || targetCurrency.getId().equals(eurCurrency.getId())
+                        || rateValue.signum() <= 0) {
+                    if (targetCurrency == null) {
+                        unknownCurrencies.add(currencyCode);
                     }
+                    result.setSkippedRates(result.getSkippedRates() + 1);
+                    return;
                 }
-            }
+                if (!existing.add(rateKey(targetCurrency.getId(), rateDate))) {
+                    result.setExistingRates(result.getExistingRates() + 1);
+                    return;
+                }
+
+                pending.add(new ExchangeRateJdbcRepository.NewRate(eurCurrency.getId(), targetCurrency.getId(),
+                        rateValue, BigDecimal.ONE.divide(rateValue, 6, RoundingMode.HALF_UP), rateDate,
+                        RateSource.ECB.name()));
+                loadedCodes.add(targetCurrency.getCode());
+                if (pending.size() == BACKFILL_CHUNK_SIZE) {
+                    int inserted = exchangeRateJdbcRepository.insertRates(pending);
+                    result.setInsertedRates(result.getInsertedRates() + inserted);
+                    pending.clear();
+                }
+            });
         } catch (Exception e) {
-            throw new RuntimeException("Грешка при получаване на курсове от ЕЦБ: " + e.getMessage(), e);
+            throw new RuntimeException("Грешка при зареждане на история на курсовете от ЕЦБ: " + e.getMessage(), e);
         }
+        result.setInsertedRates(result.getInsertedRates() + exchangeRateJdbcRepository.insertRates(pending));
+        result.setUnknownCurrencies(List.copyOf(unknownCurrencies));
+        result.setDurationMs((System.nanoTime() - start) / 1_000_000L);
+
+        rateCache.refreshAfterCommit(loadedCodes.stream()
+                .map(code -> new ExchangeRateCache.CurrencyPair(eurCurrency.getCode(), code))
+                .toList());
+        log.info("ECB {} backfill: {} rates parsed, {} inserted, {} already present, {} skipped in {} ms",
+                feed, result.getParsedRates(), result.getInsertedRates(), result.getExistingRates(),
+                result.getSkippedRates(), result.getDurationMs());
+        return result;
+    }
 
-        return rates;
+    // Streams the ECB file straight from the response into the parser
+    private void readEcbFeed(String url, EcbRateXmlParser.RateConsumer consumer) {
+        ecbClient.rest(rt -> rt.execute(url, HttpMethod.GET, null, response -> {
+            ecbRateXmlParser.parse(response.getBody(), consumer);
+            return null;
+        }));
     }
 
-    private String extractAttribute(String line, String attribute) {
-        // Опитваме с двойни кавички
-        String search = attribute + "=\"";
-        int start = line.indexOf(search);
-        char quote = '"';
-
-        // Ако не намерим, опитваме с единични кавички
-        if (start < 0) {
-            search = attribute + "='";
-            start = line.indexOf(search);
-            quote = '\'';
+    private Map<String, CurrencyEntity> currenciesByCode() {
+        Map<String, CurrencyEntity> currencies = new HashMap<>();
+        for (CurrencyEntity currency : currencyRepository.findAll()) {
+            currencies.put(currency.getCode().toUpperCase(Locale.ROOT), currency);
         }
+        return currencies;
+    }
+
+    private Set<Long> existingRateKeys(Integer fromCurrencyId) {
+        Set<Long> keys = new HashSet<>();
+        exchangeRateJdbcRepository.forEachRateKey(fromCurrencyId,
+                (toCurrencyId, validDate) -> keys.add(rateKey(toCurrencyId, validDate)));
+        return keys;
+    }
 
-        if (start < 0) return null;
-        start += search.length();
-        int end = line.indexOf(String.valueOf(quote), start);
-        if (end < 0) return null;
-        return line.substring(start, end);
+    // Target currency id in the high half, epoch day in the low half
+    private static long rateKey(Integer toCurrencyId, LocalDate validDate) {
+        return ((long) toCurrencyId << 32) | (validDate.toEpochDay() & 0xFFFFFFFFL);
     }
 }
@@ -0,0 +1,483 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.model.entity.*;
+import bg.spacbg.sp_ac_bg.model.enums.DeclarationStatus;
+import bg.spacbg.sp_ac_bg.model.enums.DeclarationType;
+import bg.spacbg.sp_ac_bg.model.enums.FlowDirection;
+import bg.spacbg.sp_ac_bg.repository.*;
+import bg.spacbg.sp_ac_bg.service.IntrastatNomenclatureIndex;
+import bg.spacbg.sp_ac_bg.service.IntrastatService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Builds Intrastat declarations from the ledger.
+ *
+ * The month's posted lines on the mapped accounts are read as a single forward-only stream and folded
+ * into one accumulator per CN code / partner country / origin / transaction nature, so memory is bounded
+ * by the number of declaration items rather than by the number of lines. CN codes are resolved through
+ * {@link IntrastatNomenclatureIndex} without touching the database.
+ */
+@Service
+@Transactional
+public class IntrastatServiceImpl implements IntrastatService {
+
+    private static final Logger log = LoggerFactory.getLogger(IntrastatServiceImpl.class);
+
+    private static final String HOME_COUNTRY = "BG";
+    private static final String DEFAULT_CURRENCY = "BGN";
+    private static final String DEFAULT_DELIVERY_TERMS = "EXW";
+    private static final String DEFAULT_TRANSACTION_NATURE = "11";
+    private static final int DEFAULT_TRANSPORT_MODE = 3; // Автомобилен транспорт
+    // Units a line quantity can be converted to net mass from; any other unit is a supplementary quantity whose
+    // mass comes from the account mapping
+    private static final Map<String, BigDecimal> KILOGRAMS_PER_UNIT = Map.ofEntries(
+            Map.entry("KG", BigDecimal.ONE), Map.entry("КГ", BigDecimal.ONE), Map.entry("KGM", BigDecimal.ONE),
+            Map.entry("T", BigDecimal.valueOf(1000)), Map.entry("Т", BigDecimal.valueOf(1000)),
+            Map.entry("TNE", BigDecimal.valueOf(1000)), Map.entry("ТОН", BigDecimal.valueOf(1000)),
+            Map.entry("G", new BigDecimal("0.001")), Map.entry("Г", new BigDecimal("0.001")),
+            Map.entry("GRM", new BigDecimal("0.001")), Map.entry("ГР", new BigDecimal("0.001")));
+    private static final Set<String> NO_SUPPLEMENTARY_UNIT = Set.of("", "-", "KG", "КГ");
+
+    private final IntrastatDeclarationRepository declarationRepository;
+    private final IntrastatDeclarationItemRepository itemRepository;
+    private final IntrastatAccountMappingRepository mappingRepository;
+    private final IntrastatNomenclatureRepository nomenclatureRepository;
+    private final IntrastatSettingsRepository settingsRepository;
+    private final IntrastatNomenclatureIndex nomenclatureIndex;
+    private final EntryLineRepository entryLineRepository;
+    private final JournalEntryRepository journalEntryRepository;
+    private final CompanyRepository companyRepository;
+    private final UserRepository userRepository;
+
+    public IntrastatServiceImpl(
+            IntrastatDeclarationRepository declarationRepository,
+            IntrastatDeclarationItemRepository itemRepository,
+            IntrastatAccountMappingRepository mappingRepository,
+            IntrastatNomenclatureRepository nomenclatureRepository,
+            IntrastatSettingsRepository settingsRepository,
+            IntrastatNomenclatureIndex nomenclatureIndex,
+            EntryLineRepository entryLineRepository,
+            JournalEntryRepository journalEntryRepository,
+            CompanyRepository companyRepository,
+            UserRepository userRepository) {
+        this.declarationRepository = declarationRepository;
+        this.itemRepository = itemRepository;
+        this.mappingRepository = mappingRepository;
+        this.nomenclatureRepository = nomenclatureRepository;
+        this.settingsRepository = settingsRepository;
+        this.nomenclatureIndex = nomenclatureIndex;
+        this.entryLineRepository = entryLineRepository;
+        this.journalEntryRepository = journalEntryRepository;
+        this.companyRepository = companyRepository;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public IntrastatDeclarationEntity generateDeclaration(Integer companyId, Integer year, Integer month,
+                                                          DeclarationType declarationType, Integer userId) {
+        if (month == null || month < 1 || month > 12) {
+            throw new IllegalArgumentException("Невалиден месец: " + month);
+        }
+        CompanyEntity company = companyRepository.findById(companyId)
+                .orElseThrow(() -> new IllegalArgumentException("Компанията не е намерена: " + companyId));
+        UserEntity user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("Потребителят не е намерен: " + userId));
+        IntrastatSettingsEntity settings = settingsRepository.findByCompany_Id(companyId).orElse(null);
+        nomenclatureIndex.refreshIfChanged();
+
+        IntrastatDeclarationEntity declaration = declarationRepository
+                .findByCompany_IdAndDeclarationTypeAndYearAndMonth(companyId, declarationType, year, month)
+                .orElse(null);
+        if (declaration != null) {
+            if (declaration.getStatus() != DeclarationStatus.DRAFT) {
+                throw new IllegalStateException("Декларацията за периода вече е подадена и не може да бъде преизчислена");
+            }
+            itemRepository.deleteByDeclarationId(declaration.getId());
+        } else {
+            declaration = new IntrastatDeclarationEntity();
+            declaration.setCompany(company);
+            declaration.setDeclarationType(declarationType);
+            declaration.setYear(year);
+            declaration.setMonth(month);
+            declaration.setStatus(DeclarationStatus.DRAFT);
+        }
+
+        FlowDirection flowDirection = FlowDirection.fromValue(declarationType.getValue());
+        Map<Integer, IntrastatAccountMappingEntity> mappings = new HashMap<>();
+        for (IntrastatAccountMappingEntity mapping : mappingRepository.findByCompanyIdAndFlowDirection(companyId, flowDirection)) {
+            mappings.put(mapping.getId(), mapping);
+        }
+
+        String currencyCode = company.getBaseCurrency() != null ? company.getBaseCurrency().getCode() : DEFAULT_CURRENCY;
+        int defaultTransportMode = settings != null && settings.getDefaultTransportMode() != null
+                ? settings.getDefaultTransportMode() : DEFAULT_TRANSPORT_MODE;
+        String deliveryTerms = settings != null && settings.getDefaultDeliveryTerms() != null
+                ? settings.getDefaultDeliveryTerms() : DEFAULT_DELIVERY_TERMS;
+
+        Map<ItemKey, ItemAccumulator> aggregates = mappings.isEmpty()
+                ? new LinkedHashMap<>()
+                : aggregateLines(companyId, flowDirection, YearMonth.of(year, month), mappings, defaultTransportMode, settings);
+        validateItems(aggregates);
+
+        String referencePeriod = String.format("%04d-%02d", year, month);
+        declaration.setReferencePeriod(referencePeriod);
+        declaration.setDeclarantEik(company.getEik());
+        declaration.setDeclarantName(company.getName());
+        declaration.setContactPerson(firstNonBlank(
+                settings != null ? settings.getResponsiblePersonName() : null,
+                company.getContactPerson(), company.getManagerName()));
+        declaration.setContactPhone(firstNonBlank(
+                settings != null ? settings.getResponsiblePersonPhone() : null, company.getPhone()));
+        declaration.setContactEmail(firstNonBlank(
+                settings != null ? settings.getResponsiblePersonEmail() : null, company.getEmail()));
+        declaration.setCreatedBy(user);
+        declaration.setTotalItems(0);
+        declaration.setTotalInvoiceValue(BigDecimal.ZERO);
+        declaration.setTotalStatisticalValue(BigDecimal.ZERO);
+        declaration = declarationRepository.save(declaration);
+
+        List<IntrastatDeclarationItemEntity> items = new ArrayList<>(aggregates.size());
+        BigDecimal totalInvoiceValue = BigDecimal.ZERO;
+        int itemNumber = 0;
+        for (Map.Entry<ItemKey, ItemAccumulator> entry : aggregates.entrySet()) {
+            ItemKey key = entry.getKey();
+            ItemAccumulator acc = entry.getValue();
+            IntrastatNomenclatureIndex.Nomenclature nomenclature = nomenclatureIndex.findById(key.nomenclatureId()).orElseThrow();
+
+            IntrastatDeclarationItemEntity item = new IntrastatDeclarationItemEntity();
+            item.setDeclaration(declaration);
+            item.setItemNumber(++itemNumber);
+            item.setNomenclature(nomenclatureRepository.getReferenceById(key.nomenclatureId()));
+            item.setCnCode(nomenclature.cnCode());
+            item.setDescription(nomenclature.description() != null ? nomenclature.description() : "");
+            item.setCountryOfConsignment(key.partnerCountry());
+            item.setCountryOfOrigin(key.originCountry());
+            item.setTransactionNatureCode(key.transactionNature());
+            item.setTransportMode(key.transportMode());
+            item.setDeliveryTerms(deliveryTerms);
+            item.setNetMassKg(acc.netMass.setScale(3, RoundingMode.HALF_UP));
+            item.setSupplementaryUnit(hasSupplementaryUnit(nomenclature) && acc.supplementaryUnits.signum() > 0
+                    ? acc.supplementaryUnits : null);
+            BigDecimal invoiceValue = acc.invoiceValue.setScale(2, RoundingMode.HALF_UP);
+            item.setInvoiceValue(invoiceValue);
+            item.setStatisticalValue(invoiceValue);
+            item.setCurrencyCode(currencyCode);
+            item.setJournalEntry(journalEntryRepository.getReferenceById(acc.firstJournalEntryId));
+            if (acc.lineCount == 1) {
+                item.setEntryLine(entryLineRepository.getReferenceById(acc.firstEntryLineId));
+            }
+            items.add(item);
+            totalInvoiceValue = totalInvoiceValue.add(invoiceValue);
+        }
+        itemRepository.saveAll(items);
+
+        declaration.setTotalItems(items.size());
+        declaration.setTotalInvoiceValue(totalInvoiceValue);
+        declaration.setTotalStatisticalValue(totalInvoiceValue);
+
+        log.info("Intrastat {} declaration for company {} period {}: {} items, value {}",
+                declarationType, companyId, referencePeriod, items.size(), totalInvoiceValue);
+        return declarationRepository.save(declaration);
+    }
+
+    /**
+     * Single pass over the month's lines. The stream returns scalar rows only, so nothing accumulates
+     * in the persistence context however many lines the month has. Lines whose partner country cannot be resolved, or that
+     * are domestic, are skipped.
+     */
+    private Map<ItemKey, ItemAccumulator> aggregateLines(Integer companyId, FlowDirection flowDirection, YearMonth period,
+                                                         Map<Integer, IntrastatAccountMappingEntity> mappings,
+                                                         int defaultTransportMode, IntrastatSettingsEntity settings) {
+        LocalDate fromDate = period.atDay(1);
+        LocalDate toDate = period.atEndOfMonth();
+        String defaultNature = settings != null && settings.getDefaultTransactionNature() != null
+                ? settings.getDefaultTransactionNature() : DEFAULT_TRANSACTION_NATURE;
+
+        Map<ItemKey, ItemAccumulator> aggregates = new LinkedHashMap<>();
+        int skipped = 0;
+        try (Stream<Object[]> lines = entryLineRepository.streamIntrastatLines(companyId, flowDirection, fromDate, toDate)) {
+            Iterator<Object[]> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                IntrastatAccountMappingEntity mapping = mappings.get((Integer) row[0]);
+                String partnerCountry = resolveCountry((String) row[6], (String) row[7], mapping.getDefaultCountryCode());
+                if (partnerCountry == null || HOME_COUNTRY.equals(partnerCountry)) {
+                    skipped++;
+                    continue;
+                }
+
+                String nature = mapping.getTransactionNatureCode() != null ? mapping.getTransactionNatureCode() : defaultNature;
+                int transportMode = mapping.getDefaultTransportMode() != null ? mapping.getDefaultTransportMode() : defaultTransportMode;
+                String origin = flowDirection == FlowDirection.ARRIVAL ? partnerCountry : HOME_COUNTRY;
+                ItemKey key = new ItemKey(mapping.getNomenclature().getId(), partnerCountry, origin, nature, transportMode);
+
+                ItemAccumulator acc = aggregates.get(key);
+                if (acc == null) {
+                    acc = new ItemAccumulator((Integer) row[1], (Integer) row[2]);
+                    aggregates.put(key, acc);
+                }
+                acc.add((BigDecimal) row[3], mapping.isQuantityTracked() ? (BigDecimal) row[4] : null, (String) row[5],
+                        mapping);
+            }
+        }
+
+        if (skipped > 0) {
+            log.warn("Intrastat: {} lines for company {} in {} skipped - domestic or without partner country",
+                    skipped, companyId, period);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Rejects items that cannot be declared: a CN code that is no longer active in the nomenclature, or lines
+     * whose net mass cannot be determined - a quantity in a unit with no conversion to kilograms, or no quantity
+     * at all, on a mapping without a mass per unit or per value - so the net mass would be understated.
+     */
+    private void validateItems(Map<ItemKey, ItemAccumulator> aggregates) {
+        Set<Integer> inactiveNomenclatures = new TreeSet<>();
+        Map<String, Set<String>> unitsWithoutMass = new TreeMap<>();
+        for (Map.Entry<ItemKey, ItemAccumulator> entry : aggregates.entrySet()) {
+            Integer nomenclatureId = entry.getKey().nomenclatureId();
+            ItemAccumulator acc = entry.getValue();
+            IntrastatNomenclatureIndex.Nomenclature nomenclature = nomenclatureIndex.findById(nomenclatureId).orElse(null);
+            if (nomenclature == null) {
+                inactiveNomenclatures.add(nomenclatureId);
+            } else if (!acc.unitsWithoutMass.isEmpty() || acc.netMass.setScale(3, RoundingMode.HALF_UP).signum() <= 0) {
+                Set<String> units = unitsWithoutMass.computeIfAbsent(nomenclature.cnCode(), code -> new TreeSet<>());
+                units.addAll(acc.unitsWithoutMass);
+                if (units.isEmpty()) {
+                    units.add("нулево тегло");
+                }
+            }
+        }
+        if (!inactiveNomenclatures.isEmpty()) {
+            throw new IllegalStateException("Сметки за Интрастат са свързани с неактивни КН кодове (номенклатура "
+                    + inactiveNomenclatures + ") - обновете съответствията на сметките");
+        }
+        if (!unitsWithoutMass.isEmpty()) {
+            StringJoiner codes = new StringJoiner(", ");
+            unitsWithoutMass.forEach((code, units) -> codes.add(code + " (" + String.join(", ", units) + ")"));
+            throw new IllegalStateException("Нетното тегло не може да се определи за КН кодове " + codes
+                    + " - количествата трябва да са в килограми, тонове или грамове или в съответствието на сметката"
+                    + " да е зададено тегло на единица количество или на единица стойност");
+        }
+    }
+
+    /**
+     * Partner country: VAT number prefix, then the counterpart's ISO country, then the mapping default.
+     */
+    private String resolveCountry(String vatNumber, String counterpartCountry, String defaultCountry) {
+        if (vatNumber != null) {
+            String vat = vatNumber.trim().toUpperCase(Locale.ROOT);
+            if (vat.length() > 2 && Character.isLetter(vat.charAt(0)) && Character.isLetter(vat.charAt(1))) {
+                String prefix = vat.substring(0, 2);
+                // Гърция използва EL в ДДС номера, но GR в Интрастат
+                return "EL".equals(prefix) ? "GR" : prefix;
+            }
+        }
+        if (counterpartCountry != null && counterpartCountry.trim().length() == 2) {
+            return counterpartCountry.trim().toUpperCase(Locale.ROOT);
+        }
+        return defaultCountry != null && !defaultCountry.isBlank() ? defaultCountry.trim().toUpperCase(Locale.ROOT) : null;
+    }
+
+    private static boolean hasSupplementaryUnit(IntrastatNomenclatureIndex.Nomenclature nomenclature) {
+        String unit = nomenclature.unitOfMeasure() != null ? nomenclature.unitOfMeasure().trim().toUpperCase(Locale.ROOT) : "";
+        return !NO_SUPPLEMENTARY_UNIT.contains(unit);
+    }
+
+    private static String firstNonBlank(String... values) {
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return "";
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<IntrastatDeclarationEntity> findDeclarationsByCompanyId(Integer companyId) {
+        return declarationRepository.findByCompany_IdOrderByYearDescMonthDesc(companyId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public IntrastatDeclarationEntity findDeclarationById(Integer id) {
+        return declarationRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Интрастат декларацията не е намерена: " + id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<IntrastatDeclarationItemEntity> findItemsByDeclarationId(Integer declarationId) {
+        return itemRepository.findByDeclaration_IdOrderByItemNumber(declarationId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void writeDeclarationXml(Integer declarationId, OutputStream out) throws IOException {
+        IntrastatDeclarationEntity declaration = findDeclarationById(declarationId);
+        List<IntrastatDeclarationItemEntity> items = itemRepository.findByDeclaration_IdOrderByItemNumber(declarationId);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        try {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+            xml.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            xml.writeStartElement("INSTAT");
+            xml.writeStartElement("Envelope");
+            writeElement(xml, "envelopeId", declaration.getDeclarantEik() + "-" + declaration.getReferencePeriod()
+                    + "-" + declaration.getDeclarationType().getValue());
+            xml.writeStartElement("DateTime");
+            writeElement(xml, "date", now.format(DateTimeFormatter.ISO_LOCAL_DATE));
+            writeElement(xml, "time", now.format(DateTimeFormatter.ofPattern("HH:mm:ss")));
+            xml.writeEndElement();
+
+            xml.writeStartElement("Party");
+            xml.writeAttribute("partyType", "PSI");
+            xml.writeAttribute("partyRole", "sender");
+            writeElement(xml, "partyId", declaration.getDeclarantEik());
+            writeElement(xml, "partyName", declaration.getDeclarantName());
+            xml.writeStartElement("ContactPerson");
+            writeElement(xml, "contactPersonName", declaration.getContactPerson());
+            writeElement(xml, "phoneNumber", declaration.getContactPhone());
+            writeElement(xml, "e-mail", declaration.getContactEmail());
+            xml.writeEndElement();
+            xml.writeEndElement();
+
+            xml.writeStartElement("Declaration");
+            writeElement(xml, "declarationId", String.format("%04d%02d", declaration.getYear(), declaration.getMonth()));
+            writeElement(xml, "referencePeriod", declaration.getReferencePeriod());
+            writeElement(xml, "PSIId", declaration.getDeclarantEik());
+            xml.writeStartElement("Function");
+            writeElement(xml, "functionCode", "O");
+            xml.writeEndElement();
+            writeElement(xml, "flowCode", declaration.getDeclarationType() == DeclarationType.ARRIVAL ? "A" : "D");
+            writeElement(xml, "currencyCode", items.isEmpty() ? DEFAULT_CURRENCY : items.get(0).getCurrencyCode());
+
+            for (IntrastatDeclarationItemEntity item : items) {
+                xml.writeStartElement("Item");
+                writeElement(xml, "itemNumber", String.valueOf(item.getItemNumber()));
+                xml.writeStartElement("CN8");
+                writeElement(xml, "CN8Code", item.getCnCode());
+                xml.writeEndElement();
+                writeElement(xml, "goodsDescription", item.getDescription());
+                writeElement(xml, "MSConsDestCode", item.getCountryOfConsignment());
+                writeElement(xml, "countryOfOriginCode", item.getCountryOfOrigin());
+                writeElement(xml, "netMass", item.getNetMassKg().toPlainString());
+                if (item.getSupplementaryUnit() != null) {
+                    writeElement(xml, "quantityInSU", item.getSupplementaryUnit().toPlainString());
+                }
+                writeElement(xml, "invoicedAmount", item.getInvoiceValue().toPlainString());
+                writeElement(xml, "statisticalValue", item.getStatisticalValue().toPlainString());
+                xml.writeStartElement("NatureOfTransaction");
+                String nature = item.getTransactionNatureCode();
+                writeElement(xml, "natureOfTransactionACode", nature.substring(0, 1));
+                if (nature.length() > 1) {
+                    writeElement(xml, "natureOfTransactionBCode", nature.substring(1));
+                }
+                xml.writeEndElement();
+                writeElement(xml, "modeOfTransportCode", String.valueOf(item.getTransportMode()));
+                xml.writeStartElement("DeliveryTerms");
+                writeElement(xml, "TODCode", item.getDeliveryTerms());
+                xml.writeEndElement();
+                xml.writeEndElement();
+            }
+
+            writeElement(xml, "totalNumberLines", String.valueOf(items.size()));
+            writeElement(xml, "totalInvoicedAmount", declaration.getTotalInvoiceValue().toPlainString());
+            xml.writeEndElement();
+            writeElement(xml, "numberOfDeclarations", "1");
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Грешка при генериране на Интрастат XML: " + e.getMessage(), e);
+        }
+        out.flush();
+    }
+
+    private static void writeElement(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeCharacters(value != null ? value : "");
+        xml.writeEndElement();
+    }
+
+    private record ItemKey(Integer nomenclatureId, String partnerCountry, String originCountry,
+                           String transactionNature, Integer transportMode) {
+    }
+
+    private static final class ItemAccumulator {
+        private final Integer firstJournalEntryId;
+        private final Integer firstEntryLineId;
+        private BigDecimal invoiceValue = BigDecimal.ZERO;
+        private BigDecimal netMass = BigDecimal.ZERO;
+        private BigDecimal supplementaryUnits = BigDecimal.ZERO;
+        private final Set<String> unitsWithoutMass = new TreeSet<>();
+        private int lineCount;
+
+        private ItemAccumulator(Integer firstJournalEntryId, Integer firstEntryLineId) {
+            this.firstJournalEntryId = firstJournalEntryId;
+            this.firstEntryLineId = firstEntryLineId;
+        }
+
+        /**
+         * Mass units convert straight to net mass. Any other quantity counts as the supplementary quantity and
+         * takes its mass from the mapping: per unit of quantity, else per unit of value. A line without quantity
+         * (or on a mapping that does not track quantities) can only use the mass per unit of value.
+         */
+        private void add(BigDecimal amount, BigDecimal quantity, String unitOfMeasureCode,
+                         IntrastatAccountMappingEntity mapping) {
+            lineCount++;
+            if (amount != null) {
+                invoiceValue = invoiceValue.add(amount);
+            }
+            if (quantity == null) {
+                if (!addMassByValue(amount, mapping)) {
+                    unitsWithoutMass.add("без количество");
+                }
+                return;
+            }
+            String unit = unitOfMeasureCode != null ? unitOfMeasureCode.trim().toUpperCase(Locale.ROOT) : "";
+            BigDecimal kilogramsPerUnit = KILOGRAMS_PER_UNIT.get(unit);
+            if (kilogramsPerUnit != null) {
+                netMass = netMass.add(quantity.multiply(kilogramsPerUnit));
+                return;
+            }
+            supplementaryUnits = supplementaryUnits.add(quantity);
+            if (mapping.getNetMassPerUnitKg() != null) {
+                netMass = netMass.add(quantity.multiply(mapping.getNetMassPerUnitKg()));
+            } else if (!addMassByValue(amount, mapping)) {
+                unitsWithoutMass.add(unit.isEmpty() ? "без мярка" : unit);
+            }
+        }
+
+        private boolean addMassByValue(BigDecimal amount, IntrastatAccountMappingEntity mapping) {
+            if (mapping.getNetMassPerValueKg() == null || amount == null) {
+                return false;
+            }
+            netMass = netMass.add(amount.multiply(mapping.getNetMassPerValueKg()));
+            return true;
+        }
+    }
+}
@@ -4,42 +4,69 @@ import bg.spacbg.sp_ac_bg.model.dto.input.InventoryMovementFilter;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.AverageCostInfoDto;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.CorrectionNeededDto;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.QuantityTurnoverDto;
+import bg.spacbg.sp_ac_bg.model.dto.output.InventoryMovementsPage;
 import bg.spacbg.sp_ac_bg.model.entity.*;
 import bg.spacbg.sp_ac_bg.repository.*;
 import bg.spacbg.sp_ac_bg.service.InventoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @Service
 @Transactional
 public class InventoryServiceImpl implements InventoryService {
 
+    private static final Logger log = LoggerFactory.getLogger(InventoryServiceImpl.class);
+
     private static final String DEBIT = "DEBIT";
     private static final String CREDIT = "CREDIT";
     private static final BigDecimal MIN_CORRECTION_THRESHOLD = new BigDecimal("0.01");
+    private static final int CORRECTION_CHUNK_SIZE = 1000;
+
+    // Редът, в който се натрупват текущите салда по сметка
+    private static final Comparator<InventoryMovementEntity> REPLAY_ORDER = Comparator
+            .comparing(InventoryMovementEntity::getMovementDate)
+            .thenComparing(InventoryMovementEntity::getId);
 
     private final InventoryMovementRepository movementRepository;
     private final InventoryBalanceRepository balanceRepository;
+    private final InventoryMovementJdbcRepository movementJdbcRepository;
+    private final InventorySnapshotJdbcRepository snapshotRepository;
     private final EntryLineRepository entryLineRepository;
     private final AccountRepository accountRepository;
     private final CompanyRepository companyRepository;
+    private final JournalEntryRepository journalEntryRepository;
+    private final UserRepository userRepository;
 
     public InventoryServiceImpl(
             InventoryMovementRepository movementRepository,
             InventoryBalanceRepository balanceRepository,
+            InventoryMovementJdbcRepository movementJdbcRepository,
+            InventorySnapshotJdbcRepository snapshotRepository,
             EntryLineRepository entryLineRepository,
             AccountRepository accountRepository,
-            CompanyRepository companyRepository) {
+            CompanyRepository companyRepository,
+            JournalEntryRepository journalEntryRepository,
+            UserRepository userRepository) {
         this.movementRepository = movementRepository;
         this.balanceRepository = balanceRepository;
+        this.movementJdbcRepository = movementJdbcRepository;
+        this.snapshotRepository = snapshotRepository;
         this.entryLineRepository = entryLineRepository;
         this.accountRepository = accountRepository;
         this.companyRepository = companyRepository;
+        this.journalEntryRepository = journalEntryRepository;
+        this.userRepository = userRepository;
     }
 
     // ========== Inventory Movement Operations ==========
@@ -80,16 +107,33 @@ public class InventoryServiceImpl implements InventoryService {
     @Override
     @Transactional(readOnly = true)
     public List<QuantityTurnoverDto> getQuantityTurnover(Integer companyId, LocalDate fromDate, LocalDate toDate) {
-        // Движения преди периода (за начално салдо)
-        List<InventoryMovementEntity> openingMovements = movementRepository.findMovementsBeforeDate(companyId, fromDate);
+        // Начални салда - от последната снимка преди периода и движенията след нея, по едно на сметка
+        Map<Integer, Object[]> openingBalances = new HashMap<>();
+        List<InventorySnapshotJdbcRepository.Snapshot> snapshots = snapshotRepository.findLatestBefore(companyId, fromDate);
+        List<Object[]> openingRows;
+        if (snapshots.isEmpty()) {
+            openingRows = movementRepository.findOpeningBalances(companyId, fromDate);
+        } else {
+            for (InventorySnapshotJdbcRepository.Snapshot snapshot : snapshots) {
+                openingBalances.put(snapshot.accountId(),
+                        new Object[]{snapshot.accountId(), snapshot.quantity(), snapshot.amount()});
+            }
+            openingRows = movementRepository.findOpeningBalancesAfter(
+                    companyId, snapshots.get(0).periodEnd(), fromDate);
+        }
+        for (Object[] row : openingRows) {
+            openingBalances.put(((Number) row[0]).intValue(), row);
+        }
 
-        // Движения в периода
-        List<InventoryMovementEntity> periodMovements = movementRepository.findMovementsInPeriod(companyId, fromDate, toDate);
+        // Обороти в периода - групирани по сметка
+        Map<Integer, Object[]> periodTurnover = new HashMap<>();
+        for (Object[] row : movementRepository.sumTurnoverByAccount(companyId, fromDate, toDate)) {
+            periodTurnover.put((Integer) row[0], row);
+        }
 
         // Събираме уникални accountId
-        Set<Integer> accountIds = new HashSet<>();
-        openingMovements.forEach(m -> accountIds.add(m.getAccount().getId()));
-        periodMovements.forEach(m -> accountIds.add(m.getAccount().getId()));
+        Set<Integer> accountIds = new HashSet<>(openingBalances.keySet());
+        accountIds.addAll(periodTurnover.keySet());
 
         // Зареждаме информация за сметките
         Map<Integer, AccountEntity> accountsMap = new HashMap<>();
@@ -99,33 +143,23 @@ public class InventoryServiceImpl implements InventoryService {
 
         // Изчисляваме количествена ведомост
         Map<Integer, QuantityTurnoverDto> turnoverMap = new HashMap<>();
-
-        // Изчисляване на начални салда от движенията преди периода
-        Map<Integer, BigDecimal> openingQuantities = new HashMap<>();
-        Map<Integer, BigDecimal> openingAmounts = new HashMap<>();
-
-        for (InventoryMovementEntity mov : openingMovements) {
-            Integer accId = mov.getAccount().getId();
-            // Използваме балансите след движението за последното движение за всяка сметка
-            openingQuantities.put(accId, mov.getBalanceAfterQuantity());
-            openingAmounts.put(accId, mov.getBalanceAfterAmount());
-        }
-
-        // Инициализираме всички сметки
         for (Integer accId : accountIds) {
             AccountEntity acc = accountsMap.get(accId);
             if (acc == null) continue;
 
+            Object[] opening = openingBalances.get(accId);
+            Object[] turnover = periodTurnover.get(accId);
+
             QuantityTurnoverDto dto = QuantityTurnoverDto.builder()
                     .accountId(accId)
                     .accountCode(acc.getCode())
                     .accountName(acc.getName())
-                    .openingQuantity(openingQuantities.getOrDefault(accId, BigDecimal.ZERO))
-                    .openingAmount(openingAmounts.getOrDefault(accId, BigDecimal.ZERO))
-                    .receiptQuantity(BigDecimal.ZERO)
-                    .receiptAmount(BigDecimal.ZERO)
-                    .issueQuantity(BigDecimal.ZERO)
-                    .issueAmount(BigDecimal.ZERO)
+                    .openingQuantity(opening != null ? (BigDecimal) opening[1] : BigDecimal.ZERO)
+                    .openingAmount(opening != null ? (BigDecimal) opening[2] : BigDecimal.ZERO)
+                    .receiptQuantity(turnover != null ? (BigDecimal) turnover[1] : BigDecimal.ZERO)
+                    .receiptAmount(turnover != null ? (BigDecimal) turnover[2] : BigDecimal.ZERO)
+                    .issueQuantity(turnover != null ? (BigDecimal) turnover[3] : BigDecimal.ZERO)
+                    .issueAmount(turnover != null ? (BigDecimal) turnover[4] : BigDecimal.ZERO)
                     .closingQuantity(BigDecimal.ZERO)
                     .closingAmount(BigDecimal.ZERO)
                     .build();
@@ -133,23 +167,6 @@ public class InventoryServiceImpl implements InventoryService {
             turnoverMap.put(accId, dto);
         }
 
-        // Обработваме движенията в периода
-        for (InventoryMovementEntity mov : periodMovements) {
-            Integer accId = mov.getAccount().getId();
-            QuantityTurnoverDto dto = turnoverMap.get(accId);
-            if (dto == null) continue;
-
-            if (DEBIT.equals(mov.getMovementType())) {
-                // Приход
-                dto.setReceiptQuantity(dto.getReceiptQuantity().add(mov.getQuantity()));
-                dto.setReceiptAmount(dto.getReceiptAmount().add(mov.getTotalAmount()));
-            } else {
-                // Разход
-                dto.setIssueQuantity(dto.getIssueQuantity().add(mov.getQuantity()));
-                dto.setIssueAmount(dto.getIssueAmount().add(mov.getTotalAmount()));
-            }
-        }
-
         // Изчисляваме крайни салда
         for (QuantityTurnoverDto dto : turnoverMap.values()) {
             dto.setClosingQuantity(
@@ -171,6 +188,29 @@ public class InventoryServiceImpl implements InventoryService {
         return result;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public InventoryMovementsPage getQuantityTurnoverMovements(Integer companyId, Integer accountId,
+                                                               LocalDate fromDate, LocalDate toDate,
+                                                               Integer offset, Integer limit) {
+        int pageOffset = offset != null ? offset : 0;
+        int pageLimit = limit != null ? limit : 50;
+        if (pageOffset < 0) {
+            throw new IllegalArgumentException("Отместването не може да бъде отрицателно: " + pageOffset);
+        }
+        if (pageLimit <= 0) {
+            throw new IllegalArgumentException("Броят движения на страница трябва да е положителен: " + pageLimit);
+        }
+
+        long total = movementRepository.countAccountMovementsInPeriod(companyId, accountId, fromDate, toDate);
+        List<InventoryMovementEntity> movements = total > pageOffset
+                ? movementRepository.findAccountMovementsInPeriod(companyId, accountId, fromDate, toDate, pageOffset, pageLimit)
+                : List.of();
+
+        boolean hasMore = pageOffset + movements.size() < total;
+        return new InventoryMovementsPage(movements, total, hasMore);
+    }
+
     // ========== Средно претеглена цена (СПЦ) ==========
 
     @Override
@@ -200,102 +240,272 @@ public class InventoryServiceImpl implements InventoryService {
         return calculateAverageCostAtDate(companyId, accountId, asOfDate);
     }
 
+    /**
+     * СПЦ към дата от записаните салда на последното движение до датата.
+     * Текущите салда се поддържат в реда (дата, id), затова е достатъчно едно търсене по индекса.
+     */
     private AverageCostInfoDto calculateAverageCostAtDate(Integer companyId, Integer accountId, LocalDate asOfDate) {
-        List<InventoryMovementEntity> movements = movementRepository.findMovementsUpToDate(companyId, accountId, asOfDate);
-
-        BigDecimal quantity = BigDecimal.ZERO;
-        BigDecimal amount = BigDecimal.ZERO;
-
-        for (InventoryMovementEntity mov : movements) {
-            if (DEBIT.equals(mov.getMovementType())) {
-                quantity = quantity.add(mov.getQuantity());
-                amount = amount.add(mov.getTotalAmount());
-            } else {
-                // При изписване използваме текущата СПЦ
-                BigDecimal avgCost = quantity.compareTo(BigDecimal.ZERO) > 0
-                        ? amount.divide(quantity, 6, RoundingMode.HALF_UP)
-                        : BigDecimal.ZERO;
-                BigDecimal issueValue = avgCost.multiply(mov.getQuantity());
-                quantity = quantity.subtract(mov.getQuantity());
-                amount = amount.subtract(issueValue);
-            }
-        }
-
-        BigDecimal averageCost = quantity.compareTo(BigDecimal.ZERO) > 0
-                ? amount.divide(quantity, 6, RoundingMode.HALF_UP)
-                : BigDecimal.ZERO;
+        BigDecimal[] position = balanceAsOf(companyId, accountId, asOfDate);
+        BigDecimal quantity = position[0];
+        BigDecimal amount = position[1];
 
         return AverageCostInfoDto.builder()
                 .accountId(accountId)
                 .currentQuantity(quantity)
                 .currentAmount(amount)
-                .averageCost(averageCost)
+                .averageCost(averageCost(quantity, amount))
                 .build();
     }
 
+    /**
+     * Количество и стойност след последното движение до датата включително.
+     * Започва от най-близката снимка към датата и търси само движенията след нея.
+     */
+    private BigDecimal[] balanceAsOf(Integer companyId, Integer accountId, LocalDate asOfDate) {
+        Optional<InventorySnapshotJdbcRepository.Snapshot> snapshot =
+                snapshotRepository.findLatest(companyId, accountId, asOfDate);
+        List<Object[]> checkpoint = snapshot.isPresent()
+                ? movementRepository.findCheckpointsBetween(
+                        companyId, accountId, snapshot.get().periodEnd(), asOfDate, PageRequest.of(0, 1))
+                : movementRepository.findCheckpointsUpToDate(companyId, accountId, asOfDate, PageRequest.of(0, 1));
+        if (!checkpoint.isEmpty()) {
+            Object[] row = checkpoint.get(0);
+            return new BigDecimal[]{(BigDecimal) row[2], (BigDecimal) row[3]};
+        }
+        return snapshot
+                .map(s -> new BigDecimal[]{s.quantity(), s.amount()})
+                .orElseGet(() -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+    }
+
+    // ========== Снимки към края на период ==========
+
+    @Override
+    public int createPeriodSnapshot(Integer companyId, LocalDate periodEnd) {
+        int written = snapshotRepository.writeSnapshots(companyId, periodEnd);
+        log.info("Wrote {} inventory snapshots at {} for company {}", written, periodEnd, companyId);
+        return written;
+    }
+
     // ========== Корекции на СПЦ ==========
 
     @Override
     @Transactional(readOnly = true)
     public List<CorrectionNeededDto> checkRetroactiveCorrections(Integer companyId, Integer accountId, LocalDate newEntryDate) {
+        // Едно преминаване през движенията след датата, без запис
+        Replay replay = replay(companyId, accountId, newEntryDate, Integer.MAX_VALUE);
+        List<ReplayedIssue> issues = significantIssues(replay.issues());
+        if (issues.isEmpty()) {
+            return List.of();
+        }
+
+        AccountEntity materialAccount = accountRepository.findById(accountId).orElse(null);
+        Map<Integer, List<Object[]>> debitLines = findDebitLines(accountId, issues);
+
         List<CorrectionNeededDto> corrections = new ArrayList<>();
+        for (ReplayedIssue issue : issues) {
+            Object[] expenseLine = findExpenseLine(debitLines, issue);
+            if (expenseLine != null) {
+                corrections.add(toCorrectionDto(issue, materialAccount, expenseLine));
+            }
+        }
+        return corrections;
+    }
 
-        // Намираме всички CREDIT движения след новата дата
-        List<InventoryMovementEntity> affectedMovements =
-                movementRepository.findCreditMovementsAfterDate(companyId, accountId, newEntryDate);
+    @Override
+    public List<CorrectionNeededDto> applyRetroactiveCorrections(Integer triggeringMovementId, Integer userId) {
+        InventoryMovementEntity trigger = movementRepository.findById(triggeringMovementId)
+                .orElseThrow(() -> new IllegalArgumentException("Движението не е намерено: " + triggeringMovementId));
+        if (!DEBIT.equals(trigger.getMovementType())) {
+            throw new IllegalStateException("Корекции на СПЦ се изчисляват само от заприхождаване: " + triggeringMovementId);
+        }
+        UserEntity user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("Потребителят не е намерен: " + userId));
+
+        CompanyEntity company = trigger.getCompany();
+        AccountEntity materialAccount = trigger.getAccount();
+        Integer companyId = company.getId();
+        Integer accountId = materialAccount.getId();
+
+        // Преизчисляваме сметката веднъж от заприхождаването нататък и записваме новите салда
+        Replay replay = replayFrom(companyId, accountId, trigger.getMovementDate(), trigger.getId());
+        List<ReplayedIssue> issues = significantIssues(replay.issues());
+        if (issues.isEmpty()) {
+            return List.of();
+        }
 
-        // Зареждаме информация за материалната сметка
-        AccountEntity materialAccount = accountRepository.findById(accountId).orElse(null);
+        // Разходните сметки на всички засегнати изписвания с една заявка
+        Map<Integer, List<Object[]>> debitLines = findDebitLines(accountId, issues);
+
+        // Корекциите се осчетоводяват в месеца на изписването - по един журнален запис на месец
+        Map<YearMonth, List<Object[]>> matchedByMonth = new TreeMap<>();
+        int unmatched = 0;
+        for (ReplayedIssue issue : issues) {
+            Object[] expenseLine = findExpenseLine(debitLines, issue);
+            if (expenseLine == null) {
+                unmatched++;
+                continue;
+            }
+            matchedByMonth.computeIfAbsent(YearMonth.from(issue.movementDate()), k -> new ArrayList<>())
+                    .add(new Object[]{issue, expenseLine});
+        }
+        if (unmatched > 0) {
+            log.warn("Average cost correction for account {} skipped {} issues without an expense line", accountId, unmatched);
+        }
+
+        // Номерата на записите са уникални за всички фирми, затова префиксът съдържа фирмата
+        String prefix = "AVC-" + companyId + "-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd")) + "-";
+        Integer maxNumber = journalEntryRepository.findMaxEntryNumberByPrefix(companyId, prefix);
+        int nextNumber = (maxNumber != null ? maxNumber : 0) + 1;
+
+        List<CorrectionNeededDto> applied = new ArrayList<>();
+        List<InventoryMovementJdbcRepository.IssueValue> issueValues = new ArrayList<>();
+        List<InventoryMovementJdbcRepository.CostCorrection> correctionRows = new ArrayList<>();
+
+        for (Map.Entry<YearMonth, List<Object[]>> monthEntry : matchedByMonth.entrySet()) {
+            YearMonth month = monthEntry.getKey();
+            List<Object[]> matched = monthEntry.getValue();
+
+            // Нетна разлика по разходна сметка
+            Map<Integer, BigDecimal> differenceByExpense = new LinkedHashMap<>();
+            LocalDate entryDate = null;
+            for (Object[] pair : matched) {
+                ReplayedIssue issue = (ReplayedIssue) pair[0];
+                Object[] expenseLine = (Object[]) pair[1];
+                differenceByExpense.merge((Integer) expenseLine[1], issue.difference(), BigDecimal::add);
+                if (entryDate == null || issue.movementDate().isAfter(entryDate)) {
+                    entryDate = issue.movementDate();
+                }
+            }
 
-        for (InventoryMovementEntity movement : affectedMovements) {
-            // Намираме дебитната сметка от същия журнален запис
-            List<EntryLineEntity> entryLines = entryLineRepository.findByJournalEntry_Id(movement.getJournalEntry().getId());
-
-            // Търсим дебитната сметка (разходна) със същата сума
-            EntryLineEntity debitLine = entryLines.stream()
-                    .filter(line -> !line.getAccount().getId().equals(accountId)
-                            && line.getDebitAmount().compareTo(BigDecimal.ZERO) > 0
-                            && line.getDebitAmount().compareTo(movement.getTotalAmount()) == 0)
-                    .findFirst()
-                    .orElse(null);
-
-            if (debitLine == null) continue;
-
-            AccountEntity expenseAccount = debitLine.getAccount();
-
-            // Изчисляваме новата СПЦ на датата на движението
-            AverageCostInfoDto newCostInfo = calculateAverageCostAtDate(companyId, accountId, movement.getMovementDate());
-
-            BigDecimal oldAvgCost = movement.getAverageCostAtTime();
-            BigDecimal newAvgCost = newCostInfo.getAverageCost();
-            BigDecimal qty = movement.getQuantity();
-
-            BigDecimal correctionAmount = newAvgCost.subtract(oldAvgCost).multiply(qty);
-
-            // Добавяме корекция само ако разликата е значителна
-            if (correctionAmount.abs().compareTo(MIN_CORRECTION_THRESHOLD) > 0) {
-                String description = String.format("Корекция СПЦ за %.2f бр от %.4f на %.4f лв",
-                        qty.doubleValue(), oldAvgCost.doubleValue(), newAvgCost.doubleValue());
-
-                corrections.add(CorrectionNeededDto.builder()
-                        .movementId(movement.getId())
-                        .movementDate(movement.getMovementDate())
-                        .materialAccountId(accountId)
-                        .materialAccountCode(materialAccount != null ? materialAccount.getCode() : "N/A")
-                        .materialAccountName(materialAccount != null ? materialAccount.getName() : "N/A")
-                        .expenseAccountId(expenseAccount.getId())
-                        .expenseAccountCode(expenseAccount.getCode())
-                        .expenseAccountName(expenseAccount.getName())
-                        .quantity(qty)
-                        .oldAverageCost(oldAvgCost)
-                        .newAverageCost(newAvgCost)
-                        .correctionAmount(correctionAmount)
-                        .description(description)
-                        .build());
+            JournalEntryEntity journalEntry = new JournalEntryEntity();
+            journalEntry.setEntryNumber(prefix + String.format("%04d", nextNumber++));
+            journalEntry.setCompany(company);
+            journalEntry.setDocumentDate(entryDate);
+            journalEntry.setAccountingDate(entryDate);
+            journalEntry.setDocumentNumber(String.format("Корекция СПЦ %d-%02d", month.getYear(), month.getMonthValue()));
+            journalEntry.setDescription(String.format("Корекция на СПЦ по сметка %s за %d-%02d",
+                    materialAccount.getCode(), month.getYear(), month.getMonthValue()));
+            journalEntry.setDocumentType("AVERAGE_COST_CORRECTION");
+            journalEntry.setTotalAmount(BigDecimal.ZERO);
+            journalEntry.setTotalVatAmount(BigDecimal.ZERO);
+            journalEntry.setCreatedBy(user);
+            journalEntry.setPosted(true);
+            journalEntry.setPostedBy(user);
+            journalEntry.setPostedAt(OffsetDateTime.now());
+            JournalEntryEntity savedEntry = journalEntryRepository.save(journalEntry);
+
+            List<EntryLineEntity> lines = new ArrayList<>();
+            BigDecimal totalAmount = BigDecimal.ZERO;
+            for (Map.Entry<Integer, BigDecimal> expense : differenceByExpense.entrySet()) {
+                BigDecimal difference = expense.getValue();
+                if (difference.signum() == 0) {
+                    continue;
+                }
+                BigDecimal lineAmount = difference.abs();
+                AccountEntity expenseAccount = accountRepository.getReferenceById(expense.getKey());
+                // По-висока стойност на изписването - дебит разход / кредит материал, по-ниска - обратно
+                AccountEntity debitAccount = difference.signum() > 0 ? expenseAccount : materialAccount;
+                AccountEntity creditAccount = difference.signum() > 0 ? materialAccount : expenseAccount;
+                lines.add(correctionLine(savedEntry, debitAccount, lineAmount, BigDecimal.ZERO, lines.size() + 1));
+                lines.add(correctionLine(savedEntry, creditAccount, BigDecimal.ZERO, lineAmount, lines.size() + 1));
+                totalAmount = totalAmount.add(lineAmount);
+            }
+            entryLineRepository.saveAll(lines);
+            savedEntry.setTotalAmount(totalAmount);
+
+            for (Object[] pair : matched) {
+                ReplayedIssue issue = (ReplayedIssue) pair[0];
+                CorrectionNeededDto dto = toCorrectionDto(issue, materialAccount, (Object[]) pair[1]);
+                applied.add(dto);
+                issueValues.add(new InventoryMovementJdbcRepository.IssueValue(
+                        issue.movementId(), issue.averageCost(), issue.correctAmount()));
+                correctionRows.add(new InventoryMovementJdbcRepository.CostCorrection(
+                        companyId, accountId, trigger.getId(), issue.movementId(), savedEntry.getId(),
+                        issue.movementDate(), issue.quantity(), dto.getOldAverageCost(), dto.getNewAverageCost(),
+                        dto.getCorrectionAmount(), dto.getDescription(), user.getId()));
             }
         }
 
-        return corrections;
+        // Стойностите на изписванията и редовете на корекциите - с JDBC batch
+        movementJdbcRepository.updateIssueValues(issueValues);
+        movementJdbcRepository.insertCorrections(correctionRows);
+
+        log.info("Applied {} average cost corrections for account {} in {} journal entries",
+                applied.size(), accountId, matchedByMonth.size());
+        return applied;
+    }
+
+    /**
+     * Изписванията, чиято записана стойност се различава от преизчислената над прага.
+     */
+    private static List<ReplayedIssue> significantIssues(List<ReplayedIssue> issues) {
+        return issues.stream()
+                .filter(issue -> issue.difference().abs().compareTo(MIN_CORRECTION_THRESHOLD) > 0)
+                .toList();
+    }
+
+    /**
+     * Дебитните редове на журналните записи на изписванията, групирани по журнален запис.
+     */
+    private Map<Integer, List<Object[]>> findDebitLines(Integer materialAccountId, List<ReplayedIssue> issues) {
+        List<Integer> journalEntryIds = issues.stream().map(ReplayedIssue::journalEntryId).distinct().toList();
+        Map<Integer, List<Object[]>> linesByEntry = new HashMap<>();
+        for (int from = 0; from < journalEntryIds.size(); from += CORRECTION_CHUNK_SIZE) {
+            List<Integer> chunk = journalEntryIds.subList(from, Math.min(from + CORRECTION_CHUNK_SIZE, journalEntryIds.size()));
+            for (Object[] row : entryLineRepository.findDebitLinesByJournalEntryIds(chunk, materialAccountId)) {
+                linesByEntry.computeIfAbsent((Integer) row[0], k -> new ArrayList<>()).add(row);
+            }
+        }
+        return linesByEntry;
+    }
+
+    /**
+     * Разходният ред със същата сума като записаната стойност на изписването.
+     */
+    private static Object[] findExpenseLine(Map<Integer, List<Object[]>> debitLines, ReplayedIssue issue) {
+        for (Object[] line : debitLines.getOrDefault(issue.journalEntryId(), List.of())) {
+            if (((BigDecimal) line[4]).compareTo(issue.bookedAmount()) == 0) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    private static CorrectionNeededDto toCorrectionDto(ReplayedIssue issue, AccountEntity materialAccount, Object[] expenseLine) {
+        BigDecimal oldAvgCost = issue.bookedAmount().divide(issue.quantity(), 6, RoundingMode.HALF_UP);
+        BigDecimal newAvgCost = issue.averageCost();
+        String description = String.format("Корекция СПЦ за %.2f бр от %.4f на %.4f лв",
+                issue.quantity().doubleValue(), oldAvgCost.doubleValue(), newAvgCost.doubleValue());
+
+        return CorrectionNeededDto.builder()
+                .movementId(issue.movementId())
+                .movementDate(issue.movementDate())
+                .materialAccountId(materialAccount != null ? materialAccount.getId() : null)
+                .materialAccountCode(materialAccount != null ? materialAccount.getCode() : "N/A")
+                .materialAccountName(materialAccount != null ? materialAccount.getName() : "N/A")
+                .expenseAccountId((Integer) expenseLine[1])
+                .expenseAccountCode((String) expenseLine[2])
+                .expenseAccountName((String) expenseLine[3])
+                .quantity(issue.quantity())
+                .oldAverageCost(oldAvgCost)
+                .newAverageCost(newAvgCost)
+                .correctionAmount(issue.difference())
+                .description(description)
+                .build();
+    }
+
+    private static EntryLineEntity correctionLine(JournalEntryEntity journalEntry, AccountEntity account,
+                                                  BigDecimal debitAmount, BigDecimal creditAmount, int lineOrder) {
+        EntryLineEntity line = new EntryLineEntity();
+        line.setJournalEntry(journalEntry);
+        line.setAccount(account);
+        line.setDebitAmount(debitAmount);
+        line.setCreditAmount(creditAmount);
+        line.setBaseAmount(debitAmount.max(creditAmount));
+        line.setVatAmount(BigDecimal.ZERO);
+        line.setDescription(journalEntry.getDescription());
+        line.setLineOrder(lineOrder);
+        return line;
     }
 
     // ========== Обработка на движения ==========
@@ -334,8 +544,27 @@ public class InventoryServiceImpl implements InventoryService {
                 ? amount.divide(quantity, 6, RoundingMode.HALF_UP)
                 : BigDecimal.ZERO;
 
-        // Получаваме или създаваме баланс
-        InventoryBalanceEntity balance = getOrCreateBalance(company, account);
+        // Получаваме или създаваме баланс и го заключваме до края на транзакцията
+        InventoryBalanceEntity balance = lockBalance(company.getId(), account.getId());
+
+        // Паралелно осчетоводяване на същия ред може да е създало движението, докато сме чакали заключването
+        existing = movementRepository.findByEntryLine_Id(entryLineId);
+        if (existing.isPresent()) {
+            return existing;
+        }
+        LocalDate movementDate = journalEntry.getAccountingDate();
+
+        // Движение с дата преди последното се вмъква в историята - тръгваме от салдото към неговата дата
+        boolean backdated = balance.getLastMovementDate() != null && movementDate.isBefore(balance.getLastMovementDate());
+        BigDecimal startQuantity = balance.getCurrentQuantity();
+        BigDecimal startAmount = balance.getCurrentAmount();
+        BigDecimal startAvgCost = balance.getCurrentAverageCost();
+        if (backdated) {
+            BigDecimal[] position = balanceAsOf(company.getId(), account.getId(), movementDate);
+            startQuantity = position[0];
+            startAmount = position[1];
+            startAvgCost = averageCost(startQuantity, startAmount);
+        }
 
         // Изчисляваме нови стойности
         BigDecimal newQuantity;
@@ -344,17 +573,15 @@ public class InventoryServiceImpl implements InventoryService {
 
         if (DEBIT.equals(movementType)) {
             // Приход - рекалкулираме СПЦ
-            newQuantity = balance.getCurrentQuantity().add(quantity);
-            newAmount = balance.getCurrentAmount().add(amount);
-            newAvgCost = newQuantity.compareTo(BigDecimal.ZERO) > 0
-                    ? newAmount.divide(newQuantity, 6, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
+            newQuantity = startQuantity.add(quantity);
+            newAmount = startAmount.add(amount);
+            newAvgCost = averageCost(newQuantity, newAmount);
         } else {
             // Разход - използваме текущата СПЦ
-            BigDecimal issueValue = balance.getCurrentAverageCost().multiply(quantity);
-            newQuantity = balance.getCurrentQuantity().subtract(quantity);
-            newAmount = balance.getCurrentAmount().subtract(issueValue);
-            newAvgCost = balance.getCurrentAverageCost(); // СПЦ не се променя при изписване
+            BigDecimal issueValue = startAvgCost.multiply(quantity);
+            newQuantity = startQuantity.subtract(quantity);
+            newAmount = startAmount.subtract(issueValue);
+            newAvgCost = startAvgCost; // СПЦ не се променя при изписване
         }
 
         // Създаваме движение
@@ -363,7 +590,7 @@ public class InventoryServiceImpl implements InventoryService {
         movement.setAccount(account);
         movement.setEntryLine(entryLine);
         movement.setJournalEntry(journalEntry);
-        movement.setMovementDate(journalEntry.getAccountingDate());
+        movement.setMovementDate(movementDate);
         movement.setMovementType(movementType);
         movement.setQuantity(quantity);
         movement.setUnitPrice(unitPrice);
@@ -376,11 +603,20 @@ public class InventoryServiceImpl implements InventoryService {
 
         InventoryMovementEntity savedMovement = movementRepository.save(movement);
 
+        if (backdated) {
+            // Преизчисляваме по-късните движения и баланса от новото движение нататък
+            replayFrom(company.getId(), account.getId(), movementDate, savedMovement.getId());
+            return Optional.of(savedMovement);
+        }
+
+        // Снимките от датата на движението нататък вече не отговарят на историята
+        snapshotRepository.deleteFrom(company.getId(), movementDate);
+
         // Обновяваме баланса
         balance.setCurrentQuantity(newQuantity);
         balance.setCurrentAmount(newAmount);
         balance.setCurrentAverageCost(newAvgCost);
-        balance.setLastMovementDate(journalEntry.getAccountingDate());
+        balance.setLastMovementDate(movementDate);
         balance.setLastMovement(savedMovement);
         balanceRepository.save(balance);
 
@@ -396,76 +632,148 @@ public class InventoryServiceImpl implements InventoryService {
             return;
         }
 
-        // За всяко движение трябва да преизчислим баланса
+        // Най-ранното изтрито движение за всяка засегната сметка - от него започва преизчисляването.
+        // Сметките се обработват по id, за да се заключват балансите винаги в един и същ ред
+        Map<Integer, InventoryMovementEntity> earliestByAccount = new TreeMap<>();
         for (InventoryMovementEntity movement : movements) {
-            Integer companyId = movement.getCompany().getId();
-            Integer accountId = movement.getAccount().getId();
+            earliestByAccount.merge(movement.getAccount().getId(), movement,
+                    (current, candidate) -> REPLAY_ORDER.compare(candidate, current) < 0 ? candidate : current);
+        }
 
-            // Изтриваме движението
-            movementRepository.delete(movement);
+        for (InventoryMovementEntity earliest : earliestByAccount.values()) {
+            lockBalance(earliest.getCompany().getId(), earliest.getAccount().getId());
+        }
+
+        List<Integer> movementIds = movements.stream().map(InventoryMovementEntity::getId).toList();
+        balanceRepository.clearLastMovement(movementIds);
+        movementRepository.deleteAllByIdInBatch(movementIds);
+
+        // Преизчисляваме веднъж на сметка, от контролната точка преди първото изтрито движение
+        for (InventoryMovementEntity earliest : earliestByAccount.values()) {
+            replayFrom(earliest.getCompany().getId(), earliest.getAccount().getId(),
+                    earliest.getMovementDate(), earliest.getId());
+        }
+    }
 
-            // Преизчисляваме баланса от всички останали движения
-            recalculateBalance(companyId, accountId);
+    @Override
+    public int rebuildRunningBalances(Integer companyId, Integer accountId) {
+        List<Integer> accountIds = accountId != null
+                ? List.of(accountId)
+                : movementRepository.findDistinctAccountIdsByCompanyId(companyId);
+        for (Integer id : accountIds) {
+            replayFrom(companyId, id, null, null);
         }
+        return accountIds.size();
     }
 
-    private InventoryBalanceEntity getOrCreateBalance(CompanyEntity company, AccountEntity account) {
-        return balanceRepository.findByCompanyIdAndAccountId(company.getId(), account.getId())
-                .orElseGet(() -> {
-                    InventoryBalanceEntity newBalance = new InventoryBalanceEntity();
-                    newBalance.setCompany(company);
-                    newBalance.setAccount(account);
-                    newBalance.setCurrentQuantity(BigDecimal.ZERO);
-                    newBalance.setCurrentAmount(BigDecimal.ZERO);
-                    newBalance.setCurrentAverageCost(BigDecimal.ZERO);
-                    return balanceRepository.save(newBalance);
-                });
+    /**
+     * Баланс на сметката, заключен за запис до края на транзакцията; създава се с upsert, ако липсва.
+     * Всички промени по движенията на сметка минават оттук, така че паралелните осчетоводявания
+     * по една и съща сметка се изпълняват последователно и не губят обновявания.
+     */
+    private InventoryBalanceEntity lockBalance(Integer companyId, Integer accountId) {
+        balanceRepository.insertIfAbsent(companyId, accountId);
+        return balanceRepository.findForUpdate(companyId, accountId)
+                .orElseThrow(() -> new IllegalStateException(
+                        "Балансът по сметка " + accountId + " не може да бъде създаден"));
     }
 
-    private void recalculateBalance(Integer companyId, Integer accountId) {
-        // Намираме всички движения за тази сметка
-        List<InventoryMovementEntity> movements = movementRepository.findMovementsUpToDate(
-                companyId, accountId, LocalDate.of(9999, 12, 31));
+    /**
+     * Преизчислява текущите салда на сметката от позиция (дата, id) включително, или цялата история при fromDate null.
+     * Записва новите салда на движенията с един JDBC batch и обновява баланса на сметката.
+     */
+    private Replay replayFrom(Integer companyId, Integer accountId, LocalDate fromDate, Integer fromMovementId) {
+        // Заключваме баланса преди да четем движенията, за да не се преплетем с паралелно осчетоводяване
+        InventoryBalanceEntity balance = lockBalance(companyId, accountId);
+
+        Replay replay = replay(companyId, accountId, fromDate, fromMovementId);
+        movementJdbcRepository.updateRunningBalances(replay.balances());
+        snapshotRepository.deleteFrom(companyId, fromDate);
+
+        // Обновяваме баланса
+        balance.setCurrentQuantity(replay.quantity());
+        balance.setCurrentAmount(replay.amount());
+        balance.setCurrentAverageCost(averageCost(replay.quantity(), replay.amount()));
+        balance.setLastMovementDate(replay.lastMovementDate());
+        balance.setLastMovement(replay.lastMovementId() != null
+                ? movementRepository.getReferenceById(replay.lastMovementId()) : null);
+        balanceRepository.save(balance);
+        return replay;
+    }
 
+    /**
+     * Едно преминаване през движенията на сметката от позиция (дата, id) включително, без запис.
+     * Започва от записаните салда на последното движение преди позицията; изписванията се оценяват
+     * по текущата СПЦ и се връщат заедно с новите салда.
+     */
+    private Replay replay(Integer companyId, Integer accountId, LocalDate fromDate, Integer fromMovementId) {
         BigDecimal quantity = BigDecimal.ZERO;
         BigDecimal amount = BigDecimal.ZERO;
+        Integer lastMovementId = null;
+        LocalDate lastMovementDate = null;
 
-        for (InventoryMovementEntity mov : movements) {
-            if (DEBIT.equals(mov.getMovementType())) {
-                quantity = quantity.add(mov.getQuantity());
-                amount = amount.add(mov.getTotalAmount());
+        List<Object[]> rows;
+        if (fromDate == null) {
+            rows = movementRepository.findReplayRows(companyId, accountId);
+        } else {
+            List<Object[]> checkpoint = movementRepository.findCheckpointsBefore(
+                    companyId, accountId, fromDate, fromMovementId, PageRequest.of(0, 1));
+            if (!checkpoint.isEmpty()) {
+                Object[] row = checkpoint.get(0);
+                lastMovementId = (Integer) row[0];
+                lastMovementDate = (LocalDate) row[1];
+                quantity = (BigDecimal) row[2];
+                amount = (BigDecimal) row[3];
+            }
+            rows = movementRepository.findReplayRowsFrom(companyId, accountId, fromDate, fromMovementId);
+        }
+
+        List<InventoryMovementJdbcRepository.RunningBalance> balances = new ArrayList<>(rows.size());
+        List<ReplayedIssue> issues = new ArrayList<>();
+        for (Object[] row : rows) {
+            Integer movementId = (Integer) row[0];
+            LocalDate movementDate = (LocalDate) row[1];
+            BigDecimal movementQuantity = (BigDecimal) row[3];
+            BigDecimal avgCost;
+            if (DEBIT.equals(row[2])) {
+                quantity = quantity.add(movementQuantity);
+                amount = amount.add((BigDecimal) row[4]);
+                avgCost = averageCost(quantity, amount);
             } else {
-                BigDecimal avgCost = quantity.compareTo(BigDecimal.ZERO) > 0
-                        ? amount.divide(quantity, 6, RoundingMode.HALF_UP)
-                        : BigDecimal.ZERO;
-                BigDecimal issueValue = avgCost.multiply(mov.getQuantity());
-                quantity = quantity.subtract(mov.getQuantity());
-                amount = amount.subtract(issueValue);
+                // При изписване използваме текущата СПЦ
+                avgCost = averageCost(quantity, amount);
+                quantity = quantity.subtract(movementQuantity);
+                amount = amount.subtract(avgCost.multiply(movementQuantity));
+                issues.add(new ReplayedIssue(movementId, movementDate, (Integer) row[5],
+                        movementQuantity, (BigDecimal) row[4], avgCost));
             }
+            lastMovementId = movementId;
+            lastMovementDate = movementDate;
+            balances.add(new InventoryMovementJdbcRepository.RunningBalance(movementId, quantity, amount, avgCost));
         }
+        return new Replay(balances, issues, quantity, amount, lastMovementId, lastMovementDate);
+    }
 
-        BigDecimal avgCost = quantity.compareTo(BigDecimal.ZERO) > 0
+    private static BigDecimal averageCost(BigDecimal quantity, BigDecimal amount) {
+        return quantity.compareTo(BigDecimal.ZERO) > 0
                 ? amount.divide(quantity, 6, RoundingMode.HALF_UP)
                 : BigDecimal.ZERO;
+    }
 
-        // Обновяваме баланса
-        Optional<InventoryBalanceEntity> balanceOpt = balanceRepository.findByCompanyIdAndAccountId(companyId, accountId);
-        if (balanceOpt.isPresent()) {
-            InventoryBalanceEntity balance = balanceOpt.get();
-            balance.setCurrentQuantity(quantity);
-            balance.setCurrentAmount(amount);
-            balance.setCurrentAverageCost(avgCost);
-
-            if (!movements.isEmpty()) {
-                InventoryMovementEntity lastMovement = movements.get(movements.size() - 1);
-                balance.setLastMovementDate(lastMovement.getMovementDate());
-                balance.setLastMovement(lastMovement);
-            } else {
-                balance.setLastMovementDate(null);
-                balance.setLastMovement(null);
-            }
+    private record Replay(List<InventoryMovementJdbcRepository.RunningBalance> balances, List<ReplayedIssue> issues,
+                          BigDecimal quantity, BigDecimal amount, Integer lastMovementId, LocalDate lastMovementDate) {
+    }
+
+    // Изписване с записаната стойност и СПЦ към момента му според преизчисляването
+    private record ReplayedIssue(Integer movementId, LocalDate movementDate, Integer journalEntryId,
+                                 BigDecimal quantity, BigDecimal bookedAmount, BigDecimal averageCost) {
+
+        BigDecimal correctAmount() {
+            return averageCost.multiply(quantity).setScale(2, RoundingMode.HALF_UP);
+        }
 
-            balanceRepository.save(balance);
+        BigDecimal difference() {
+            return correctAmount().subtract(bookedAmount);
         }
     }
 }
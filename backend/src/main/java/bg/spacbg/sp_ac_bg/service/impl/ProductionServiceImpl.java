@@ -12,10 +12,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -27,6 +28,25 @@ public class ProductionServiceImpl implements ProductionService {
     private final ProductionBatchStageRepository productionBatchStageRepository;
     private final CompanyService companyService;
     private final AccountRepository accountRepository;
+    private final InventoryBalanceRepository inventoryBalanceRepository;
+
+    // Resolved technology cards by id; an entry is reused only while the card's updatedAt matches
+    private final Map<Integer, ResolvedTechnologyCard> technologyCardCache = new ConcurrentHashMap<>();
+
+    private record ResolvedStage(Integer id, Integer stageOrder, String name, Integer inputAccountId,
+                                 BigDecimal inputQuantity) {
+    }
+
+    private record ResolvedTechnologyCard(OffsetDateTime updatedAt, List<ResolvedStage> stages) {
+    }
+
+    private record BatchToCost(Integer id, String batchNumber, Integer technologyCardId,
+                               BigDecimal plannedQuantity, BigDecimal actualQuantity) {
+    }
+
+    private record StageQuantity(BigDecimal plannedQuantity, BigDecimal actualQuantity,
+                                 ProductionBatchStageStatus status) {
+    }
 
     public ProductionServiceImpl(
             TechnologyCardRepository technologyCardRepository,
@@ -34,13 +54,15 @@ public class ProductionServiceImpl implements ProductionService {
             ProductionBatchRepository productionBatchRepository,
             ProductionBatchStageRepository productionBatchStageRepository,
             CompanyService companyService,
-            AccountRepository accountRepository) {
+            AccountRepository accountRepository,
+            InventoryBalanceRepository inventoryBalanceRepository) {
         this.technologyCardRepository = technologyCardRepository;
         this.technologyCardStageRepository = technologyCardStageRepository;
         this.productionBatchRepository = productionBatchRepository;
         this.productionBatchStageRepository = productionBatchStageRepository;
         this.companyService = companyService;
         this.accountRepository = accountRepository;
+        this.inventoryBalanceRepository = inventoryBalanceRepository;
     }
 
     // ========== Technology Card Operations ==========
@@ -153,8 +175,11 @@ public class ProductionServiceImpl implements ProductionService {
             }
             technologyCardStageRepository.saveAll(stages);
             card.setStages(stages);
+            // Stage changes do not touch the card row - bump it so cached resolutions see a new version
+            card.setUpdatedAt(OffsetDateTime.now());
         }
 
+        technologyCardCache.remove(card.getId());
         return technologyCardRepository.save(card);
     }
 
@@ -165,12 +190,12 @@ public class ProductionServiceImpl implements ProductionService {
         }
 
         // Check if there are production batches using this card
-        List<ProductionBatchEntity> batches = productionBatchRepository.findByTechnologyCardId(id);
-        if (!batches.isEmpty()) {
+        if (productionBatchRepository.existsByTechnologyCardId(id)) {
             throw new IllegalStateException("Cannot delete technology card with existing production batches");
         }
 
         technologyCardRepository.deleteById(id);
+        technologyCardCache.remove(id);
         return true;
     }
 
@@ -392,6 +417,23 @@ public class ProductionServiceImpl implements ProductionService {
         return productionBatchStageRepository.save(stage);
     }
 
+    // ========== Costing ==========
+
+    @Override
+    @Transactional(readOnly = true)
+    public ProductionBatchCost calculateProductionBatchCost(Integer productionBatchId) {
+        ProductionBatchEntity batch = productionBatchRepository.findById(productionBatchId)
+                .orElseThrow(() -> new EntityNotFoundException("Production batch not found: " + productionBatchId));
+        return costBatches(batch.getCompany().getId(), List.of(batch)).get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductionBatchCost> calculateProductionBatchCosts(Integer companyId, ProductionBatchStatus status) {
+        List<ProductionBatchEntity> batches = productionBatchRepository.findByFilters(companyId, status, null, null, null);
+        return costBatches(companyId, batches);
+    }
+
     // ========== Statistics ==========
 
     @Override
@@ -403,7 +445,7 @@ public class ProductionServiceImpl implements ProductionService {
     @Override
     @Transactional(readOnly = true)
     public long countProductionBatchesByCompanyId(Integer companyId) {
-        return productionBatchRepository.findByCompanyId(companyId).size();
+        return productionBatchRepository.countByCompanyId(companyId);
     }
 
     @Override
@@ -414,6 +456,117 @@ public class ProductionServiceImpl implements ProductionService {
 
     // ========== Helper Methods ==========
 
+    /**
+     * Costs the batches with a fixed number of queries - card versions, missing cards, stage quantities and
+     * average costs - and then computes every batch in parallel over the loaded data.
+     */
+    private List<ProductionBatchCost> costBatches(Integer companyId, List<ProductionBatchEntity> batches) {
+        if (batches.isEmpty()) {
+            return List.of();
+        }
+
+        List<BatchToCost> toCost = batches.stream()
+                .map(batch -> new BatchToCost(batch.getId(), batch.getBatchNumber(),
+                        batch.getTechnologyCard().getId(), batch.getPlannedQuantity(), batch.getActualQuantity()))
+                .toList();
+
+        Map<Integer, ResolvedTechnologyCard> cards = resolveTechnologyCards(toCost.stream()
+                .map(BatchToCost::technologyCardId)
+                .collect(Collectors.toSet()));
+
+        Map<Integer, Map<Integer, StageQuantity>> quantitiesByBatch = new HashMap<>();
+        for (Object[] row : productionBatchStageRepository.findStageQuantitiesByProductionBatchIds(
+                toCost.stream().map(BatchToCost::id).toList())) {
+            quantitiesByBatch.computeIfAbsent((Integer) row[0], id -> new HashMap<>())
+                    .put((Integer) row[1], new StageQuantity((BigDecimal) row[2], (BigDecimal) row[3],
+                            (ProductionBatchStageStatus) row[4]));
+        }
+
+        Map<Integer, BigDecimal> averageCosts = new HashMap<>();
+        for (Object[] row : inventoryBalanceRepository.findAverageCostsByCompanyId(companyId)) {
+            averageCosts.put((Integer) row[0], (BigDecimal) row[1]);
+        }
+
+        return toCost.parallelStream()
+                .map(batch -> costBatch(batch, cards.get(batch.technologyCardId()),
+                        quantitiesByBatch.getOrDefault(batch.id(), Map.of()), averageCosts))
+                .toList();
+    }
+
+    private ProductionBatchCost costBatch(BatchToCost batch, ResolvedTechnologyCard card,
+                                          Map<Integer, StageQuantity> quantities,
+                                          Map<Integer, BigDecimal> averageCosts) {
+        List<ProductionStageCost> stageCosts = new ArrayList<>();
+        BigDecimal materialCost = BigDecimal.ZERO;
+
+        for (ResolvedStage stage : card.stages()) {
+            BigDecimal quantity;
+            if (quantities.isEmpty()) {
+                // Batch without stage rows - consumption follows the technology card
+                quantity = stage.inputQuantity().multiply(batch.plannedQuantity());
+            } else {
+                StageQuantity stageQuantity = quantities.get(stage.id());
+                if (stageQuantity == null || stageQuantity.status() == ProductionBatchStageStatus.CANCELLED) {
+                    continue;
+                }
+                quantity = stageQuantity.actualQuantity() != null
+                        ? stageQuantity.actualQuantity()
+                        : stageQuantity.plannedQuantity();
+            }
+
+            BigDecimal averageCost = averageCosts.getOrDefault(stage.inputAccountId(), BigDecimal.ZERO);
+            BigDecimal cost = quantity.multiply(averageCost).setScale(2, RoundingMode.HALF_UP);
+            materialCost = materialCost.add(cost);
+            stageCosts.add(new ProductionStageCost(stage.id(), stage.stageOrder(), stage.name(),
+                    stage.inputAccountId(), quantity, averageCost, cost));
+        }
+
+        BigDecimal outputQuantity = batch.actualQuantity() != null ? batch.actualQuantity() : batch.plannedQuantity();
+        BigDecimal unitCost = outputQuantity.compareTo(BigDecimal.ZERO) > 0
+                ? materialCost.divide(outputQuantity, 6, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+
+        return new ProductionBatchCost(batch.id(), batch.batchNumber(), batch.technologyCardId(),
+                outputQuantity, materialCost, unitCost, stageCosts);
+    }
+
+    /**
+     * Technology cards with their stages, taken from the cache while the card's updatedAt is unchanged.
+     * Cards missing from the cache or changed since (also by another instance) are loaded with one query.
+     */
+    private Map<Integer, ResolvedTechnologyCard> resolveTechnologyCards(Set<Integer> cardIds) {
+        Map<Integer, OffsetDateTime> versions = new HashMap<>();
+        for (Object[] row : technologyCardRepository.findUpdatedAtByIdIn(cardIds)) {
+            versions.put((Integer) row[0], (OffsetDateTime) row[1]);
+        }
+
+        Map<Integer, ResolvedTechnologyCard> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer cardId : cardIds) {
+            ResolvedTechnologyCard cached = technologyCardCache.get(cardId);
+            OffsetDateTime version = versions.get(cardId);
+            if (cached != null && version != null && version.isEqual(cached.updatedAt())) {
+                result.put(cardId, cached);
+            } else {
+                missing.add(cardId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (TechnologyCardEntity card : technologyCardRepository.findByIdInWithStages(missing)) {
+                List<ResolvedStage> stages = card.getStages() == null ? List.of() : card.getStages().stream()
+                        .sorted(Comparator.comparing(TechnologyCardStageEntity::getStageOrder))
+                        .map(stage -> new ResolvedStage(stage.getId(), stage.getStageOrder(), stage.getName(),
+                                stage.getInputAccount().getId(), stage.getInputQuantity()))
+                        .toList();
+                ResolvedTechnologyCard resolved = new ResolvedTechnologyCard(card.getUpdatedAt(), stages);
+                technologyCardCache.put(card.getId(), resolved);
+                result.put(card.getId(), resolved);
+            }
+        }
+        return result;
+    }
+
     private TechnologyCardStageEntity createStageFromInput(TechnologyCardEntity card, TechnologyCardStageInput input) {
         AccountEntity inputAccount = accountRepository.findById(input.getInputAccountId())
                 .orElseThrow(() -> new EntityNotFoundException("Input account not found: " + input.getInputAccountId()));
@@ -5,6 +5,9 @@ import bg.spacbg.sp_ac_bg.model.dto.saltedge.*;
 import bg.spacbg.sp_ac_bg.model.entity.*;
 import bg.spacbg.sp_ac_bg.repository.*;
 import bg.spacbg.sp_ac_bg.service.SaltEdgeService;
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClient;
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClients;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -13,7 +16,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
@@ -26,7 +28,7 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
     private static final Logger log = LoggerFactory.getLogger(SaltEdgeServiceImpl.class);
 
     private final SaltEdgeConfig config;
-    private final RestTemplate restTemplate;
+    private final OutboundHttpClient httpClient;
     private final ObjectMapper objectMapper;
     private final CompanyRepository companyRepository;
     private final BankProfileRepository bankProfileRepository;
@@ -34,6 +36,7 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
     private final SaltEdgeConnectionRepository connectionRepository;
     private final SaltEdgeAccountRepository accountRepository;
     private final SaltEdgeTransactionRepository transactionRepository;
+    private final SaltEdgeTransactionJdbcRepository transactionJdbcRepository;
 
     public SaltEdgeServiceImpl(
             SaltEdgeConfig config,
@@ -42,9 +45,11 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
             SaltEdgeCustomerRepository customerRepository,
             SaltEdgeConnectionRepository connectionRepository,
             SaltEdgeAccountRepository accountRepository,
-            SaltEdgeTransactionRepository transactionRepository) {
+            SaltEdgeTransactionRepository transactionRepository,
+            SaltEdgeTransactionJdbcRepository transactionJdbcRepository,
+            OutboundHttpClients outboundHttpClients) {
         this.config = config;
-        this.restTemplate = new RestTemplate();
+        this.httpClient = outboundHttpClients.get("saltedge");
         this.objectMapper = new ObjectMapper();
         this.objectMapper.findAndRegisterModules();
         this.companyRepository = companyRepository;
@@ -53,6 +58,7 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
         this.connectionRepository = connectionRepository;
         this.accountRepository = accountRepository;
         this.transactionRepository = transactionRepository;
+        this.transactionJdbcRepository = transactionJdbcRepository;
     }
 
     // ========== Customer Management ==========
@@ -374,46 +380,48 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
         }
 
         try {
-            String url = "/transactions?account_id=" + profile.getSaltEdgeAccountId();
+            String baseUrl = "/transactions?account_id=" + profile.getSaltEdgeAccountId();
             if (fromDate != null) {
-                url += "&from_date=" + fromDate;
+                baseUrl += "&from_date=" + fromDate;
             }
             if (toDate != null) {
-                url += "&to_date=" + toDate;
+                baseUrl += "&to_date=" + toDate;
             }
 
-            ResponseEntity<JsonNode> response = makeApiCall(HttpMethod.GET, url, null);
-
-            JsonNode transactionsData = response.getBody().get("data");
-            List<SaltEdgeTransaction> seTransactions = objectMapper.convertValue(
-                    transactionsData, new TypeReference<List<SaltEdgeTransaction>>() {});
-
+            // Pages are followed through meta.next_id and written as they arrive; ids seen on earlier pages
+            // are skipped, already stored ones are dropped by the insert itself
             List<SaltEdgeTransactionEntity> entities = new ArrayList<>();
-            for (SaltEdgeTransaction seTxn : seTransactions) {
-                if (transactionRepository.existsBySaltEdgeTransactionId(seTxn.getId())) {
-                    continue; // Skip duplicates
+            Set<String> seenIds = new HashSet<>();
+            String nextId = null;
+            int pages = 0;
+            do {
+                String url = nextId == null ? baseUrl : baseUrl + "&from_id=" + nextId;
+                ResponseEntity<JsonNode> response = makeApiCall(HttpMethod.GET, url, null);
+                JsonNode body = response.getBody();
+                pages++;
+
+                List<SaltEdgeTransaction> seTransactions = objectMapper.convertValue(
+                        body.get("data"), new TypeReference<List<SaltEdgeTransaction>>() {});
+                List<SaltEdgeTransactionEntity> page = new ArrayList<>(seTransactions.size());
+                for (SaltEdgeTransaction seTxn : seTransactions) {
+                    if (seenIds.add(seTxn.getId())) {
+                        page.add(toTransactionEntity(seTxn, profile));
+                    }
                 }
-
-                SaltEdgeTransactionEntity entity = new SaltEdgeTransactionEntity();
-                entity.setSaltEdgeAccountId(seTxn.getAccountId());
-                entity.setSaltEdgeTransactionId(seTxn.getId());
-                entity.setBankProfile(profile);
-                entity.setMadeOn(seTxn.getMadeOn());
-                entity.setAmount(seTxn.getAmount());
-                entity.setCurrencyCode(seTxn.getCurrencyCode());
-                entity.setDescription(seTxn.getDescription());
-                entity.setCategory(seTxn.getCategory());
-                entity.setMode(seTxn.getMode());
-                entity.setStatus(seTxn.getStatus());
-                entity.setDuplicated("true".equalsIgnoreCase(seTxn.getDuplicated()));
-                entity.setIsProcessed(false);
-
-                if (seTxn.getExtra() != null) {
-                    entity.setExtraData(objectMapper.writeValueAsString(seTxn.getExtra()));
+                entities.addAll(transactionJdbcRepository.insertNew(page));
+
+                String previousId = nextId;
+                JsonNode next = body.path("meta").path("next_id");
+                nextId = next.isNull() || next.isMissingNode() || next.asText().isBlank() ? null : next.asText();
+                if (nextId != null && nextId.equals(previousId)) {
+                    log.warn("Salt Edge върна същия next_id {} за profile {}, синхронизацията спира",
+                            nextId, bankProfileId);
+                    nextId = null;
                 }
+            } while (nextId != null);
 
-                entities.add(transactionRepository.save(entity));
-            }
+            log.info("Синхронизирани {} нови transactions от {} страници за profile {}",
+                    entities.size(), pages, bankProfileId);
 
             // Update last sync time
             profile.setSaltEdgeLastSyncAt(OffsetDateTime.now());
@@ -426,6 +434,28 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
         }
     }
 
+    private SaltEdgeTransactionEntity toTransactionEntity(SaltEdgeTransaction seTxn, BankProfileEntity profile)
+            throws JsonProcessingException {
+        SaltEdgeTransactionEntity entity = new SaltEdgeTransactionEntity();
+        entity.setSaltEdgeAccountId(seTxn.getAccountId());
+        entity.setSaltEdgeTransactionId(seTxn.getId());
+        entity.setBankProfile(profile);
+        entity.setMadeOn(seTxn.getMadeOn());
+        entity.setAmount(seTxn.getAmount());
+        entity.setCurrencyCode(seTxn.getCurrencyCode());
+        entity.setDescription(seTxn.getDescription());
+        entity.setCategory(seTxn.getCategory());
+        entity.setMode(seTxn.getMode());
+        entity.setStatus(seTxn.getStatus());
+        entity.setDuplicated("true".equalsIgnoreCase(seTxn.getDuplicated()));
+        entity.setIsProcessed(false);
+
+        if (seTxn.getExtra() != null) {
+            entity.setExtraData(objectMapper.writeValueAsString(seTxn.getExtra()));
+        }
+        return entity;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<SaltEdgeTransactionEntity> getUnprocessedTransactions(Integer bankProfileId) {
@@ -442,7 +472,7 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
 
     @Override
     public void handleWebhook(SaltEdgeWebhookPayload payload) {
-        if (payload == null || payload.getData() == null) {
+        if (payload == null || payload.getData() == null || payload.getData().getStage() == null) {
             log.warn("Получен невалиден webhook payload");
             return;
         }
@@ -472,24 +502,21 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
         }
     }
 
+    // Failures propagate to the webhook queue, which retries the event
     private void handleConnectionFinished(String connectionId) {
-        try {
-            SaltEdgeConnectionEntity connection = syncConnection(connectionId);
-            syncAccounts(connectionId);
-
-            // Sync transactions for all mapped profiles
-            accountRepository.findBySaltEdgeConnectionId(connectionId).stream()
-                    .filter(SaltEdgeAccountEntity::getIsMapped)
-                    .filter(a -> a.getBankProfile() != null)
-                    .forEach(account -> {
-                        syncTransactions(account.getBankProfile().getId(),
-                                LocalDate.now().minusMonths(3), LocalDate.now());
-                    });
-
-            log.info("Connection {} успешно завършен", connectionId);
-        } catch (Exception e) {
-            log.error("Грешка при обработка на finish за connection {}", connectionId, e);
-        }
+        syncConnection(connectionId);
+        syncAccounts(connectionId);
+
+        // Sync transactions for all mapped profiles
+        accountRepository.findBySaltEdgeConnectionId(connectionId).stream()
+                .filter(SaltEdgeAccountEntity::getIsMapped)
+                .filter(a -> a.getBankProfile() != null)
+                .forEach(account -> {
+                    syncTransactions(account.getBankProfile().getId(),
+                            LocalDate.now().minusMonths(3), LocalDate.now());
+                });
+
+        log.info("Connection {} успешно завършен", connectionId);
     }
 
     private void handleConnectionError(String connectionId, String errorClass, String errorMessage) {
@@ -543,7 +570,7 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
         HttpEntity<Object> entity = new HttpEntity<>(body, headers);
 
         String url = config.getBaseUrl() + endpoint;
-        return restTemplate.exchange(url, method, entity, JsonNode.class);
+        return httpClient.rest(rt -> rt.exchange(url, method, entity, JsonNode.class));
     }
 
     private ResponseEntity<JsonNode> makeApiCallForCompany(HttpMethod method, String endpoint, Object body, Integer companyId) {
@@ -569,7 +596,7 @@ public class SaltEdgeServiceImpl implements SaltEdgeService {
         HttpEntity<Object> entity = new HttpEntity<>(body, headers);
 
         String url = config.getBaseUrl() + endpoint;
-        return restTemplate.exchange(url, method, entity, JsonNode.class);
+        return httpClient.rest(rt -> rt.exchange(url, method, entity, JsonNode.class));
     }
 
     private String getAppIdForCompany(Integer companyId) {
@@ -0,0 +1,363 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.model.entity.*;
+import bg.spacbg.sp_ac_bg.model.enums.VatConsistencyFindingType;
+import bg.spacbg.sp_ac_bg.model.enums.VatConsistencyRunStatus;
+import bg.spacbg.sp_ac_bg.repository.*;
+import bg.spacbg.sp_ac_bg.scheduler.ScheduledJobRunner;
+import bg.spacbg.sp_ac_bg.service.VatConsistencyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Background validation of the VAT data in journal entries.
+ *
+ * Every run scans the entries of one company in id-ordered chunks; each chunk is checked with two
+ * aggregate queries and committed in its own transaction, so a run never holds more than one chunk
+ * in memory. Runs for different companies are executed in parallel on the batch job pool.
+ *
+ * A company has at most one RUNNING run, enforced by a unique partial index; a run that stays RUNNING
+ * longer than {@code stale-run-minutes} (its instance died) is marked FAILED before new runs are created.
+ */
+@Service
+public class VatConsistencyServiceImpl implements VatConsistencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(VatConsistencyServiceImpl.class);
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String DEFAULT_VAT_PURCHASE_ACCOUNT_CODE = "4531";
+    private static final String DEFAULT_VAT_SALES_ACCOUNT_CODE = "4532";
+
+    // Operations that carry VAT and therefore must be booked on the matching VAT account
+    private static final Set<String> PURCHASE_OPERATIONS_WITH_VAT = Set.of("пок30", "пок31", "пок32", "пок09");
+    private static final Set<String> SALES_OPERATIONS_WITH_VAT = Set.of("про11", "про12", "про20");
+    // ВОП is self-assessed: VAT is charged on 4532 and deducted on 4531 in the same entry
+    private static final String INTRA_COMMUNITY_ACQUISITION = "пок09";
+
+    private static final String NIGHTLY_JOB = "vat-consistency-nightly";
+
+    @Value("${vat-consistency.stale-run-minutes:180}")
+    private long staleRunMinutes;
+
+    @Value("${vat-consistency.lock-lease-minutes:30}")
+    private long lockLeaseMinutes;
+
+    private final VatConsistencyRunRepository runRepository;
+    private final VatConsistencyFindingRepository findingRepository;
+    private final CompanyRepository companyRepository;
+    private final AccountRepository accountRepository;
+    private final JournalEntryRepository journalEntryRepository;
+    private final EntryLineRepository entryLineRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor batchJobExecutor;
+    private final ScheduledJobRunner jobRunner;
+
+    public VatConsistencyServiceImpl(
+            VatConsistencyRunRepository runRepository,
+            VatConsistencyFindingRepository findingRepository,
+            CompanyRepository companyRepository,
+            AccountRepository accountRepository,
+            JournalEntryRepository journalEntryRepository,
+            EntryLineRepository entryLineRepository,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("batchJobExecutor") TaskExecutor batchJobExecutor,
+            ScheduledJobRunner jobRunner) {
+        this.runRepository = runRepository;
+        this.findingRepository = findingRepository;
+        this.companyRepository = companyRepository;
+        this.accountRepository = accountRepository;
+        this.journalEntryRepository = journalEntryRepository;
+        this.entryLineRepository = entryLineRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchJobExecutor = batchJobExecutor;
+        this.jobRunner = jobRunner;
+    }
+
+    @Override
+    public List<VatConsistencyRunEntity> startCheck(Integer companyId, LocalDate periodFrom, LocalDate periodTo) {
+        if (periodFrom.isAfter(periodTo)) {
+            throw new IllegalArgumentException("Началната дата трябва да е преди крайната");
+        }
+
+        List<Integer> companyIds = transactionTemplate.execute(status -> {
+            if (companyId != null) {
+                return List.of(companyRepository.findById(companyId)
+                        .orElseThrow(() -> new IllegalArgumentException("Компанията не е намерена: " + companyId))
+                        .getId());
+            }
+            return companyRepository.findByIsActiveTrue().stream().map(CompanyEntity::getId).toList();
+        });
+
+        failStaleRuns();
+
+        List<VatConsistencyRunEntity> runs = new ArrayList<>();
+        for (Integer id : companyIds) {
+            VatConsistencyRunEntity run = createRun(id, periodFrom, periodTo);
+            if (run != null) {
+                runs.add(run);
+            }
+        }
+
+        // Submitted after the commits above, so the workers always see their run
+        for (VatConsistencyRunEntity run : runs) {
+            Integer runId = run.getId();
+            Integer runCompanyId = run.getCompany().getId();
+            batchJobExecutor.execute(() -> executeRun(runId, runCompanyId, periodFrom, periodTo));
+        }
+        return runs;
+    }
+
+    /**
+     * Nightly check of the previous and the current month for all active companies, started by one instance.
+     */
+    @Scheduled(cron = "${vat-consistency.cron:0 30 2 * * *}")
+    public void runNightlyCheck() {
+        jobRunner.runExclusive(NIGHTLY_JOB, Duration.ofMinutes(lockLeaseMinutes), () -> {
+            LocalDate today = LocalDate.now();
+            LocalDate periodFrom = today.minusMonths(1).withDayOfMonth(1);
+            LocalDate periodTo = today.withDayOfMonth(today.lengthOfMonth());
+            List<VatConsistencyRunEntity> runs = startCheck(null, periodFrom, periodTo);
+            log.info("Started nightly VAT consistency check for {} companies ({} - {})",
+                    runs.size(), periodFrom, periodTo);
+            return runs.size();
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<VatConsistencyRunEntity> findRunsByCompanyId(Integer companyId) {
+        return runRepository.findByCompany_IdOrderByStartedAtDesc(companyId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<VatConsistencyFindingEntity> findFindingsByRunId(Integer runId) {
+        return findingRepository.findByRun_IdOrderByAccountingDateAscEntryNumberAsc(runId);
+    }
+
+    /**
+     * Creates the RUNNING run of one company in its own transaction. Returns {@code null} when the company
+     * already has a running check, also one that another instance inserted at the same moment.
+     */
+    private VatConsistencyRunEntity createRun(Integer companyId, LocalDate periodFrom, LocalDate periodTo) {
+        try {
+            return transactionTemplate.execute(status -> {
+                if (runRepository.existsByCompany_IdAndStatus(companyId, VatConsistencyRunStatus.RUNNING)) {
+                    log.info("VAT consistency check already running for company {}, skipping", companyId);
+                    return null;
+                }
+                // A rerun replaces the previous results for the same period
+                runRepository.deleteFinishedRunsForPeriod(companyId, periodFrom, periodTo,
+                        VatConsistencyRunStatus.RUNNING);
+
+                VatConsistencyRunEntity run = new VatConsistencyRunEntity();
+                run.setCompany(companyRepository.getReferenceById(companyId));
+                run.setPeriodFrom(periodFrom);
+                run.setPeriodTo(periodTo);
+                run.setStatus(VatConsistencyRunStatus.RUNNING);
+                run.setStartedAt(OffsetDateTime.now());
+                return runRepository.saveAndFlush(run);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("VAT consistency check for company {} was started concurrently, skipping", companyId);
+            return null;
+        }
+    }
+
+    private void failStaleRuns() {
+        OffsetDateTime now = OffsetDateTime.now();
+        Integer failed = transactionTemplate.execute(status -> runRepository.failStaleRuns(
+                VatConsistencyRunStatus.RUNNING, VatConsistencyRunStatus.FAILED, now.minusMinutes(staleRunMinutes),
+                "Проверката не е завършила в рамките на " + staleRunMinutes + " минути", now));
+        if (failed != null && failed > 0) {
+            log.warn("Marked {} stale VAT consistency runs as failed", failed);
+        }
+    }
+
+    private void executeRun(Integer runId, Integer companyId, LocalDate periodFrom, LocalDate periodTo) {
+        long started = System.currentTimeMillis();
+        try {
+            VatAccounts vatAccounts = transactionTemplate.execute(status -> resolveVatAccounts(companyId));
+
+            int entriesChecked = 0;
+            int findingsCount = 0;
+            int afterId = 0;
+            while (true) {
+                final int chunkAfterId = afterId;
+                ChunkResult chunk = transactionTemplate.execute(status ->
+                        checkChunk(runId, companyId, periodFrom, periodTo, chunkAfterId, vatAccounts));
+                if (chunk.entriesChecked() == 0) {
+                    break;
+                }
+                entriesChecked += chunk.entriesChecked();
+                findingsCount += chunk.findingsCount();
+                afterId = chunk.lastId();
+            }
+
+            final int totalChecked = entriesChecked;
+            final int totalFindings = findingsCount;
+            transactionTemplate.executeWithoutResult(status -> {
+                VatConsistencyRunEntity run = runRepository.findById(runId).orElseThrow();
+                run.setEntriesChecked(totalChecked);
+                run.setFindingsCount(totalFindings);
+                run.setStatus(VatConsistencyRunStatus.COMPLETED);
+                run.setFinishedAt(OffsetDateTime.now());
+            });
+            log.info("VAT consistency check for company {} finished: {} entries, {} findings in {} ms",
+                    companyId, totalChecked, totalFindings, System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("VAT consistency check {} for company {} failed", runId, companyId, e);
+            transactionTemplate.executeWithoutResult(status -> runRepository.findById(runId).ifPresent(run -> {
+                run.setStatus(VatConsistencyRunStatus.FAILED);
+                run.setErrorMessage(e.getMessage());
+                run.setFinishedAt(OffsetDateTime.now());
+            }));
+        }
+    }
+
+    private ChunkResult checkChunk(Integer runId, Integer companyId, LocalDate periodFrom, LocalDate periodTo,
+                                   int afterId, VatAccounts vatAccounts) {
+        List<Integer> entryIds = journalEntryRepository.findIdsByCompanyIdAndDateRangeAfterId(
+                companyId, periodFrom, periodTo, afterId, PageRequest.of(0, CHUNK_SIZE));
+        if (entryIds.isEmpty()) {
+            return new ChunkResult(0, 0, afterId);
+        }
+
+        // entry id -> VAT account ids used by its lines
+        Map<Integer, Set<Integer>> vatAccountUsage = new HashMap<>();
+        if (!vatAccounts.isEmpty()) {
+            for (Object[] row : entryLineRepository.findAccountUsageByJournalEntryIds(entryIds, vatAccounts.allIds())) {
+                vatAccountUsage.computeIfAbsent((Integer) row[0], k -> new HashSet<>()).add((Integer) row[1]);
+            }
+        }
+
+        VatConsistencyRunEntity run = runRepository.getReferenceById(runId);
+        CompanyEntity company = companyRepository.getReferenceById(companyId);
+        List<VatConsistencyFindingEntity> findings = new ArrayList<>();
+
+        for (Object[] row : entryLineRepository.sumVatAmountsByJournalEntryIds(entryIds)) {
+            Integer entryId = (Integer) row[0];
+            String entryNumber = (String) row[1];
+            LocalDate accountingDate = (LocalDate) row[2];
+            BigDecimal totalVatAmount = (BigDecimal) row[3];
+            String purchaseOperation = (String) row[4];
+            String salesOperation = (String) row[5];
+            BigDecimal linesVatAmount = (BigDecimal) row[6];
+
+            if (totalVatAmount.setScale(2, RoundingMode.HALF_UP)
+                    .compareTo(linesVatAmount.setScale(2, RoundingMode.HALF_UP)) != 0) {
+                VatConsistencyFindingEntity finding = newFinding(run, company, entryId, entryNumber, accountingDate,
+                        VatConsistencyFindingType.VAT_TOTAL_MISMATCH);
+                finding.setExpectedAmount(linesVatAmount);
+                finding.setActualAmount(totalVatAmount);
+                finding.setDetails("Общият ДДС на записа се различава от сумата на ДДС по редовете");
+                findings.add(finding);
+            }
+
+            if (!vatAccounts.isEmpty() && linesVatAmount.signum() != 0) {
+                String accountProblem = checkVatAccounts(purchaseOperation, salesOperation,
+                        vatAccountUsage.getOrDefault(entryId, Set.of()), vatAccounts);
+                if (accountProblem != null) {
+                    VatConsistencyFindingEntity finding = newFinding(run, company, entryId, entryNumber, accountingDate,
+                            VatConsistencyFindingType.VAT_ACCOUNT_MISMATCH);
+                    finding.setActualAmount(linesVatAmount);
+                    finding.setDetails(accountProblem);
+                    findings.add(finding);
+                }
+            }
+        }
+
+        findingRepository.saveAll(findings);
+        return new ChunkResult(entryIds.size(), findings.size(), entryIds.get(entryIds.size() - 1));
+    }
+
+    /**
+     * Returns a description of the problem, or null when the VAT accounts match the operation codes.
+     */
+    private String checkVatAccounts(String purchaseOperation, String salesOperation,
+                                    Set<Integer> usedAccountIds, VatAccounts vatAccounts) {
+        boolean usesPurchaseAccount = usedAccountIds.stream().anyMatch(vatAccounts.purchaseIds()::contains);
+        boolean usesSalesAccount = usedAccountIds.stream().anyMatch(vatAccounts.salesIds()::contains);
+
+        if (purchaseOperation != null && PURCHASE_OPERATIONS_WITH_VAT.contains(purchaseOperation) && !usesPurchaseAccount) {
+            return "Операция " + purchaseOperation + " без ред по сметка ДДС на покупките";
+        }
+        if (salesOperation != null && SALES_OPERATIONS_WITH_VAT.contains(salesOperation) && !usesSalesAccount) {
+            return "Операция " + salesOperation + " без ред по сметка ДДС на продажбите";
+        }
+        boolean salesAccountAllowed = salesOperation != null || INTRA_COMMUNITY_ACQUISITION.equals(purchaseOperation);
+        if (usesSalesAccount && !salesAccountAllowed) {
+            return "Сметка ДДС на продажбите при запис без операция по продажби";
+        }
+        if (usesPurchaseAccount && purchaseOperation == null) {
+            return "Сметка ДДС на покупките при запис без операция по покупки";
+        }
+        return null;
+    }
+
+    private VatConsistencyFindingEntity newFinding(VatConsistencyRunEntity run, CompanyEntity company, Integer entryId,
+                                                   String entryNumber, LocalDate accountingDate,
+                                                   VatConsistencyFindingType type) {
+        VatConsistencyFindingEntity finding = new VatConsistencyFindingEntity();
+        finding.setRun(run);
+        finding.setCompany(company);
+        finding.setJournalEntry(journalEntryRepository.getReferenceById(entryId));
+        finding.setEntryNumber(entryNumber);
+        finding.setAccountingDate(accountingDate);
+        finding.setFindingType(type);
+        return finding;
+    }
+
+    private VatAccounts resolveVatAccounts(Integer companyId) {
+        CompanyEntity company = companyRepository.findById(companyId)
+                .orElseThrow(() -> new IllegalArgumentException("Компанията не е намерена: " + companyId));
+        String purchaseCode = company.getDefaultVatPurchaseAccount() != null
+                ? company.getDefaultVatPurchaseAccount().getCode() : DEFAULT_VAT_PURCHASE_ACCOUNT_CODE;
+        String salesCode = company.getDefaultVatSalesAccount() != null
+                ? company.getDefaultVatSalesAccount().getCode() : DEFAULT_VAT_SALES_ACCOUNT_CODE;
+
+        // Analytical sub-accounts (e.g. 4531.1) count as the VAT account as well
+        Set<Integer> purchaseIds = new HashSet<>();
+        Set<Integer> salesIds = new HashSet<>();
+        for (AccountEntity account : accountRepository.findByCompanyId(companyId)) {
+            if (account.getCode().startsWith(purchaseCode)) {
+                purchaseIds.add(account.getId());
+            } else if (account.getCode().startsWith(salesCode)) {
+                salesIds.add(account.getId());
+            }
+        }
+        return new VatAccounts(purchaseIds, salesIds);
+    }
+
+    private record VatAccounts(Set<Integer> purchaseIds, Set<Integer> salesIds) {
+        boolean isEmpty() {
+            return purchaseIds.isEmpty() && salesIds.isEmpty();
+        }
+
+        Set<Integer> allIds() {
+            Set<Integer> all = new HashSet<>(purchaseIds);
+            all.addAll(salesIds);
+            return all;
+        }
+    }
+
+    private record ChunkResult(int entriesChecked, int findingsCount, int lastId) {
+    }
+}
@@ -1,23 +1,44 @@
 package bg.spacbg.sp_ac_bg.service.impl;
 
 import bg.spacbg.sp_ac_bg.model.dto.ViesValidationResult;
+import bg.spacbg.sp_ac_bg.model.entity.GlobalContragentEntity;
+import bg.spacbg.sp_ac_bg.repository.CounterpartRepository;
+import bg.spacbg.sp_ac_bg.repository.GlobalContragentRepository;
 import bg.spacbg.sp_ac_bg.service.ViesService;
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClient;
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClients;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
@@ -70,6 +91,12 @@ import org.w3c.dom.NodeList;
  *   <li>Timeout е 30 секунди за всяка заявка</li>
  * </ul>
  *
+ * <h2>Кеширане</h2>
+ * <p>Окончателните отговори (валиден / невалиден номер) се записват в global_contragents
+ * ({@code vatValid}, {@code lastValidatedAt}) и се използват до изтичане на TTL. Грешки при
+ * връзка с VIES не се кешират. Пакетната валидация изпраща заявки с ограничен паралелизъм и
+ * повтаря временните грешки с експоненциално нарастваща пауза.</p>
+ *
  * @author SP-AC-BG Team
  * @see ViesService
  * @see ViesValidationResult
@@ -80,20 +107,66 @@ public class ViesServiceImpl implements ViesService {
 
     private static final Logger log = LoggerFactory.getLogger(ViesServiceImpl.class);
 
-    private static final String VIES_REST_URL_TEMPLATE =
-            "https://ec.europa.eu/taxation_customs/vies/rest-api/ms/%s/vat/%s";
+    private static final String CACHE_SOURCE = "CACHE";
 
-    private static final String VIES_SOAP_URL =
-            "https://ec.europa.eu/taxation_customs/vies/services/checkVatService";
+    @Value("${vies.rest-url-template:https://ec.europa.eu/taxation_customs/vies/rest-api/ms/%s/vat/%s}")
+    private String restUrlTemplate;
 
-    private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    @Value("${vies.soap-url:https://ec.europa.eu/taxation_customs/vies/services/checkVatService}")
+    private String soapUrl;
 
-    public ViesServiceImpl() {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .build();
+    @Value("${vies.cache-ttl-hours:168}") // valid numbers - 7 days
+    private long cacheTtlHours;
+
+    @Value("${vies.invalid-cache-ttl-hours:24}") // invalid numbers are rechecked sooner
+    private long invalidCacheTtlHours;
+
+    @Value("${vies.max-concurrent-requests:4}")
+    private int maxConcurrentRequests;
+
+    @Value("${vies.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${vies.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    private final OutboundHttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final GlobalContragentRepository globalContragentRepository;
+    private final CounterpartRepository counterpartRepository;
+    private final TransactionTemplate cacheTransaction;
+    private final TaskExecutor batchJobExecutor;
+
+    // Fixed size pool - its size is the upper bound of parallel requests to VIES
+    private ExecutorService viesRequestExecutor;
+
+    public ViesServiceImpl(GlobalContragentRepository globalContragentRepository,
+                           CounterpartRepository counterpartRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Qualifier("batchJobExecutor") TaskExecutor batchJobExecutor,
+                           OutboundHttpClients outboundHttpClients) {
+        this.httpClient = outboundHttpClients.get("vies");
         this.objectMapper = new ObjectMapper();
+        this.globalContragentRepository = globalContragentRepository;
+        this.counterpartRepository = counterpartRepository;
+        this.batchJobExecutor = batchJobExecutor;
+        // Cache writes must not affect (or be rolled back with) the caller's transaction
+        this.cacheTransaction = new TransactionTemplate(transactionManager);
+        this.cacheTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void startRequestExecutor() {
+        viesRequestExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentRequests), runnable -> {
+            Thread thread = new Thread(runnable, "vies-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopRequestExecutor() {
+        viesRequestExecutor.shutdownNow();
     }
 
     @Override
@@ -103,6 +176,106 @@ public class ViesServiceImpl implements ViesService {
         }
 
         String normalized = normalizeVatNumber(vatNumber);
+
+        ViesValidationResult cached = globalContragentRepository.findByVatNumber(normalized)
+                .filter(this::isFresh)
+                .map(this::toCachedResult)
+                .orElse(null);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            ViesValidationResult result = queryVies(normalized);
+            storeInCache(result);
+            return result;
+        } catch (Exception e) {
+            log.error("VIES SOAP API also failed: {}", e.getMessage());
+            return ViesValidationResult.invalid(normalized, "Грешка при валидация: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, ViesValidationResult> validateBatch(Collection<String> vatNumbers) {
+        Set<String> normalizedNumbers = vatNumbers.stream()
+                .filter(Objects::nonNull)
+                .filter(vat -> vat.trim().length() >= 3)
+                .map(this::normalizeVatNumber)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<String, ViesValidationResult> results = new ConcurrentHashMap<>();
+        if (normalizedNumbers.isEmpty()) {
+            return results;
+        }
+
+        // One query for all cached entries
+        Map<String, GlobalContragentEntity> cachedEntries = globalContragentRepository
+                .findByVatNumberIn(normalizedNumbers).stream()
+                .collect(Collectors.toMap(GlobalContragentEntity::getVatNumber, Function.identity(), (a, b) -> a));
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (String vatNumber : normalizedNumbers) {
+            GlobalContragentEntity cached = cachedEntries.get(vatNumber);
+            if (cached != null && isFresh(cached)) {
+                results.put(vatNumber, toCachedResult(cached));
+            } else {
+                pending.add(CompletableFuture.runAsync(
+                        () -> results.put(vatNumber, validateWithRetry(vatNumber)), viesRequestExecutor));
+            }
+        }
+
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        log.info("VIES batch validation: {} numbers, {} from cache, {} queried",
+                normalizedNumbers.size(), normalizedNumbers.size() - pending.size(), pending.size());
+        return results;
+    }
+
+    @Override
+    public int revalidateCompanyCounterparts(Integer companyId) {
+        List<String> vatNumbers = counterpartRepository.findDistinctVatNumbersByCompanyId(companyId);
+        if (vatNumbers.isEmpty()) {
+            return 0;
+        }
+
+        batchJobExecutor.execute(() -> {
+            Map<String, ViesValidationResult> results = validateBatch(vatNumbers);
+            long valid = results.values().stream().filter(ViesValidationResult::isValid).count();
+            log.info("VIES revalidation for company {} finished: {} of {} VAT numbers valid",
+                    companyId, valid, results.size());
+        });
+        return vatNumbers.size();
+    }
+
+    private ViesValidationResult validateWithRetry(String normalized) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                ViesValidationResult result = queryVies(normalized);
+                storeInCache(result);
+                return result;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    log.warn("VIES validation of {} failed after {} attempts: {}", normalized, attempt, e.getMessage());
+                    return ViesValidationResult.invalid(normalized, "Грешка при валидация: " + e.getMessage());
+                }
+                // Exponential backoff with jitter so parallel workers do not retry in lockstep
+                long delay = retryBackoffMs * (1L << (attempt - 1));
+                delay += ThreadLocalRandom.current().nextLong(Math.max(1, delay / 2));
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return ViesValidationResult.invalid(normalized, "Валидацията е прекъсната");
+                }
+            }
+        }
+    }
+
+    /**
+     * Queries VIES - REST first, SOAP as fallback.
+     * Throws when neither API gives a definitive answer, so callers can tell
+     * transient failures from invalid numbers.
+     */
+    private ViesValidationResult queryVies(String normalized) throws Exception {
         String countryCode = normalized.substring(0, 2);
         String numericPart = normalized.substring(2);
 
@@ -117,24 +290,65 @@ public class ViesServiceImpl implements ViesService {
         }
 
         // Fall back to SOAP
+        return checkViaSoap(countryCode, numericPart);
+    }
+
+    private boolean isFresh(GlobalContragentEntity entry) {
+        if (entry.getLastValidatedAt() == null) {
+            return false;
+        }
+        long ttlHours = entry.isVatValid() ? cacheTtlHours : invalidCacheTtlHours;
+        return entry.getLastValidatedAt().isAfter(OffsetDateTime.now().minusHours(ttlHours));
+    }
+
+    private ViesValidationResult toCachedResult(GlobalContragentEntity entry) {
+        return ViesValidationResult.builder()
+                .valid(entry.isVatValid())
+                .vatNumber(entry.getVatNumber())
+                .countryCode(entry.getCountry())
+                .name(entry.getCompanyName())
+                .longAddress(entry.getLongAddress())
+                .errorMessage(entry.isVatValid() ? null : "ДДС номерът не е валиден")
+                .source(CACHE_SOURCE)
+                .build();
+    }
+
+    private void storeInCache(ViesValidationResult result) {
         try {
-            return checkViaSoap(countryCode, numericPart);
-        } catch (Exception e) {
-            log.error("VIES SOAP API also failed: {}", e.getMessage());
-            return ViesValidationResult.invalid(normalized, "Грешка при валидация: " + e.getMessage());
+            cacheTransaction.executeWithoutResult(status -> {
+                GlobalContragentEntity entry = globalContragentRepository.findByVatNumber(result.getVatNumber())
+                        .orElseGet(() -> {
+                            GlobalContragentEntity created = new GlobalContragentEntity();
+                            created.setVatNumber(result.getVatNumber());
+                            return created;
+                        });
+                entry.setVatValid(result.isValid());
+                entry.setValid(result.isValid());
+                entry.setCountry(result.getCountryCode());
+                if (result.getName() != null) {
+                    entry.setCompanyName(result.getName());
+                }
+                if (result.getLongAddress() != null) {
+                    entry.setLongAddress(result.getLongAddress());
+                }
+                entry.setLastValidatedAt(OffsetDateTime.now());
+                globalContragentRepository.save(entry);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another thread cached the same number concurrently - its entry is just as good
+            log.debug("VIES cache entry for {} was created concurrently", result.getVatNumber());
         }
     }
 
     private ViesValidationResult checkViaRest(String countryCode, String vatNumber) throws IOException, InterruptedException {
-        String url = String.format(VIES_REST_URL_TEMPLATE, countryCode, vatNumber);
+        String url = String.format(restUrlTemplate, countryCode, vatNumber);
 
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
-                .timeout(Duration.ofSeconds(30))
                 .GET()
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = httpClient.send(request);
 
         if (response.statusCode() == 404) {
             return ViesValidationResult.builder()
@@ -153,6 +367,13 @@ public class ViesServiceImpl implements ViesService {
 
         JsonNode json = objectMapper.readTree(response.body());
 
+        // MS_UNAVAILABLE, TIMEOUT, ... mean the member state could not answer - not an invalid number
+        String userError = json.has("userError") ? json.get("userError").asText("") : "";
+        if (!userError.isEmpty() && !"VALID".equals(userError) && !"INVALID".equals(userError)) {
+            log.warn("VIES REST returned userError {}", userError);
+            return null; // Fall back to SOAP
+        }
+
         boolean isValid = json.has("isValid") && json.get("isValid").asBoolean();
         String name = json.has("name") ? json.get("name").asText(null) : null;
         String address = json.has("address") ? json.get("address").asText(null) : null;
@@ -172,13 +393,12 @@ public class ViesServiceImpl implements ViesService {
         String soapRequest = buildSoapRequest(countryCode, vatNumber);
 
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(VIES_SOAP_URL))
-                .timeout(Duration.ofSeconds(30))
+                .uri(URI.create(soapUrl))
                 .header("Content-Type", "text/xml; charset=utf-8")
                 .POST(HttpRequest.BodyPublishers.ofString(soapRequest))
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = httpClient.send(request);
 
         if (response.statusCode() != 200) {
             throw new RuntimeException("VIES SOAP returned status " + response.statusCode());
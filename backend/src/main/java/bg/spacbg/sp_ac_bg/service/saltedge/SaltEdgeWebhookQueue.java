@@ -0,0 +1,251 @@
+package bg.spacbg.sp_ac_bg.service.saltedge;
+
+import bg.spacbg.sp_ac_bg.model.dto.saltedge.SaltEdgeWebhookPayload;
+import bg.spacbg.sp_ac_bg.repository.SaltEdgeWebhookEventJdbcRepository;
+import bg.spacbg.sp_ac_bg.service.SaltEdgeService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous processing of Salt Edge webhooks.
+ *
+ * The callback only stores the payload in {@code salt_edge_webhook_events} and returns, so Salt Edge gets its
+ * answer before any connection or account sync starts. A redelivered callback has the same dedupe key and is
+ * dropped on insert. A poller claims due events, at most one per connection at a time, and hands them to a
+ * fixed worker pool; a failed event is retried with exponential backoff and keeps the later events of its
+ * connection waiting until it succeeds or is given up after {@code max-attempts}.
+ */
+@Component
+public class SaltEdgeWebhookQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(SaltEdgeWebhookQueue.class);
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    @Value("${saltedge.webhook.workers:4}")
+    private int workers;
+
+    @Value("${saltedge.webhook.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${saltedge.webhook.retry-backoff-ms:30000}")
+    private long retryBackoffMs;
+
+    @Value("${saltedge.webhook.max-backoff-ms:3600000}") // 1 hour
+    private long maxBackoffMs;
+
+    @Value("${saltedge.webhook.lock-timeout-minutes:30}")
+    private long lockTimeoutMinutes;
+
+    @Value("${saltedge.webhook.retention-days:30}")
+    private int retentionDays;
+
+    private final SaltEdgeWebhookEventJdbcRepository eventRepository;
+    private final SaltEdgeService saltEdgeService;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong totalLagMs = new AtomicLong();
+    private final AtomicLong lastLagMs = new AtomicLong();
+
+    private ExecutorService workerPool;
+
+    public SaltEdgeWebhookQueue(SaltEdgeWebhookEventJdbcRepository eventRepository,
+                                SaltEdgeService saltEdgeService) {
+        this.eventRepository = eventRepository;
+        this.saltEdgeService = saltEdgeService;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.findAndRegisterModules();
+    }
+
+    @PostConstruct
+    void startWorkers() {
+        workerPool = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "saltedge-webhook");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        // Events still being processed stay PROCESSING and are released after the lock timeout
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Stores a received webhook for processing. Returns {@code false} for a payload without a connection and
+     * for a redelivery of an event that is already queued or processed.
+     */
+    public boolean enqueue(SaltEdgeWebhookPayload payload) {
+        if (payload == null || payload.getData() == null || payload.getData().getConnectionId() == null) {
+            log.warn("Получен невалиден webhook payload");
+            return false;
+        }
+        String connectionId = payload.getData().getConnectionId();
+        String stage = payload.getData().getStage();
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Webhook payload не може да се сериализира", e);
+        }
+
+        receivedCount.incrementAndGet();
+        boolean queued = eventRepository.enqueue(dedupeKey(payload, json), connectionId, stage, json);
+        if (!queued) {
+            duplicateCount.incrementAndGet();
+            log.debug("Повторен webhook за connection {} (stage={}) е пропуснат", connectionId, stage);
+        }
+        return queued;
+    }
+
+    /**
+     * Claims as many due events as there are idle workers.
+     */
+    @Scheduled(fixedDelayString = "${saltedge.webhook.poll-interval-ms:1000}")
+    public void dispatch() {
+        int idle = Math.max(1, workers) - inFlight.get();
+        if (idle <= 0) {
+            return;
+        }
+        List<SaltEdgeWebhookEventJdbcRepository.ClaimedEvent> events = eventRepository.claimDue(idle);
+        for (SaltEdgeWebhookEventJdbcRepository.ClaimedEvent event : events) {
+            inFlight.incrementAndGet();
+            workerPool.execute(() -> process(event));
+        }
+    }
+
+    @Scheduled(fixedRate = 300000) // 5 minutes
+    public void releaseStaleEvents() {
+        int released = eventRepository.releaseStale(Duration.ofMinutes(lockTimeoutMinutes));
+        if (released > 0) {
+            log.warn("Released {} Salt Edge webhook events left in processing", released);
+        }
+    }
+
+    @Scheduled(cron = "0 15 3 * * *")
+    public void purgeProcessedEvents() {
+        int deleted = eventRepository.deleteProcessedBefore(OffsetDateTime.now().minusDays(retentionDays));
+        log.info("Deleted {} processed Salt Edge webhook events older than {} days", deleted, retentionDays);
+    }
+
+    /**
+     * Queue depth, processing lag and outcome counters since start-up.
+     */
+    public Map<String, Object> getStats() {
+        SaltEdgeWebhookEventJdbcRepository.QueueDepth depth = eventRepository.queueDepth();
+        long processed = processedCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", depth.pending());
+        stats.put("processing", depth.processing());
+        stats.put("failed", depth.failed());
+        stats.put("oldestOpenAgeSeconds", depth.oldestOpenReceivedAt() == null ? 0
+                : Math.max(0, Duration.between(depth.oldestOpenReceivedAt(), OffsetDateTime.now()).toSeconds()));
+        stats.put("inFlight", inFlight.get());
+        stats.put("received", receivedCount.get());
+        stats.put("duplicates", duplicateCount.get());
+        stats.put("processed", processed);
+        stats.put("retried", retriedCount.get());
+        stats.put("givenUp", failedCount.get());
+        stats.put("lastLagMs", lastLagMs.get());
+        stats.put("averageLagMs", processed == 0 ? 0 : totalLagMs.get() / processed);
+        return stats;
+    }
+
+    private void process(SaltEdgeWebhookEventJdbcRepository.ClaimedEvent event) {
+        try {
+            SaltEdgeWebhookPayload payload = objectMapper.readValue(event.payload(), SaltEdgeWebhookPayload.class);
+            saltEdgeService.handleWebhook(payload);
+            eventRepository.markDone(event.id());
+
+            long lagMs = Math.max(0, Duration.between(event.receivedAt(), OffsetDateTime.now()).toMillis());
+            processedCount.incrementAndGet();
+            totalLagMs.addAndGet(lagMs);
+            lastLagMs.set(lagMs);
+        } catch (JsonProcessingException e) {
+            // A stored payload that cannot be read will not get better on retry
+            failedCount.incrementAndGet();
+            eventRepository.markFailed(event.id(), errorText(e));
+            log.error("Salt Edge webhook event {} has an unreadable payload", event.id(), e);
+        } catch (Exception e) {
+            if (event.attempts() >= maxAttempts) {
+                failedCount.incrementAndGet();
+                eventRepository.markFailed(event.id(), errorText(e));
+                log.error("Salt Edge webhook event {} for connection {} (stage={}) failed after {} attempts",
+                        event.id(), event.connectionId(), event.stage(), event.attempts(), e);
+            } else {
+                retriedCount.incrementAndGet();
+                long delayMs = backoffMs(event.attempts());
+                eventRepository.markRetry(event.id(), OffsetDateTime.now().plusNanos(delayMs * 1_000_000L),
+                        errorText(e));
+                log.warn("Salt Edge webhook event {} for connection {} (stage={}) failed, attempt {} of {}, " +
+                                "retry in {} s: {}",
+                        event.id(), event.connectionId(), event.stage(), event.attempts(), maxAttempts,
+                        delayMs / 1000, e.getMessage());
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Exponential backoff with +/-20% jitter, so events that failed together are not retried together
+    private long backoffMs(int attempts) {
+        long delay = retryBackoffMs << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, maxBackoffMs);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Math.max(1000, (long) (delay * jitter));
+    }
+
+    // Salt Edge redelivers the same callback with the same meta.time; without it the payload itself is the key
+    private static String dedupeKey(SaltEdgeWebhookPayload payload, String json) {
+        String connectionId = payload.getData().getConnectionId();
+        String stage = payload.getData().getStage();
+        String time = payload.getMeta() != null ? payload.getMeta().getTime() : null;
+        if (time != null && !time.isBlank()) {
+            return connectionId + ":" + stage + ":" + time;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8));
+            return connectionId + ":" + stage + ":sha256:" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String errorText(Exception e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+        Throwable cause = e.getCause();
+        if (cause != null && cause.getMessage() != null && !cause.getMessage().equals(message)) {
+            message += ": " + cause.getMessage();
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
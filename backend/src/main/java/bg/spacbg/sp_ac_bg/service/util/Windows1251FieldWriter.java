@@ -0,0 +1,292 @@
+package bg.spacbg.sp_ac_bg.service.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Fixed-width field writer for the NAP VAT files that encodes straight into a Windows-1251 byte buffer.
+ *
+ * Produces the same bytes as {@code VatExportFormatter.formatText/formatAmount/formatAmountWithDecimal/formatDate}
+ * followed by {@code getBytes(WINDOWS_1251)}, but without the intermediate strings: characters are mapped
+ * through a precomputed table and amounts are rendered from their scaled long value. A writer is not
+ * thread-safe; use one per export and {@link #reset()} it to reuse the buffer.
+ */
+public class Windows1251FieldWriter {
+
+    private static final byte SPACE = ' ';
+    private static final byte UNMAPPABLE = '?';
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(VatExportFormatter.WINDOWS_1251);
+
+    // One byte per UTF-16 code unit; surrogates and characters outside 1251 map to '?', as String.getBytes does
+    private static final byte[] ENCODE_TABLE = buildEncodeTable();
+
+    private byte[] buffer;
+    private int size;
+
+    // Locale-dependent separators of "%,.2f", resolved once per writer
+    private final byte groupingSeparator;
+    private final byte decimalSeparator;
+    private final char zeroDigit;
+    private final int groupingSize;
+
+    public Windows1251FieldWriter() {
+        this(8192);
+    }
+
+    public Windows1251FieldWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 64)];
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.groupingSeparator = encode(symbols.getGroupingSeparator());
+        this.decimalSeparator = encode(symbols.getDecimalSeparator());
+        this.zeroDigit = symbols.getZeroDigit();
+        NumberFormat integerFormat = NumberFormat.getIntegerInstance(locale);
+        this.groupingSize = integerFormat instanceof DecimalFormat df && df.getGroupingSize() > 0 ? df.getGroupingSize() : 3;
+    }
+
+    /**
+     * Left-aligned text of exactly {@code length} characters, padded with spaces or truncated.
+     */
+    public Windows1251FieldWriter text(String text, int length) {
+        if (text == null) {
+            return spaces(length);
+        }
+        int limit = Math.min(text.length(), length);
+        ensureCapacity(length);
+        int i = 0;
+        while (i < limit) {
+            char c = text.charAt(i);
+            // A complete surrogate pair is a single unmappable character for the encoder
+            if (Character.isHighSurrogate(c) && i + 1 < limit && Character.isLowSurrogate(text.charAt(i + 1))) {
+                buffer[size++] = UNMAPPABLE;
+                i += 2;
+            } else {
+                buffer[size++] = ENCODE_TABLE[c];
+                i++;
+            }
+        }
+        return spaces(length - limit);
+    }
+
+    /**
+     * Right-aligned amount with two decimals and no separator, e.g. 123.45 → "12345".
+     * When the digits do not fit, the leftmost ones are dropped.
+     */
+    public Windows1251FieldWriter amount(BigDecimal amount, int length) {
+        BigDecimal scaled = (amount != null ? amount : BigDecimal.ZERO).setScale(2, RoundingMode.HALF_UP);
+        if (scaled.precision() > 18) {
+            return ascii(VatExportFormatter.formatAmount(amount, length));
+        }
+        long unscaled = scaled.unscaledValue().longValue();
+        boolean negative = unscaled < 0;
+        long abs = Math.abs(unscaled);
+        // toPlainString() always has at least "0.xx", i.e. three digits once the point is removed
+        int digits = Math.max(digitCount(abs), 3);
+        int width = digits + (negative ? 1 : 0);
+
+        ensureCapacity(Math.max(width, length));
+        if (width <= length) {
+            spaces(length - width);
+            if (negative) {
+                buffer[size++] = '-';
+            }
+            writeDigits(abs, digits, '0');
+        } else {
+            // Keep the rightmost characters, as formatted.substring(formatted.length() - length) does
+            int skip = width - length;
+            if (negative) {
+                skip--;
+            }
+            int start = size;
+            writeDigits(abs, digits, '0');
+            System.arraycopy(buffer, start + skip, buffer, start, digits - skip);
+            size = start + digits - skip;
+        }
+        return this;
+    }
+
+    /**
+     * Right-aligned amount in "%,.2f" form using the default format locale, e.g. 1234.5 → "1,234.50".
+     * Like String.format, a value wider than {@code length} is written in full.
+     */
+    public Windows1251FieldWriter amountWithDecimal(BigDecimal amount, int length) {
+        BigDecimal value = amount != null ? amount : BigDecimal.ZERO;
+        BigDecimal scaled = value.setScale(2, RoundingMode.HALF_UP);
+        if (scaled.precision() > 18) {
+            return ascii(VatExportFormatter.formatAmountWithDecimal(value, length));
+        }
+        long abs = Math.abs(scaled.unscaledValue().longValue());
+        // Formatter takes the sign from the unrounded value, so -0.001 prints as "-0.00"
+        boolean negative = value.signum() < 0;
+        long integerPart = abs / 100;
+        int integerDigits = digitCount(integerPart);
+        int groups = (integerDigits - 1) / groupingSize;
+        int width = (negative ? 1 : 0) + integerDigits + groups + 3;
+
+        ensureCapacity(Math.max(width, length));
+        spaces(length - width);
+        if (negative) {
+            buffer[size++] = '-';
+        }
+        int end = size + integerDigits + groups;
+        int pos = end;
+        long remaining = integerPart;
+        int inGroup = 0;
+        do {
+            if (inGroup == groupingSize) {
+                buffer[--pos] = groupingSeparator;
+                inGroup = 0;
+            }
+            buffer[--pos] = digit((int) (remaining % 10), zeroDigit);
+            remaining /= 10;
+            inGroup++;
+        } while (remaining > 0);
+        size = end;
+        buffer[size++] = decimalSeparator;
+        int fraction = (int) (abs % 100);
+        buffer[size++] = digit(fraction / 10, zeroDigit);
+        buffer[size++] = digit(fraction % 10, zeroDigit);
+        return this;
+    }
+
+    /**
+     * Date as dd/MM/yyyy, or ten spaces for null.
+     */
+    public Windows1251FieldWriter date(LocalDate date) {
+        if (date == null) {
+            return spaces(10);
+        }
+        if (date.getYear() < 0 || date.getYear() > 9999) {
+            return ascii(VatExportFormatter.formatDate(date));
+        }
+        ensureCapacity(10);
+        writeDigits(date.getDayOfMonth(), 2, '0');
+        buffer[size++] = '/';
+        writeDigits(date.getMonthValue(), 2, '0');
+        buffer[size++] = '/';
+        writeDigits(date.getYear(), 4, '0');
+        return this;
+    }
+
+    /**
+     * Writes the text as is, without padding.
+     */
+    public Windows1251FieldWriter ascii(String text) {
+        return text(text, text.length());
+    }
+
+    /**
+     * Appends bytes taken from another writer, e.g. a line prefix that repeats on every line.
+     */
+    public Windows1251FieldWriter bytes(byte[] encoded) {
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, buffer, size, encoded.length);
+        size += encoded.length;
+        return this;
+    }
+
+    public Windows1251FieldWriter newLine() {
+        return bytes(LINE_SEPARATOR);
+    }
+
+    public Windows1251FieldWriter spaces(int count) {
+        if (count <= 0) {
+            return this;
+        }
+        ensureCapacity(count);
+        Arrays.fill(buffer, size, size + count, SPACE);
+        size += count;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public String toBase64() {
+        return Base64.getEncoder().encodeToString(toByteArray());
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    private void writeDigits(long value, int width, char zero) {
+        int end = size + width;
+        int pos = end;
+        long remaining = value;
+        while (pos > size) {
+            buffer[--pos] = digit((int) (remaining % 10), zero);
+            remaining /= 10;
+        }
+        size = end;
+    }
+
+    private static byte digit(int value, char zero) {
+        return ENCODE_TABLE[zero + value];
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = size + additional;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+
+    private static byte encode(char c) {
+        return ENCODE_TABLE[c];
+    }
+
+    private static byte[] buildEncodeTable() {
+        byte[] table = new byte[Character.MAX_VALUE + 1];
+        CharsetEncoder encoder = VatExportFormatter.WINDOWS_1251.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer in = CharBuffer.allocate(1);
+        ByteBuffer out = ByteBuffer.allocate(4);
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            table[c] = UNMAPPABLE;
+            if (Character.isSurrogate((char) c)) {
+                continue;
+            }
+            in.clear();
+            in.put((char) c).flip();
+            out.clear();
+            encoder.reset();
+            if (!encoder.encode(in, out, true).isError() && !encoder.flush(out).isError() && out.position() == 1) {
+                table[c] = out.get(0);
+            }
+        }
+        return table;
+    }
+}
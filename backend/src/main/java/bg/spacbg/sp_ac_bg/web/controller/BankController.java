@@ -1,6 +1,9 @@
 package bg.spacbg.sp_ac_bg.web.controller;
 
+import bg.spacbg.sp_ac_bg.model.dto.BankPostingRuleDto;
+import bg.spacbg.sp_ac_bg.model.dto.input.CreateBankPostingRuleInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.CreateBankProfileInput;
+import bg.spacbg.sp_ac_bg.model.dto.input.UpdateBankPostingRuleInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.UpdateBankProfileInput;
 import bg.spacbg.sp_ac_bg.model.entity.BankImportEntity;
 import bg.spacbg.sp_ac_bg.model.entity.BankProfileEntity;
@@ -13,6 +16,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Controller
 public class BankController {
@@ -58,6 +62,30 @@ public class BankController {
         return bankService.deleteProfile(id);
     }
 
+    // ========== Bank Posting Rules ==========
+
+    @QueryMapping
+    public List<BankPostingRuleDto> bankPostingRules(@Argument Integer companyId) {
+        return bankService.findPostingRulesByCompanyId(companyId).stream()
+                .map(BankPostingRuleDto::fromEntity)
+                .collect(Collectors.toList());
+    }
+
+    @MutationMapping
+    public BankPostingRuleDto createBankPostingRule(@Argument CreateBankPostingRuleInput input) {
+        return BankPostingRuleDto.fromEntity(bankService.createPostingRule(input));
+    }
+
+    @MutationMapping
+    public BankPostingRuleDto updateBankPostingRule(@Argument Integer id, @Argument UpdateBankPostingRuleInput input) {
+        return BankPostingRuleDto.fromEntity(bankService.updatePostingRule(id, input));
+    }
+
+    @MutationMapping
+    public Boolean deleteBankPostingRule(@Argument Integer id) {
+        return bankService.deletePostingRule(id);
+    }
+
     // ========== Bank Import Queries ==========
 
     @QueryMapping
@@ -0,0 +1,38 @@
+package bg.spacbg.sp_ac_bg.web.controller;
+
+import bg.spacbg.sp_ac_bg.model.dto.BankReconciliationProposalDto;
+import bg.spacbg.sp_ac_bg.model.dto.BankReconciliationResultDto;
+import bg.spacbg.sp_ac_bg.model.dto.input.ConfirmBankMatchInput;
+import bg.spacbg.sp_ac_bg.service.BankReconciliationService;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.List;
+
+@Controller
+public class BankReconciliationController {
+
+    private final BankReconciliationService reconciliationService;
+
+    public BankReconciliationController(BankReconciliationService reconciliationService) {
+        this.reconciliationService = reconciliationService;
+    }
+
+    // ========== Queries ==========
+
+    @QueryMapping
+    public List<BankReconciliationProposalDto> bankReconciliationProposals(@Argument Integer bankImportId) {
+        return reconciliationService.proposeMatches(bankImportId);
+    }
+
+    // ========== Mutations ==========
+
+    @MutationMapping
+    public BankReconciliationResultDto confirmBankReconciliation(@Argument Integer bankImportId,
+                                                                 @Argument List<ConfirmBankMatchInput> matches) {
+        // TODO: Extract user ID from authentication, as in BankController
+        return reconciliationService.confirmMatches(bankImportId, matches, 1);
+    }
+}
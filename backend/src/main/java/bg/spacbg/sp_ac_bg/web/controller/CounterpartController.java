@@ -58,4 +58,9 @@ public class CounterpartController {
     public ViesValidationResult validateVat(@Argument String vatNumber) {
         return viesService.validateVat(vatNumber);
     }
+
+    @MutationMapping
+    public Integer revalidateCounterpartsVies(@Argument Integer companyId) {
+        return viesService.revalidateCompanyCounterparts(companyId);
+    }
 }
@@ -1,10 +1,12 @@
 package bg.spacbg.sp_ac_bg.web.controller;
 
+import bg.spacbg.sp_ac_bg.model.dto.EcbBackfillResultDto;
 import bg.spacbg.sp_ac_bg.model.dto.input.CreateCurrencyInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.CreateExchangeRateInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.UpdateCurrencyInput;
 import bg.spacbg.sp_ac_bg.model.entity.CurrencyEntity;
 import bg.spacbg.sp_ac_bg.model.entity.ExchangeRateEntity;
+import bg.spacbg.sp_ac_bg.model.enums.EcbRateFeed;
 import bg.spacbg.sp_ac_bg.service.CurrencyService;
 import bg.spacbg.sp_ac_bg.service.ExchangeRateService;
 import org.springframework.graphql.data.method.annotation.Argument;
@@ -12,6 +14,7 @@ import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.stereotype.Controller;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -82,6 +85,11 @@ public class CurrencyController {
         return exchangeRateService.findLatest(fromCode, toCode).orElse(null);
     }
 
+    @QueryMapping
+    public BigDecimal exchangeRateAsOf(@Argument String fromCode, @Argument String toCode, @Argument LocalDate date) {
+        return exchangeRateService.findRateAsOf(fromCode, toCode, date).orElse(null);
+    }
+
     // Exchange Rate Mutations
     @MutationMapping
     public ExchangeRateEntity createExchangeRate(@Argument CreateExchangeRateInput input) {
@@ -92,4 +100,9 @@ public class CurrencyController {
     public List<ExchangeRateEntity> fetchEcbRates(@Argument LocalDate date) {
         return exchangeRateService.fetchEcbRates(date);
     }
+
+    @MutationMapping
+    public EcbBackfillResultDto backfillEcbRates(@Argument EcbRateFeed feed) {
+        return exchangeRateService.backfillEcbRates(feed);
+    }
 }
@@ -0,0 +1,42 @@
+package bg.spacbg.sp_ac_bg.web.controller;
+
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyRevaluationRunEntity;
+import bg.spacbg.sp_ac_bg.service.CurrencyRevaluationService;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Controller
+public class CurrencyRevaluationController {
+
+    private final CurrencyRevaluationService currencyRevaluationService;
+
+    public CurrencyRevaluationController(CurrencyRevaluationService currencyRevaluationService) {
+        this.currencyRevaluationService = currencyRevaluationService;
+    }
+
+    // ========== Queries ==========
+
+    @QueryMapping
+    public List<CurrencyRevaluationRunEntity> currencyRevaluationRuns(@Argument Integer companyId) {
+        return currencyRevaluationService.findRunsByCompanyId(companyId);
+    }
+
+    // ========== Mutations ==========
+
+    @MutationMapping
+    public List<CurrencyRevaluationRunEntity> runCurrencyRevaluation(
+            @Argument Integer companyId,
+            @Argument LocalDate revaluationDate) {
+        return currencyRevaluationService.startRevaluation(companyId, revaluationDate, getCurrentUserId());
+    }
+
+    private Integer getCurrentUserId() {
+        // TODO: Extract user ID from authentication
+        return 1; // Placeholder
+    }
+}
@@ -2,6 +2,7 @@ package bg.spacbg.sp_ac_bg.web.controller;
 
 import bg.spacbg.sp_ac_bg.model.dto.CalculatedPeriodDto;
 import bg.spacbg.sp_ac_bg.model.dto.DepreciationCalculationResultDto;
+import bg.spacbg.sp_ac_bg.model.dto.DepreciationForecastEntryDto;
 import bg.spacbg.sp_ac_bg.model.dto.DepreciationJournalDto;
 import bg.spacbg.sp_ac_bg.model.dto.DepreciationPostResultDto;
 import bg.spacbg.sp_ac_bg.model.entity.DepreciationJournalEntity;
@@ -55,6 +56,18 @@ public class DepreciationController {
         return depreciationService.getAssetsNeedingDepreciation(companyId, period);
     }
 
+    @QueryMapping
+    public List<DepreciationForecastEntryDto> depreciationForecast(
+            @Argument Integer companyId,
+            @Argument Integer year,
+            @Argument Integer month,
+            @Argument Integer months) {
+        LocalDate period = LocalDate.of(year, month, 1);
+        return depreciationService.getDepreciationForecast(companyId, period, months).stream()
+                .map(DepreciationForecastEntryDto::fromRecord)
+                .collect(Collectors.toList());
+    }
+
     // ========== Mutations ==========
 
     @MutationMapping
@@ -68,6 +81,17 @@ public class DepreciationController {
         return DepreciationCalculationResultDto.fromResult(result);
     }
 
+    @MutationMapping
+    public DepreciationCalculationResultDto catchUpDepreciation(
+            @Argument Integer companyId,
+            @Argument Integer year,
+            @Argument Integer month) {
+        LocalDate period = LocalDate.of(year, month, 1);
+        DepreciationService.DepreciationCalculationResult result =
+                depreciationService.catchUpDepreciation(companyId, period);
+        return DepreciationCalculationResultDto.fromResult(result);
+    }
+
     @MutationMapping
     public DepreciationPostResultDto postDepreciation(
             @Argument Integer companyId,
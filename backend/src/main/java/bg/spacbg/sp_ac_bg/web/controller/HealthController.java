@@ -1,5 +1,6 @@
 package bg.spacbg.sp_ac_bg.web.controller;
 
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClients;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -10,8 +11,19 @@ import java.util.Map;
 @RequestMapping("/api")
 public class HealthController {
 
+    private final OutboundHttpClients outboundHttpClients;
+
+    public HealthController(OutboundHttpClients outboundHttpClients) {
+        this.outboundHttpClients = outboundHttpClients;
+    }
+
     @GetMapping("/health")
     public Map<String, String> health() {
         return Map.of("status", "UP");
     }
+
+    @GetMapping("/health/outbound")
+    public Map<String, Object> outbound() {
+        return outboundHttpClients.stats();
+    }
 }
@@ -0,0 +1,58 @@
+package bg.spacbg.sp_ac_bg.web.controller;
+
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatDeclarationEntity;
+import bg.spacbg.sp_ac_bg.model.entity.IntrastatDeclarationItemEntity;
+import bg.spacbg.sp_ac_bg.model.enums.DeclarationType;
+import bg.spacbg.sp_ac_bg.service.IntrastatService;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Controller;
+
+import java.util.List;
+
+@Controller
+public class IntrastatController {
+
+    private final IntrastatService intrastatService;
+
+    public IntrastatController(IntrastatService intrastatService) {
+        this.intrastatService = intrastatService;
+    }
+
+    // ========== Queries ==========
+
+    @QueryMapping
+    public List<IntrastatDeclarationEntity> intrastatDeclarations(@Argument Integer companyId) {
+        return intrastatService.findDeclarationsByCompanyId(companyId);
+    }
+
+    @QueryMapping
+    public IntrastatDeclarationEntity intrastatDeclaration(@Argument Integer id) {
+        return intrastatService.findDeclarationById(id);
+    }
+
+    @QueryMapping
+    public List<IntrastatDeclarationItemEntity> intrastatDeclarationItems(@Argument Integer declarationId) {
+        return intrastatService.findItemsByDeclarationId(declarationId);
+    }
+
+    // ========== Mutations ==========
+
+    @MutationMapping
+    public IntrastatDeclarationEntity generateIntrastatDeclaration(
+            @Argument Integer companyId,
+            @Argument Integer year,
+            @Argument Integer month,
+            @Argument DeclarationType declarationType) {
+        return intrastatService.generateDeclaration(companyId, year, month, declarationType, getCurrentUserId());
+    }
+
+    private Integer getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        // TODO: Extract user ID from authentication
+        return 1; // Placeholder
+    }
+}
@@ -0,0 +1,32 @@
+package bg.spacbg.sp_ac_bg.web.controller;
+
+import bg.spacbg.sp_ac_bg.service.IntrastatService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/intrastat")
+public class IntrastatXmlController {
+
+    private final IntrastatService intrastatService;
+
+    public IntrastatXmlController(IntrastatService intrastatService) {
+        this.intrastatService = intrastatService;
+    }
+
+    // The XML is written straight to the response, so no Content-Length is sent
+
+    @GetMapping("/{declarationId}/xml")
+    public void exportDeclarationXml(@PathVariable Integer declarationId, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_XML_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.formData().name("attachment").filename("intrastat-" + declarationId + ".xml").build().toString());
+        intrastatService.writeDeclarationXml(declarationId, response.getOutputStream());
+    }
+}
@@ -3,14 +3,19 @@ package bg.spacbg.sp_ac_bg.web.controller;
 import bg.spacbg.sp_ac_bg.model.dto.input.CheckCorrectionsInput;
 import bg.spacbg.sp_ac_bg.model.dto.input.InventoryMovementFilter;
 import bg.spacbg.sp_ac_bg.model.dto.input.QuantityTurnoverInput;
+import bg.spacbg.sp_ac_bg.model.dto.input.QuantityTurnoverMovementsInput;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.AverageCostInfoDto;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.CorrectionNeededDto;
 import bg.spacbg.sp_ac_bg.model.dto.inventory.QuantityTurnoverDto;
+import bg.spacbg.sp_ac_bg.model.dto.output.InventoryMovementsPage;
 import bg.spacbg.sp_ac_bg.model.entity.InventoryBalanceEntity;
 import bg.spacbg.sp_ac_bg.model.entity.InventoryMovementEntity;
 import bg.spacbg.sp_ac_bg.service.InventoryService;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 
 import java.time.LocalDate;
@@ -55,6 +60,18 @@ public class InventoryController {
         );
     }
 
+    @QueryMapping
+    public InventoryMovementsPage getQuantityTurnoverMovements(@Argument QuantityTurnoverMovementsInput input) {
+        return inventoryService.getQuantityTurnoverMovements(
+                input.getCompanyId(),
+                input.getAccountId(),
+                input.getFromDate(),
+                input.getToDate(),
+                input.getOffset(),
+                input.getLimit()
+        );
+    }
+
     // ========== Средно претеглена цена (СПЦ) ==========
 
     @QueryMapping
@@ -75,4 +92,22 @@ public class InventoryController {
                 input.getNewEntryDate()
         );
     }
+
+    // ========== Mutations ==========
+
+    @MutationMapping
+    public int rebuildInventoryRunningBalances(@Argument Integer companyId, @Argument Integer accountId) {
+        return inventoryService.rebuildRunningBalances(companyId, accountId);
+    }
+
+    @MutationMapping
+    public List<CorrectionNeededDto> applyRetroactiveCorrections(@Argument Integer movementId) {
+        return inventoryService.applyRetroactiveCorrections(movementId, getCurrentUserId());
+    }
+
+    private Integer getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        // TODO: Extract user ID from authentication
+        return 1; // Placeholder
+    }
 }
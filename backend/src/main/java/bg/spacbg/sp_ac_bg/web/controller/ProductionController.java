@@ -4,6 +4,7 @@ import bg.spacbg.sp_ac_bg.model.dto.input.*;
 import bg.spacbg.sp_ac_bg.model.entity.ProductionBatchEntity;
 import bg.spacbg.sp_ac_bg.model.entity.ProductionBatchStageEntity;
 import bg.spacbg.sp_ac_bg.model.entity.TechnologyCardEntity;
+import bg.spacbg.sp_ac_bg.model.enums.ProductionBatchStatus;
 import bg.spacbg.sp_ac_bg.service.ProductionService;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
@@ -60,6 +61,20 @@ public class ProductionController {
         return productionService.findStagesByProductionBatchId(productionBatchId);
     }
 
+    // ========== Costing Queries ==========
+
+    @QueryMapping
+    public ProductionService.ProductionBatchCost productionBatchCost(@Argument Integer productionBatchId) {
+        return productionService.calculateProductionBatchCost(productionBatchId);
+    }
+
+    @QueryMapping
+    public List<ProductionService.ProductionBatchCost> productionBatchCosts(
+            @Argument Integer companyId,
+            @Argument ProductionBatchStatus status) {
+        return productionService.calculateProductionBatchCosts(companyId, status);
+    }
+
     // ========== Technology Card Mutations ==========
 
     @MutationMapping
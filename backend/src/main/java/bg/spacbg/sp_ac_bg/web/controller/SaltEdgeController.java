@@ -4,6 +4,7 @@ import bg.spacbg.sp_ac_bg.model.dto.saltedge.*;
 import bg.spacbg.sp_ac_bg.model.entity.*;
 import bg.spacbg.sp_ac_bg.service.BankService;
 import bg.spacbg.sp_ac_bg.service.SaltEdgeService;
+import bg.spacbg.sp_ac_bg.service.saltedge.SaltEdgeWebhookQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -23,10 +24,13 @@ public class SaltEdgeController {
 
     private final SaltEdgeService saltEdgeService;
     private final BankService bankService;
+    private final SaltEdgeWebhookQueue webhookQueue;
 
-    public SaltEdgeController(SaltEdgeService saltEdgeService, BankService bankService) {
+    public SaltEdgeController(SaltEdgeService saltEdgeService, BankService bankService,
+                              SaltEdgeWebhookQueue webhookQueue) {
         this.saltEdgeService = saltEdgeService;
         this.bankService = bankService;
+        this.webhookQueue = webhookQueue;
     }
 
     // ========== Provider Endpoints ==========
@@ -227,14 +231,20 @@ public class SaltEdgeController {
         log.info("Получен Salt Edge webhook: stage={}",
                 payload.getData() != null ? payload.getData().getStage() : "unknown");
         try {
-            saltEdgeService.handleWebhook(payload);
+            // Processed asynchronously; only a failure to store the event asks Salt Edge to redeliver it
+            webhookQueue.enqueue(payload);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
-            log.error("Грешка при обработка на webhook", e);
-            return ResponseEntity.ok().build(); // Return OK to prevent retries
+            log.error("Грешка при запис на webhook", e);
+            return ResponseEntity.internalServerError().build();
         }
     }
 
+    @GetMapping("/webhook/stats")
+    public ResponseEntity<Map<String, Object>> getWebhookQueueStats() {
+        return ResponseEntity.ok(webhookQueue.getStats());
+    }
+
     // ========== Status Endpoints ==========
 
     @GetMapping("/status/{connectionId}")
@@ -0,0 +1,37 @@
+package bg.spacbg.sp_ac_bg.web.controller;
+
+import bg.spacbg.sp_ac_bg.repository.ScheduledJobJdbcRepository;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/scheduled-jobs")
+public class ScheduledJobController {
+
+    private static final int MAX_RUNS = 500;
+
+    private final ScheduledJobJdbcRepository jobRepository;
+
+    public ScheduledJobController(ScheduledJobJdbcRepository jobRepository) {
+        this.jobRepository = jobRepository;
+    }
+
+    @GetMapping("/runs")
+    public ResponseEntity<List<ScheduledJobJdbcRepository.JobRun>> runs(
+            @RequestParam(required = false) String jobName,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(jobRepository.findRecentRuns(jobName, Math.max(1, Math.min(limit, MAX_RUNS))));
+    }
+
+    /**
+     * Run count, failures and duration percentiles per job, for sizing the schedules and the sync concurrency.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<ScheduledJobJdbcRepository.JobStats>> stats(
+            @RequestParam(defaultValue = "30") int days) {
+        return ResponseEntity.ok(jobRepository.findStats(OffsetDateTime.now().minusDays(Math.max(1, days))));
+    }
+}
@@ -0,0 +1,44 @@
+package bg.spacbg.sp_ac_bg.web.controller;
+
+import bg.spacbg.sp_ac_bg.model.entity.VatConsistencyFindingEntity;
+import bg.spacbg.sp_ac_bg.model.entity.VatConsistencyRunEntity;
+import bg.spacbg.sp_ac_bg.service.VatConsistencyService;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Controller
+public class VatConsistencyController {
+
+    private final VatConsistencyService vatConsistencyService;
+
+    public VatConsistencyController(VatConsistencyService vatConsistencyService) {
+        this.vatConsistencyService = vatConsistencyService;
+    }
+
+    // ========== Queries ==========
+
+    @QueryMapping
+    public List<VatConsistencyRunEntity> vatConsistencyRuns(@Argument Integer companyId) {
+        return vatConsistencyService.findRunsByCompanyId(companyId);
+    }
+
+    @QueryMapping
+    public List<VatConsistencyFindingEntity> vatConsistencyFindings(@Argument Integer runId) {
+        return vatConsistencyService.findFindingsByRunId(runId);
+    }
+
+    // ========== Mutations ==========
+
+    @MutationMapping
+    public List<VatConsistencyRunEntity> runVatConsistencyCheck(
+            @Argument Integer companyId,
+            @Argument LocalDate periodFrom,
+            @Argument LocalDate periodTo) {
+        return vatConsistencyService.startCheck(companyId, periodFrom, periodTo);
+    }
+}
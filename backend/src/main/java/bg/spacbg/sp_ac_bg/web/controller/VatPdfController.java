@@ -1,11 +1,14 @@
 package bg.spacbg.sp_ac_bg.web.controller;
 
 import bg.spacbg.sp_ac_bg.service.VatPdfExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 @RestController
 @RequestMapping("/api/vat")
 public class VatPdfController {
@@ -16,31 +19,23 @@ public class VatPdfController {
         this.vatPdfExportService = vatPdfExportService;
     }
 
-    @GetMapping("/pokupki-pdf/{returnId}")
-    public ResponseEntity<byte[]> exportPokupkiPdf(@PathVariable Integer returnId) {
-        byte[] pdfContent = vatPdfExportService.exportPokupkiPdf(returnId);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_PDF);
-        headers.setContentDispositionFormData("attachment", "pokupki-" + returnId + ".pdf");
-        headers.setContentLength(pdfContent.length);
+    // The journals are written straight to the response in page-sized chunks, so no Content-Length is sent
 
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(pdfContent);
+    @GetMapping("/pokupki-pdf/{returnId}")
+    public void exportPokupkiPdf(@PathVariable Integer returnId, HttpServletResponse response) throws IOException {
+        preparePdfResponse(response, "pokupki-" + returnId + ".pdf");
+        vatPdfExportService.writePokupkiPdf(returnId, response.getOutputStream());
     }
 
     @GetMapping("/prodajbi-pdf/{returnId}")
-    public ResponseEntity<byte[]> exportProdajbiPdf(@PathVariable Integer returnId) {
-        byte[] pdfContent = vatPdfExportService.exportProdajbiPdf(returnId);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_PDF);
-        headers.setContentDispositionFormData("attachment", "prodajbi-" + returnId + ".pdf");
-        headers.setContentLength(pdfContent.length);
+    public void exportProdajbiPdf(@PathVariable Integer returnId, HttpServletResponse response) throws IOException {
+        preparePdfResponse(response, "prodajbi-" + returnId + ".pdf");
+        vatPdfExportService.writeProdajbiPdf(returnId, response.getOutputStream());
+    }
 
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(pdfContent);
+    private void preparePdfResponse(HttpServletResponse response, String filename) {
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.formData().name("attachment").filename(filename).build().toString());
     }
 }
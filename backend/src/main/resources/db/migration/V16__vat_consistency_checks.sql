@@ -0,0 +1,37 @@
+-- VAT consistency checks - background validation of journal entry VAT data
+CREATE TABLE IF NOT EXISTS vat_consistency_runs (
+    id SERIAL PRIMARY KEY,
+    company_id INTEGER NOT NULL REFERENCES companies(id) ON DELETE CASCADE,
+    period_from DATE NOT NULL,
+    period_to DATE NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    entries_checked INTEGER NOT NULL DEFAULT 0,
+    findings_count INTEGER NOT NULL DEFAULT 0,
+    error_message TEXT,
+    started_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMPTZ
+);
+
+CREATE INDEX idx_vat_consistency_runs_company ON vat_consistency_runs(company_id, started_at DESC);
+-- At most one running check per company, also when two instances start one at the same time
+CREATE UNIQUE INDEX idx_vat_consistency_runs_running ON vat_consistency_runs(company_id) WHERE status = 'RUNNING';
+
+CREATE TABLE IF NOT EXISTS vat_consistency_findings (
+    id SERIAL PRIMARY KEY,
+    run_id INTEGER NOT NULL REFERENCES vat_consistency_runs(id) ON DELETE CASCADE,
+    company_id INTEGER NOT NULL REFERENCES companies(id) ON DELETE CASCADE,
+    journal_entry_id INTEGER NOT NULL REFERENCES journal_entries(id) ON DELETE CASCADE,
+    entry_number VARCHAR(255) NOT NULL,
+    accounting_date DATE NOT NULL,
+    finding_type VARCHAR(30) NOT NULL,
+    expected_amount NUMERIC(19, 4),
+    actual_amount NUMERIC(19, 4),
+    details TEXT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_vat_consistency_findings_run ON vat_consistency_findings(run_id);
+CREATE INDEX idx_vat_consistency_findings_entry ON vat_consistency_findings(journal_entry_id);
+
+COMMENT ON TABLE vat_consistency_runs IS 'Пускания на проверката за съгласуваност на ДДС по фирма и период';
+COMMENT ON TABLE vat_consistency_findings IS 'Открити несъответствия: VAT_TOTAL_MISMATCH - общ ДДС различен от сумата по редовете, VAT_ACCOUNT_MISMATCH - ДДС операцията не съответства на ДДС сметката';
@@ -0,0 +1,87 @@
+-- Intrastat declaration engine
+-- Aligns the V2 Intrastat tables with the JPA model used by the declaration engine.
+
+CREATE TABLE IF NOT EXISTS intrastat_nomenclatures (
+    id SERIAL PRIMARY KEY,
+    cn_code VARCHAR(20) NOT NULL UNIQUE,
+    description_bg TEXT NOT NULL,
+    description_en TEXT,
+    unit_of_measure VARCHAR(20) NOT NULL,
+    unit_description VARCHAR(255) NOT NULL,
+    parent_code VARCHAR(20),
+    level INTEGER NOT NULL DEFAULT 1,
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS intrastat_account_mapping (
+    id SERIAL PRIMARY KEY,
+    account_id INTEGER NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    nomenclature_id INTEGER NOT NULL REFERENCES intrastat_nomenclatures(id),
+    flow_direction VARCHAR(20) NOT NULL,
+    transaction_nature_code VARCHAR(3) NOT NULL,
+    is_quantity_tracked BOOLEAN NOT NULL DEFAULT TRUE,
+    default_country_code VARCHAR(2),
+    default_transport_mode INTEGER,
+    is_optional BOOLEAN NOT NULL DEFAULT FALSE,
+    min_threshold_bgn NUMERIC(19, 4),
+    company_id INTEGER NOT NULL REFERENCES companies(id) ON DELETE CASCADE,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_intrastat_account_mapping_company
+    ON intrastat_account_mapping(company_id, flow_direction);
+
+ALTER TABLE intrastat_declarations
+    ALTER COLUMN period_year DROP NOT NULL,
+    ALTER COLUMN period_month DROP NOT NULL,
+    ALTER COLUMN total_value DROP NOT NULL,
+    ADD COLUMN IF NOT EXISTS reference_period VARCHAR(7),
+    ADD COLUMN IF NOT EXISTS year INTEGER,
+    ADD COLUMN IF NOT EXISTS month INTEGER,
+    ADD COLUMN IF NOT EXISTS declaration_number VARCHAR(50),
+    ADD COLUMN IF NOT EXISTS declarant_eik VARCHAR(20),
+    ADD COLUMN IF NOT EXISTS declarant_name VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS contact_person VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS contact_phone VARCHAR(50),
+    ADD COLUMN IF NOT EXISTS contact_email VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS total_invoice_value NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS submission_date TIMESTAMPTZ,
+    ADD COLUMN IF NOT EXISTS xml_file_path VARCHAR(500);
+
+ALTER TABLE intrastat_declarations
+    ALTER COLUMN total_statistical_value SET DEFAULT 0;
+
+ALTER TABLE intrastat_settings
+    ADD COLUMN IF NOT EXISTS is_enabled BOOLEAN NOT NULL DEFAULT FALSE,
+    ADD COLUMN IF NOT EXISTS arrival_threshold_bgn NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS dispatch_threshold_bgn NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS current_arrival_threshold_bgn NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS current_dispatch_threshold_bgn NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS auto_generate_declarations BOOLEAN NOT NULL DEFAULT FALSE,
+    ADD COLUMN IF NOT EXISTS default_transaction_nature VARCHAR(3),
+    ADD COLUMN IF NOT EXISTS responsible_person_name VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS responsible_person_phone VARCHAR(50),
+    ADD COLUMN IF NOT EXISTS responsible_person_email VARCHAR(255);
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_intrastat_declarations_period
+    ON intrastat_declarations(company_id, declaration_type, year, month);
+
+ALTER TABLE intrastat_declaration_items
+    ADD COLUMN IF NOT EXISTS nomenclature_id INTEGER REFERENCES intrastat_nomenclatures(id),
+    ADD COLUMN IF NOT EXISTS country_of_consignment VARCHAR(2),
+    ADD COLUMN IF NOT EXISTS transaction_nature_code VARCHAR(3),
+    ADD COLUMN IF NOT EXISTS statistical_procedure VARCHAR(10),
+    ADD COLUMN IF NOT EXISTS net_mass_kg NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS supplementary_unit NUMERIC(19, 4),
+    ADD COLUMN IF NOT EXISTS currency_code VARCHAR(3) NOT NULL DEFAULT 'BGN',
+    ADD COLUMN IF NOT EXISTS description TEXT NOT NULL DEFAULT '',
+    ADD COLUMN IF NOT EXISTS region_code VARCHAR(10),
+    ADD COLUMN IF NOT EXISTS port_code VARCHAR(10),
+    ADD COLUMN IF NOT EXISTS entry_line_id INTEGER REFERENCES entry_lines(id) ON DELETE SET NULL,
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_intrastat_declaration_items_declaration
+    ON intrastat_declaration_items(declaration_id, item_number);
@@ -0,0 +1,4 @@
+-- Running balances are replayed per account in (movement_date, id) order; this index serves the
+-- checkpoint lookup before a given movement and the ordered scan of the movements after it.
+CREATE INDEX IF NOT EXISTS idx_inventory_movements_account_order
+    ON inventory_movements(company_id, account_id, movement_date, id);
@@ -0,0 +1,19 @@
+-- Average cost corrections are produced per affected issue by the retroactive correction engine;
+-- align the table with AverageCostCorrectionEntity and keep the legacy columns optional.
+ALTER TABLE average_cost_corrections
+    ADD COLUMN IF NOT EXISTS triggering_movement_id INTEGER REFERENCES inventory_movements(id) ON DELETE CASCADE,
+    ADD COLUMN IF NOT EXISTS affected_movement_id INTEGER REFERENCES inventory_movements(id) ON DELETE CASCADE,
+    ADD COLUMN IF NOT EXISTS correction_journal_entry_id INTEGER REFERENCES journal_entries(id) ON DELETE SET NULL,
+    ADD COLUMN IF NOT EXISTS correction_amount NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS is_applied BOOLEAN NOT NULL DEFAULT FALSE,
+    ADD COLUMN IF NOT EXISTS applied_at TIMESTAMPTZ;
+
+ALTER TABLE average_cost_corrections ALTER COLUMN correction_date DROP NOT NULL;
+ALTER TABLE average_cost_corrections ALTER COLUMN quantity DROP NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_average_cost_corrections_account
+    ON average_cost_corrections(company_id, account_id);
+CREATE INDEX IF NOT EXISTS idx_average_cost_corrections_affected
+    ON average_cost_corrections(affected_movement_id);
+CREATE INDEX IF NOT EXISTS idx_average_cost_corrections_triggering
+    ON average_cost_corrections(triggering_movement_id);
@@ -0,0 +1,17 @@
+-- Stock quantity, value and average cost per account frozen at the end of each closed month.
+-- Snapshots are a starting point for point-in-time stock queries; any movement change on or before a snapshot
+-- date removes the affected snapshots, so a remaining snapshot always matches the movement history.
+CREATE TABLE IF NOT EXISTS inventory_snapshots (
+    id SERIAL PRIMARY KEY,
+    company_id INTEGER NOT NULL REFERENCES companies(id),
+    account_id INTEGER NOT NULL REFERENCES accounts(id),
+    period_end DATE NOT NULL,
+    quantity NUMERIC(19, 4) NOT NULL,
+    amount NUMERIC(19, 4) NOT NULL,
+    average_cost NUMERIC(19, 4) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE(company_id, account_id, period_end)
+);
+
+CREATE INDEX IF NOT EXISTS idx_inventory_snapshots_company_period
+    ON inventory_snapshots(company_id, period_end);
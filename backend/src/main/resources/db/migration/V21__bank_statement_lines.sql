@@ -0,0 +1,26 @@
+-- Transactions parsed from imported bank statement files (MT940, CAMT.053, bank XML, CSV).
+-- Lines are written in batches while the file is streamed and removed together with their import.
+CREATE TABLE IF NOT EXISTS bank_statement_lines (
+    id SERIAL PRIMARY KEY,
+    bank_import_id INTEGER NOT NULL REFERENCES bank_imports(id) ON DELETE CASCADE,
+    bank_profile_id INTEGER NOT NULL REFERENCES bank_profiles(id),
+    company_id INTEGER NOT NULL REFERENCES companies(id),
+    line_number INTEGER NOT NULL,
+    booking_date DATE NOT NULL,
+    value_date DATE,
+    amount NUMERIC(19, 4) NOT NULL, -- positive = credit (incoming), negative = debit (outgoing)
+    currency_code VARCHAR(3) NOT NULL,
+    description TEXT,
+    counterparty_name TEXT,
+    counterparty_iban VARCHAR(50),
+    reference TEXT,
+    is_processed BOOLEAN NOT NULL DEFAULT FALSE,
+    journal_entry_id INTEGER REFERENCES journal_entries(id),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE(bank_import_id, line_number)
+);
+
+CREATE INDEX IF NOT EXISTS idx_bank_statement_lines_company_processed
+    ON bank_statement_lines(company_id, is_processed);
+CREATE INDEX IF NOT EXISTS idx_bank_statement_lines_profile_date
+    ON bank_statement_lines(bank_profile_id, booking_date);
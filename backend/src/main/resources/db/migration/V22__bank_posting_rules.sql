@@ -0,0 +1,15 @@
+-- Bank posting rules: the columns of AiBankAccountingSettingEntity, which the original table did not have.
+-- A rule matches a bank transaction when any of its comma-separated description keywords occurs in the
+-- transaction text and the direction fits; the transaction is then booked against the rule's account.
+ALTER TABLE ai_bank_accounting_settings
+    ADD COLUMN IF NOT EXISTS pattern_name VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS description_keywords TEXT,
+    ADD COLUMN IF NOT EXISTS transaction_type VARCHAR(50),
+    ADD COLUMN IF NOT EXISTS account_id INTEGER REFERENCES accounts(id),
+    ADD COLUMN IF NOT EXISTS counterpart_account_id INTEGER REFERENCES accounts(id),
+    ADD COLUMN IF NOT EXISTS vat_account_id INTEGER REFERENCES accounts(id),
+    ADD COLUMN IF NOT EXISTS direction VARCHAR(20),
+    ADD COLUMN IF NOT EXISTS description_template TEXT;
+
+CREATE INDEX IF NOT EXISTS idx_ai_bank_accounting_settings_company
+    ON ai_bank_accounting_settings(company_id, is_active);
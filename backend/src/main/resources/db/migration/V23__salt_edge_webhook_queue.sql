@@ -0,0 +1,21 @@
+-- Salt Edge webhooks are stored on receipt and processed asynchronously by the webhook queue workers.
+-- The dedupe key drops redelivered callbacks; events of one connection are processed in id order.
+CREATE TABLE IF NOT EXISTS salt_edge_webhook_events (
+    id BIGSERIAL PRIMARY KEY,
+    dedupe_key VARCHAR(300) NOT NULL UNIQUE,
+    connection_id VARCHAR(100) NOT NULL,
+    stage VARCHAR(50),
+    payload JSONB NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING, PROCESSING, DONE, FAILED
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_at TIMESTAMPTZ,
+    last_error TEXT,
+    received_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    processed_at TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS idx_salt_edge_webhook_open ON salt_edge_webhook_events(connection_id, id)
+    WHERE status IN ('PENDING', 'PROCESSING');
+CREATE INDEX IF NOT EXISTS idx_salt_edge_webhook_processed ON salt_edge_webhook_events(processed_at)
+    WHERE status = 'DONE';
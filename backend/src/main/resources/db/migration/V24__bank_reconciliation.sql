@@ -0,0 +1,23 @@
+-- Bank reconciliation: statement lines matched to open receivables/payables and cleared by a journal entry.
+-- The clearing entry is also stored on the statement line, so deleting the import removes entry and match.
+CREATE TABLE IF NOT EXISTS bank_reconciliation_matches (
+    id SERIAL PRIMARY KEY,
+    company_id INTEGER NOT NULL REFERENCES companies(id),
+    bank_statement_line_id INTEGER NOT NULL REFERENCES bank_statement_lines(id) ON DELETE CASCADE,
+    journal_entry_id INTEGER NOT NULL REFERENCES journal_entries(id) ON DELETE CASCADE, -- the open item
+    account_id INTEGER NOT NULL REFERENCES accounts(id),
+    counterpart_id INTEGER REFERENCES counterparts(id),
+    amount NUMERIC(19, 4) NOT NULL,
+    confidence NUMERIC(5, 4),
+    clearing_journal_entry_id INTEGER REFERENCES journal_entries(id) ON DELETE CASCADE,
+    created_by INTEGER REFERENCES users(id),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE(bank_statement_line_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_bank_reconciliation_item
+    ON bank_reconciliation_matches(company_id, journal_entry_id, account_id);
+
+-- IBANs of counterparts, learned from confirmed matches
+ALTER TABLE counterparts ADD COLUMN IF NOT EXISTS iban VARCHAR(50);
+CREATE INDEX IF NOT EXISTS idx_counterparts_company_iban ON counterparts(company_id, iban);
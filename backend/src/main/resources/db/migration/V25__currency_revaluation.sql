@@ -0,0 +1,38 @@
+-- Month-end revaluation of foreign currency balances.
+-- The settings entity maps expense/revenue accounts for FX differences; the original table only had
+-- positive/negative difference accounts, so the mapped columns are added and filled from them.
+ALTER TABLE currency_revaluation_settings ADD COLUMN IF NOT EXISTS expense_account_id INTEGER REFERENCES accounts(id);
+ALTER TABLE currency_revaluation_settings ADD COLUMN IF NOT EXISTS revenue_account_id INTEGER REFERENCES accounts(id);
+
+UPDATE currency_revaluation_settings
+SET expense_account_id = COALESCE(expense_account_id, negative_difference_account_id),
+    revenue_account_id = COALESCE(revenue_account_id, positive_difference_account_id);
+
+-- Counterpart of the document, used when an entry line has no counterpart of its own
+ALTER TABLE journal_entries ADD COLUMN IF NOT EXISTS counterpart_id INTEGER REFERENCES counterparts(id);
+
+CREATE TABLE IF NOT EXISTS currency_revaluation_runs (
+    id SERIAL PRIMARY KEY,
+    company_id INTEGER NOT NULL REFERENCES companies(id) ON DELETE CASCADE,
+    revaluation_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    positions_count INTEGER NOT NULL DEFAULT 0,
+    total_gain NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    total_loss NUMERIC(19, 4) NOT NULL DEFAULT 0,
+    journal_entry_id INTEGER REFERENCES journal_entries(id) ON DELETE SET NULL,
+    error_message TEXT,
+    started_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS idx_currency_revaluation_runs_company
+    ON currency_revaluation_runs(company_id, started_at DESC);
+-- At most one running revaluation per company, also when two instances start one at the same time
+CREATE UNIQUE INDEX IF NOT EXISTS idx_currency_revaluation_runs_running
+    ON currency_revaluation_runs(company_id) WHERE status = 'RUNNING';
+
+-- Foreign currency lines are a small part of entry_lines; the revaluation query reads only them
+CREATE INDEX IF NOT EXISTS idx_entry_lines_foreign_currency
+    ON entry_lines(account_id, currency_code) WHERE currency_code IS NOT NULL;
+
+COMMENT ON TABLE currency_revaluation_runs IS 'Пускания на месечната преоценка на валутни салда по фирма и дата';
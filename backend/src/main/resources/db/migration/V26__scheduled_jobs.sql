@@ -0,0 +1,26 @@
+-- Scheduled integration jobs (ECB rate fetch, bank sync): a lease per job so that only one instance runs it,
+-- and the history of runs with their durations.
+CREATE TABLE IF NOT EXISTS scheduled_job_locks (
+    job_name VARCHAR(100) PRIMARY KEY,
+    locked_by VARCHAR(255) NOT NULL,
+    locked_at TIMESTAMPTZ NOT NULL,
+    locked_until TIMESTAMPTZ NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS scheduled_job_runs (
+    id BIGSERIAL PRIMARY KEY,
+    job_name VARCHAR(100) NOT NULL,
+    job_key VARCHAR(100), -- e.g. the bank profile of a per-profile sync
+    instance_id VARCHAR(255) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING', -- RUNNING, SUCCEEDED, FAILED
+    items_processed INTEGER,
+    error_message TEXT,
+    started_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMPTZ,
+    duration_ms BIGINT
+);
+
+CREATE INDEX IF NOT EXISTS idx_scheduled_job_runs_job ON scheduled_job_runs(job_name, started_at DESC);
+CREATE INDEX IF NOT EXISTS idx_scheduled_job_runs_started ON scheduled_job_runs(started_at);
+
+COMMENT ON TABLE scheduled_job_runs IS 'История на планираните задачи (курсове от ЕЦБ, синхронизация с банки) с продължителност';
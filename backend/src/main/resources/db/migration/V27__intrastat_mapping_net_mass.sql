@@ -0,0 +1,8 @@
+-- Intrastat: net mass of goods that are not counted in kilograms. A mapping can give the mass of one unit of
+-- the line quantity (pieces, litres, m2, ...) or the mass per unit of invoice value for lines without quantity.
+ALTER TABLE intrastat_account_mapping
+    ADD COLUMN IF NOT EXISTS net_mass_per_unit_kg NUMERIC(19, 6),
+    ADD COLUMN IF NOT EXISTS net_mass_per_value_kg NUMERIC(19, 6);
+
+COMMENT ON COLUMN intrastat_account_mapping.net_mass_per_unit_kg IS 'Нетно тегло в кг на единица от количеството, когато то не е в кг, т или г';
+COMMENT ON COLUMN intrastat_account_mapping.net_mass_per_value_kg IS 'Нетно тегло в кг на единица стойност, за редове без количество';
@@ -0,0 +1,7 @@
+-- Bank reconciliation: a statement line can be matched in parts, e.g. one payment for several invoices or a
+-- payment larger than the invoice. The line stays open until its matches add up to its amount.
+ALTER TABLE bank_reconciliation_matches
+    DROP CONSTRAINT IF EXISTS bank_reconciliation_matches_bank_statement_line_id_key;
+
+CREATE INDEX IF NOT EXISTS idx_bank_reconciliation_line
+    ON bank_reconciliation_matches(bank_statement_line_id);
@@ -0,0 +1,91 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Postbank and ОББ XML exports, with the amount notation set per locale.
+ */
+class BankXmlStatementParserTest {
+
+    private static final String POSTBANK_STATEMENT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Statement>
+              <Account>BG18BPBI79401012345678</Account>
+              <Transactions>
+                <Transaction>
+                  <BookingDate>2026-09-01</BookingDate>
+                  <Amount>1,234.56</Amount>
+                  <Currency>BGN</Currency>
+                  <DC>C</DC>
+                  <Counterparty><Name>Алфа ООД</Name><Iban>BG80BNBG96611020345678</Iban></Counterparty>
+                  <Description>Плащане по фактура 123</Description>
+                  <Reference>0000000123</Reference>
+                </Transaction>
+                <Transaction>
+                  <BookingDate>2026-09-02</BookingDate>
+                  <Amount>1,234</Amount>
+                  <Currency>BGN</Currency>
+                  <DC>D</DC>
+                  <Description>Наем</Description>
+                </Transaction>
+              </Transactions>
+            </Statement>
+            """;
+
+    private static final String OBB_STATEMENT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Movements>
+              <Movement Date="01.09.2026" Debit="" Credit="12 500,40" Currency="EUR">
+                <Partner>Бета ЕООД</Partner>
+                <Reason>Аванс по договор</Reason>
+              </Movement>
+              <Movement Date="02.09.2026" Debit="1.250,00" Credit="" Currency="EUR">
+                <Reason>Такса</Reason>
+              </Movement>
+            </Movements>
+            """;
+
+    @Test
+    void decimalPointExportGroupsThousandsWithComma() throws IOException {
+        List<ParsedBankTransaction> transactions = parse(new BankXmlStatementParser("en"), POSTBANK_STATEMENT);
+
+        assertEquals(2, transactions.size());
+        ParsedBankTransaction payment = transactions.get(0);
+        assertEquals(LocalDate.of(2026, 9, 1), payment.bookingDate());
+        assertAmount("1234.56", payment.amount());
+        assertEquals("BGN", payment.currencyCode());
+        assertEquals("BG80BNBG96611020345678", payment.counterpartyIban());
+        assertAmount("-1234", transactions.get(1).amount());
+    }
+
+    @Test
+    void bulgarianExportUsesDecimalComma() throws IOException {
+        List<ParsedBankTransaction> transactions = parse(new BankXmlStatementParser("bg-BG"), OBB_STATEMENT);
+
+        assertEquals(2, transactions.size());
+        assertAmount("12500.40", transactions.get(0).amount());
+        assertEquals("Бета ЕООД", transactions.get(0).counterpartyName());
+        assertAmount("-1250.00", transactions.get(1).amount());
+    }
+
+    private static List<ParsedBankTransaction> parse(BankStatementParser parser, String content) throws IOException {
+        List<ParsedBankTransaction> transactions = new ArrayList<>();
+        parser.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), transactions::add);
+        return transactions;
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual),
+                () -> "expected " + expected + " but was " + actual);
+    }
+}
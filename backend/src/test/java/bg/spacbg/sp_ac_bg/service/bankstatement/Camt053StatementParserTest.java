@@ -0,0 +1,96 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * camt.053 statement as exported by Wise, with ISO decimal points.
+ */
+class Camt053StatementParserTest {
+
+    private static final String STATEMENT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Document xmlns="urn:iso:std:iso:20022:tech:xsd:camt.053.001.02">
+              <BkToCstmrStmt>
+                <Stmt>
+                  <Id>STMT-2026-09</Id>
+                  <Acct><Id><IBAN>BE71967000000069</IBAN></Id><Ccy>EUR</Ccy></Acct>
+                  <Ntry>
+                    <Amt Ccy="EUR">1234.56</Amt>
+                    <CdtDbtInd>CRDT</CdtDbtInd>
+                    <Sts>BOOK</Sts>
+                    <BookgDt><Dt>2026-09-30</Dt></BookgDt>
+                    <ValDt><Dt>2026-09-30</Dt></ValDt>
+                    <AcctSvcrRef>TRANSFER-1001</AcctSvcrRef>
+                    <NtryDtls><TxDtls>
+                      <Refs><EndToEndId>INV-123</EndToEndId></Refs>
+                      <RltdPties>
+                        <Dbtr><Nm>Alfa Ltd</Nm></Dbtr>
+                        <DbtrAcct><Id><IBAN>BG80BNBG96611020345678</IBAN></Id></DbtrAcct>
+                      </RltdPties>
+                      <RmtInf><Ustrd>Invoice 123</Ustrd></RmtInf>
+                    </TxDtls></NtryDtls>
+                  </Ntry>
+                  <Ntry>
+                    <Amt Ccy="USD">12500</Amt>
+                    <CdtDbtInd>DBIT</CdtDbtInd>
+                    <Sts>BOOK</Sts>
+                    <BookgDt><Dt>2026-09-30</Dt></BookgDt>
+                    <AcctSvcrRef>TRANSFER-1002</AcctSvcrRef>
+                  </Ntry>
+                  <Ntry>
+                    <Amt Ccy="EUR">10.00</Amt>
+                    <CdtDbtInd>DBIT</CdtDbtInd>
+                    <Sts>PDNG</Sts>
+                    <BookgDt><Dt>2026-09-30</Dt></BookgDt>
+                  </Ntry>
+                </Stmt>
+              </BkToCstmrStmt>
+            </Document>
+            """;
+
+    @Test
+    void amountsUseDecimalPoint() throws IOException {
+        List<ParsedBankTransaction> transactions = parse(STATEMENT);
+
+        assertEquals(2, transactions.size());
+        ParsedBankTransaction payment = transactions.get(0);
+        assertAmount("1234.56", payment.amount());
+        assertEquals("EUR", payment.currencyCode());
+        assertEquals(LocalDate.of(2026, 9, 30), payment.bookingDate());
+        assertEquals("Alfa Ltd", payment.counterpartyName());
+        assertEquals("BG80BNBG96611020345678", payment.counterpartyIban());
+        assertEquals("Invoice 123", payment.description());
+        assertEquals("INV-123", payment.reference());
+        assertAmount("-12500", transactions.get(1).amount());
+        assertEquals("USD", transactions.get(1).currencyCode());
+    }
+
+    @Test
+    void groupingAfterDecimalPointIsRejected() {
+        String statement = STATEMENT.replace("<Amt Ccy=\"EUR\">1234.56</Amt>", "<Amt Ccy=\"EUR\">1234.5,6</Amt>");
+
+        assertThrows(IllegalArgumentException.class, () -> parse(statement));
+    }
+
+    private static List<ParsedBankTransaction> parse(String content) throws IOException {
+        List<ParsedBankTransaction> transactions = new ArrayList<>();
+        new Camt053StatementParser().parse(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), transactions::add);
+        return transactions;
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual),
+                () -> "expected " + expected + " but was " + actual);
+    }
+}
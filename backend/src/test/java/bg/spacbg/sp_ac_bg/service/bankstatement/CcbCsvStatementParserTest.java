@@ -0,0 +1,94 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ЦКБ CSV exports in Windows-1251, with Bulgarian and English amount notation.
+ */
+class CcbCsvStatementParserTest {
+
+    private static final String STATEMENT = """
+            Извлечение по сметка BG12CECB97901012345678;;;;;;
+            Период: 01.09.2026 - 30.09.2026;;;;;;
+            Дата;Дебит;Кредит;Контрагент;Сметка на контрагент;Основание;Номер на документ
+            01.09.2026;;1 234,56;Алфа ООД;BG80 BNBG 9661 1020 3456 78;Плащане по фактура 123;0000000123
+            02.09.2026;12 500,00;;Бета ЕООД;BG18RZBB91550123456789;Наем за септември;П-55
+            15.09.2026;1.250,5;;Гама АД;;Такса;П-56
+            30.09.2026;0,75;;;;Такса обслужване;
+            Общо;13 751,25;1 234,56;;;;
+            """;
+
+    @Test
+    void bulgarianExportUsesDecimalCommaAndGroupsThousands() throws IOException {
+        List<ParsedBankTransaction> transactions = parse(new CcbCsvStatementParser("bg-BG"), STATEMENT);
+
+        assertEquals(4, transactions.size());
+        ParsedBankTransaction first = transactions.get(0);
+        assertEquals(LocalDate.of(2026, 9, 1), first.bookingDate());
+        assertAmount("1234.56", first.amount());
+        assertEquals("Алфа ООД", first.counterpartyName());
+        assertEquals("BG80BNBG96611020345678", first.counterpartyIban());
+        assertEquals("Плащане по фактура 123", first.description());
+        assertEquals("0000000123", first.reference());
+        assertAmount("-12500.00", transactions.get(1).amount());
+        assertAmount("-1250.5", transactions.get(2).amount());
+        assertAmount("-0.75", transactions.get(3).amount());
+    }
+
+    @Test
+    void commaAloneIsDecimalSeparatorInBulgarianExport() throws IOException {
+        List<ParsedBankTransaction> transactions = parse(new CcbCsvStatementParser("bg-BG"), """
+                Дата;Сума;Валута;Основание
+                01.09.2026;1,234;EUR;Лихва
+                """);
+
+        assertAmount("1.234", transactions.get(0).amount());
+        assertEquals("EUR", transactions.get(0).currencyCode());
+    }
+
+    @Test
+    void englishExportUsesDecimalPointAndGroupsWithComma() throws IOException {
+        List<ParsedBankTransaction> transactions = parse(new CcbCsvStatementParser("en"), """
+                Date,Amount,Currency,Description
+                2026-09-01,"1,234",EUR,Invoice 77
+                2026-09-02,"-12,500.40",EUR,Rent
+                2026-09-03,0.5,EUR,Interest
+                """);
+
+        assertAmount("1234", transactions.get(0).amount());
+        assertAmount("-12500.40", transactions.get(1).amount());
+        assertAmount("0.5", transactions.get(2).amount());
+    }
+
+    @Test
+    void amountInOtherNotationIsRejectedWithRow() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> parse(new CcbCsvStatementParser("bg-BG"), """
+                        Дата;Сума;Основание
+                        01.09.2026;10,00;Лихва
+                        02.09.2026;1,234.56;Плащане
+                        """));
+
+        assertTrue(error.getMessage().startsWith("Ред 3: "), error.getMessage());
+    }
+
+    private static List<ParsedBankTransaction> parse(BankStatementParser parser, String content) throws IOException {
+        List<ParsedBankTransaction> transactions = new ArrayList<>();
+        parser.parse(new ByteArrayInputStream(content.getBytes(StatementValues.WINDOWS_1251)), transactions::add);
+        return transactions;
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual),
+                () -> "expected " + expected + " but was " + actual);
+    }
+}
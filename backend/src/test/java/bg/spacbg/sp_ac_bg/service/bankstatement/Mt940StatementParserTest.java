@@ -0,0 +1,58 @@
+package bg.spacbg.sp_ac_bg.service.bankstatement;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UniCredit Bulbank MT940 statement with SWIFT decimal commas.
+ */
+class Mt940StatementParserTest {
+
+    private static final String STATEMENT = """
+            {1:F01UNCRBGSFAXXX0000000000}{2:I940UNCRBGSFXXXXN}{4:
+            :20:STMT260930
+            :25:BG80UNCR70001519562303
+            :28C:00185/001
+            :60F:C260929BGN12500,00
+            :61:2609300930C1234,56NTRFNONREF//REF123
+            :86:?20Плащане по фактура 123?32Алфа ООД?31BG80BNBG96611020345678
+            :61:260930D15000,NMSCNONREF
+            :86:Наем за септември
+            :61:260930D0,5NCHGNONREF
+            :62F:D260930BGN1266,94
+            -}
+            """;
+
+    @Test
+    void amountsUseDecimalComma() throws IOException {
+        List<ParsedBankTransaction> transactions = new ArrayList<>();
+        new Mt940StatementParser().parse(
+                new ByteArrayInputStream(STATEMENT.getBytes(StatementValues.WINDOWS_1251)), transactions::add);
+
+        assertEquals(3, transactions.size());
+        ParsedBankTransaction payment = transactions.get(0);
+        assertAmount("1234.56", payment.amount());
+        assertEquals("BGN", payment.currencyCode());
+        assertEquals(LocalDate.of(2026, 9, 30), payment.bookingDate());
+        assertEquals("Плащане по фактура 123", payment.description());
+        assertEquals("Алфа ООД", payment.counterpartyName());
+        assertEquals("BG80BNBG96611020345678", payment.counterpartyIban());
+        assertEquals("REF123", payment.reference());
+        assertAmount("-15000", transactions.get(1).amount());
+        assertEquals("Наем за септември", transactions.get(1).description());
+        assertAmount("-0.5", transactions.get(2).amount());
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual),
+                () -> "expected " + expected + " but was " + actual);
+    }
+}
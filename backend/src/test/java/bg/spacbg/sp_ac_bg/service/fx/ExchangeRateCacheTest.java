@@ -0,0 +1,110 @@
+package bg.spacbg.sp_ac_bg.service.fx;
+
+import bg.spacbg.sp_ac_bg.repository.ExchangeRateJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reverse and cross rates from ECB rates quoted as EUR to the other currency.
+ */
+class ExchangeRateCacheTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2026, 9, 28);
+    private static final LocalDate TUESDAY = LocalDate.of(2026, 9, 29);
+
+    private static final BigDecimal EUR_HUF = new BigDecimal("395.0000");
+    private static final BigDecimal EUR_JPY = new BigDecimal("161.2300");
+    private static final BigDecimal EUR_USD = new BigDecimal("1.0850");
+    private static final BigDecimal EUR_BGN = new BigDecimal("1.9558");
+
+    private final List<Object[]> rows = new ArrayList<>();
+    private ExchangeRateCache cache;
+
+    @BeforeEach
+    void setUp() {
+        rows.add(new Object[]{"EUR", "BGN", MONDAY, EUR_BGN});
+        rows.add(new Object[]{"EUR", "HUF", MONDAY, new BigDecimal("390.1000")});
+        rows.add(new Object[]{"EUR", "HUF", TUESDAY, EUR_HUF});
+        rows.add(new Object[]{"EUR", "JPY", MONDAY, EUR_JPY});
+        rows.add(new Object[]{"EUR", "USD", MONDAY, EUR_USD});
+
+        cache = new ExchangeRateCache(new StubRateRepository(rows));
+        ReflectionTestUtils.setField(cache, "crossCurrency", "EUR");
+        cache.reload();
+    }
+
+    @Test
+    void reverseRateIsComputedFromRate() {
+        BigDecimal hufEur = cache.rateAsOf("HUF", "EUR", TUESDAY);
+
+        assertEquals(quotient(BigDecimal.ONE, EUR_HUF), hufEur);
+        assertEquals(new BigDecimal("0.0025316456"), hufEur);
+        assertEquals(new BigDecimal("0.0062023197"), cache.rateAsOf("JPY", "EUR", TUESDAY));
+        assertEquals(EUR_HUF, cache.rateAsOf("EUR", "HUF", TUESDAY));
+    }
+
+    @Test
+    void crossRateIsExactQuotientOfEcbRates() {
+        assertEquals(quotient(EUR_USD, EUR_HUF), cache.rateAsOf("HUF", "USD", TUESDAY));
+        assertEquals(quotient(EUR_HUF, EUR_USD), cache.rateAsOf("USD", "HUF", TUESDAY));
+        assertEquals(quotient(EUR_BGN, EUR_JPY), cache.rateAsOf("JPY", "BGN", TUESDAY));
+        assertEquals(quotient(EUR_BGN, EUR_USD), cache.rateAsOf("USD", "BGN", TUESDAY));
+    }
+
+    @Test
+    void crossRateUsesRatesAsOfDate() {
+        assertEquals(quotient(EUR_USD, new BigDecimal("390.1000")), cache.rateAsOf("HUF", "USD", MONDAY));
+        assertNull(cache.rateAsOf("HUF", "USD", MONDAY.minusDays(1)));
+    }
+
+    @Test
+    void convertUsesExactCrossRate() {
+        // 1 000 000 JPY at the old 4-decimal reverse rate (0.0062) and 6-decimal cross rate was 12 126.00 BGN, not 12 130.50
+        BigDecimal converted = cache.convert(new BigDecimal("1000000"), "JPY", "BGN", TUESDAY)
+                .setScale(2, RoundingMode.HALF_UP);
+
+        assertEquals(new BigDecimal("12130.50"), converted);
+    }
+
+    private static BigDecimal quotient(BigDecimal numerator, BigDecimal denominator) {
+        return numerator.divide(denominator, RateSeries.REVERSE_RATE_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Serves the given rows in the order the database query returns them.
+     */
+    private static final class StubRateRepository extends ExchangeRateJdbcRepository {
+
+        private final List<Object[]> rows;
+
+        private StubRateRepository(List<Object[]> rows) {
+            super(null);
+            this.rows = rows;
+        }
+
+        @Override
+        public void forEachActiveRate(RateRowHandler handler) {
+            for (Object[] row : rows) {
+                handler.onRate((String) row[0], (String) row[1], (LocalDate) row[2], (BigDecimal) row[3]);
+            }
+        }
+
+        @Override
+        public void forEachActiveRate(String fromCode, String toCode, RateRowHandler handler) {
+            for (Object[] row : rows) {
+                if (row[0].equals(fromCode) && row[1].equals(toCode)) {
+                    handler.onRate(fromCode, toCode, (LocalDate) row[2], (BigDecimal) row[3]);
+                }
+            }
+        }
+    }
+}
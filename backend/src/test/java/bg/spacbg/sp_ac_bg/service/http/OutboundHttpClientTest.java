@@ -0,0 +1,268 @@
+package bg.spacbg.sp_ac_bg.service.http;
+
+import bg.spacbg.sp_ac_bg.config.OutboundHttpConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bulkhead, timeouts and circuit breaker of one upstream against a local stub server.
+ */
+class OutboundHttpClientTest {
+
+    private HttpServer server;
+    private ExecutorService serverPool;
+    private ExecutorService callers;
+    private String baseUrl;
+
+    private volatile int status = 200;
+    private final AtomicInteger calls = new AtomicInteger();
+    // Requests to /slow wait here until the test releases them
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile CountDownLatch slowArrivals = new CountDownLatch(0);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fast", exchange -> {
+            calls.incrementAndGet();
+            respond(exchange, status);
+        });
+        server.createContext("/slow", exchange -> {
+            calls.incrementAndGet();
+            slowArrivals.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200);
+        });
+        serverPool = Executors.newCachedThreadPool();
+        server.setExecutor(serverPool);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        server.stop(0);
+        serverPool.shutdownNow();
+    }
+
+    @Test
+    void callsBeyondBulkheadAreRejected() throws Exception {
+        OutboundHttpClient client = client(upstream(2, 50L, 5000L, 100, 60_000L));
+        slowArrivals = new CountDownLatch(2);
+
+        List<Future<HttpResponse<String>>> inFlight = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            inFlight.add(callers.submit(() -> client.send(get("/slow"))));
+        }
+        assertTrue(slowArrivals.await(5, TimeUnit.SECONDS));
+
+        assertThrows(IllegalStateException.class, () -> client.send(get("/fast")));
+        assertEquals(2, client.stats().get("inFlight"));
+        assertEquals(1L, client.stats().get("rejectedByBulkhead"));
+        assertEquals(2, calls.get());
+
+        release.countDown();
+        for (Future<HttpResponse<String>> call : inFlight) {
+            assertEquals(200, call.get(5, TimeUnit.SECONDS).statusCode());
+        }
+        assertEquals(0, client.stats().get("inFlight"));
+        assertEquals(200, client.send(get("/fast")).statusCode());
+    }
+
+    @Test
+    void waitingCallGetsSlotFreedWithinBulkheadWait() throws Exception {
+        OutboundHttpClient client = client(upstream(1, 5000L, 5000L, 100, 60_000L));
+        slowArrivals = new CountDownLatch(1);
+
+        Future<HttpResponse<String>> first = callers.submit(() -> client.send(get("/slow")));
+        assertTrue(slowArrivals.await(5, TimeUnit.SECONDS));
+        Future<HttpResponse<String>> second = callers.submit(() -> client.send(get("/fast")));
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+
+        release.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, second.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(0L, client.stats().get("rejectedByBulkhead"));
+    }
+
+    @Test
+    void slowUpstreamTimesOutAndCountsAsFailure() {
+        OutboundHttpClient client = client(upstream(2, 50L, 200L, 100, 60_000L));
+
+        long started = System.nanoTime();
+        assertThrows(HttpTimeoutException.class, () -> client.send(get("/slow")));
+        assertThrows(ResourceAccessException.class,
+                () -> client.rest(rest -> rest.getForObject(baseUrl + "/slow", String.class)));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 4000);
+        assertEquals(2L, client.stats().get("failures"));
+        assertEquals(2, client.stats().get("consecutiveFailures"));
+        assertEquals(0, client.stats().get("inFlight"));
+    }
+
+    @Test
+    void serverErrorsOpenBreakerAndLaterCallsStayLocal() throws Exception {
+        OutboundHttpClient client = client(upstream(4, 50L, 5000L, 3, 60_000L));
+        status = 500;
+
+        assertEquals(500, client.send(get("/fast")).statusCode());
+        assertEquals(500, client.send(get("/fast")).statusCode());
+        assertThrows(HttpServerErrorException.class,
+                () -> client.rest(rest -> rest.getForObject(baseUrl + "/fast", String.class)));
+        assertEquals("OPEN", client.stats().get("circuitState"));
+
+        status = 200;
+        assertThrows(IllegalStateException.class, () -> client.send(get("/fast")));
+        assertThrows(IllegalStateException.class,
+                () -> client.rest(rest -> rest.getForObject(baseUrl + "/fast", String.class)));
+
+        assertEquals(3, calls.get());
+        assertEquals(2L, client.stats().get("rejectedByCircuitBreaker"));
+        // A refused call must not keep its bulkhead slot
+        assertEquals(0, client.stats().get("inFlight"));
+    }
+
+    @Test
+    void clientErrorsDoNotCountAsFailures() throws Exception {
+        OutboundHttpClient client = client(upstream(4, 50L, 5000L, 1, 60_000L));
+        status = 404;
+
+        assertEquals(404, client.send(get("/fast")).statusCode());
+        assertThrows(HttpClientErrorException.class,
+                () -> client.rest(rest -> rest.getForObject(baseUrl + "/fast", String.class)));
+
+        assertEquals("CLOSED", client.stats().get("circuitState"));
+        assertEquals(0L, client.stats().get("failures"));
+    }
+
+    @Test
+    void successfulTrialAfterOpenPeriodClosesBreaker() throws Exception {
+        OutboundHttpClient client = client(upstream(4, 50L, 5000L, 1, 100L));
+        status = 503;
+        client.send(get("/fast"));
+        assertEquals("OPEN", client.stats().get("circuitState"));
+
+        Thread.sleep(150);
+        assertEquals("HALF_OPEN", client.stats().get("circuitState"));
+        status = 200;
+
+        assertEquals(200, client.send(get("/fast")).statusCode());
+        assertEquals("CLOSED", client.stats().get("circuitState"));
+        assertEquals(200, client.send(get("/fast")).statusCode());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void failedTrialAfterOpenPeriodOpensBreakerAgain() throws Exception {
+        OutboundHttpClient client = client(upstream(4, 50L, 5000L, 1, 100L));
+        status = 503;
+        client.send(get("/fast"));
+
+        Thread.sleep(150);
+        assertEquals(503, client.send(get("/fast")).statusCode());
+
+        assertEquals("OPEN", client.stats().get("circuitState"));
+        assertThrows(IllegalStateException.class, () -> client.send(get("/fast")));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void halfOpenBreakerAdmitsOneTrialAtATime() throws Exception {
+        OutboundHttpClient client = client(upstream(4, 50L, 5000L, 1, 100L));
+        status = 503;
+        client.send(get("/fast"));
+        Thread.sleep(150);
+
+        slowArrivals = new CountDownLatch(1);
+        Future<HttpResponse<String>> trial = callers.submit(() -> client.send(get("/slow")));
+        assertTrue(slowArrivals.await(5, TimeUnit.SECONDS));
+
+        status = 200;
+        assertThrows(IllegalStateException.class, () -> client.send(get("/fast")));
+
+        release.countDown();
+        assertEquals(200, trial.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals("CLOSED", client.stats().get("circuitState"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void statsReportLatencyOfCalls() throws Exception {
+        OutboundHttpClient client = client(upstream(4, 50L, 5000L, 5, 60_000L));
+
+        for (int i = 0; i < 3; i++) {
+            client.send(get("/fast"));
+        }
+
+        Map<String, Object> stats = client.stats();
+        assertNotNull(stats.get("latency"));
+        assertEquals(4, stats.get("maxConcurrentCalls"));
+        assertEquals(0L, stats.get("failures"));
+    }
+
+    private OutboundHttpClient client(OutboundHttpConfig.Upstream settings) {
+        OutboundHttpConfig config = new OutboundHttpConfig();
+        config.getUpstreams().put("stub", settings);
+        return new OutboundHttpClient("stub", config.settingsFor("stub"));
+    }
+
+    private static OutboundHttpConfig.Upstream upstream(int maxConcurrentCalls, long bulkheadWaitMs,
+                                                        long readTimeoutMs, int failureThreshold,
+                                                        long openDurationMs) {
+        OutboundHttpConfig.Upstream upstream = new OutboundHttpConfig.Upstream();
+        upstream.setConnectTimeoutMs(1000L);
+        upstream.setMaxConcurrentCalls(maxConcurrentCalls);
+        upstream.setBulkheadWaitMs(bulkheadWaitMs);
+        upstream.setReadTimeoutMs(readTimeoutMs);
+        upstream.setFailureThreshold(failureThreshold);
+        upstream.setOpenDurationMs(openDurationMs);
+        return upstream;
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        byte[] body = ("status " + status).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Connection", "close");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
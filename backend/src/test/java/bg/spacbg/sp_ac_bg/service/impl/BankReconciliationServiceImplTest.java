@@ -0,0 +1,221 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.model.dto.BankReconciliationResultDto;
+import bg.spacbg.sp_ac_bg.model.dto.input.ConfirmBankMatchInput;
+import bg.spacbg.sp_ac_bg.model.entity.AccountEntity;
+import bg.spacbg.sp_ac_bg.model.entity.BankImportEntity;
+import bg.spacbg.sp_ac_bg.model.entity.BankProfileEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CompanyEntity;
+import bg.spacbg.sp_ac_bg.repository.BankImportRepository;
+import bg.spacbg.sp_ac_bg.repository.BankReconciliationJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.BankStatementLineJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.EntryLineJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryRepository;
+import bg.spacbg.sp_ac_bg.service.bankstatement.BankReconciliationMatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Confirmed matches against statement lines and open items kept in memory, including lines matched in parts.
+ */
+class BankReconciliationServiceImplTest {
+
+    private static final Integer IMPORT_ID = 5;
+    private static final Integer BANK_ACCOUNT_ID = 503;
+    private static final Integer RECEIVABLE_ACCOUNT_ID = 411;
+    private static final Integer COUNTERPART_ID = 30;
+    private static final Integer LINE_ID = 100;
+    private static final Integer FIRST_INVOICE = 1;
+    private static final Integer SECOND_INVOICE = 2;
+
+    private InMemoryReconciliationRepository reconciliationRepository;
+    private RecordingStatementLineRepository statementLineRepository;
+    private BankReconciliationServiceImpl reconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        CompanyEntity company = new CompanyEntity();
+        company.setId(1);
+        AccountEntity bankAccount = new AccountEntity();
+        bankAccount.setId(BANK_ACCOUNT_ID);
+        BankProfileEntity profile = new BankProfileEntity();
+        profile.setAccount(bankAccount);
+        BankImportEntity importEntity = new BankImportEntity();
+        importEntity.setId(IMPORT_ID);
+        importEntity.setCompany(company);
+        importEntity.setBankProfile(profile);
+        BankImportRepository bankImportRepository = mock(BankImportRepository.class);
+        when(bankImportRepository.findById(IMPORT_ID)).thenReturn(Optional.of(importEntity));
+
+        // One incoming payment of 500.00 for two invoices of 300.00 and 200.00
+        reconciliationRepository = new InMemoryReconciliationRepository();
+        reconciliationRepository.lines.put(LINE_ID, new BigDecimal("500.00"));
+        reconciliationRepository.items.put(FIRST_INVOICE, new BigDecimal("300.00"));
+        reconciliationRepository.items.put(SECOND_INVOICE, new BigDecimal("200.00"));
+        statementLineRepository = new RecordingStatementLineRepository(reconciliationRepository);
+
+        reconciliationService = new BankReconciliationServiceImpl(bankImportRepository, reconciliationRepository,
+                statementLineRepository, mock(JournalEntryRepository.class), new NumberingJournalEntryRepository(),
+                new EntryLineJdbcRepository(null) {
+                    @Override
+                    public void insertLines(List<NewEntryLine> lines) {
+                    }
+                });
+    }
+
+    @Test
+    void partialMatchKeepsRestOfLineOpen() {
+        BankReconciliationResultDto first = reconciliationService.confirmMatches(
+                IMPORT_ID, List.of(match(FIRST_INVOICE, null)), 9);
+
+        assertEquals(1, first.getMatchedLines());
+        assertEquals(1, first.getPartiallyMatchedLines());
+        assertTrue(statementLineRepository.processed.isEmpty());
+        List<BankReconciliationMatcher.StatementLine> open = reconciliationRepository.findOpenLines(IMPORT_ID);
+        assertEquals(1, open.size());
+        assertEquals(0, new BigDecimal("200.00").compareTo(open.get(0).amount()));
+
+        BankReconciliationResultDto second = reconciliationService.confirmMatches(
+                IMPORT_ID, List.of(match(SECOND_INVOICE, null)), 9);
+
+        assertEquals(0, second.getPartiallyMatchedLines());
+        assertEquals(List.of(1), statementLineRepository.processed);
+        assertTrue(reconciliationRepository.findOpenLines(IMPORT_ID).isEmpty());
+        assertTrue(reconciliationRepository.findOpenItems(1, "411", "401").isEmpty());
+    }
+
+    @Test
+    void amountAboveRestOfLineIsRejected() {
+        reconciliationRepository.items.put(SECOND_INVOICE, new BigDecimal("300.00"));
+        reconciliationService.confirmMatches(IMPORT_ID, List.of(match(FIRST_INVOICE, new BigDecimal("250.00"))), 9);
+
+        // 250.00 of the line is left, less than the second invoice
+        assertThrows(IllegalArgumentException.class, () -> reconciliationService.confirmMatches(
+                IMPORT_ID, List.of(match(SECOND_INVOICE, new BigDecimal("260.00"))), 9));
+        assertEquals(1, reconciliationRepository.matches.size());
+    }
+
+    private static ConfirmBankMatchInput match(Integer journalEntryId, BigDecimal amount) {
+        ConfirmBankMatchInput match = new ConfirmBankMatchInput();
+        match.setStatementLineId(LINE_ID);
+        match.setJournalEntryId(journalEntryId);
+        match.setAccountId(RECEIVABLE_ACCOUNT_ID);
+        match.setCounterpartId(COUNTERPART_ID);
+        match.setAmount(amount);
+        return match;
+    }
+
+    /**
+     * Statement lines and receivables of one counterpart; like the queries, both are reduced by the stored
+     * matches.
+     */
+    private static final class InMemoryReconciliationRepository extends BankReconciliationJdbcRepository {
+
+        private final Map<Integer, BigDecimal> lines = new HashMap<>();
+        private final Map<Integer, BigDecimal> items = new HashMap<>();
+        private final Set<Integer> processedLines = new HashSet<>();
+        private final List<NewMatch> matches = new ArrayList<>();
+
+        private InMemoryReconciliationRepository() {
+            super(null);
+        }
+
+        @Override
+        public List<BankReconciliationMatcher.StatementLine> findOpenLines(Integer bankImportId) {
+            return findOpenLines(bankImportId, lines.keySet());
+        }
+
+        @Override
+        public List<BankReconciliationMatcher.StatementLine> findOpenLines(Integer bankImportId,
+                                                                           Collection<Integer> lineIds) {
+            List<BankReconciliationMatcher.StatementLine> open = new ArrayList<>();
+            for (Integer lineId : lineIds) {
+                if (lines.containsKey(lineId) && !processedLines.contains(lineId)) {
+                    BigDecimal matched = matches.stream().filter(m -> m.statementLineId().equals(lineId))
+                            .map(NewMatch::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+                    open.add(new BankReconciliationMatcher.StatementLine(lineId, 1, LocalDate.of(2026, 10, 1),
+                            lines.get(lineId).subtract(matched), "Плащане по фактури", "Клиент ООД",
+                            "BG80BNBG96611020345678", null));
+                }
+            }
+            return open;
+        }
+
+        @Override
+        public List<BankReconciliationMatcher.OpenItem> findOpenItems(Integer companyId, String receivablePrefix,
+                                                                      String payablePrefix) {
+            List<BankReconciliationMatcher.OpenItem> open = new ArrayList<>();
+            items.forEach((journalEntryId, amount) -> {
+                BigDecimal cleared = matches.stream().filter(m -> m.journalEntryId().equals(journalEntryId))
+                        .map(NewMatch::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+                if (amount.compareTo(cleared) > 0) {
+                    open.add(new BankReconciliationMatcher.OpenItem(journalEntryId, RECEIVABLE_ACCOUNT_ID,
+                            COUNTERPART_ID, "Клиент ООД", null, null, "BG80BNBG96611020345678",
+                            "000000000" + journalEntryId, LocalDate.of(2026, 9, 1), true, amount.subtract(cleared)));
+                }
+            });
+            return open;
+        }
+
+        @Override
+        public void insertMatches(List<NewMatch> newMatches) {
+            matches.addAll(newMatches);
+        }
+
+        @Override
+        public void updateMissingCounterpartIbans(List<CounterpartIban> ibans) {
+        }
+    }
+
+    private static final class RecordingStatementLineRepository extends BankStatementLineJdbcRepository {
+
+        private final InMemoryReconciliationRepository reconciliationRepository;
+        private final List<Integer> processed = new ArrayList<>();
+
+        private RecordingStatementLineRepository(InMemoryReconciliationRepository reconciliationRepository) {
+            super(null);
+            this.reconciliationRepository = reconciliationRepository;
+        }
+
+        @Override
+        public void markProcessed(Integer bankImportId, List<ProcessedLine> lines) {
+            for (ProcessedLine line : lines) {
+                processed.add(line.lineNumber());
+                reconciliationRepository.processedLines.add(LINE_ID);
+            }
+        }
+    }
+
+    private static final class NumberingJournalEntryRepository extends JournalEntryJdbcRepository {
+
+        private int nextId = 1000;
+
+        private NumberingJournalEntryRepository() {
+            super(null);
+        }
+
+        @Override
+        public Map<String, Integer> insertEntries(List<NewJournalEntry> entries) {
+            Map<String, Integer> ids = new HashMap<>();
+            for (NewJournalEntry entry : entries) {
+                ids.put(entry.entryNumber(), nextId++);
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.model.entity.AccountEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CompanyEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyRevaluationRunEntity;
+import bg.spacbg.sp_ac_bg.model.entity.CurrencyRevaluationSettingsEntity;
+import bg.spacbg.sp_ac_bg.model.enums.CurrencyRevaluationRunStatus;
+import bg.spacbg.sp_ac_bg.repository.CompanyRepository;
+import bg.spacbg.sp_ac_bg.repository.CurrencyRevaluationJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.CurrencyRevaluationJdbcRepository.OpenPosition;
+import bg.spacbg.sp_ac_bg.repository.CurrencyRevaluationRunRepository;
+import bg.spacbg.sp_ac_bg.repository.CurrencyRevaluationSettingsRepository;
+import bg.spacbg.sp_ac_bg.repository.EntryLineJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.EntryLineJdbcRepository.NewEntryLine;
+import bg.spacbg.sp_ac_bg.repository.ExchangeRateJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryRepository;
+import bg.spacbg.sp_ac_bg.service.fx.ExchangeRateCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Revaluation of positions in currencies other than EUR and the base currency, valued at cross rates over EUR.
+ */
+class CurrencyRevaluationServiceImplTest {
+
+    private static final Integer COMPANY_ID = 3;
+    private static final Integer RUN_ID = 40;
+    private static final Integer ENTRY_ID = 500;
+    private static final Integer REVENUE_ACCOUNT_ID = 724;
+    private static final Integer EXPENSE_ACCOUNT_ID = 624;
+    private static final LocalDate MONTH_END = LocalDate.of(2026, 9, 30);
+
+    private final List<OpenPosition> positions = new ArrayList<>();
+    private final List<JournalEntryJdbcRepository.NewJournalEntry> entries = new ArrayList<>();
+    private final List<NewEntryLine> lines = new ArrayList<>();
+    private CurrencyRevaluationRunEntity run;
+    private CurrencyRevaluationServiceImpl revaluationService;
+
+    @BeforeEach
+    void setUp() {
+        CurrencyEntity bgn = new CurrencyEntity();
+        bgn.setCode("BGN");
+        CompanyEntity company = new CompanyEntity();
+        company.setId(COMPANY_ID);
+        company.setBaseCurrency(bgn);
+
+        CurrencyRevaluationSettingsEntity settings = new CurrencyRevaluationSettingsEntity();
+        settings.setCompany(company);
+        settings.setRevenueAccount(account(REVENUE_ACCOUNT_ID));
+        settings.setExpenseAccount(account(EXPENSE_ACCOUNT_ID));
+
+        CurrencyRevaluationSettingsRepository settingsRepository = mock(CurrencyRevaluationSettingsRepository.class);
+        when(settingsRepository.findByCompany_Id(COMPANY_ID)).thenReturn(Optional.of(settings));
+        CompanyRepository companyRepository = mock(CompanyRepository.class);
+        when(companyRepository.getReferenceById(COMPANY_ID)).thenReturn(company);
+        CurrencyRevaluationRunRepository runRepository = mock(CurrencyRevaluationRunRepository.class);
+        when(runRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            run = invocation.getArgument(0);
+            run.setId(RUN_ID);
+            return run;
+        });
+        when(runRepository.findById(RUN_ID)).thenAnswer(invocation -> Optional.ofNullable(run));
+
+        // ECB rates, quoted from EUR
+        ExchangeRateCache rateCache = new ExchangeRateCache(new StubRateRepository(List.of(
+                new Object[]{"EUR", "BGN", new BigDecimal("1.9558")},
+                new Object[]{"EUR", "JPY", new BigDecimal("161.2300")},
+                new Object[]{"EUR", "USD", new BigDecimal("1.0850")})));
+        ReflectionTestUtils.setField(rateCache, "crossCurrency", "EUR");
+        rateCache.reload();
+
+        revaluationService = new CurrencyRevaluationServiceImpl(runRepository, settingsRepository,
+                new StubRevaluationRepository(), companyRepository, mock(JournalEntryRepository.class),
+                new RecordingJournalEntryRepository(), new RecordingEntryLineRepository(), rateCache,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), Runnable::run, null);
+    }
+
+    @Test
+    void foreignPositionsAreRevaluedAtExactCrossRate() {
+        // 10 000 USD at the bank booked at 18 000.00 BGN; 1 000 000 JPY owed to a supplier booked at 12 100.00 BGN
+        positions.add(new OpenPosition(503, "503", null, "USD", new BigDecimal("10000.00"), new BigDecimal("18000.00")));
+        positions.add(new OpenPosition(401, "401", 77, "JPY", new BigDecimal("-1000000.00"), new BigDecimal("-12100.00")));
+
+        revaluationService.startRevaluation(COMPANY_ID, MONTH_END, 1);
+
+        assertEquals(CurrencyRevaluationRunStatus.COMPLETED, run.getStatus(), () -> "Run failed: " + run.getErrorMessage());
+        // USD/BGN = 1.9558 / 1.0850 = 1.8025806452, so 18 025.81 BGN
+        NewEntryLine usd = lines.get(0);
+        assertEquals(503, usd.accountId());
+        assertEquals(new BigDecimal("1.8025806452"), usd.exchangeRate());
+        assertEquals(new BigDecimal("25.81"), usd.debitAmount());
+        // JPY/BGN = 1.9558 / 161.23 = 0.0121304968, so 12 130.50 BGN; 4-decimal reverse rates gave 12 126.00
+        NewEntryLine jpy = lines.get(1);
+        assertEquals(401, jpy.accountId());
+        assertEquals(77, jpy.counterpartId());
+        assertEquals(new BigDecimal("0.0121304968"), jpy.exchangeRate());
+        assertEquals(new BigDecimal("30.50"), jpy.creditAmount());
+
+        assertEquals(new BigDecimal("25.81"), run.getTotalGain());
+        assertEquals(new BigDecimal("30.50"), run.getTotalLoss());
+        assertEquals(ENTRY_ID, run.getJournalEntryId());
+        assertEquals(4, lines.size());
+        assertEquals(REVENUE_ACCOUNT_ID, lines.get(2).accountId());
+        assertEquals(new BigDecimal("25.81"), lines.get(2).creditAmount());
+        assertEquals(EXPENSE_ACCOUNT_ID, lines.get(3).accountId());
+        assertEquals(new BigDecimal("30.50"), lines.get(3).debitAmount());
+        assertEquals("FXR-3-20260930-0001", entries.get(0).entryNumber());
+        assertEquals(new BigDecimal("56.31"), entries.get(0).totalAmount());
+    }
+
+    @Test
+    void positionAlreadyAtClosingRateIsNotBooked() {
+        positions.add(new OpenPosition(503, "503", null, "USD", new BigDecimal("10000.00"), new BigDecimal("18025.81")));
+
+        revaluationService.startRevaluation(COMPANY_ID, MONTH_END, 1);
+
+        assertEquals(CurrencyRevaluationRunStatus.COMPLETED, run.getStatus(), () -> "Run failed: " + run.getErrorMessage());
+        assertTrue(entries.isEmpty());
+        assertTrue(lines.isEmpty());
+        assertEquals(1, run.getPositionsCount());
+    }
+
+    private static AccountEntity account(Integer id) {
+        AccountEntity account = new AccountEntity();
+        account.setId(id);
+        return account;
+    }
+
+    private final class StubRevaluationRepository extends CurrencyRevaluationJdbcRepository {
+
+        private StubRevaluationRepository() {
+            super(null);
+        }
+
+        @Override
+        public List<OpenPosition> findOpenPositions(Integer companyId, LocalDate asOf, String baseCurrencyCode,
+                                                    List<String> accountPrefixes) {
+            return positions;
+        }
+    }
+
+    private final class RecordingJournalEntryRepository extends JournalEntryJdbcRepository {
+
+        private RecordingJournalEntryRepository() {
+            super(null);
+        }
+
+        @Override
+        public Map<String, Integer> insertEntries(List<NewJournalEntry> newEntries) {
+            entries.addAll(newEntries);
+            return Map.of(newEntries.get(0).entryNumber(), ENTRY_ID);
+        }
+    }
+
+    private final class RecordingEntryLineRepository extends EntryLineJdbcRepository {
+
+        private RecordingEntryLineRepository() {
+            super(null);
+        }
+
+        @Override
+        public void insertLines(List<NewEntryLine> newLines) {
+            lines.addAll(newLines);
+        }
+    }
+
+    /**
+     * Serves one rate per pair, valid from the start of the month.
+     */
+    private static final class StubRateRepository extends ExchangeRateJdbcRepository {
+
+        private final List<Object[]> rates;
+
+        private StubRateRepository(List<Object[]> rates) {
+            super(null);
+            this.rates = rates;
+        }
+
+        @Override
+        public void forEachActiveRate(RateRowHandler handler) {
+            for (Object[] rate : rates) {
+                handler.onRate((String) rate[0], (String) rate[1], MONTH_END.withDayOfMonth(1), (BigDecimal) rate[2]);
+            }
+        }
+    }
+}
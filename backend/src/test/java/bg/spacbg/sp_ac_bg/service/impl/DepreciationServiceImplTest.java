@@ -0,0 +1,161 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.model.entity.CompanyEntity;
+import bg.spacbg.sp_ac_bg.model.entity.FixedAssetEntity;
+import bg.spacbg.sp_ac_bg.repository.AccountRepository;
+import bg.spacbg.sp_ac_bg.repository.CompanyRepository;
+import bg.spacbg.sp_ac_bg.repository.DepreciationJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.DepreciationJournalRepository;
+import bg.spacbg.sp_ac_bg.repository.EntryLineJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.FixedAssetCategoryRepository;
+import bg.spacbg.sp_ac_bg.repository.FixedAssetRepository;
+import bg.spacbg.sp_ac_bg.repository.JournalEntryRepository;
+import bg.spacbg.sp_ac_bg.repository.UserRepository;
+import bg.spacbg.sp_ac_bg.service.DepreciationService.DepreciationCalculationResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Bulk depreciation over consecutive months, with the journal and the book values kept in memory.
+ */
+class DepreciationServiceImplTest {
+
+    private static final Integer COMPANY_ID = 1;
+    private static final LocalDate JANUARY = LocalDate.of(2026, 1, 1);
+    private static final LocalDate FEBRUARY = LocalDate.of(2026, 2, 1);
+    private static final LocalDate MARCH = LocalDate.of(2026, 3, 1);
+
+    private FixedAssetEntity asset;
+    private RecordingJdbcRepository jdbcRepository;
+    private DepreciationServiceImpl depreciationService;
+
+    @BeforeEach
+    void setUp() {
+        CompanyEntity company = new CompanyEntity();
+        company.setId(COMPANY_ID);
+
+        asset = new FixedAssetEntity();
+        asset.setId(10);
+        asset.setName("Лаптоп");
+        asset.setCompany(company);
+        asset.setStatus("ACTIVE");
+        asset.setAcquisitionDate(LocalDate.of(2026, 1, 5));
+        asset.setPutIntoServiceDate(LocalDate.of(2026, 1, 10));
+        asset.setAcquisitionCost(new BigDecimal("2400.00"));
+        asset.setAccountingSalvageValue(BigDecimal.ZERO);
+        asset.setAccountingDepreciationRate(new BigDecimal("50"));
+        asset.setAccountingDepreciationMethod("LINEAR");
+        asset.setAccountingBookValue(new BigDecimal("2400.00"));
+        asset.setAccountingAccumulatedDepreciation(BigDecimal.ZERO);
+        asset.setTaxDepreciationRate(new BigDecimal("50"));
+        asset.setTaxBookValue(new BigDecimal("2400.00"));
+        asset.setTaxAccumulatedDepreciation(BigDecimal.ZERO);
+
+        jdbcRepository = new RecordingJdbcRepository(asset);
+
+        FixedAssetRepository fixedAssetRepository = mock(FixedAssetRepository.class);
+        DepreciationJournalRepository journalRepository = mock(DepreciationJournalRepository.class);
+        for (LocalDate period : List.of(JANUARY, FEBRUARY, MARCH)) {
+            LocalDate previous = period.minusMonths(1);
+            when(fixedAssetRepository.findActiveAssetsForDepreciation(
+                    COMPANY_ID, period.plusMonths(1).minusDays(1))).thenAnswer(invocation -> List.of(asset));
+            when(journalRepository.findDepreciatedAssetPeriods(COMPANY_ID, previous, period))
+                    .thenAnswer(invocation -> jdbcRepository.depreciatedPeriods(previous, period));
+        }
+
+        depreciationService = new DepreciationServiceImpl(fixedAssetRepository,
+                mock(FixedAssetCategoryRepository.class), journalRepository, mock(JournalEntryRepository.class),
+                mock(AccountRepository.class), mock(CompanyRepository.class), mock(UserRepository.class),
+                jdbcRepository, mock(EntryLineJdbcRepository.class));
+    }
+
+    @Test
+    void consecutiveMonthsAreDepreciatedOneAfterAnother() {
+        DepreciationCalculationResult january = depreciationService.calculateBulkDepreciation(COMPANY_ID, JANUARY);
+        DepreciationCalculationResult february = depreciationService.calculateBulkDepreciation(COMPANY_ID, FEBRUARY);
+
+        assertTrue(january.errors().isEmpty());
+        assertTrue(february.errors().isEmpty(), () -> "February failed: " + february.errors());
+        assertEquals(2, jdbcRepository.journals.size());
+
+        DepreciationJdbcRepository.AssetDepreciation first = jdbcRepository.journals.get(0);
+        DepreciationJdbcRepository.AssetDepreciation second = jdbcRepository.journals.get(1);
+        assertEquals(JANUARY, first.period());
+        assertEquals(FEBRUARY, second.period());
+        assertEquals(0, new BigDecimal("100").compareTo(first.accountingAmount()));
+        assertEquals(0, first.accountingBookValueAfter().compareTo(second.accountingBookValueBefore()));
+        assertEquals(0, new BigDecimal("2200").compareTo(asset.getAccountingBookValue()));
+        assertEquals(0, new BigDecimal("2200").compareTo(asset.getTaxBookValue()));
+    }
+
+    @Test
+    void skippedMonthIsReportedAsError() {
+        depreciationService.calculateBulkDepreciation(COMPANY_ID, JANUARY);
+
+        DepreciationCalculationResult march = depreciationService.calculateBulkDepreciation(COMPANY_ID, MARCH);
+
+        assertEquals(1, march.errors().size());
+        assertEquals(asset.getId(), march.errors().get(0).fixedAssetId());
+        assertEquals(1, jdbcRepository.journals.size());
+    }
+
+    @Test
+    void periodAlreadyDepreciatedIsSkipped() {
+        depreciationService.calculateBulkDepreciation(COMPANY_ID, JANUARY);
+        depreciationService.calculateBulkDepreciation(COMPANY_ID, FEBRUARY);
+
+        DepreciationCalculationResult again = depreciationService.calculateBulkDepreciation(COMPANY_ID, FEBRUARY);
+
+        assertTrue(again.errors().isEmpty());
+        assertEquals(2, jdbcRepository.journals.size());
+    }
+
+    /**
+     * Keeps the inserted journal rows and applies the book value updates to the asset, as the database would.
+     */
+    private static final class RecordingJdbcRepository extends DepreciationJdbcRepository {
+
+        private final FixedAssetEntity asset;
+        private final List<AssetDepreciation> journals = new ArrayList<>();
+
+        private RecordingJdbcRepository(FixedAssetEntity asset) {
+            super(null);
+            this.asset = asset;
+        }
+
+        @Override
+        public void insertJournals(List<AssetDepreciation> depreciations) {
+            journals.addAll(depreciations);
+        }
+
+        @Override
+        public void updateAssetBookValues(List<AssetDepreciation> depreciations) {
+            for (AssetDepreciation depreciation : depreciations) {
+                asset.setAccountingBookValue(depreciation.accountingBookValueAfter());
+                asset.setAccountingAccumulatedDepreciation(
+                        asset.getAccountingAccumulatedDepreciation().add(depreciation.accountingAmount()));
+                asset.setTaxBookValue(depreciation.taxBookValueAfter());
+                asset.setTaxAccumulatedDepreciation(
+                        asset.getTaxAccumulatedDepreciation().add(depreciation.taxAmount()));
+            }
+        }
+
+        private List<Object[]> depreciatedPeriods(LocalDate fromPeriod, LocalDate toPeriod) {
+            List<Object[]> rows = new ArrayList<>();
+            for (AssetDepreciation journal : journals) {
+                if (!journal.period().isBefore(fromPeriod) && !journal.period().isAfter(toPeriod)) {
+                    rows.add(new Object[]{journal.fixedAssetId(), journal.period()});
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.service.InventoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parallel posting on one inventory account against a real PostgreSQL database.
+ *
+ * Runs only when {@code TEST_DATABASE_URL} points to a database the migrations can be applied to, e.g.
+ * {@code TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/sp-ac-bg-test}. All rows are created under a
+ * company of their own and removed afterwards.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${TEST_DATABASE_URL}",
+        "spring.datasource.username=${TEST_DATABASE_USER:postgres}",
+        "spring.datasource.password=${TEST_DATABASE_PASSWORD:}",
+        "spring.datasource.hikari.maximum-pool-size=40",
+        "spring.jpa.show-sql=false"
+})
+@EnabledIfEnvironmentVariable(named = "TEST_DATABASE_URL", matches = ".+")
+class InventoryServiceConcurrencyTest {
+
+    private static final int WRITERS = 32;
+    private static final int LINES_PER_WRITER = 25;
+    private static final BigDecimal UNIT_PRICE = new BigDecimal("10.00");
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer companyId;
+    private Integer userId;
+    private Integer accountId;
+    private final LocalDate postingDate = LocalDate.of(2026, 3, 15);
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        companyId = jdbcTemplate.queryForObject(
+                "INSERT INTO companies (name, eik) VALUES (?, ?) RETURNING id", Integer.class,
+                "Inventory stress " + suffix, "T" + suffix);
+        userId = jdbcTemplate.queryForObject(
+                "INSERT INTO users (username, email, password_hash, first_name, last_name) " +
+                "VALUES (?, ?, 'x', 'Stress', 'Test') RETURNING id", Integer.class,
+                "inventory-stress-" + suffix, "inventory-stress-" + suffix + "@example.com");
+        accountId = jdbcTemplate.queryForObject(
+                "INSERT INTO accounts (code, name, account_type, account_class, company_id, supports_quantities) " +
+                "VALUES ('304', 'Стоки', 'ASSET', 3, ?, TRUE) RETURNING id", Integer.class, companyId);
+
+        // Opening stock, so issues never take the account below zero
+        inventoryService.processEntryLine(createLine(new BigDecimal("1000"), true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("UPDATE inventory_balances SET last_movement_id = NULL WHERE company_id = ?", companyId);
+        jdbcTemplate.update("DELETE FROM inventory_movements WHERE company_id = ?", companyId);
+        jdbcTemplate.update("DELETE FROM inventory_balances WHERE company_id = ?", companyId);
+        jdbcTemplate.update("DELETE FROM inventory_snapshots WHERE company_id = ?", companyId);
+        jdbcTemplate.update("DELETE FROM journal_entries WHERE company_id = ?", companyId);
+        jdbcTemplate.update("DELETE FROM accounts WHERE company_id = ?", companyId);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+        jdbcTemplate.update("DELETE FROM companies WHERE id = ?", companyId);
+    }
+
+    @Test
+    void parallelReceiptsAndIssuesKeepBalanceExact() throws Exception {
+        // Even writers receive 4 units per line, odd writers issue 3; every receipt is at the opening price,
+        // so the average cost stays fixed and the expected amount does not depend on the order of the writers
+        List<List<Integer>> linesByWriter = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            boolean receipt = writer % 2 == 0;
+            List<Integer> lines = new ArrayList<>();
+            for (int i = 0; i < LINES_PER_WRITER; i++) {
+                lines.add(createLine(receipt ? new BigDecimal("4") : new BigDecimal("3"), receipt));
+            }
+            linesByWriter.add(lines);
+        }
+
+        runWriters(writer -> () -> {
+            for (Integer lineId : linesByWriter.get(writer)) {
+                inventoryService.processEntryLine(lineId);
+            }
+            return null;
+        });
+
+        BigDecimal receipts = BigDecimal.valueOf((long) WRITERS / 2 * LINES_PER_WRITER * 4);
+        BigDecimal issues = BigDecimal.valueOf((long) WRITERS / 2 * LINES_PER_WRITER * 3);
+        BigDecimal expectedQuantity = new BigDecimal("1000").add(receipts).subtract(issues);
+
+        Map<String, Object> balance = singleBalance();
+        assertDecimal(expectedQuantity, balance.get("current_quantity"));
+        assertDecimal(expectedQuantity.multiply(UNIT_PRICE), balance.get("current_amount"));
+        assertDecimal(UNIT_PRICE, balance.get("current_average_cost"));
+
+        assertEquals(1 + WRITERS * LINES_PER_WRITER, countMovements());
+        assertRunningBalancesChain(balance);
+    }
+
+    @Test
+    void parallelRetriesOfOneLineCreateOneMovement() throws Exception {
+        Integer lineId = createLine(new BigDecimal("7"), true);
+
+        runWriters(writer -> () -> inventoryService.processEntryLine(lineId));
+
+        assertEquals(2, countMovements());
+        assertDecimal(new BigDecimal("1007"), singleBalance().get("current_quantity"));
+    }
+
+    @Test
+    void parallelFirstPostingsCreateOneBalance() throws Exception {
+        Integer otherAccountId = jdbcTemplate.queryForObject(
+                "INSERT INTO accounts (code, name, account_type, account_class, company_id, supports_quantities) " +
+                "VALUES ('302', 'Материали', 'ASSET', 3, ?, TRUE) RETURNING id", Integer.class, companyId);
+        List<Integer> lines = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            lines.add(createLine(otherAccountId, BigDecimal.ONE, true));
+        }
+
+        runWriters(writer -> () -> inventoryService.processEntryLine(lines.get(writer)));
+
+        List<Map<String, Object>> balances = jdbcTemplate.queryForList(
+                "SELECT current_quantity FROM inventory_balances WHERE company_id = ? AND account_id = ?",
+                companyId, otherAccountId);
+        assertEquals(1, balances.size());
+        assertDecimal(BigDecimal.valueOf(WRITERS), balances.get(0).get("current_quantity"));
+    }
+
+    private interface WriterTask {
+        Callable<Object> forWriter(int writer);
+    }
+
+    /**
+     * Starts all writers at the same moment and fails on the first error of any of them.
+     */
+    private void runWriters(WriterTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int writer = 0; writer < WRITERS; writer++) {
+                Callable<Object> body = task.forWriter(writer);
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        return body.call();
+                    } catch (Throwable e) {
+                        errors.add(e);
+                        throw e;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                try {
+                    future.get(2, TimeUnit.MINUTES);
+                } catch (Exception ignored) {
+                    // Collected in errors
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (!errors.isEmpty()) {
+            fail("Writers failed: " + errors.peek());
+        }
+    }
+
+    private Integer createLine(BigDecimal quantity, boolean receipt) {
+        return createLine(accountId, quantity, receipt);
+    }
+
+    private Integer createLine(Integer lineAccountId, BigDecimal quantity, boolean receipt) {
+        BigDecimal amount = quantity.multiply(UNIT_PRICE);
+        Integer journalEntryId = jdbcTemplate.queryForObject(
+                "INSERT INTO journal_entries (entry_number, document_date, accounting_date, description, " +
+                "total_amount, created_by, company_id) VALUES (?, ?, ?, 'Stress test', ?, ?, ?) RETURNING id",
+                Integer.class, "STRESS-" + UUID.randomUUID(), postingDate, postingDate, amount, userId, companyId);
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO entry_lines (journal_entry_id, account_id, debit_amount, credit_amount, base_amount, " +
+                "quantity, unit_of_measure_code) VALUES (?, ?, ?, ?, ?, ?, 'бр') RETURNING id",
+                Integer.class, journalEntryId, lineAccountId,
+                receipt ? amount : BigDecimal.ZERO, receipt ? BigDecimal.ZERO : amount, amount, quantity);
+    }
+
+    private Map<String, Object> singleBalance() {
+        List<Map<String, Object>> balances = jdbcTemplate.queryForList(
+                "SELECT current_quantity, current_amount, current_average_cost, last_movement_id " +
+                "FROM inventory_balances WHERE company_id = ? AND account_id = ?", companyId, accountId);
+        assertEquals(1, balances.size());
+        return balances.get(0);
+    }
+
+    private int countMovements() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM inventory_movements WHERE company_id = ? AND account_id = ?",
+                Integer.class, companyId, accountId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Every movement's stored balance must follow from the one before it, and the last one must match the
+     * account balance - a lost update would break the chain.
+     */
+    private void assertRunningBalancesChain(Map<String, Object> balance) {
+        List<Map<String, Object>> movements = jdbcTemplate.queryForList(
+                "SELECT id, movement_type, quantity, balance_after_quantity FROM inventory_movements " +
+                "WHERE company_id = ? AND account_id = ? ORDER BY movement_date, id", companyId, accountId);
+        BigDecimal running = BigDecimal.ZERO;
+        for (Map<String, Object> movement : movements) {
+            BigDecimal quantity = (BigDecimal) movement.get("quantity");
+            running = "DEBIT".equals(movement.get("movement_type")) ? running.add(quantity) : running.subtract(quantity);
+            assertDecimal(running, movement.get("balance_after_quantity"));
+        }
+        Map<String, Object> last = movements.get(movements.size() - 1);
+        assertEquals(((Number) last.get("id")).intValue(), ((Number) balance.get("last_movement_id")).intValue());
+    }
+
+    private static void assertDecimal(BigDecimal expected, Object actual) {
+        assertNotNull(actual);
+        assertEquals(0, expected.compareTo((BigDecimal) actual),
+                "expected " + expected.toPlainString() + " but was " + actual);
+    }
+}
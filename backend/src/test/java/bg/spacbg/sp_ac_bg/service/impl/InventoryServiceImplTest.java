@@ -0,0 +1,95 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.model.dto.output.InventoryMovementsPage;
+import bg.spacbg.sp_ac_bg.model.entity.InventoryMovementEntity;
+import bg.spacbg.sp_ac_bg.repository.InventoryMovementRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Paging of the movements behind one line of the quantity turnover sheet.
+ */
+class InventoryServiceImplTest {
+
+    private static final Integer COMPANY_ID = 1;
+    private static final Integer ACCOUNT_ID = 304;
+    private static final LocalDate FROM = LocalDate.of(2026, 9, 1);
+    private static final LocalDate TO = LocalDate.of(2026, 9, 30);
+
+    private InventoryMovementRepository movementRepository;
+    private InventoryServiceImpl inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        movementRepository = mock(InventoryMovementRepository.class);
+        when(movementRepository.countAccountMovementsInPeriod(COMPANY_ID, ACCOUNT_ID, FROM, TO)).thenReturn(23L);
+        inventoryService = new InventoryServiceImpl(movementRepository, null, null, null, null, null, null, null, null);
+    }
+
+    @Test
+    void offsetNotMultipleOfLimitStartsAtOffset() {
+        when(movementRepository.findAccountMovementsInPeriod(COMPANY_ID, ACCOUNT_ID, FROM, TO, 5, 10))
+                .thenReturn(movements(6, 10));
+
+        InventoryMovementsPage page = inventoryService.getQuantityTurnoverMovements(
+                COMPANY_ID, ACCOUNT_ID, FROM, TO, 5, 10);
+
+        assertEquals(6, page.getMovements().get(0).getId());
+        assertEquals(10, page.getMovements().size());
+        assertEquals(23L, page.getTotalCount());
+        assertTrue(page.getHasMore());
+    }
+
+    @Test
+    void lastPageHasNoMore() {
+        when(movementRepository.findAccountMovementsInPeriod(COMPANY_ID, ACCOUNT_ID, FROM, TO, 15, 10))
+                .thenReturn(movements(16, 8));
+
+        InventoryMovementsPage page = inventoryService.getQuantityTurnoverMovements(
+                COMPANY_ID, ACCOUNT_ID, FROM, TO, 15, 10);
+
+        assertEquals(8, page.getMovements().size());
+        assertFalse(page.getHasMore());
+    }
+
+    @Test
+    void offsetPastEndReturnsEmptyPageWithoutQuery() {
+        InventoryMovementsPage page = inventoryService.getQuantityTurnoverMovements(
+                COMPANY_ID, ACCOUNT_ID, FROM, TO, 30, 10);
+
+        assertTrue(page.getMovements().isEmpty());
+        assertFalse(page.getHasMore());
+        verify(movementRepository, never()).findAccountMovementsInPeriod(COMPANY_ID, ACCOUNT_ID, FROM, TO, 30, 10);
+    }
+
+    @Test
+    void nonPositiveLimitIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> inventoryService.getQuantityTurnoverMovements(
+                COMPANY_ID, ACCOUNT_ID, FROM, TO, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> inventoryService.getQuantityTurnoverMovements(
+                COMPANY_ID, ACCOUNT_ID, FROM, TO, 0, -5));
+    }
+
+    @Test
+    void negativeOffsetIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> inventoryService.getQuantityTurnoverMovements(
+                COMPANY_ID, ACCOUNT_ID, FROM, TO, -1, 10));
+    }
+
+    private static List<InventoryMovementEntity> movements(int firstId, int count) {
+        List<InventoryMovementEntity> movements = new ArrayList<>();
+        for (int id = firstId; id < firstId + count; id++) {
+            InventoryMovementEntity movement = new InventoryMovementEntity();
+            movement.setId(id);
+            movements.add(movement);
+        }
+        return movements;
+    }
+}
@@ -0,0 +1,249 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.config.OutboundHttpConfig;
+import bg.spacbg.sp_ac_bg.config.SaltEdgeConfig;
+import bg.spacbg.sp_ac_bg.model.entity.BankProfileEntity;
+import bg.spacbg.sp_ac_bg.model.entity.SaltEdgeTransactionEntity;
+import bg.spacbg.sp_ac_bg.repository.BankProfileRepository;
+import bg.spacbg.sp_ac_bg.repository.CompanyRepository;
+import bg.spacbg.sp_ac_bg.repository.SaltEdgeAccountRepository;
+import bg.spacbg.sp_ac_bg.repository.SaltEdgeConnectionRepository;
+import bg.spacbg.sp_ac_bg.repository.SaltEdgeCustomerRepository;
+import bg.spacbg.sp_ac_bg.repository.SaltEdgeTransactionJdbcRepository;
+import bg.spacbg.sp_ac_bg.repository.SaltEdgeTransactionRepository;
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClients;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Paged transaction sync against a local stub of the Salt Edge transactions endpoint.
+ */
+class SaltEdgeServiceImplTest {
+
+    private static final Integer PROFILE_ID = 7;
+    private static final String ACCOUNT_ID = "acc-1";
+
+    private HttpServer server;
+    // Page bodies by from_id; the first page is stored under ""
+    private final Map<String, String> pages = new ConcurrentHashMap<>();
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final List<String> appIds = new CopyOnWriteArrayList<>();
+    private volatile int status = 200;
+
+    private BankProfileEntity profile;
+    private RecordingTransactionRepository transactionRepository;
+    private SaltEdgeServiceImpl saltEdgeService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/transactions", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            queries.add(query);
+            appIds.add(exchange.getRequestHeaders().getFirst("App-id"));
+            String fromId = "";
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("from_id=")) {
+                    fromId = parameter.substring("from_id=".length());
+                }
+            }
+            String body = pages.get(fromId);
+            if (status != 200) {
+                respond(exchange, status, "{\"error\":{\"class\":\"ProviderUnavailable\"}}");
+            } else if (body == null) {
+                respond(exchange, 404, "{\"error\":{\"class\":\"TransactionNotFound\"}}");
+            } else {
+                respond(exchange, 200, body);
+            }
+        });
+        server.start();
+
+        SaltEdgeConfig config = new SaltEdgeConfig();
+        config.setAppId("app-id");
+        config.setSecret("secret");
+        config.setBaseUrl("http://localhost:" + server.getAddress().getPort());
+
+        profile = new BankProfileEntity();
+        profile.setId(PROFILE_ID);
+        profile.setSaltEdgeAccountId(ACCOUNT_ID);
+        BankProfileRepository bankProfileRepository = mock(BankProfileRepository.class);
+        when(bankProfileRepository.findById(PROFILE_ID)).thenReturn(Optional.of(profile));
+
+        transactionRepository = new RecordingTransactionRepository();
+        saltEdgeService = new SaltEdgeServiceImpl(config, mock(CompanyRepository.class), bankProfileRepository,
+                mock(SaltEdgeCustomerRepository.class), mock(SaltEdgeConnectionRepository.class),
+                mock(SaltEdgeAccountRepository.class), mock(SaltEdgeTransactionRepository.class),
+                transactionRepository, new OutboundHttpClients(new OutboundHttpConfig()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void followsNextIdThroughAllPages() {
+        pages.put("", page("103", transaction("101", "-12.50"), transaction("102", "300.00")));
+        pages.put("103", page("105", transaction("103", "-1.20"), transaction("104", "45.00")));
+        pages.put("105", page(null, transaction("105", "-7.00")));
+
+        List<SaltEdgeTransactionEntity> synced = saltEdgeService.syncTransactions(
+                PROFILE_ID, LocalDate.of(2026, 9, 1), LocalDate.of(2026, 9, 30));
+
+        assertEquals(List.of("101", "102", "103", "104", "105"), ids(synced));
+        assertEquals(3, queries.size());
+        assertEquals("account_id=acc-1&from_date=2026-09-01&to_date=2026-09-30", queries.get(0));
+        assertTrue(queries.get(1).endsWith("&from_id=103"));
+        assertTrue(queries.get(2).endsWith("&from_id=105"));
+        assertEquals(List.of("app-id", "app-id", "app-id"), appIds);
+        assertEquals(3, transactionRepository.batches.size());
+
+        SaltEdgeTransactionEntity first = synced.get(0);
+        assertEquals(ACCOUNT_ID, first.getSaltEdgeAccountId());
+        assertSame(profile, first.getBankProfile());
+        assertEquals(0, new BigDecimal("-12.50").compareTo(first.getAmount()));
+        assertEquals(LocalDate.of(2026, 9, 15), first.getMadeOn());
+        assertEquals(Boolean.FALSE, first.getIsProcessed());
+        assertNotNull(profile.getSaltEdgeLastSyncAt());
+    }
+
+    @Test
+    void transactionRepeatedOnNextPageIsInsertedOnce() {
+        pages.put("", page("102", transaction("101", "10.00"), transaction("102", "20.00")));
+        pages.put("102", page(null, transaction("102", "20.00"), transaction("103", "30.00")));
+
+        List<SaltEdgeTransactionEntity> synced = saltEdgeService.syncTransactions(PROFILE_ID, null, null);
+
+        assertEquals(List.of("101", "102", "103"), ids(synced));
+        assertEquals(List.of("103"), ids(transactionRepository.batches.get(1)));
+        assertEquals("account_id=acc-1", queries.get(0));
+    }
+
+    @Test
+    void resyncReturnsOnlyTransactionsNotStoredYet() {
+        pages.put("", page(null, transaction("101", "10.00"), transaction("102", "20.00")));
+        saltEdgeService.syncTransactions(PROFILE_ID, null, null);
+
+        pages.put("", page(null, transaction("101", "10.00"), transaction("102", "20.00"),
+                transaction("103", "30.00")));
+        List<SaltEdgeTransactionEntity> synced = saltEdgeService.syncTransactions(PROFILE_ID, null, null);
+
+        assertEquals(List.of("103"), ids(synced));
+        assertEquals(3, transactionRepository.stored.size());
+    }
+
+    @Test
+    void repeatedNextIdStopsSync() {
+        pages.put("", page("102", transaction("101", "10.00")));
+        pages.put("102", page("102", transaction("102", "20.00")));
+
+        List<SaltEdgeTransactionEntity> synced = saltEdgeService.syncTransactions(PROFILE_ID, null, null);
+
+        assertEquals(List.of("101", "102"), ids(synced));
+        assertEquals(2, queries.size());
+    }
+
+    @Test
+    void emptyAccountSyncsWithoutInserts() {
+        pages.put("", page(null));
+
+        List<SaltEdgeTransactionEntity> synced = saltEdgeService.syncTransactions(PROFILE_ID, null, null);
+
+        assertTrue(synced.isEmpty());
+        assertTrue(transactionRepository.stored.isEmpty());
+        assertNotNull(profile.getSaltEdgeLastSyncAt());
+    }
+
+    @Test
+    void upstreamErrorFailsSyncAndKeepsLastSyncTime() {
+        pages.put("", page("102", transaction("101", "10.00")));
+        status = 502;
+
+        assertThrows(RuntimeException.class, () -> saltEdgeService.syncTransactions(PROFILE_ID, null, null));
+
+        assertNull(profile.getSaltEdgeLastSyncAt());
+        assertTrue(transactionRepository.stored.isEmpty());
+    }
+
+    @Test
+    void profileWithoutSaltEdgeAccountIsRejected() {
+        profile.setSaltEdgeAccountId(null);
+
+        assertThrows(IllegalStateException.class, () -> saltEdgeService.syncTransactions(PROFILE_ID, null, null));
+        assertTrue(queries.isEmpty());
+    }
+
+    private static String page(String nextId, String... transactions) {
+        return "{\"data\":[" + String.join(",", transactions) + "],\"meta\":{\"next_id\":" +
+                (nextId == null ? "null" : "\"" + nextId + "\"") + ",\"next_page\":null}}";
+    }
+
+    private static String transaction(String id, String amount) {
+        return "{\"id\":\"" + id + "\",\"account_id\":\"" + ACCOUNT_ID + "\",\"duplicated\":false," +
+                "\"mode\":\"normal\",\"status\":\"posted\",\"made_on\":\"2026-09-15\",\"amount\":" + amount + "," +
+                "\"currency_code\":\"EUR\",\"description\":\"Плащане " + id + "\",\"category\":\"transfer\"," +
+                "\"extra\":{\"payee\":\"BG80BNBG96611020345678\"}}";
+    }
+
+    private static List<String> ids(List<SaltEdgeTransactionEntity> transactions) {
+        return transactions.stream().map(SaltEdgeTransactionEntity::getSaltEdgeTransactionId).toList();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("Connection", "close");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Keeps the stored Salt Edge ids and, like the unique index, drops transactions that are already stored.
+     */
+    private static final class RecordingTransactionRepository extends SaltEdgeTransactionJdbcRepository {
+
+        private final Set<String> stored = new HashSet<>();
+        private final List<List<SaltEdgeTransactionEntity>> batches = new ArrayList<>();
+        private int nextId = 1;
+
+        private RecordingTransactionRepository() {
+            super(null);
+        }
+
+        @Override
+        public List<SaltEdgeTransactionEntity> insertNew(List<SaltEdgeTransactionEntity> transactions) {
+            List<SaltEdgeTransactionEntity> inserted = new ArrayList<>();
+            for (SaltEdgeTransactionEntity transaction : transactions) {
+                if (stored.add(transaction.getSaltEdgeTransactionId())) {
+                    transaction.setId(nextId++);
+                    inserted.add(transaction);
+                }
+            }
+            batches.add(new ArrayList<>(transactions));
+            return inserted;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package bg.spacbg.sp_ac_bg.service.impl;
+
+import bg.spacbg.sp_ac_bg.config.OutboundHttpConfig;
+import bg.spacbg.sp_ac_bg.model.dto.ViesValidationResult;
+import bg.spacbg.sp_ac_bg.model.entity.GlobalContragentEntity;
+import bg.spacbg.sp_ac_bg.repository.CounterpartRepository;
+import bg.spacbg.sp_ac_bg.repository.GlobalContragentRepository;
+import bg.spacbg.sp_ac_bg.service.http.OutboundHttpClients;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * VIES lookups against a local stub of the REST and SOAP endpoints.
+ */
+class ViesServiceImplTest {
+
+    private static final String VALID_SOAP_RESPONSE =
+            "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>" +
+            "<checkVatResponse xmlns=\"urn:ec.europa.eu:taxud:vies:services:checkVat:types\">" +
+            "<countryCode>DE</countryCode><vatNumber>811907980</vatNumber><valid>true</valid>" +
+            "<name>---</name><address>---</address></checkVatResponse></soap:Body></soap:Envelope>";
+
+    private HttpServer server;
+    private final Map<String, StubResponse> restResponses = new ConcurrentHashMap<>();
+    private volatile StubResponse soapResponse = new StubResponse(500, "");
+    private final AtomicInteger restCalls = new AtomicInteger();
+    private final AtomicInteger soapCalls = new AtomicInteger();
+    private final AtomicInteger failingSoapCallsLeft = new AtomicInteger();
+
+    private GlobalContragentRepository globalContragentRepository;
+    private ViesServiceImpl viesService;
+
+    private record StubResponse(int status, String body) {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/rest/", exchange -> {
+            restCalls.incrementAndGet();
+            String vatNumber = exchange.getRequestURI().getPath().substring("/rest/".length()).replace("/vat/", "");
+            respond(exchange, restResponses.getOrDefault(vatNumber, new StubResponse(503, "")));
+        });
+        server.createContext("/soap", exchange -> {
+            soapCalls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, failingSoapCallsLeft.getAndDecrement() > 0 ? new StubResponse(500, "") : soapResponse);
+        });
+        server.start();
+        String baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+        // Retries are under test here, not the circuit breaker
+        OutboundHttpConfig httpConfig = new OutboundHttpConfig();
+        OutboundHttpConfig.Upstream vies = new OutboundHttpConfig.Upstream();
+        vies.setFailureThreshold(100);
+        httpConfig.getUpstreams().put("vies", vies);
+
+        globalContragentRepository = mock(GlobalContragentRepository.class);
+        viesService = new ViesServiceImpl(globalContragentRepository, mock(CounterpartRepository.class),
+                mock(PlatformTransactionManager.class), mock(TaskExecutor.class), new OutboundHttpClients(httpConfig));
+        ReflectionTestUtils.setField(viesService, "restUrlTemplate", baseUrl + "/rest/%s/vat/%s");
+        ReflectionTestUtils.setField(viesService, "soapUrl", baseUrl + "/soap");
+        ReflectionTestUtils.setField(viesService, "cacheTtlHours", 168L);
+        ReflectionTestUtils.setField(viesService, "invalidCacheTtlHours", 24L);
+        ReflectionTestUtils.setField(viesService, "maxConcurrentRequests", 2);
+        ReflectionTestUtils.setField(viesService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(viesService, "retryBackoffMs", 1L);
+        viesService.startRequestExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        viesService.stopRequestExecutor();
+        server.stop(0);
+    }
+
+    @Test
+    void restAnswerIsReturnedWithCleanedNameAndAddress() {
+        restResponses.put("BG175074752", new StubResponse(200,
+                "{\"isValid\":true,\"countryCode\":\"BG\",\"name\":\"ПРИМЕР\\n ЕООД\",\"address\":\"ул. Витоша 1 \\n София\"}"));
+
+        ViesValidationResult result = viesService.validateVat(" bg 175074752 ");
+
+        assertTrue(result.isValid());
+        assertEquals("BG175074752", result.getVatNumber());
+        assertEquals("ПРИМЕР ЕООД", result.getName());
+        assertEquals("ул. Витоша 1 София", result.getLongAddress());
+        assertEquals("REST", result.getSource());
+        assertEquals(0, soapCalls.get());
+    }
+
+    @Test
+    void unknownNumberIsInvalidWithoutSoapFallback() {
+        restResponses.put("BG000000000", new StubResponse(404, ""));
+
+        ViesValidationResult result = viesService.validateVat("BG000000000");
+
+        assertFalse(result.isValid());
+        assertEquals("REST", result.getSource());
+        assertEquals(0, soapCalls.get());
+    }
+
+    @Test
+    void unavailableMemberStateFallsBackToSoap() {
+        restResponses.put("DE811907980", new StubResponse(200, "{\"isValid\":false,\"userError\":\"MS_UNAVAILABLE\"}"));
+        soapResponse = new StubResponse(200, VALID_SOAP_RESPONSE);
+
+        ViesValidationResult result = viesService.validateVat("DE811907980");
+
+        assertTrue(result.isValid());
+        assertEquals("SOAP", result.getSource());
+        assertEquals("---", result.getName());
+        assertEquals(1, restCalls.get());
+        assertEquals(1, soapCalls.get());
+    }
+
+    @Test
+    void freshCacheEntryIsServedWithoutCallingVies() {
+        GlobalContragentEntity cached = new GlobalContragentEntity();
+        cached.setVatNumber("BG175074752");
+        cached.setVatValid(true);
+        cached.setCountry("BG");
+        cached.setCompanyName("ПРИМЕР ЕООД");
+        cached.setLastValidatedAt(OffsetDateTime.now().minusHours(1));
+        when(globalContragentRepository.findByVatNumber("BG175074752")).thenReturn(Optional.of(cached));
+
+        ViesValidationResult result = viesService.validateVat("BG175074752");
+
+        assertTrue(result.isValid());
+        assertEquals("CACHE", result.getSource());
+        assertEquals("ПРИМЕР ЕООД", result.getName());
+        assertEquals(0, restCalls.get() + soapCalls.get());
+    }
+
+    @Test
+    void batchValidationRetriesTransientFailures() {
+        // Neither endpoint answers the first attempt; the retry gets the SOAP answer
+        soapResponse = new StubResponse(200, VALID_SOAP_RESPONSE);
+        failingSoapCallsLeft.set(1);
+
+        Map<String, ViesValidationResult> results = viesService.validateBatch(List.of("DE811907980"));
+
+        assertEquals(1, results.size());
+        assertTrue(results.get("DE811907980").isValid());
+        assertEquals(2, soapCalls.get());
+    }
+
+    @Test
+    void batchValidationGivesUpAfterMaxAttempts() {
+        failingSoapCallsLeft.set(Integer.MAX_VALUE);
+
+        Map<String, ViesValidationResult> results = viesService.validateBatch(List.of("DE811907980", "FR40303265045"));
+
+        assertEquals(2, results.size());
+        assertFalse(results.get("DE811907980").isValid());
+        assertFalse(results.get("FR40303265045").isValid());
+        assertNotNull(results.get("DE811907980").getErrorMessage());
+        assertEquals(6, restCalls.get());
+        assertEquals(6, soapCalls.get());
+    }
+
+    private static void respond(HttpExchange exchange, StubResponse response) throws IOException {
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        // No keep-alive, so a retry never lands on a connection the stub has already dropped
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package bg.spacbg.sp_ac_bg.service.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The writer must produce exactly the bytes of {@link VatExportFormatter} followed by
+ * {@code getBytes(windows-1251)}, which is what NAP received before it was introduced.
+ */
+class Windows1251FieldWriterTest {
+
+    private static final int[] LENGTHS = {1, 3, 5, 10, 15, 20};
+
+    private final Locale originalFormatLocale = Locale.getDefault(Locale.Category.FORMAT);
+
+    @AfterEach
+    void restoreLocale() {
+        Locale.setDefault(Locale.Category.FORMAT, originalFormatLocale);
+    }
+
+    @Test
+    void textMatchesFormatter() {
+        List<String> texts = Arrays.asList(null, "", "ABC", "Фирма ЕООД", "ул. „Витоша“ № 1 – €",
+                "中文 unmappable", "emoji 😀 pair", "lone \uD83D high", "lone \uDE00 low",
+                "tab\tand\u0000nul", "very long company name that does not fit in the field at all");
+        for (String text : texts) {
+            for (int length : LENGTHS) {
+                assertSameBytes(VatExportFormatter.formatText(text, length),
+                        new Windows1251FieldWriter().text(text, length), "text '" + text + "' length " + length);
+            }
+        }
+        // A surrogate pair cut by the field length leaves a lone high surrogate
+        String pair = "ab😀cd";
+        for (int length = 1; length <= pair.length() + 1; length++) {
+            assertSameBytes(VatExportFormatter.formatText(pair, length),
+                    new Windows1251FieldWriter().text(pair, length), "pair length " + length);
+        }
+    }
+
+    @Test
+    void amountMatchesFormatter() {
+        for (BigDecimal amount : amounts()) {
+            for (int length : LENGTHS) {
+                assertSameBytes(VatExportFormatter.formatAmount(amount, length),
+                        new Windows1251FieldWriter().amount(amount, length), "amount " + amount + " length " + length);
+            }
+        }
+    }
+
+    @Test
+    void amountWithDecimalMatchesFormatterInEveryLocale() {
+        for (Locale locale : List.of(originalFormatLocale, Locale.US, Locale.forLanguageTag("bg-BG"), Locale.GERMANY,
+                Locale.forLanguageTag("fr-CH"))) {
+            Locale.setDefault(Locale.Category.FORMAT, locale);
+            for (BigDecimal amount : amounts()) {
+                for (int length : LENGTHS) {
+                    assertSameBytes(VatExportFormatter.formatAmountWithDecimal(amount, length),
+                            new Windows1251FieldWriter().amountWithDecimal(amount, length),
+                            "amount " + amount + " length " + length + " locale " + locale);
+                }
+            }
+        }
+    }
+
+    @Test
+    void dateMatchesFormatter() {
+        List<LocalDate> dates = Arrays.asList(null, LocalDate.of(2024, 1, 5), LocalDate.of(1999, 12, 31),
+                LocalDate.of(12, 3, 4), LocalDate.of(10000, 1, 1), LocalDate.of(-5, 6, 7));
+        for (LocalDate date : dates) {
+            assertSameBytes(VatExportFormatter.formatDate(date), new Windows1251FieldWriter().date(date), "date " + date);
+        }
+    }
+
+    @Test
+    void fieldsAppendToOneLineAcrossBufferGrowth() {
+        Windows1251FieldWriter writer = new Windows1251FieldWriter(1);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            BigDecimal amount = BigDecimal.valueOf(i * 12345L - 3_000_000L, 2);
+            writer.text("Ред " + i, 12).amount(amount, 15).amountWithDecimal(amount, 15)
+                    .date(LocalDate.of(2024, 1, 1).plusDays(i)).newLine();
+            expected.append(VatExportFormatter.formatText("Ред " + i, 12))
+                    .append(VatExportFormatter.formatAmount(amount, 15))
+                    .append(VatExportFormatter.formatAmountWithDecimal(amount, 15))
+                    .append(VatExportFormatter.formatDate(LocalDate.of(2024, 1, 1).plusDays(i)))
+                    .append(System.lineSeparator());
+        }
+        assertArrayEquals(expected.toString().getBytes(VatExportFormatter.WINDOWS_1251), writer.toByteArray());
+        assertEquals(VatExportFormatter.toBase64Windows1251(expected.toString()), writer.toBase64());
+
+        writer.reset();
+        assertEquals(0, writer.size());
+    }
+
+    private static List<BigDecimal> amounts() {
+        List<BigDecimal> amounts = new ArrayList<>(Arrays.asList(null, BigDecimal.ZERO, new BigDecimal("-0.001"),
+                new BigDecimal("-0.005"), new BigDecimal("0.005"), new BigDecimal("0.1"), new BigDecimal("-1"),
+                new BigDecimal("999.995"), new BigDecimal("1234567.891"), new BigDecimal("-9876543210.5"),
+                new BigDecimal("1E+3"), new BigDecimal("92233720368547758.07"),
+                new BigDecimal("-92233720368547758.08"), new BigDecimal("123456789012345678901234.56")));
+        Random random = new Random(20240101L);
+        for (int i = 0; i < 20_000; i++) {
+            BigInteger unscaled = BigInteger.valueOf(random.nextLong() >> random.nextInt(63));
+            amounts.add(new BigDecimal(unscaled, random.nextInt(6)));
+        }
+        return amounts;
+    }
+
+    private static void assertSameBytes(String expected, Windows1251FieldWriter writer, String message) {
+        assertArrayEquals(expected.getBytes(VatExportFormatter.WINDOWS_1251), writer.toByteArray(), message);
+    }
+}